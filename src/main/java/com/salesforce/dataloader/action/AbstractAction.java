@@ -51,6 +51,7 @@ import com.salesforce.dataloader.exception.MappingInitializationException;
 import com.salesforce.dataloader.exception.OperationException;
 import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.util.AppUtil;
+import com.salesforce.dataloader.util.RetryPolicy;
 import com.sforce.async.AsyncApiException;
 import com.sforce.soap.partner.fault.ApiFault;
 import com.sforce.ws.ConnectionException;
@@ -72,8 +73,8 @@ abstract class AbstractAction implements IAction {
     private final DataAccessObject dao;
 
     private final Logger logger;
-    private boolean enableRetries;
-    private int maxRetries;
+    private final RetryPolicy retryPolicy;
+    private boolean resuming = false;
 
     protected AbstractAction(Controller controller, ILoaderProgress monitor)
             throws DataAccessObjectInitializationException {
@@ -90,17 +91,7 @@ abstract class AbstractAction implements IAction {
             this.errorWriter = null;
         }
         this.visitor = createVisitor();
-        int retries = -1;
-        this.enableRetries = controller.getConfig().getBoolean(Config.ENABLE_RETRIES);
-        if (this.enableRetries) {
-            try {
-                // limit the number of max retries in case limit is exceeded
-                retries = Math.min(Config.MAX_RETRIES_LIMIT, controller.getConfig().getInt(Config.MAX_RETRIES));
-            } catch (ParameterLoadException e) {
-                retries = Config.DEFAULT_MAX_RETRIES;
-            }
-        }
-        this.maxRetries = retries;
+        this.retryPolicy = RetryPolicy.fromConfig(controller.getConfig());
     }
 
     /** This method should throw an error if the data access object is configured incorrectly */
@@ -128,15 +119,52 @@ abstract class AbstractAction implements IAction {
     protected abstract boolean visit() throws OperationException, DataAccessObjectException, ParameterLoadException,
     ConnectionException, AsyncApiException, com.sforce.ws.ConnectionException;
 
+    /**
+     * Process all records of the operation. Subclasses can override this to process
+     * records in some other way than one {@link #visit()} call after another.
+     */
+    protected void visitAll() throws OperationException, DataAccessObjectException, ParameterLoadException,
+    ConnectionException, AsyncApiException {
+        while (!getMonitor().isCanceled() && visit()) {}
+    }
+
     /**
      * @return true if error and success files should be used in this operation
      */
     protected abstract boolean writeStatus();
 
+    /**
+     * Called before the operation is attempted again after a failure. Subclasses can override this
+     * to go on from the point where the failed attempt stopped instead of starting over.
+     *
+     * @return true if the next attempt resumes the failed one, in which case the success and error
+     *         files are appended to
+     */
+    protected boolean prepareResume() {
+        return false;
+    }
+
+    /**
+     * Called when the operation failed with an error that may go away when it is attempted again. Subclasses
+     * can override this when another attempt would do harm, or when the failure was retried already.
+     *
+     * @return true if the operation may be attempted again after the given failure
+     */
+    protected boolean canRetryOperation(Exception e) {
+        return true;
+    }
+
+    /**
+     * @return true if the current attempt resumes a failed one
+     */
+    protected boolean isResuming() {
+        return this.resuming;
+    }
+
     @Override
     public final void execute() {
         List<Exception> exceptions = null;
-        for (int numAttempts = 0; numAttempts < this.maxRetries; numAttempts++) {
+        for (int numAttempts = 0; ; numAttempts++) {
                 exceptions = executeOperation();
                 boolean doAttemptAgain = false;
                 if (exceptions != null && exceptions.size() > 0) {
@@ -150,6 +178,7 @@ abstract class AbstractAction implements IAction {
                 if (!doAttemptAgain) {
                     break; // stop the loop
                 }
+                this.resuming = prepareResume();
         }
         if (exceptions != null && exceptions.size() > 0) {
             exceptions.forEach(this::handleException);
@@ -168,7 +197,7 @@ abstract class AbstractAction implements IAction {
                 openErrorWriter(statusColumns);
             }
 
-            while (!getMonitor().isCanceled() && visit()) {}
+            visitAll();
             
         } catch (final Exception e) {
             exceptions.add(e);
@@ -211,7 +240,8 @@ abstract class AbstractAction implements IAction {
                 || e instanceof ExtractExceptionOnServer
                 || e instanceof LoadExceptionOnServer
                 || e instanceof ConnectionException) {
-            if (numAttempts < this.maxRetries-1 && this.enableRetries) {
+            if (numAttempts < this.retryPolicy.getMaxRetries() && !getMonitor().isCanceled()
+                    && canRetryOperation(e)) {
                 // loop only if less than MAX_RETRIES
                 logger.warn("Encountered an error on server when performing "
                         + controller.getConfig().getString(Config.OPERATION) 
@@ -229,21 +259,15 @@ abstract class AbstractAction implements IAction {
      * @param operationName
      */
     private void retrySleep(int retryNum) {
-        int sleepSecs;
-        try {
-            sleepSecs = controller.getConfig().getInt(Config.MIN_RETRY_SLEEP_SECS);
-        } catch (ParameterLoadException e1) {
-            sleepSecs = Config.DEFAULT_MIN_RETRY_SECS;
-        }
-        // sleep between retries is based on the retry attempt #. Sleep for longer periods with each retry
-        sleepSecs = sleepSecs + (retryNum * 10); // sleep for MIN_RETRY_SLEEP_SECS + 10, 20, 30, etc.
+        // sleep for longer periods with each retry
+        long sleepMillis = this.retryPolicy.getSleepMillis(retryNum);
 
         logger.info(Messages.getFormattedString("Client.retryOperation", 
                 new String[]{Integer.toString(retryNum + 1),
                 getController().getConfig().getString(Config.OPERATION), 
-                Integer.toString(sleepSecs)}));
+                Long.toString(sleepMillis / 1000)}));
         try {
-            Thread.sleep(sleepSecs * 1000);
+            Thread.sleep(sleepMillis);
         } catch (InterruptedException e) { // ignore
         }
     }
@@ -345,6 +369,10 @@ abstract class AbstractAction implements IAction {
 	        // add the ERROR column
 	        headers.add(Config.ERROR_COLUMN_NAME);
         }
+        if (getErrorWriter() instanceof CSVFileWriter) {
+            // the rows written by the failed attempt are kept when it is resumed
+            ((CSVFileWriter)getErrorWriter()).setAppend(this.resuming);
+        }
         try {
             getErrorWriter().open();
             getErrorWriter().setColumnNames(headers);
@@ -372,6 +400,9 @@ abstract class AbstractAction implements IAction {
 	        }
 	        headers.add(Config.STATUS_COLUMN_NAME);
         }
+        if (getSuccessWriter() instanceof CSVFileWriter) {
+            ((CSVFileWriter)getSuccessWriter()).setAppend(this.resuming);
+        }
         try {
             getSuccessWriter().open();
             getSuccessWriter().setColumnNames(headers);
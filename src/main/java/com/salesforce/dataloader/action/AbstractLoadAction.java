@@ -36,16 +36,19 @@ import com.salesforce.dataloader.dao.DataAccessObjectFactory;
 import com.salesforce.dataloader.dao.DataReader;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.exception.LoadExceptionOnServer;
 import com.salesforce.dataloader.exception.MappingInitializationException;
 import com.salesforce.dataloader.exception.OperationException;
 import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.mapping.LoadMapper;
 import com.salesforce.dataloader.model.Row;
 import com.salesforce.dataloader.util.DAORowUtil;
+import com.sforce.async.AsyncApiException;
 import com.sforce.soap.partner.DescribeGlobalSObjectResult;
 import com.sforce.soap.partner.DescribeSObjectResult;
 import com.sforce.soap.partner.Field;
 import com.sforce.soap.partner.FieldType;
+import com.sforce.soap.partner.fault.ApiFault;
 import com.sforce.ws.ConnectionException;
 
 import java.util.List;
@@ -56,7 +59,10 @@ import java.util.Map;
  * @since 6.0
  */
 abstract class AbstractLoadAction extends AbstractAction {
-    
+
+    // row of the DAO at which the first attempt of the operation started loading
+    private int firstRowToLoad = 0;
+
     protected AbstractLoadAction(Controller controller, ILoaderProgress monitor)
             throws DataAccessObjectInitializationException {
         super(controller, monitor);
@@ -101,6 +107,28 @@ abstract class AbstractLoadAction extends AbstractAction {
         return true;
     }
 
+    @Override
+    protected void visitAll() throws DataAccessObjectException, ParameterLoadException, OperationException,
+    ConnectionException, AsyncApiException {
+        if (!getConfig().getBoolean(Config.PROCESS_LOAD_PIPELINE_ENABLED)) {
+            super.visitAll();
+            return;
+        }
+        int readChunkSize = getConfig().getInt(Config.DAO_READ_BATCH_SIZE);
+        if (readChunkSize <= 0 || readChunkSize > Config.MAX_DAO_READ_BATCH_SIZE) {
+            readChunkSize = Config.DEFAULT_DAO_READ_BATCH_SIZE;
+        }
+        int numWorkers = getConfig().getInt(Config.PROCESS_LOAD_PIPELINE_WORKER_THREADS);
+        if (numWorkers <= 0) {
+            numWorkers = Config.DEFAULT_LOAD_PIPELINE_WORKER_THREADS;
+        }
+        int queueCapacity = getConfig().getInt(Config.PROCESS_LOAD_PIPELINE_QUEUE_CAPACITY);
+        if (queueCapacity <= 0) {
+            queueCapacity = Config.DEFAULT_LOAD_PIPELINE_QUEUE_CAPACITY;
+        }
+        new LoadPipeline(getDao(), getVisitor(), getMonitor(), readChunkSize, numWorkers, queueCapacity).run();
+    }
+
     @Override
     protected void flush() throws OperationException, DataAccessObjectException {
         getVisitor().flushRemaining();
@@ -113,7 +141,47 @@ abstract class AbstractLoadAction extends AbstractAction {
         // start the Progress Monitor
         getMonitor().beginTask(getMessage("loading", getConfig().getString(Config.OPERATION)), getDao().getTotalRows());
         // set the starting row
-        DAORowUtil.get().skipRowToStartOffset(getConfig(), getDao(), getMonitor(), !getConfig().isBulkAPIEnabled());
+        if (isResuming()) {
+            DAORowUtil.get().skipRowToStartOffset(getConfig(), getDao(), getMonitor(), true,
+                    this.firstRowToLoad + getVisitor().getCompletedRowCount());
+        } else {
+            DAORowUtil.get().skipRowToStartOffset(getConfig(), getDao(), getMonitor(), !getConfig().isBulkAPIEnabled());
+            this.firstRowToLoad = getDao().getCurrentRowNumber();
+        }
+    }
+
+    /**
+     * Loads that do not use Bulk API go on after the rows whose results were written by the failed
+     * attempt, so that those rows are not loaded a second time.
+     */
+    @Override
+    protected boolean prepareResume() {
+        if (getConfig().isBulkAPIEnabled() || getConfig().isBulkV2APIEnabled()) {
+            return false;
+        }
+        getVisitor().prepareResume();
+        getLogger().info("Resuming " + getConfig().getString(Config.OPERATION) + " at row "
+                + (this.firstRowToLoad + getVisitor().getCompletedRowCount()));
+        return true;
+    }
+
+    /**
+     * A Bulk API load is attempted again from its first row, so it is not attempted again when loading its rows a
+     * second time could create their records twice. The requests of other loads are sent again on their own after
+     * a transport failure, so a transport failure left after those retries is not retried by the operation.
+     */
+    @Override
+    protected boolean canRetryOperation(Exception e) {
+        if (getConfig().isBulkAPIEnabled() || getConfig().isBulkV2APIEnabled()) {
+            if (!getVisitor().isIdempotentOperation()) {
+                getLogger().warn("Not attempting " + getConfig().getString(Config.OPERATION)
+                        + " again because the rows accepted by the failed attempt would be loaded twice");
+                return false;
+            }
+            return true;
+        }
+        final Throwable cause = e instanceof LoadExceptionOnServer ? e.getCause() : null;
+        return !(cause instanceof ConnectionException) || cause instanceof ApiFault;
     }
 
     @Override
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.salesforce.dataloader.action.progress.ILoaderProgress;
+import com.salesforce.dataloader.action.visitor.DAOLoadVisitor;
+import com.salesforce.dataloader.action.visitor.DAOLoadVisitor.ConvertedRow;
+import com.salesforce.dataloader.dao.DataReader;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.OperationException;
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.util.DAORowUtil;
+import com.sforce.ws.ConnectionException;
+
+/**
+ * Runs a load operation as three stages joined by a bounded queue:
+ * <ul>
+ * <li>a reader thread that reads chunks of rows from the DAO,</li>
+ * <li>a pool of workers that map and convert the rows of each chunk,</li>
+ * <li>the calling thread, which adds the converted rows to the visitor's batches
+ *     and loads them.</li>
+ * </ul>
+ * Chunks are queued in the order they are read, and the calling thread waits for each
+ * of them in that order. Batches, DAO row numbers and success/error output are therefore
+ * the same as in a sequential load while the reading, the conversion and the server
+ * calls overlap. The reader blocks once the queue is full.
+ */
+class LoadPipeline {
+
+    private static final Logger logger = LogManager.getLogger(LoadPipeline.class);
+
+    private final DataReader dao;
+    private final DAOLoadVisitor visitor;
+    private final ILoaderProgress monitor;
+    private final int chunkSize;
+    private final int numWorkers;
+    private final int queueCapacity;
+    private volatile boolean stopped = false;
+
+    /** Rows read from the DAO in one call along with their conversion results */
+    private static class Chunk {
+        static final Chunk END = new Chunk(0, null);
+
+        final int firstRowNumber;
+        final List<Row> rows;
+        final List<ConvertedRow> convertedRows;
+
+        Chunk(int firstRowNumber, List<Row> rows) {
+            this.firstRowNumber = firstRowNumber;
+            this.rows = rows;
+            this.convertedRows = rows == null ? null : new ArrayList<ConvertedRow>(rows.size());
+        }
+    }
+
+    LoadPipeline(DataReader dao, DAOLoadVisitor visitor, ILoaderProgress monitor,
+            int chunkSize, int numWorkers, int queueCapacity) {
+        this.dao = dao;
+        this.visitor = visitor;
+        this.monitor = monitor;
+        this.chunkSize = chunkSize;
+        this.numWorkers = numWorkers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    void run() throws OperationException, DataAccessObjectException, ConnectionException {
+        logger.info("Loading with " + numWorkers + " conversion threads, " + chunkSize 
+                + " rows per chunk and up to " + queueCapacity + " queued chunks");
+        final BlockingQueue<Future<Chunk>> chunkQueue = new ArrayBlockingQueue<Future<Chunk>>(queueCapacity);
+        final AtomicInteger workerCount = new AtomicInteger();
+        final ExecutorService workers = Executors.newFixedThreadPool(numWorkers, r -> {
+            Thread t = new Thread(r, "loadPipelineWorker-" + workerCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        final Thread reader = new Thread(() -> readChunks(chunkQueue, workers), "loadPipelineReader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            while (!monitor.isCanceled()) {
+                Chunk chunk = takeChunk(chunkQueue);
+                if (chunk == Chunk.END || !loadChunk(chunk)) {
+                    break;
+                }
+            }
+        } finally {
+            stopped = true;
+            reader.interrupt();
+            workers.shutdownNow();
+            chunkQueue.clear();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Hands the converted rows of a chunk to the visitor in DAO order.
+     * 
+     * @return false if an invalid row was found and the load has to stop
+     */
+    private boolean loadChunk(Chunk chunk) throws OperationException, DataAccessObjectException {
+        for (int i = 0; i < chunk.rows.size(); i++) {
+            final Row row = chunk.rows.get(i);
+            final int rowNumber = chunk.firstRowNumber + i;
+            if (!DAORowUtil.isValidRow(row)) {
+                visitor.setRowConversionStatus(rowNumber, false);
+                return false;
+            }
+            visitor.setRowConversionStatus(rowNumber, visitor.addConvertedRow(row, chunk.convertedRows.get(i)));
+        }
+        return true;
+    }
+
+    private void readChunks(BlockingQueue<Future<Chunk>> chunkQueue, ExecutorService workers) {
+        try {
+            while (!stopped && !monitor.isCanceled()) {
+                final int firstRowNumber = dao.getCurrentRowNumber();
+                final List<Row> rows = dao.readRowList(chunkSize);
+                if (rows == null || rows.isEmpty()) {
+                    break;
+                }
+                chunkQueue.put(workers.submit(() -> convertChunk(new Chunk(firstRowNumber, rows))));
+            }
+            chunkQueue.put(CompletableFuture.completedFuture(Chunk.END));
+        } catch (InterruptedException e) {
+            // the pipeline is shutting down
+        } catch (Exception e) {
+            try {
+                chunkQueue.put(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException ie) {
+                // the pipeline is shutting down
+            }
+        }
+    }
+
+    private Chunk convertChunk(Chunk chunk) throws OperationException, ConnectionException {
+        for (Row row : chunk.rows) {
+            if (stopped || !DAORowUtil.isValidRow(row)) {
+                break;
+            }
+            chunk.convertedRows.add(visitor.convertRow(row));
+        }
+        return chunk;
+    }
+
+    private Chunk takeChunk(BlockingQueue<Future<Chunk>> chunkQueue) throws OperationException,
+    DataAccessObjectException, ConnectionException {
+        try {
+            return chunkQueue.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof OperationException) {
+                throw (OperationException)cause;
+            } else if (cause instanceof DataAccessObjectException) {
+                throw (DataAccessObjectException)cause;
+            } else if (cause instanceof ConnectionException) {
+                throw (ConnectionException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new OperationException(cause);
+        }
+    }
+}
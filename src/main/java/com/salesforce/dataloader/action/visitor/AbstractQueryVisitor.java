@@ -52,6 +52,7 @@ import java.util.Base64;
 import java.util.Iterator;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -137,42 +138,42 @@ public abstract class AbstractQueryVisitor extends AbstractVisitor implements IQ
     }
     
 
-    private static final String IMG_TAG_SRC_ATTR_PATTERN = "<img\\s+(?:[^>]*?\\s+)?src=\"([^\"]*)\"(?:\\s+[^>]*?)?>";
+    private static final Pattern IMG_TAG_SRC_ATTR_PATTERN = Pattern.compile("<img\\s+(?:[^>]*?\\s+)?src=\"([^\"]*)\"(?:\\s+[^>]*?)?>");
+    private static final Pattern SRC_ATTR_PATTERN = Pattern.compile("src\\s*=\\s*\"([^\"]+)\"");
+    private static final String RTA_IMAGE_URL_PART = ".file.force.com/servlet/rtaImage?";
     private void getRTFDataForRow(Row row) {
-        for (String colName : row.keySet()) {
-            Object colVal = row.get(colName);
-            boolean isColValModified = false;
+        for (Map.Entry<String, Object> col : row.entrySet()) {
+            Object colVal = col.getValue();
             if (colVal == null) {
                 continue;
             }
             String strValOfCol = colVal.toString();
-            String[] outsideIMGTagSrcAttrParts = strValOfCol.split(IMG_TAG_SRC_ATTR_PATTERN);
-            Pattern htmlTagInRichTextPattern = Pattern.compile(IMG_TAG_SRC_ATTR_PATTERN);
-            Matcher matcher = htmlTagInRichTextPattern.matcher(strValOfCol);
-            int idx = 0;
-            String newValOfCol = "";
+            if (!strValOfCol.contains(RTA_IMAGE_URL_PART)) {
+                // no image tag of the column refers to binary content
+                continue;
+            }
+            boolean isColValModified = false;
+            Matcher matcher = IMG_TAG_SRC_ATTR_PATTERN.matcher(strValOfCol);
+            StringBuilder newValOfCol = new StringBuilder(strValOfCol.length());
+            int outsideIMGTagStart = 0;
             while (matcher.find()) {
                 String imageTagSrcAttrValue = matcher.group();
-                String[] imageTagParts = imageTagSrcAttrValue.split("src\\s*=\\s*\"([^\"]+)\"");
-                if (imageTagParts.length == 2 && imageTagSrcAttrValue.contains(".file.force.com/servlet/rtaImage?")) {
-                    String srcAttrWithBinaryContent = imageTagSrcAttrValue.substring(imageTagParts[0].length(), imageTagSrcAttrValue.length() - imageTagParts[1].length());
-                    String[] srcAttrNameValue = srcAttrWithBinaryContent.split("=", 2);
-                    String binaryContent = getBinaryContentForURL(srcAttrNameValue[1].replace("\"",""), colName);
-                    imageTagSrcAttrValue = imageTagParts[0] + " src=\"data:image/png;base64," + binaryContent + "\"" + imageTagParts[1];
-                    isColValModified = true;
-                }
-                if (idx >= outsideIMGTagSrcAttrParts.length) {
-                    newValOfCol += imageTagSrcAttrValue;
-                } else {
-                    newValOfCol += outsideIMGTagSrcAttrParts[idx] + imageTagSrcAttrValue;
+                if (imageTagSrcAttrValue.contains(RTA_IMAGE_URL_PART)) {
+                    String[] imageTagParts = SRC_ATTR_PATTERN.split(imageTagSrcAttrValue);
+                    if (imageTagParts.length == 2) {
+                        String srcAttrWithBinaryContent = imageTagSrcAttrValue.substring(imageTagParts[0].length(), imageTagSrcAttrValue.length() - imageTagParts[1].length());
+                        String[] srcAttrNameValue = srcAttrWithBinaryContent.split("=", 2);
+                        String binaryContent = getBinaryContentForURL(srcAttrNameValue[1].replace("\"",""), col.getKey());
+                        imageTagSrcAttrValue = imageTagParts[0] + " src=\"data:image/png;base64," + binaryContent + "\"" + imageTagParts[1];
+                        isColValModified = true;
+                    }
                 }
-                idx++;
-            }
-            if (outsideIMGTagSrcAttrParts.length > idx) {
-                newValOfCol += outsideIMGTagSrcAttrParts[idx];
+                newValOfCol.append(strValOfCol, outsideIMGTagStart, matcher.start()).append(imageTagSrcAttrValue);
+                outsideIMGTagStart = matcher.end();
             }
             if (isColValModified) {
-                row.put(colName, newValOfCol);
+                newValOfCol.append(strValOfCol, outsideIMGTagStart, strValOfCol.length());
+                col.setValue(newValOfCol.toString());
             }
         }
     }
@@ -276,6 +277,22 @@ public abstract class AbstractQueryVisitor extends AbstractVisitor implements IQ
         return daoBatchSize;
     }
 
+    /**
+     * @return the number of ranges the extraction query may be split into, 1 if it is not split
+     */
+    protected int getMaxExtractPartitions() {
+        int maxPartitions = Config.DEFAULT_EXTRACT_PARTITIONS;
+        try {
+            maxPartitions = getConfig().getInt(Config.EXTRACT_PARTITIONS);
+        } catch (ParameterLoadException e) {
+            getLogger().warn("Incorrectly configured " + Config.EXTRACT_PARTITIONS);
+        }
+        if (maxPartitions < 1) {
+            return 1;
+        }
+        return Math.min(maxPartitions, Config.MAX_EXTRACT_PARTITIONS);
+    }
+
     protected void startWriteExtraction(int size) {
         getRateCalculator().start(size);
         // start the Progress Monitor
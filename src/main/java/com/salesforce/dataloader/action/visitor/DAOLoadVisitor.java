@@ -27,7 +27,6 @@
 package com.salesforce.dataloader.action.visitor;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 
 import com.salesforce.dataloader.model.Row;
@@ -42,7 +41,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.salesforce.dataloader.action.progress.ILoaderProgress;
-import com.salesforce.dataloader.client.PartnerClient;
 import com.salesforce.dataloader.client.SessionInfo;
 import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.LastRun;
@@ -50,13 +48,15 @@ import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
 import com.salesforce.dataloader.dao.DataReader;
 import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.dao.ParentGroupingReader;
+import com.salesforce.dataloader.dyna.FieldPlan;
 import com.salesforce.dataloader.dyna.SforceDynaBean;
+import com.salesforce.dataloader.dyna.SforceDynaBeanConverter;
 import com.salesforce.dataloader.exception.*;
 import com.salesforce.dataloader.mapping.LoadMapper;
+import com.salesforce.dataloader.util.RetryPolicy;
 import com.sforce.async.AsyncApiException;
-import com.sforce.soap.partner.DescribeSObjectResult;
 import com.sforce.soap.partner.Error;
-import com.sforce.soap.partner.Field;
 import com.sforce.soap.partner.FieldType;
 import com.sforce.soap.partner.fault.ApiFault;
 import com.sforce.ws.ConnectionException;
@@ -78,18 +78,30 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
 
     protected BasicDynaClass dynaClass = null;
     protected DynaProperty[] dynaProps = null;
+    // read by the pipeline workers for every row, created once
+    private volatile SforceDynaBeanConverter dynaBeanConverter = null;
 
     private final int batchSize;
     protected List<Row> daoRowList = new ArrayList<Row>();
     protected ArrayList<Integer> batchRowToDAORowList = new ArrayList<Integer>();
     private int processedDAORowCounter = 0;
+    // rows whose results have been written, numbered like processedDAORowCounter
+    private final BitSet completedRows = new BitSet();
+    private final RetryPolicy retryPolicy;
+    // groups the rows of the DAO by parent, null unless the rows are grouped
+    private final ParentGroupingReader groupingReader;
+    private String lastGroupKey = null;
+    // rows of the batch that are the first of their parent in the batch
+    private final BitSet groupStarts = new BitSet();
+    private boolean isGroupStart = false;
     private static final Logger logger = LogManager.getLogger(DAOLoadVisitor.class);
     // following regex pattern is based on info from:
     // - https://www.regular-expressions.info/lookaround.html
     // - https://www.geeksforgeeks.org/how-to-validate-html-tag-using-regular-expression/#
     public static final String DEFAULT_RICHTEXT_REGEX = "<(?=[a-zA-Z/])(\"[^\"]*\"|'[^']*'|[^'\">])*>";
-    private String richTextRegex = DEFAULT_RICHTEXT_REGEX;
-    private Field[] cachedFieldAttributesForOperation = null;
+    private static final Pattern DEFAULT_RICHTEXT_PATTERN = Pattern.compile(DEFAULT_RICHTEXT_REGEX);
+    private Pattern richTextPattern = DEFAULT_RICHTEXT_PATTERN;
+    private volatile FieldPlan fieldPlan = null;
     
     protected DAOLoadVisitor(Controller controller, ILoaderProgress monitor, DataWriter successWriter,
             DataWriter errorWriter) {
@@ -107,10 +119,13 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
         SforceDynaBean.registerConverters(getConfig());
 
         this.batchSize = getConfig().getImportBatchSize();
+        this.retryPolicy = RetryPolicy.fromConfig(getConfig());
+        this.groupingReader = controller.getDao() instanceof ParentGroupingReader
+                ? (ParentGroupingReader)controller.getDao() : null;
         rowConversionFailureMap = new HashMap<Integer, Boolean>();
         String newRichTextRegex = getConfig().getString(Config.RICH_TEXT_FIELD_REGEX);
         if (newRichTextRegex != null && !newRichTextRegex.isBlank()) {
-            this.richTextRegex = newRichTextRegex;
+            this.richTextPattern = Pattern.compile(newRichTextRegex);
         }
         this.initLoadRateCalculator();
     }
@@ -144,91 +159,143 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
     @Override
     public boolean visit(Row row) throws OperationException, DataAccessObjectException,
     ConnectionException {
-        Config config = controller.getConfig();
-        if (config.getBoolean(Config.PROCESS_BULK_CACHE_DATA_FROM_DAO)
-            || (!config.isBulkAPIEnabled() && !config.isBulkV2APIEnabled())) {
-            // either bulk mode or cache bulk data uploaded from DAO
-            this.daoRowList.add(row);
+        return addConvertedRow(row, convertRow(row));
+    }
+
+    /**
+     * Result of mapping and converting a single DAO row. A null dynabean with a
+     * null error message means that the row was dropped without being reported.
+     */
+    public static final class ConvertedRow {
+        private final DynaBean dynaBean;
+        private final String conversionError;
+        private final int dataSize;
+
+        private ConvertedRow(DynaBean dynaBean, String conversionError, int dataSize) {
+            this.dynaBean = dynaBean;
+            this.conversionError = conversionError;
+            this.dataSize = dataSize;
+        }
+
+        // visible for tests that add rows to a visitor without converting them
+        static ConvertedRow of(DynaBean dynaBean, String conversionError, int dataSize) {
+            return new ConvertedRow(dynaBean, conversionError, dataSize);
         }
+
+        public DynaBean getDynaBean() {
+            return this.dynaBean;
+        }
+
+        /**
+         * @return why the row could not be converted, null if it was converted or dropped without being reported
+         */
+        public String getConversionError() {
+            return this.conversionError;
+        }
+    }
+
+    /**
+     * Maps a DAO row to sforce fields and converts it to a dynabean. This does not
+     * modify the batch being built by the visitor, so it can be called from several
+     * threads ahead of {@link #addConvertedRow(Row, ConvertedRow)}.
+     */
+    public ConvertedRow convertRow(Row row) throws OperationException, ConnectionException {
         // the result are sforce fields mapped to data
         Row sforceDataRow = getMapper().mapData(row);
         
         if (this.getConfig().getBoolean(Config.TRUNCATE_FIELDS)
             && this.getConfig().isRESTAPIEnabled()
             && "update".equalsIgnoreCase(this.getConfig().getString(Config.OPERATION))) {
-            PartnerClient partnerClient = this.getController().getPartnerClient();
-            if (cachedFieldAttributesForOperation == null) {
-                cachedFieldAttributesForOperation = partnerClient.getSObjectFieldAttributesForRow(
-                                this.getConfig().getString(Config.ENTITY), sforceDataRow);
+            FieldPlan fieldPlan = getFieldPlan();
+            if (fieldPlan == null) {
+                // without the describe result the values longer than their field would be sent as they are
+                throw new LoadException("Unable to truncate fields of " + this.getConfig().getString(Config.ENTITY)
+                        + ": the field descriptions are not available before login");
             }
             for (Map.Entry<String, Object> field : sforceDataRow.entrySet()) {
-                for (Field fieldDescribe : cachedFieldAttributesForOperation) {
-                    // Field truncation is applicable to certain field types only.
-                    // See https://developer.salesforce.com/docs/atlas.en-us.api_tooling.meta/api_tooling/sforce_api_header_allowfieldtruncation.htm
-                    // for the list of field types that field truncation is applicable to.
-                    FieldType type = fieldDescribe.getType();
-                    if (fieldDescribe.getName().equalsIgnoreCase(field.getKey())
-                            && (type == FieldType.email
-                               || type == FieldType.string
-                               || type == FieldType.picklist
-                               || type == FieldType.phone
-                               || type == FieldType.textarea
-                               || type == FieldType.multipicklist)
-                        ) {
-                        int fieldLength = fieldDescribe.getLength();
-                        if (field.getValue().toString().length() > fieldLength) {
-                            if (type == FieldType.email) {
-                                String[] emailParts = field.getValue().toString().split("@");
-                                if (emailParts.length == 2) {
-                                    String firstPart = emailParts[0].substring(0,
-                                            fieldLength - emailParts[1].length() - 1);
-                                    field.setValue(firstPart + "@" + emailParts[1]);
-                                    continue;
-                                }
-                            }
-                            field.setValue(field.getValue().toString().substring(0, fieldLength));
+                FieldPlan.FieldInfo fieldInfo = fieldPlan.getField(field.getKey());
+                if (fieldInfo == null || !fieldInfo.isTruncatable() || field.getValue() == null) {
+                    continue;
+                }
+                int fieldLength = fieldInfo.getLength();
+                if (field.getValue().toString().length() > fieldLength) {
+                    if (fieldInfo.getType() == FieldType.email) {
+                        String[] emailParts = field.getValue().toString().split("@");
+                        if (emailParts.length == 2) {
+                            String firstPart = emailParts[0].substring(0,
+                                    fieldLength - emailParts[1].length() - 1);
+                            field.setValue(firstPart + "@" + emailParts[1]);
+                            continue;
                         }
                     }
+                    field.setValue(field.getValue().toString().substring(0, fieldLength));
                 }
             }
         }
         
-        // Make sure to initialize dynaClass only after mapping a row.
-        // This is to make sure that all polymorphic field mappings specified
-        // in the mapping file are mapped to parent object.
-        if (dynaProps == null) {
-            dynaProps = SforceDynaBean.createDynaProps(controller.getFieldTypes(), controller);
-        }
-        if (dynaClass == null) {
-            dynaClass = SforceDynaBean.getDynaBeanInstance(dynaProps);
-        }
+        SforceDynaBeanConverter dynaBeanConverter = getDynaBeanConverter();
         try {
             convertBulkAPINulls(sforceDataRow);
-            DynaBean dynaBean = SforceDynaBean.convertToDynaBean(dynaClass, sforceDataRow);
-            Map<String, String> fieldMap = BeanUtils.describe(dynaBean);
-            for (String fName : fieldMap.keySet()) {
-                if (fieldMap.get(fName) != null) {
-                    // see if any entity foreign key references are embedded here
-                    Object value = this.getFieldValue(fName, dynaBean.get(fName));
-                    dynaBean.set(fName, value);
-                    dynaArraySize += fName.length() + value.toString().length();
-                }
-            }
-            dynaArray.add(dynaBean);
-            this.batchRowToDAORowList.add(this.processedDAORowCounter);
-        } catch (ConversionException | IllegalAccessException conve) {
+            SforceDynaBeanConverter.Conversion conversion = dynaBeanConverter.convert(sforceDataRow);
+            return new ConvertedRow(conversion.getDynaBean(), null, conversion.getDataSize());
+        } catch (ConversionException conve) {
             String errMsg = Messages.getMessage("Visitor", "conversionErrorMsg", conve.getMessage());
             getLogger().error(errMsg, conve);
+            return new ConvertedRow(null, errMsg, 0);
+        }
+    }
 
-            conversionFailed(row, errMsg);
-            // this row cannot be added since conversion has failed
-            return false;
-        } catch (InvocationTargetException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        } catch (NoSuchMethodException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+    /**
+     * Adds a row converted by {@link #convertRow(Row)} to the current batch and loads
+     * the batch when it is full. Rows must be added in the order they were read from the DAO.
+     * 
+     * @return false if the row could not be converted
+     */
+    public boolean addConvertedRow(Row row, ConvertedRow convertedRow) throws OperationException,
+    DataAccessObjectException {
+        if (this.completedRows.get(this.processedDAORowCounter)) {
+            // the result of this row was written before the operation was resumed
+            this.processedDAORowCounter++;
+            return true;
+        }
+        if (this.groupingReader != null) {
+            String groupKey = this.groupingReader.getGroupKey(row);
+            if (!groupKey.isEmpty() && !groupKey.equals(this.lastGroupKey) && !dynaArray.isEmpty()
+                    && dynaArray.size() + this.groupingReader.getGroupSize(row) > this.batchSize) {
+                // the rows of the next parent do not fit in the batch, load them together in the next one
+                loadBatch();
+            }
+            if (groupKey.isEmpty() || !groupKey.equals(this.lastGroupKey)) {
+                // marks the first row of the parent that is added to the batch
+                this.isGroupStart = true;
+            }
+            this.lastGroupKey = groupKey;
+        }
+        Config config = controller.getConfig();
+        if (config.getBoolean(Config.PROCESS_BULK_CACHE_DATA_FROM_DAO)
+            || (!config.isBulkAPIEnabled() && !config.isBulkV2APIEnabled())) {
+            // either bulk mode or cache bulk data uploaded from DAO
+            this.daoRowList.add(row);
+        }
+        try {
+            if (convertedRow.conversionError != null) {
+                conversionFailed(row, convertedRow.conversionError);
+                this.completedRows.set(this.processedDAORowCounter);
+                // this row cannot be added since conversion has failed
+                return false;
+            }
+            if (convertedRow.dynaBean != null) {
+                dynaArraySize += convertedRow.dataSize;
+                if (this.isGroupStart) {
+                    this.groupStarts.set(dynaArray.size());
+                    this.isGroupStart = false;
+                }
+                dynaArray.add(convertedRow.dynaBean);
+                this.batchRowToDAORowList.add(this.processedDAORowCounter);
+                rowAddedToBatch(row, this.processedDAORowCounter);
+            } else {
+                this.completedRows.set(this.processedDAORowCounter);
+            }
         } finally {
             this.processedDAORowCounter++;
         }
@@ -239,11 +306,127 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
         }
         return true;
     }
+
+    // Make sure to initialize dynaClass only after mapping a row.
+    // This is to make sure that all polymorphic field mappings specified
+    // in the mapping file are mapped to parent object.
+    // Called once, while getDynaBeanConverter() holds the lock.
+    private BasicDynaClass getDynaClass() {
+        if (dynaProps == null) {
+            dynaProps = SforceDynaBean.createDynaProps(controller.getFieldTypes(), controller);
+        }
+        if (dynaClass == null) {
+            dynaClass = SforceDynaBean.getDynaBeanInstance(dynaProps);
+        }
+        return dynaClass;
+    }
+
+    private SforceDynaBeanConverter getDynaBeanConverter() {
+        SforceDynaBeanConverter converter = this.dynaBeanConverter;
+        if (converter == null) {
+            synchronized (this) {
+                converter = this.dynaBeanConverter;
+                if (converter == null) {
+                    converter = new SforceDynaBeanConverter(getDynaClass(), this::getFieldValue);
+                    this.dynaBeanConverter = converter;
+                }
+            }
+        }
+        return converter;
+    }
+
+    /**
+     * @return per-field behaviour of the operation, built once per load and passed to the clients with
+     *         each batch, null until the controller is logged in
+     */
+    protected FieldPlan getFieldPlan() {
+        FieldPlan plan = this.fieldPlan;
+        if (plan == null) {
+            synchronized (this) {
+                plan = this.fieldPlan;
+                if (plan == null && getController() != null && getController().isLoggedIn()) {
+                    plan = new FieldPlan(getController().getFieldTypes(), getMapper());
+                    this.fieldPlan = plan;
+                }
+            }
+        }
+        return plan;
+    }
     
+    /**
+     * @return number of load requests that may be in flight at the same time
+     */
+    protected int getMaxConcurrentBatches() {
+        int maxConcurrentBatches = 1;
+        try {
+            maxConcurrentBatches = getConfig().getInt(Config.LOAD_MAX_CONCURRENT_BATCHES);
+        } catch (ParameterLoadException e) {
+            logger.warn("Incorrectly configured " + Config.LOAD_MAX_CONCURRENT_BATCHES);
+        }
+        if (maxConcurrentBatches < 1) {
+            return 1;
+        }
+        return Math.min(maxConcurrentBatches, Config.MAX_LOAD_CONCURRENT_BATCHES);
+    }
+
+    /**
+     * @return a queue of rows to load again after a transient error, null if rows should not be loaded again
+     */
+    protected <T> RowRetryQueue<T> createRowRetryQueue() {
+        int maxRetries = Config.DEFAULT_LOAD_ROW_RETRIES;
+        int retryBatchSize = Config.DEFAULT_LOAD_ROW_RETRY_BATCH_SIZE;
+        try {
+            maxRetries = getConfig().getInt(Config.LOAD_ROW_RETRIES);
+            retryBatchSize = getConfig().getInt(Config.LOAD_ROW_RETRY_BATCH_SIZE);
+        } catch (ParameterLoadException e) {
+            logger.warn("Incorrectly configured " + Config.LOAD_ROW_RETRIES + " or " + Config.LOAD_ROW_RETRY_BATCH_SIZE);
+        }
+        if (maxRetries < 1) {
+            return null;
+        }
+        return new RowRetryQueue<T>(Math.min(maxRetries, Config.MAX_LOAD_ROW_RETRIES),
+                Math.min(retryBatchSize, this.batchSize));
+    }
+
+    /**
+     * Waits before loading rows again after a transient error.
+     *
+     * @return false if the operation was canceled or interrupted while waiting
+     */
+    protected boolean sleepBeforeRowRetry(int retryNum) {
+        if (getProgressMonitor().isCanceled()) {
+            return false;
+        }
+        try {
+            Thread.sleep(this.retryPolicy.getSleepMillis(retryNum));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !getProgressMonitor().isCanceled();
+    }
+
     protected boolean maxBatchBytesReached(List<DynaBean> dynaArray) {
         return false;
     }
 
+    /**
+     * Tells how the current batch can be split into smaller requests without splitting the rows of a parent.
+     *
+     * @return number of rows of the batch with the same parent as the row at the given index of the batch,
+     *         if the row is the first of them, 0 if it is not. 1 when the rows are not grouped
+     */
+    protected int getGroupSize(int batchRowIndex) {
+        if (this.groupingReader == null) {
+            return 1;
+        }
+        if (!this.groupStarts.get(batchRowIndex)) {
+            return 0;
+        }
+        final int nextGroupStart = this.groupStarts.nextSetBit(batchRowIndex + 1);
+        return (nextGroupStart < 0 ? dynaArray.size() : nextGroupStart) - batchRowIndex;
+    }
+
     /**
      * @param row
      * @param errMsg
@@ -257,13 +440,125 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
 
     protected void convertBulkAPINulls(Row row) {}
 
+    /**
+     * Called when a converted row is added to the batch being built.
+     *
+     * @param daoRowNumber number of the row among the rows read from the DAO, starting at 0
+     */
+    protected void rowAddedToBatch(Row row, int daoRowNumber) {}
+
+    /**
+     * Records that the result of the given row has been written.
+     *
+     * @param daoRowNumber number of the row as passed to {@link #rowAddedToBatch(Row, int)}
+     */
+    protected void rowCompleted(int daoRowNumber) {
+        this.completedRows.set(daoRowNumber);
+    }
+
+    /**
+     * @return number of rows read from the DAO up to the first row whose result has not been written
+     */
+    public int getCompletedRowCount() {
+        return this.completedRows.nextClearBit(0);
+    }
+
+    /**
+     * Drops the batch being built so that the operation can go on with the rows read from the DAO
+     * after the first {@link #getCompletedRowCount()} rows. Rows whose results were written after
+     * that point are skipped when they are read again.
+     */
+    public void prepareResume() {
+        clearArrays();
+        this.daoRowList.clear();
+        this.dynaArraySize = 0;
+        this.processedDAORowCounter = getCompletedRowCount();
+        this.lastGroupKey = null;
+        this.isGroupStart = false;
+    }
+
+    /** A request to the server that may be sent again if it fails in transport */
+    protected interface ClientAction<T> {
+        T run() throws ConnectionException;
+    }
+
+    /**
+     * Runs a request, sending it again after a delay each time it fails with a connection error
+     * until the configured number of retries is reached. Requests of an operation that is not
+     * idempotent are not sent again, see {@link #isIdempotentOperation()}. This is the only retry of a
+     * transport failure, the operation is not attempted again after it.
+     */
+    protected <T> T runWithRetries(ClientAction<T> action) throws ConnectionException {
+        for (int retryNum = 0; ; retryNum++) {
+            try {
+                return action.run();
+            } catch (ApiFault e) {
+                // the server rejected the request, sending it again would not help
+                throw e;
+            } catch (ConnectionException e) {
+                if (!isIdempotentOperation() || retryNum >= this.retryPolicy.getMaxRetries()
+                        || getProgressMonitor().isCanceled()) {
+                    throw e;
+                }
+                long sleepMillis = this.retryPolicy.getSleepMillis(retryNum);
+                getLogger().warn(Messages.getFormattedString("Client.retryOperation",
+                        new String[] {Integer.toString(retryNum + 1),
+                        getConfig().getString(Config.OPERATION),
+                        Long.toString(sleepMillis / 1000)}));
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * A request that failed in transport may have been processed by the server. Sending it again
+     * does not change the outcome of an update, a delete, or an upsert that matches the records by
+     * an external id, but would create the records of an insert or an upsert by Id twice.
+     *
+     * @return true if a request of the operation can be sent again after it failed in transport
+     */
+    public boolean isIdempotentOperation() {
+        switch (getConfig().getOperationInfo()) {
+        case update:
+        case delete:
+        case hard_delete:
+            return true;
+        case upsert:
+            String externalIdField = getConfig().getString(Config.IDLOOKUP_FIELD);
+            return externalIdField != null && !externalIdField.isBlank() && !"Id".equalsIgnoreCase(externalIdField);
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Writes the rows of a request that failed in transport to the error file, so that an operation
+     * that is not idempotent does not send them again when it is resumed.
+     */
+    protected void writeNotConfirmedRows(List<Row> daoRows, int[] daoRowNumbers, ConnectionException e)
+            throws DataAccessObjectException {
+        String errorMessage = Messages.getString("DAOLoadVisitor.batchNotConfirmed", e.getMessage());
+        getLogger().error(errorMessage, e);
+        for (int i = 0; i < daoRows.size(); i++) {
+            writeError(daoRows.get(i), errorMessage);
+            rowCompleted(daoRowNumbers[i]);
+        }
+    }
+
     public void flushRemaining() throws OperationException, DataAccessObjectException {
         // check if there are any entities left
         if (dynaArray.size() > 0) {
             loadBatch();
         }
         // clear the caches
-        cachedFieldAttributesForOperation = null;
+        synchronized (this) {
+            fieldPlan = null;
+        }
     }
 
     protected abstract void loadBatch() throws DataAccessObjectException, OperationException;
@@ -274,6 +569,7 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
             daoRowList.clear();
         }
         dynaArray.clear();
+        this.groupStarts.clear();
     }
 
     protected void handleException(String msgOverride, Throwable t) throws LoadException {
@@ -315,40 +611,6 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
     }
     
     private static final int NONBREAKING_SPACE_ASCII_VAL = 0xA0;
-    private static Controller currentController = null;
-    private ArrayList<String> htmlFormattedSforceFieldList = null;
-    private ArrayList<String> phoneSforceFieldList = null;
-
-    private synchronized void getHtmlFormattedAndPhoneSforceFieldList() {
-        if (htmlFormattedSforceFieldList != null && phoneSforceFieldList != null) {
-            return; // already created
-        }
-        if (getController() == currentController && htmlFormattedSforceFieldList != null) {
-            return;
-        }
-        if (getController() == null) {
-            return;
-        }
-        if (!getController().isLoggedIn()) {
-            // clear cached values if not logged in
-            currentController = null;
-            return;
-        }
-        currentController = getController();
-        htmlFormattedSforceFieldList = new ArrayList<String>();
-        phoneSforceFieldList = new ArrayList<String>();
-        DescribeSObjectResult result = getController().getFieldTypes();
-        Field[] fields = result.getFields();
-        for (Field field : fields) {
-            if (field.getHtmlFormatted()) {
-                htmlFormattedSforceFieldList.add(field.getName());
-            }
-            if (field.getType() == FieldType.phone) {
-                phoneSforceFieldList.add(field.getName());
-            }
-        }
-    }
-    
     public Object getFieldValue(String fieldName, Object fieldValue) {
         fieldValue = getHtmlFormattedFieldValue(fieldName, fieldValue);
         fieldValue = getPhoneFieldValue(fieldName, fieldValue);
@@ -356,77 +618,101 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
     }
     
     private Object getHtmlFormattedFieldValue(String fieldName, Object fieldValue) {
-        getHtmlFormattedAndPhoneSforceFieldList();
-        if (htmlFormattedSforceFieldList == null 
-            || !htmlFormattedSforceFieldList.contains(fieldName)
+        FieldPlan fieldPlan = getFieldPlan();
+        if (fieldPlan == null
+            || !fieldPlan.isHtmlFormatted(fieldName)
             || !getController().getConfig().getBoolean(Config.LOAD_PRESERVE_WHITESPACE_IN_RICH_TEXT)) {
             return fieldValue;
         }
-        return convertToHTMLFormatting((String)fieldValue, this.richTextRegex);
+        return convertToHTMLFormatting((String)fieldValue, this.richTextPattern);
     }
 
     public static String convertToHTMLFormatting(String fvalue, String regex) {
-        fvalue = fvalue.replaceAll("\r\n", "<br/>");
-        fvalue = fvalue.replaceAll("\n", "<br/>");
-        fvalue = fvalue.replaceAll("\r", "<br/>");
-        String[] outsideHTMLTags = fvalue.split(regex);
-        Pattern htmlTagInRichTextPattern = Pattern.compile(regex);
+        Pattern htmlTagInRichTextPattern = DEFAULT_RICHTEXT_REGEX.equals(regex)
+                ? DEFAULT_RICHTEXT_PATTERN : Pattern.compile(regex);
+        return convertToHTMLFormatting(fvalue, htmlTagInRichTextPattern);
+    }
+
+    /**
+     * Replaces line breaks with br tags and escapes the text outside of the html tags matched by
+     * the given pattern, keeping consecutive whitespace characters as non-breaking spaces.
+     */
+    public static String convertToHTMLFormatting(String fvalue, Pattern htmlTagInRichTextPattern) {
+        fvalue = replaceLineBreaks(fvalue);
+        StringBuilder htmlEscapedValue = new StringBuilder(fvalue.length() + 16);
         Matcher matcher = htmlTagInRichTextPattern.matcher(fvalue);
-        String htmlEscapedValue = "";
-        int idx = 0;
+        int outsideTagStart = 0;
         while (matcher.find()) {
-            if (idx >= outsideHTMLTags.length) {
-                htmlEscapedValue += matcher.group();
+            escapeHTMLChars(fvalue.substring(outsideTagStart, matcher.start()), htmlEscapedValue);
+            htmlEscapedValue.append(fvalue, matcher.start(), matcher.end());
+            outsideTagStart = matcher.end();
+        }
+        escapeHTMLChars(fvalue.substring(outsideTagStart), htmlEscapedValue);
+        return htmlEscapedValue.toString();
+    }
+
+    private static String replaceLineBreaks(String fvalue) {
+        if (fvalue.indexOf('\r') < 0 && fvalue.indexOf('\n') < 0) {
+            return fvalue;
+        }
+        StringBuilder replaced = new StringBuilder(fvalue.length() + 16);
+        for (int i = 0, len = fvalue.length(); i < len; i++) {
+            char c = fvalue.charAt(i);
+            if (c == '\r' || c == '\n') {
+                replaced.append("<br/>");
+                if (c == '\r' && i + 1 < len && fvalue.charAt(i + 1) == '\n') {
+                    i++;
+                }
             } else {
-                htmlEscapedValue += escapeHTMLChars(outsideHTMLTags[idx]) + matcher.group();
+                replaced.append(c);
             }
-            idx++;
-        }
-        if (outsideHTMLTags.length > idx) {
-            htmlEscapedValue += escapeHTMLChars(outsideHTMLTags[idx]);
         }
-        return htmlEscapedValue;
+        return replaced.toString();
     }
-    
-    private static String escapeHTMLChars(String input) {
-        if (input == null) {
-            return null;
+
+    private static void escapeHTMLChars(String input, StringBuilder htmlFormattedStr) {
+        if (input.isEmpty()) {
+            return;
         }
         String unescapedInput = StringEscapeUtils.unescapeHtml4(input);
-        StringBuffer htmlFormattedStr = new StringBuffer("");
-        for (int i = 0, len = unescapedInput.length(); i < len; i++) {
+        int len = unescapedInput.length();
+        // start of the characters to escape since the last whitespace character
+        int escapeStart = 0;
+        for (int i = 0; i < len; i++) {
             char c = unescapedInput.charAt(i);
-            int cval = c;
-            char nextChar = 0;
-            if (i+1 < unescapedInput.length()) {
-                nextChar = unescapedInput.charAt(i+1);
-            }
-            char prevChar = 0;
-            if (i > 0) {
-                prevChar = unescapedInput.charAt(i-1);
+            if (!isWhitespace(c)) {
+                continue;
             }
-
-            boolean isCharWhitespace = Character.isWhitespace(c) || cval == NONBREAKING_SPACE_ASCII_VAL;
-            boolean isNextCharWhitespace = Character.isWhitespace(nextChar) || nextChar == NONBREAKING_SPACE_ASCII_VAL;
-            boolean isPrevCharWhitespace = Character.isWhitespace(prevChar) || prevChar == NONBREAKING_SPACE_ASCII_VAL;
-            //only occurrences of multiple w
-            if (isCharWhitespace) {
-                if (isNextCharWhitespace || isPrevCharWhitespace) {
-                    htmlFormattedStr.append("&nbsp;");
-                } else {
-                    htmlFormattedStr.append(c);
-                }
+            appendEscapedHTML(unescapedInput, escapeStart, i, htmlFormattedStr);
+            escapeStart = i + 1;
+            //only occurrences of multiple whitespace characters are made non-breaking
+            boolean isNextCharWhitespace = i + 1 < len && isWhitespace(unescapedInput.charAt(i + 1));
+            boolean isPrevCharWhitespace = i > 0 && isWhitespace(unescapedInput.charAt(i - 1));
+            if (isNextCharWhitespace || isPrevCharWhitespace) {
+                htmlFormattedStr.append("&nbsp;");
             } else {
-                htmlFormattedStr.append(StringEscapeUtils.escapeHtml4(Character.toString(c)));
+                htmlFormattedStr.append(c);
             }
         }
-        return htmlFormattedStr.toString();
+        appendEscapedHTML(unescapedInput, escapeStart, len, htmlFormattedStr);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return Character.isWhitespace(c) || c == NONBREAKING_SPACE_ASCII_VAL;
+    }
+
+    private static void appendEscapedHTML(String input, int start, int end, StringBuilder out) {
+        if (start < end) {
+            // html entities are single characters, so escaping a run of characters
+            // gives the same result as escaping each of them
+            out.append(StringEscapeUtils.escapeHtml4(input.substring(start, end)));
+        }
     }
 
     private Object getPhoneFieldValue(String fieldName, Object fieldValue) {
-        getHtmlFormattedAndPhoneSforceFieldList();
-        if (this.phoneSforceFieldList == null
-                || !this.phoneSforceFieldList.contains(fieldName)
+        FieldPlan fieldPlan = getFieldPlan();
+        if (fieldPlan == null
+                || !fieldPlan.isPhone(fieldName)
                 || !this.getConfig().getBoolean(Config.FORMAT_PHONE_FIELDS)) {
             return fieldValue;
         }
@@ -451,7 +737,7 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
         }
     }
     
-    protected void setLastRunProperties(Object[] results) throws LoadException {
+    protected void setLastRunProperties(int numRows) throws LoadException {
         // set the last processed row number in the config (*_lastRun.properties) file
         int currentProcessed;
         try {
@@ -460,7 +746,7 @@ public abstract class DAOLoadVisitor extends AbstractVisitor implements DAORowVi
             // if there's a problem getting last batch row, start at the beginning
             currentProcessed = 0;
         }
-        currentProcessed += results.length;
+        currentProcessed += numRows;
         getConfig().setValue(LastRun.LAST_LOAD_BATCH_ROW, currentProcessed);
         try {
             getConfig().saveLastRun();
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.beanutils.DynaBean;
+
+import com.salesforce.dataloader.action.progress.ILoaderProgress;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.LoadException;
+import com.salesforce.dataloader.exception.OperationException;
+import com.salesforce.dataloader.model.Row;
+import com.sforce.soap.partner.Error;
+import com.sforce.soap.partner.fault.ApiFault;
+import com.sforce.ws.ConnectionException;
+
+/**
+ * Base class for load visitors that send each batch in one request to the server. Several requests may be in
+ * flight at the same time, and their results are written in the order in which the batches were read. Rows
+ * rejected with a transient error are sent again once the other rows are done.
+ * <p>
+ * Subclasses create the request of a batch and tell the outcome of each row from its result.
+ */
+public abstract class InFlightBatchLoadVisitor extends DAOLoadVisitor {
+
+    private final InFlightBatchQueue<BatchResult> inFlightBatches;
+    // converted rows of the batch being built and their DAO row numbers
+    private final List<Row> batchDaoRows = new ArrayList<Row>();
+    private final List<Integer> batchDaoRowNumbers = new ArrayList<Integer>();
+    private final RowRetryQueue<RetryRow> rowRetryQueue;
+
+    /** Outcome of a row as told by its result */
+    protected static final class RowResult {
+        final boolean success;
+        final String id;
+        final Error[] errors;
+        final String statusMessage;
+
+        /**
+         * @param statusMessage written to the status column of a row that was loaded
+         */
+        public RowResult(boolean success, String id, Error[] errors, String statusMessage) {
+            this.success = success;
+            this.id = id;
+            this.errors = errors;
+            this.statusMessage = statusMessage;
+        }
+    }
+
+    /** Results of a batch request along with the DAO rows that were sent in it */
+    private static class BatchResult {
+        final List<Row> daoRows;
+        final int[] daoRowNumbers;
+        final List<DynaBean> dynaBeans;
+        final boolean isRetry;
+        final Object[] results;
+        // set instead of the results when the request failed in transport and was not sent again
+        final ConnectionException notConfirmed;
+
+        BatchResult(List<Row> daoRows, int[] daoRowNumbers, List<DynaBean> dynaBeans, boolean isRetry,
+                Object[] results, ConnectionException notConfirmed) {
+            this.daoRows = daoRows;
+            this.daoRowNumbers = daoRowNumbers;
+            this.dynaBeans = dynaBeans;
+            this.isRetry = isRetry;
+            this.results = results;
+            this.notConfirmed = notConfirmed;
+        }
+    }
+
+    /** A row rejected with a transient error, along with what is needed to send it again */
+    private static class RetryRow {
+        final Row daoRow;
+        final int daoRowNumber;
+        final DynaBean dynaBean;
+        final Error[] errors;
+
+        RetryRow(Row daoRow, int daoRowNumber, DynaBean dynaBean, Error[] errors) {
+            this.daoRow = daoRow;
+            this.daoRowNumber = daoRowNumber;
+            this.dynaBean = dynaBean;
+            this.errors = errors;
+        }
+    }
+
+    /**
+     * @param threadNamePrefix prefix of the names of the threads that send the requests
+     */
+    protected InFlightBatchLoadVisitor(Controller controller, ILoaderProgress monitor, DataWriter successWriter,
+            DataWriter errorWriter, String threadNamePrefix) {
+        super(controller, monitor, successWriter, errorWriter);
+        this.inFlightBatches = new InFlightBatchQueue<BatchResult>(getMaxConcurrentBatches(), threadNamePrefix);
+        this.rowRetryQueue = createRowRetryQueue();
+    }
+
+    /**
+     * Creates the request that loads a batch. It is called on the thread of the visitor and run on the thread
+     * that sends the request.
+     */
+    protected abstract ClientAction<Object[]> createBatchRequest(List<DynaBean> dynaBeans);
+
+    /**
+     * @return the outcome of a row as told by its element of the results of a batch request
+     */
+    protected abstract RowResult mapResult(Object result);
+
+    /**
+     * Sets the headers of the connection shared by the requests. It is only called while no request is in flight.
+     */
+    protected void setHeaders() {
+    }
+
+    @Override
+    protected void loadBatch() throws DataAccessObjectException, OperationException {
+        // the headers are the same for every batch of the operation
+        if (this.inFlightBatches.isEmpty()) {
+            setHeaders();
+        }
+        submitBatch(new ArrayList<Row>(this.batchDaoRows),
+                this.batchDaoRowNumbers.stream().mapToInt(Integer::intValue).toArray(),
+                new ArrayList<DynaBean>(this.dynaArray), false);
+
+        // now clear the arrays
+        clearArrays();
+
+        while (this.inFlightBatches.isFull()) {
+            writeOldestBatchResult();
+        }
+    }
+
+    @Override
+    protected void rowAddedToBatch(Row row, int daoRowNumber) {
+        this.batchDaoRows.add(row);
+        this.batchDaoRowNumbers.add(daoRowNumber);
+    }
+
+    @Override
+    public void clearArrays() {
+        super.clearArrays();
+        this.batchDaoRows.clear();
+        this.batchDaoRowNumbers.clear();
+    }
+
+    private void submitBatch(List<Row> daoRows, int[] daoRowNumbers, List<DynaBean> dynaBeans, boolean isRetry) {
+        final ClientAction<Object[]> request = createBatchRequest(dynaBeans);
+        this.inFlightBatches.submit(() -> runBatch(daoRows, daoRowNumbers, dynaBeans, isRetry, request));
+    }
+
+    private BatchResult runBatch(List<Row> daoRows, int[] daoRowNumbers, List<DynaBean> dynaBeans, boolean isRetry,
+            ClientAction<Object[]> request) throws ConnectionException {
+        try {
+            return new BatchResult(daoRows, daoRowNumbers, dynaBeans, isRetry, runWithRetries(request), null);
+        } catch (ApiFault e) {
+            // the server rejected the request without loading any row of it
+            throw e;
+        } catch (ConnectionException e) {
+            if (isIdempotentOperation()) {
+                throw e;
+            }
+            // the server may have loaded the rows, so they are not sent again when the operation is resumed
+            return new BatchResult(daoRows, daoRowNumbers, dynaBeans, isRetry, null, e);
+        }
+    }
+
+    @Override
+    public void flushRemaining() throws OperationException, DataAccessObjectException {
+        try {
+            // the results of requests that were sent are written even if an earlier one failed,
+            // so that they are not sent again when the operation is resumed
+            LoadException failure = null;
+            try {
+                super.flushRemaining();
+            } catch (LoadException e) {
+                failure = e;
+            }
+            failure = writeInFlightBatchResults(failure);
+            // rows rejected with a transient error are sent again once the other rows are done
+            while (failure == null && this.rowRetryQueue != null && !this.rowRetryQueue.isEmpty()
+                    && sleepBeforeRowRetry(this.rowRetryQueue.getRetryNum())) {
+                setHeaders();
+                for (List<RetryRow> retryBatch : this.rowRetryQueue.takeBatches()) {
+                    submitBatch(retryBatch.stream().map(r -> r.daoRow).collect(Collectors.toList()),
+                            retryBatch.stream().mapToInt(r -> r.daoRowNumber).toArray(),
+                            retryBatch.stream().map(r -> r.dynaBean).collect(Collectors.toList()), true);
+                }
+                failure = writeInFlightBatchResults(failure);
+            }
+            if (this.rowRetryQueue != null) {
+                for (RetryRow retryRow : this.rowRetryQueue.takeAll()) {
+                    processResult(retryRow.daoRow, false, null, retryRow.errors);
+                    rowCompleted(retryRow.daoRowNumber);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            this.inFlightBatches.shutdown();
+        }
+    }
+
+    /**
+     * @return the first failure, which is either the given one or one of the requests in flight
+     */
+    private LoadException writeInFlightBatchResults(LoadException failure) throws DataAccessObjectException {
+        while (!this.inFlightBatches.isEmpty()) {
+            try {
+                writeOldestBatchResult();
+            } catch (LoadException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        return failure;
+    }
+
+    private void writeOldestBatchResult() throws DataAccessObjectException, LoadException {
+        final BatchResult batchResult;
+        try {
+            batchResult = this.inFlightBatches.takeOldest();
+        } catch (ApiFault e) {
+            handleException(e);
+            return;
+        } catch (ConnectionException e) {
+            handleException(e);
+            return;
+        }
+        if (batchResult.notConfirmed != null) {
+            writeNotConfirmedRows(batchResult.daoRows, batchResult.daoRowNumbers, batchResult.notConfirmed);
+        } else {
+            writeOutputToWriter(batchResult);
+        }
+        if (batchResult.isRetry) {
+            // the rows were counted when they were sent the first time
+            getProgressMonitor().setSubTask(getRateCalculator().calculateSubTask(getNumberOfRows(), getNumberErrors()));
+            return;
+        }
+        setLastRunProperties(batchResult.daoRows.size());
+
+        // update Monitor
+        getProgressMonitor().worked(batchResult.daoRows.size());
+        getProgressMonitor().setSubTask(getRateCalculator().calculateSubTask(getNumberOfRows(), getNumberErrors()));
+    }
+
+    private void writeOutputToWriter(BatchResult batchResult) throws DataAccessObjectException, LoadException {
+        final List<Row> batchDaoRows = batchResult.daoRows;
+        final Object[] results = batchResult.results;
+        if (results.length != batchDaoRows.size()) {
+            getLogger().fatal(Messages.getString("Visitor.errorResultsLength")); //$NON-NLS-1$
+            throw new LoadException(Messages.getString("Visitor.errorResultsLength"));
+        }
+        for (int i = 0; i < batchDaoRows.size(); i++) {
+            final RowResult rowResult = mapResult(results[i]);
+            if (requeueRow(batchResult, i, rowResult.errors)) {
+                continue;
+            }
+            final Row daoRow = batchDaoRows.get(i);
+            daoRow.put(Config.STATUS_COLUMN_NAME, rowResult.success ? rowResult.statusMessage : null);
+            processResult(daoRow, rowResult.success, rowResult.id, rowResult.errors);
+            rowCompleted(batchResult.daoRowNumbers[i]);
+        }
+    }
+
+    /**
+     * @return true if the row is sent again later instead of having its errors written
+     */
+    private boolean requeueRow(BatchResult batchResult, int rowIndex, Error[] errors) {
+        if (this.rowRetryQueue == null || errors == null || errors.length == 0) {
+            return false;
+        }
+        return this.rowRetryQueue.offer(new RetryRow(batchResult.daoRows.get(rowIndex),
+                batchResult.daoRowNumbers[rowIndex], batchResult.dynaBeans.get(rowIndex), errors),
+                String.valueOf(errors[0].getStatusCode()), errors[0].getMessage());
+    }
+}
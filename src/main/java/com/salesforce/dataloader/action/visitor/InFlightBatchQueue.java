@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sforce.ws.ConnectionException;
+
+/**
+ * Keeps up to a configured number of load requests in flight and hands back their
+ * results in the order in which the requests were submitted.
+ * 
+ * With a limit of 1, requests are run on the calling thread as soon as they are submitted.
+ */
+public class InFlightBatchQueue<T> {
+
+    private final int maxInFlight;
+    private final String threadNamePrefix;
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private ExecutorService executor;
+    private final Deque<Future<T>> pendingRequests = new ArrayDeque<Future<T>>();
+
+    public InFlightBatchQueue(int maxInFlight, String threadNamePrefix) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    public void submit(Callable<T> request) {
+        if (this.maxInFlight > 1) {
+            // worker threads are started again if the queue was shut down before a resumed operation
+            if (this.executor == null) {
+                this.executor = Executors.newFixedThreadPool(this.maxInFlight, r -> {
+                    Thread t = new Thread(r, this.threadNamePrefix + "-" + this.threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            this.pendingRequests.add(this.executor.submit(request));
+            return;
+        }
+        try {
+            this.pendingRequests.add(CompletableFuture.completedFuture(request.call()));
+        } catch (Exception e) {
+            this.pendingRequests.add(CompletableFuture.failedFuture(e));
+        }
+    }
+
+    /**
+     * @return true if no more requests should be submitted before the oldest one is taken
+     */
+    public boolean isFull() {
+        return this.pendingRequests.size() >= this.maxInFlight;
+    }
+
+    public boolean isEmpty() {
+        return this.pendingRequests.isEmpty();
+    }
+
+    /**
+     * Waits for the oldest request in flight and returns its result.
+     */
+    public T takeOldest() throws ConnectionException {
+        final Future<T> oldest = this.pendingRequests.poll();
+        if (oldest == null) {
+            return null;
+        }
+        try {
+            return oldest.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("Interrupted while waiting for a load request", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ConnectionException) {
+                throw (ConnectionException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Cancels the requests still in flight and stops the worker threads.
+     */
+    public void shutdown() {
+        for (Future<T> pending : this.pendingRequests) {
+            pending.cancel(true);
+        }
+        this.pendingRequests.clear();
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+}
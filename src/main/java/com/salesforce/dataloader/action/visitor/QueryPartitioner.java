@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.salesforce.dataloader.client.PartnerClient;
+import com.sforce.soap.partner.QueryResult;
+import com.sforce.soap.partner.sobject.SObject;
+import com.sforce.ws.ConnectionException;
+
+/**
+ * Splits an extraction query into queries over disjoint ranges of the record Id or of a datetime
+ * field such as CreatedDate, so that each range can be extracted on its own at the same time.
+ * 
+ * The ranges are evenly spaced between the lowest and highest values of the field among the
+ * records selected by the query. Queries with a top level GROUP BY, ORDER BY, LIMIT, OFFSET,
+ * FOR or WITH clause are not split because the clause would apply to each range separately.
+ */
+public class QueryPartitioner {
+
+    private static final Logger logger = LogManager.getLogger(QueryPartitioner.class);
+
+    private static final String ID_FIELD = "Id";
+    private static final String ID_DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final BigInteger ID_RADIX = BigInteger.valueOf(ID_DIGITS.length());
+    private static final int CASE_SENSITIVE_ID_LENGTH = 15;
+    private static final String[] UNSPLITTABLE_CLAUSES = {"group", "order", "limit", "offset", "for", "with"};
+
+    private final PartnerClient client;
+    private final boolean includeDeleted;
+
+    public QueryPartitioner(PartnerClient client, boolean includeDeleted) {
+        this.client = client;
+        this.includeDeleted = includeDeleted;
+    }
+
+    /**
+     * @return the queries over each range, or the query itself if it cannot be split
+     */
+    public List<String> partition(String soql, String field, int numPartitions) throws ConnectionException {
+        if (numPartitions < 2 || getFromClauseIndex(soql) < 0) {
+            return Collections.singletonList(soql);
+        }
+        final Object lowest = getBoundaryValue(soql, field, "ASC");
+        final Object highest = getBoundaryValue(soql, field, "DESC");
+        if (lowest == null || highest == null) {
+            return Collections.singletonList(soql);
+        }
+        final List<String> boundaries;
+        try {
+            boundaries = ID_FIELD.equalsIgnoreCase(field)
+                    ? getIdBoundaries(lowest.toString(), highest.toString(), numPartitions)
+                    : getDateTimeBoundaries(lowest, highest, numPartitions);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unable to split query into ranges of " + field + ": " + e.getMessage());
+            return Collections.singletonList(soql);
+        }
+        if (boundaries.isEmpty()) {
+            return Collections.singletonList(soql);
+        }
+        final List<String> conditions = getRangeConditions(field, boundaries);
+        final List<String> partitions = new ArrayList<String>(conditions.size());
+        for (String condition : conditions) {
+            partitions.add(addCondition(soql, condition));
+        }
+        logger.info("Splitting query into " + partitions.size() + " ranges of " + field);
+        return partitions;
+    }
+
+    private Object getBoundaryValue(String soql, String field, String sortOrder) throws ConnectionException {
+        final String boundarySoql = "SELECT " + field + " " + soql.substring(getFromClauseIndex(soql))
+                + " ORDER BY " + field + " " + sortOrder + " NULLS LAST LIMIT 1";
+        final QueryResult qr = this.includeDeleted ? this.client.queryAll(boundarySoql) : this.client.query(boundarySoql);
+        final SObject[] records = qr.getRecords();
+        if (records == null || records.length == 0) {
+            return null;
+        }
+        return records[0].getField(field);
+    }
+
+    /**
+     * @return the index of the top level FROM keyword, or -1 if the query cannot be split
+     */
+    static int getFromClauseIndex(String soql) {
+        final List<int[]> keywords = getTopLevelKeywords(soql);
+        int fromIdx = -1;
+        for (int[] keyword : keywords) {
+            final String word = soql.substring(keyword[0], keyword[1]).toLowerCase(Locale.ROOT);
+            if (fromIdx < 0) {
+                if ("from".equals(word)) {
+                    fromIdx = keyword[0];
+                }
+                continue;
+            }
+            for (String clause : UNSPLITTABLE_CLAUSES) {
+                if (clause.equals(word)) {
+                    return -1;
+                }
+            }
+        }
+        return fromIdx;
+    }
+
+    /**
+     * Adds a condition to the WHERE clause of a query that {@link #getFromClauseIndex(String)} accepts.
+     */
+    static String addCondition(String soql, String condition) {
+        final String trimmedSoql = soql.trim();
+        final int fromIdx = getFromClauseIndex(trimmedSoql);
+        for (int[] keyword : getTopLevelKeywords(trimmedSoql)) {
+            if (keyword[0] > fromIdx
+                    && "where".equalsIgnoreCase(trimmedSoql.substring(keyword[0], keyword[1]))) {
+                return trimmedSoql.substring(0, keyword[1]) + " (" + trimmedSoql.substring(keyword[1]).trim()
+                        + ") AND " + condition;
+            }
+        }
+        return trimmedSoql + " WHERE " + condition;
+    }
+
+    /**
+     * @return start and end index of each word outside of quoted literals and parentheses
+     */
+    private static List<int[]> getTopLevelKeywords(String soql) {
+        final List<int[]> keywords = new ArrayList<int[]>();
+        int depth = 0;
+        boolean inQuote = false;
+        for (int i = 0; i < soql.length(); i++) {
+            final char c = soql.charAt(i);
+            if (inQuote) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '\'') {
+                    inQuote = false;
+                }
+            } else if (c == '\'') {
+                inQuote = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (Character.isLetter(c) && (i == 0 || !isWordChar(soql.charAt(i - 1)))) {
+                int end = i;
+                while (end < soql.length() && isWordChar(soql.charAt(end))) {
+                    end++;
+                }
+                if (depth == 0) {
+                    keywords.add(new int[] {i, end});
+                }
+                i = end - 1;
+            }
+        }
+        return keywords;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+
+    /**
+     * @param boundaries at least one boundary, in ascending order
+     */
+    static List<String> getRangeConditions(String field, List<String> boundaries) {
+        final List<String> conditions = new ArrayList<String>();
+        conditions.add("(" + field + " < " + boundaries.get(0) + " OR " + field + " = null)");
+        for (int i = 1; i < boundaries.size(); i++) {
+            conditions.add("(" + field + " >= " + boundaries.get(i - 1) + " AND " + field + " < " + boundaries.get(i) + ")");
+        }
+        conditions.add(field + " >= " + boundaries.get(boundaries.size() - 1));
+        return conditions;
+    }
+
+    /**
+     * Treats the characters of the case-sensitive Ids that follow their common prefix as base 62 numbers.
+     * 
+     * @return quoted Id literals that split the range into up to numPartitions parts
+     */
+    static List<String> getIdBoundaries(String lowestId, String highestId, int numPartitions) {
+        final String lowest = lowestId.substring(0, Math.min(CASE_SENSITIVE_ID_LENGTH, lowestId.length()));
+        final String highest = highestId.substring(0, Math.min(CASE_SENSITIVE_ID_LENGTH, highestId.length()));
+        int prefixLength = 0;
+        while (prefixLength < Math.min(lowest.length(), highest.length())
+                && lowest.charAt(prefixLength) == highest.charAt(prefixLength)) {
+            prefixLength++;
+        }
+        final String prefix = lowest.substring(0, prefixLength);
+        final int suffixLength = lowest.length() - prefixLength;
+        final BigInteger low = parseIdDigits(lowest.substring(prefixLength));
+        final BigInteger high = parseIdDigits(highest.substring(prefixLength));
+        final List<String> boundaries = new ArrayList<String>();
+        BigInteger previous = low;
+        for (int i = 1; i < numPartitions; i++) {
+            final BigInteger boundary = low.add(high.subtract(low)
+                    .multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(numPartitions)));
+            if (boundary.compareTo(previous) > 0 && boundary.compareTo(high) <= 0) {
+                boundaries.add("'" + prefix + formatIdDigits(boundary, suffixLength) + "'");
+                previous = boundary;
+            }
+        }
+        return boundaries;
+    }
+
+    private static BigInteger parseIdDigits(String digits) {
+        BigInteger value = BigInteger.ZERO;
+        for (int i = 0; i < digits.length(); i++) {
+            final int digit = ID_DIGITS.indexOf(digits.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a record id: " + digits);
+            }
+            value = value.multiply(ID_RADIX).add(BigInteger.valueOf(digit));
+        }
+        return value;
+    }
+
+    private static String formatIdDigits(BigInteger value, int length) {
+        final char[] digits = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            final BigInteger[] quotientAndRemainder = value.divideAndRemainder(ID_RADIX);
+            digits[i] = ID_DIGITS.charAt(quotientAndRemainder[1].intValue());
+            value = quotientAndRemainder[0];
+        }
+        return new String(digits);
+    }
+
+    /**
+     * @return datetime literals, in whole seconds, that split the range into up to numPartitions parts
+     */
+    static List<String> getDateTimeBoundaries(Object lowestValue, Object highestValue, int numPartitions) {
+        final long low = toInstant(lowestValue).getEpochSecond();
+        final long high = toInstant(highestValue).getEpochSecond();
+        final List<String> boundaries = new ArrayList<String>();
+        long previous = low;
+        for (int i = 1; i < numPartitions; i++) {
+            final long boundary = low + (high - low) * i / numPartitions;
+            if (boundary > previous) {
+                boundaries.add(DateTimeFormatter.ISO_INSTANT.format(
+                        Instant.ofEpochSecond(boundary).truncatedTo(ChronoUnit.SECONDS)));
+                previous = boundary;
+            }
+        }
+        return boundaries;
+    }
+
+    private static Instant toInstant(Object value) {
+        if (value instanceof Calendar) {
+            return ((Calendar)value).toInstant();
+        }
+        try {
+            return Instant.parse(value.toString());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Not a datetime value: " + value, e);
+        }
+    }
+}
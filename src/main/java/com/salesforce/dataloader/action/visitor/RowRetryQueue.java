@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects rows rejected with an error that is likely to go away when they are loaded again, such as
+ * a lock held on a parent record by another batch. The rows are loaded again in rounds once the other
+ * rows are done, in smaller batches, and are reported as failed after the last round.
+ */
+public class RowRetryQueue<T> {
+
+    private static final Set<String> TRANSIENT_STATUS_CODES = Set.of(
+            "UNABLE_TO_LOCK_ROW", "REQUEST_RUNNING_TOO_LONG");
+
+    private final int maxRetries;
+    private final int batchSize;
+    private List<T> rows = new ArrayList<T>();
+    private int retryNum = 0;
+
+    public RowRetryQueue(int maxRetries, int batchSize) {
+        this.maxRetries = maxRetries;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public static boolean isTransientError(String statusCode, String message) {
+        if (statusCode != null && TRANSIENT_STATUS_CODES.contains(statusCode)) {
+            return true;
+        }
+        // a trigger or flow failing to lock a related record is reported with a status code of its own
+        return message != null && message.contains("UNABLE_TO_LOCK_ROW");
+    }
+
+    /**
+     * @return true if the row is queued to be loaded again, false if it should be reported as failed
+     */
+    public boolean offer(T row, String statusCode, String message) {
+        if (this.retryNum >= this.maxRetries || !isTransientError(statusCode, message)) {
+            return false;
+        }
+        this.rows.add(row);
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return this.rows.isEmpty();
+    }
+
+    /**
+     * Takes the queued rows to load them again.
+     *
+     * @return the rows split in batches that can be changed independently, in the order they were queued
+     */
+    public List<List<T>> takeBatches() {
+        this.retryNum++;
+        final List<List<T>> batches = new ArrayList<List<T>>();
+        for (int start = 0; start < this.rows.size(); start += this.batchSize) {
+            batches.add(new ArrayList<T>(this.rows.subList(start, Math.min(this.rows.size(), start + this.batchSize))));
+        }
+        this.rows = new ArrayList<T>();
+        return batches;
+    }
+
+    /**
+     * Takes the queued rows without loading them again, to report them as failed.
+     */
+    public List<T> takeAll() {
+        final List<T> remaining = this.rows;
+        this.rows = new ArrayList<T>();
+        return remaining;
+    }
+
+    /**
+     * @return number of times the queued rows were taken to load them again
+     */
+    public int getRetryNum() {
+        return this.retryNum;
+    }
+}
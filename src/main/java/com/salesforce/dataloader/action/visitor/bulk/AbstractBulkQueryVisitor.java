@@ -32,6 +32,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.salesforce.dataloader.action.AbstractExtractAction;
@@ -40,12 +41,14 @@ import com.salesforce.dataloader.action.visitor.AbstractQueryVisitor;
 import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.controller.Controller;
 import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.dao.csv.CSVTokenizer;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
 import com.salesforce.dataloader.exception.OperationException;
+import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.mapping.SOQLMapper;
 import com.salesforce.dataloader.model.Row;
-import com.sforce.async.CSVReader;
+import com.sforce.async.AsyncApiException;
 
 /**
  * Query visitor for bulk api extract operations.
@@ -60,6 +63,24 @@ abstract public class AbstractBulkQueryVisitor extends AbstractQueryVisitor {
         super(action, controller, monitor, queryWriter, successWriter, errorWriter);
     }
     
+    protected int getMaxConcurrentDownloads() {
+        int maxConcurrentDownloads = Config.DEFAULT_BULK_QUERY_MAX_CONCURRENT_DOWNLOADS;
+        try {
+            maxConcurrentDownloads = getConfig().getInt(Config.BULK_QUERY_MAX_CONCURRENT_DOWNLOADS);
+        } catch (ParameterLoadException e) {
+            getLogger().warn("Incorrectly configured " + Config.BULK_QUERY_MAX_CONCURRENT_DOWNLOADS);
+        }
+        if (maxConcurrentDownloads < 1) {
+            return 1;
+        }
+        return Math.min(maxConcurrentDownloads, Config.MAX_BULK_QUERY_CONCURRENT_DOWNLOADS);
+    }
+
+    void writeExtractionForOldestDownload(BulkQueryResultDownloader downloader)
+            throws AsyncApiException, IOException, DataAccessObjectException {
+        writeExtractionForServerStream(downloader.takeOldest());
+    }
+
     protected void writeExtractionForServerStream(InputStream serverResultStream) throws IOException, DataAccessObjectException {
         File bufferingFile = null;
         final boolean bufferResults = getConfig().getBoolean(Config.BUFFER_UNPROCESSED_BULK_QUERY_RESULTS);
@@ -87,11 +108,12 @@ abstract public class AbstractBulkQueryVisitor extends AbstractQueryVisitor {
                 resultStream = new FileInputStream(new File(bufferingFilePath));
             }
             try {
-                final CSVReader rdr = new CSVReader(resultStream, Config.BULK_API_ENCODING);
-                rdr.setMaxCharsInFile(Integer.MAX_VALUE);
-                rdr.setMaxRowsInFile(Integer.MAX_VALUE);
-                List<String> headers;
-                headers = rdr.nextRecord();
+                final CSVTokenizer rdr = new CSVTokenizer(resultStream, Config.BULK_API_ENCODING);
+                List<String> headers = rdr.nextRecord();
+                if (headers != null) {
+                    // the tokenizer reuses its record, keep a copy of the header
+                    headers = new ArrayList<String>(headers);
+                }
                 List<String> csvRow;
                 boolean isFirstRowInBatch = true;
                 while ((csvRow = rdr.nextRecord()) != null) {
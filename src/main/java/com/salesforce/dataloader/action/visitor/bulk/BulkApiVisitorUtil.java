@@ -28,11 +28,15 @@ package com.salesforce.dataloader.action.visitor.bulk;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -41,16 +45,17 @@ import com.salesforce.dataloader.action.progress.ILoaderProgress;
 import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.csv.CSVTokenizer;
 import com.salesforce.dataloader.exception.ExtractException;
 import com.salesforce.dataloader.exception.ExtractExceptionOnServer;
 import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.util.LoadRateCalculator;
 import com.sforce.async.AsyncApiException;
+import com.sforce.async.AsyncExceptionCode;
 import com.sforce.async.BatchInfo;
 import com.sforce.async.BatchInfoList;
 import com.sforce.async.BatchStateEnum;
 import com.sforce.async.BulkConnection;
-import com.sforce.async.CSVReader;
 import com.sforce.async.ConcurrencyMode;
 import com.sforce.async.ContentType;
 import com.sforce.async.JobInfo;
@@ -70,16 +75,21 @@ class BulkApiVisitorUtil {
     private int attachmentNum;
 
     private final long checkStatusInterval;
+    private final long maxCheckStatusInterval;
     private long lastStatusUpdate;
+    private long expectedRecordsInJob = 0;
 
     private final ILoaderProgress monitor;
     private final LoadRateCalculator rateCalc;
 
     private final boolean updateProgress;
+    // set when the job loads rows of a previous job again, which were counted in the progress already
+    private boolean isRetryJob = false;
     
     private boolean enablePKchunking = false;
     private int queryChunkSize;
     private String queryChunkStartRow = "";
+    private String extractSoql = null;
     private Config config = null;
     private Controller controller;
     private int bulkV2LoadBatchCount = 0;
@@ -98,14 +108,16 @@ class BulkApiVisitorUtil {
             long checkStatusInt = ctl.getConfig().getLong(Config.BULK_API_CHECK_STATUS_INTERVAL);
             this.checkStatusInterval = checkStatusInt > 0 ? checkStatusInt
                     : Config.DEFAULT_BULK_API_CHECK_STATUS_INTERVAL;
+            long maxCheckStatusInt = ctl.getConfig().getLong(Config.BULK_API_MAX_CHECK_STATUS_INTERVAL);
+            this.maxCheckStatusInterval = Math.max(this.checkStatusInterval, maxCheckStatusInt > 0 ? maxCheckStatusInt
+                    : Config.DEFAULT_BULK_API_MAX_CHECK_STATUS_INTERVAL);
         } catch (ParameterLoadException e) {
             throw new RuntimeException("Failed to initialize check status interval", e);
         }
         
-        /*
-         * ======== Start code block to support PK chunking
-         *
-        this.enablePKchunking = ctl.getConfig().getBoolean(Config.ENABLE_BULK_QUERY_PK_CHUNKING);
+        // PK chunking is a Bulk V1 feature, Bulk V2 query jobs are split on the client instead
+        this.enablePKchunking = ctl.getConfig().getBoolean(Config.ENABLE_BULK_QUERY_PK_CHUNKING)
+                && !ctl.getConfig().isBulkV2APIEnabled();
         if (this.enablePKchunking) {
             try {
                 int chunkSize = ctl.getConfig().getInt(Config.BULK_QUERY_PK_CHUNK_SIZE);
@@ -121,9 +133,6 @@ class BulkApiVisitorUtil {
                 queryChunkStartRow = "";
             } 
         }
-        /*
-         * ======== End code block to support PK chunking
-         */
         this.monitor = monitor;
         this.rateCalc = rateCalc;
         this.updateProgress = updateProgress;
@@ -133,6 +142,13 @@ class BulkApiVisitorUtil {
         this(ctl, monitor, rateCalc, true);
     }
 
+    /**
+     * Sets the query of a Bulk V2 query job created after this call, instead of the configured one.
+     */
+    void setExtractSoql(String soql) {
+        this.extractSoql = soql;
+    }
+
     String getJobId() {
         return this.jobInfo.getId();
     }
@@ -157,6 +173,20 @@ class BulkApiVisitorUtil {
     }
 
     void createJob() throws AsyncApiException {
+        createJob(this.config.getBoolean(Config.BULK_API_SERIAL_MODE));
+    }
+
+    /**
+     * Creates a job to load rows that were rejected with a transient error in the previous job.
+     */
+    void createRetryJob(boolean serialMode) throws AsyncApiException {
+        this.isRetryJob = true;
+        this.expectedRecordsInJob = 0;
+        this.recordsProcessed = 0;
+        createJob(serialMode || this.config.getBoolean(Config.BULK_API_SERIAL_MODE));
+    }
+
+    private void createJob(boolean serialMode) throws AsyncApiException {
         JobInfo job = new JobInfo();
         final OperationEnum op = this.config.getOperationInfo().getBulkOperationEnum();
         job.setOperation(op);
@@ -174,13 +204,13 @@ class BulkApiVisitorUtil {
         job.setContentType(jobContentType);
         
         ConcurrencyMode jobConcurrencyMode = ConcurrencyMode.Parallel;
-        if (this.config.getBoolean(Config.BULK_API_SERIAL_MODE) 
-                && !this.config.isBulkV2APIEnabled()) {
+        if (serialMode && !this.config.isBulkV2APIEnabled()) {
             // Serial mode is supported only for Bulk V1
            jobConcurrencyMode = ConcurrencyMode.Serial;
         }
         job.setConcurrencyMode(jobConcurrencyMode);
         
+        boolean pkChunkingHeaderSet = false;
         if (op == OperationEnum.update || op == OperationEnum.upsert || op == OperationEnum.insert) {
             final String assRule = this.config.getString(Config.ASSIGNMENT_RULE);
             if (assRule != null && (assRule.length() == 15 || assRule.length() == 18)) {
@@ -197,13 +227,21 @@ class BulkApiVisitorUtil {
                 }
                 this.connection.addHeader("Sforce-Enable-PKChunking", 
                                       "chunkSize=" + this.queryChunkSize + startRowParam);
+                pkChunkingHeaderSet = true;
             }
         }
         if (isBulkV2QueryJob()) {
-            job.setObject(this.config.getString(Config.EXTRACT_SOQL));
+            job.setObject(this.extractSoql != null ? this.extractSoql : this.config.getString(Config.EXTRACT_SOQL));
             logger.info("going to create BulkV2 query job");
         }
-        job = this.connection.createJob(job);
+        try {
+            job = this.connection.createJob(job);
+        } finally {
+            if (pkChunkingHeaderSet) {
+                // the connection is shared with later jobs, which should not be chunked unless asked for
+                this.connection.addHeader("Sforce-Enable-PKChunking", "false");
+            }
+        }
         logger.info(Messages.getMessage(getClass(), "logJobCreated", job.getId()));
         this.jobInfo = job;
     }
@@ -227,6 +265,14 @@ class BulkApiVisitorUtil {
     }
 
     BatchInfo createBatch(InputStream batchContent) throws AsyncApiException {
+        return createBatch(batchContent, 0);
+    }
+
+    /**
+     * @param numRecords number of records in the batch, used to estimate when the job will be done
+     */
+    BatchInfo createBatch(InputStream batchContent, int numRecords) throws AsyncApiException {
+        this.expectedRecordsInJob += numRecords;
         BatchInfo batch = null;
         if (isBulkV2QueryJob()) {
             return null;
@@ -259,14 +305,7 @@ class BulkApiVisitorUtil {
         if (this.monitor.isCanceled()) return 0;
         final long timeRemaining = this.checkStatusInterval - (System.currentTimeMillis() - this.lastStatusUpdate);
         int retryCount = 0;
-        int maxAttemptsCount = 0;
-        
-        try {
-            // limit the number of max retries in case limit is exceeded
-            maxAttemptsCount = 1 + Math.min(Config.MAX_RETRIES_LIMIT, this.config.getInt(Config.MAX_RETRIES));
-        } catch (ParameterLoadException e) {
-            maxAttemptsCount = 1 + Config.DEFAULT_MAX_RETRIES;
-        }
+        final int maxAttemptsCount = getMaxStatusCheckAttempts();
         if (timeRemaining <= 0) {
             while (retryCount++ < maxAttemptsCount) {
                 try {
@@ -288,15 +327,55 @@ class BulkApiVisitorUtil {
         return timeRemaining;
     }
 
+    private int getMaxStatusCheckAttempts() {
+        try {
+            // limit the number of max retries in case limit is exceeded
+            return 1 + Math.min(Config.MAX_RETRIES_LIMIT, this.config.getInt(Config.MAX_RETRIES));
+        } catch (ParameterLoadException e) {
+            return 1 + Config.DEFAULT_MAX_RETRIES;
+        }
+    }
+
     private void awaitJobCompletion() throws AsyncApiException {
-        long sleepTime = periodicCheckStatus();
-        
-        while (!isJobCompleted()) {
-            if (this.monitor.isCanceled()) return;
-            try {
-                Thread.sleep(sleepTime);
-            } catch (final InterruptedException e) {}
-            sleepTime = periodicCheckStatus();
+        if (isJobCompleted(this.jobInfo)) return;
+        final String jobId = getJobId();
+        final BulkJobStatusPoller.TrackedJob trackedJob = BulkJobStatusPoller.getInstance().track(
+                () -> this.connection.getJobStatus(jobId),
+                this::isJobCompleted,
+                this.expectedRecordsInJob,
+                this.checkStatusInterval,
+                this.maxCheckStatusInterval,
+                getMaxStatusCheckAttempts());
+        try {
+            while (true) {
+                if (this.monitor.isCanceled()) {
+                    trackedJob.cancel();
+                    return;
+                }
+                try {
+                    // wake up when the job completes, or in time to refresh the progress shown
+                    this.jobInfo = trackedJob.getCompletion().get(this.checkStatusInterval, TimeUnit.MILLISECONDS);
+                    updateJobStatus();
+                    return;
+                } catch (TimeoutException e) {
+                    final JobInfo latestStatus = trackedJob.getLatestStatus();
+                    if (latestStatus != null && latestStatus != this.jobInfo) {
+                        this.jobInfo = latestStatus;
+                        updateJobStatus();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            trackedJob.cancel();
+            Thread.currentThread().interrupt();
+            throw new AsyncApiException("Interrupted while waiting for job " + jobId, AsyncExceptionCode.ClientInputError, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AsyncApiException) {
+                throw (AsyncApiException)e.getCause();
+            }
+            throw new AsyncApiException("Failed to get status of job " + jobId, AsyncExceptionCode.ClientInputError, e.getCause());
+        } finally {
+            this.monitor.setNumberBatchesTotal(this.jobInfo.getNumberBatchesTotal());
         }
     }
     
@@ -312,12 +391,15 @@ class BulkApiVisitorUtil {
         && this.config.isBulkV2APIEnabled();
     }
 
-    private boolean isJobCompleted() {
+    private boolean isJobCompleted(JobInfo job) {
         if (isBulkV2QueryJob() || isBulkV2LoadJob()) {
-            return this.jobInfo.getState() == JobStateEnum.JobComplete;
+            // a failed or aborted job will not make any further progress either
+            return job.getState() == JobStateEnum.JobComplete
+                    || job.getState() == JobStateEnum.Failed
+                    || job.getState() == JobStateEnum.Aborted;
         } else { // bulk v1 flavor
-            return this.jobInfo.getNumberBatchesQueued() == 0 
-                    && this.jobInfo.getNumberBatchesInProgress() == 0;
+            return job.getNumberBatchesQueued() == 0 
+                    && job.getNumberBatchesInProgress() == 0;
         }
     }
 
@@ -335,7 +417,7 @@ class BulkApiVisitorUtil {
     }
 
     private void updateJobStatus() {
-        if (updateProgress) {
+        if (updateProgress && !isRetryJob) {
             this.monitor.worked(getNumRecordsProcessedInJob() - this.recordsProcessed);
             this.monitor.setSubTask(this.rateCalc.calculateSubTask(
                     getNumRecordsProcessedInJob(),
@@ -388,9 +470,13 @@ class BulkApiVisitorUtil {
         return connectionClient.getBatchInfoList(getJobId());
     }
 
-    CSVReader getBatchResults(String batchId) throws AsyncApiException {
+    CSVTokenizer getBatchResults(String batchId) throws AsyncApiException, UnsupportedEncodingException {
+        return new CSVTokenizer(getBatchResultStream(batchId), Config.BULK_API_ENCODING);
+    }
+
+    InputStream getBatchResultStream(String batchId) throws AsyncApiException {
         BulkConnection connectionClient = this.controller.getBulkV1Client().getConnection();
-        return new CSVReader(connectionClient.getBatchResultStream(getJobId(), batchId));
+        return connectionClient.getBatchResultStream(getJobId(), batchId);
     }
     
     int getRecordsProcessed() throws ExtractException, AsyncApiException {
@@ -406,15 +492,27 @@ class BulkApiVisitorUtil {
         return getNumRecordsProcessedInJob();
     }
     
-    void getBulkV2LoadSuccessResults(String filename) throws AsyncApiException {
-    	this.controller.getBulkV2Client().getConnection().saveIngestSuccessResults(this.getJobId(), filename);
+    /**
+     * @return number of results saved
+     */
+    long getBulkV2LoadSuccessResults(String filename) throws AsyncApiException {
+    	return getBulkV2LoadSuccessResults(filename, false);
+    }
+    
+    long getBulkV2LoadSuccessResults(String filename, boolean append) throws AsyncApiException {
+    	return this.controller.getBulkV2Client().getConnection().saveIngestSuccessResults(this.getJobId(), filename, append);
+    }
+    
+    long getBulkV2LoadErrorResults(String filename) throws AsyncApiException {
+    	return this.controller.getBulkV2Client().getConnection().saveIngestFailureResults(this.getJobId(), filename);
     }
     
-    void getBulkV2LoadErrorResults(String filename) throws AsyncApiException {
-    	this.controller.getBulkV2Client().getConnection().saveIngestFailureResults(this.getJobId(), filename);
+    long getBulkV2LoadUnprocessedRecords(String filename) throws AsyncApiException {
+    	return this.controller.getBulkV2Client().getConnection().saveIngestUnprocessedRecords(this.getJobId(), filename);
     }
     
-    void getBulkV2LoadUnprocessedRecords(String filename) throws AsyncApiException {
-    	this.controller.getBulkV2Client().getConnection().saveIngestUnprocessedRecords(this.getJobId(), filename);
+    CSVTokenizer getBulkV2LoadUnprocessedRecords() throws AsyncApiException, UnsupportedEncodingException {
+    	return new CSVTokenizer(this.controller.getBulkV2Client().getConnection().getIngestUnprocessedRecordsStream(this.getJobId()),
+    	        Config.BULK_API_ENCODING);
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Holds the CSV content of a Bulk API batch while it is written. Content stays in memory up to a
+ * threshold and is spilled to a temporary file beyond it, so the heap used by a batch does not grow
+ * with the size of the batch. The content can be read more than once, e.g. to save a copy of it before it
+ * is uploaded.
+ */
+class BulkBatchBuffer extends OutputStream {
+
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    private final int initialSize;
+    private final int memoryThreshold;
+    private ContentBuffer memoryBuffer;
+    private File spillFile;
+    private OutputStream spillOut;
+    private long size = 0;
+
+    /** Gives access to the buffered bytes without copying them */
+    private static class ContentBuffer extends ByteArrayOutputStream {
+        ContentBuffer(int initialSize) {
+            super(initialSize);
+        }
+
+        InputStream getInputStream() {
+            return new ByteArrayInputStream(this.buf, 0, this.count);
+        }
+    }
+
+    BulkBatchBuffer(int initialSize, int memoryThreshold) {
+        this.initialSize = Math.max(1, Math.min(initialSize, memoryThreshold));
+        this.memoryThreshold = memoryThreshold;
+        this.memoryBuffer = new ContentBuffer(this.initialSize);
+    }
+
+    /**
+     * Moves the content written so far into a new buffer without copying it, leaving this one empty.
+     */
+    BulkBatchBuffer detachContent() throws IOException {
+        flush();
+        final BulkBatchBuffer detached = new BulkBatchBuffer(1, this.memoryThreshold);
+        detached.memoryBuffer = this.memoryBuffer;
+        detached.spillFile = this.spillFile;
+        detached.spillOut = this.spillOut;
+        detached.size = this.size;
+        this.memoryBuffer = new ContentBuffer(this.initialSize);
+        this.spillFile = null;
+        this.spillOut = null;
+        this.size = 0;
+        return detached;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        getOutputFor(1).write(b);
+        this.size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        getOutputFor(len).write(b, off, len);
+        this.size += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.spillOut != null) {
+            this.spillOut.flush();
+        }
+    }
+
+    private OutputStream getOutputFor(int len) throws IOException {
+        if (this.spillOut == null && this.size + len > this.memoryThreshold) {
+            this.spillFile = File.createTempFile("bulkBatch", ".csv");
+            this.spillFile.deleteOnExit();
+            this.spillOut = new BufferedOutputStream(new FileOutputStream(this.spillFile), FILE_BUFFER_SIZE);
+            this.memoryBuffer.writeTo(this.spillOut);
+            this.memoryBuffer.reset();
+        }
+        return this.spillOut == null ? this.memoryBuffer : this.spillOut;
+    }
+
+    /**
+     * @return number of bytes written so far
+     */
+    long size() {
+        return this.size;
+    }
+
+    /**
+     * @return a new stream over all the content written so far
+     */
+    InputStream getInputStream() throws IOException {
+        if (this.spillOut == null) {
+            return this.memoryBuffer.getInputStream();
+        }
+        this.spillOut.flush();
+        return new BufferedInputStream(new FileInputStream(this.spillFile), FILE_BUFFER_SIZE);
+    }
+
+    /**
+     * Discards the content, including the temporary file if there is one.
+     */
+    @Override
+    public void close() throws IOException {
+        this.memoryBuffer.reset();
+        this.size = 0;
+        if (this.spillOut != null) {
+            try {
+                this.spillOut.close();
+            } finally {
+                this.spillOut = null;
+                this.spillFile.delete();
+                this.spillFile = null;
+            }
+        }
+    }
+}
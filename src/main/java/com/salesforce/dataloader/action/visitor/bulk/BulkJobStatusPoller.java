@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.salesforce.dataloader.config.Config;
+import com.sforce.async.JobInfo;
+
+/**
+ * Checks the status of Bulk API jobs on a scheduler shared by all jobs of the process.
+ * 
+ * The time until the next check of a job adapts to its progress. A job that did not process any
+ * records since the last check is checked less and less often. A job of known size is checked
+ * again around the time it is expected to finish, based on the rate at which it processed records
+ * so far. The completion of a tracked job is signalled as soon as a check sees it.
+ */
+class BulkJobStatusPoller {
+
+    private static final Logger logger = LogManager.getLogger(BulkJobStatusPoller.class);
+    private static final int NUM_POLLER_THREADS = 4;
+    private static final BulkJobStatusPoller INSTANCE = new BulkJobStatusPoller();
+
+    private final ScheduledExecutorService scheduler;
+
+    private BulkJobStatusPoller() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(NUM_POLLER_THREADS, r -> {
+            Thread t = new Thread(r, "bulkJobStatusPoller-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    static BulkJobStatusPoller getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts checking the status of a job.
+     * 
+     * @param statusCheck gets the current status of the job from the server
+     * @param isCompleted tells whether a status is final
+     * @param expectedRecords number of records in the job, or 0 if not known
+     * @param steadyInterval interval between checks of a job of unknown size that makes progress
+     * @param maxInterval longest interval between checks
+     * @param maxAttempts number of consecutive failed checks after which tracking fails
+     */
+    TrackedJob track(Callable<JobInfo> statusCheck, Predicate<JobInfo> isCompleted, long expectedRecords,
+            long steadyInterval, long maxInterval, int maxAttempts) {
+        final TrackedJob job = new TrackedJob(statusCheck, isCompleted, expectedRecords, steadyInterval,
+                maxInterval, maxAttempts);
+        job.schedule(job.interval);
+        return job;
+    }
+
+    /**
+     * @return milliseconds to wait before the next status check of a job
+     */
+    static long nextInterval(long previousInterval, long recordsProcessedSinceLastCheck, long recordsProcessed,
+            long expectedRecords, long steadyInterval, long maxInterval) {
+        long interval;
+        if (recordsProcessedSinceLastCheck <= 0) {
+            // nothing happened, e.g. because the job is still queued: back off
+            interval = previousInterval * 2;
+        } else if (expectedRecords > recordsProcessed) {
+            // check again about halfway to the expected completion, converging as the job finishes
+            final long remainingRecords = expectedRecords - recordsProcessed;
+            interval = remainingRecords * previousInterval / recordsProcessedSinceLastCheck / 2;
+        } else if (expectedRecords > 0) {
+            // all expected records are processed, the job should be done any moment
+            interval = 0;
+        } else {
+            interval = steadyInterval;
+        }
+        final long minInterval = Math.min(Config.MIN_BULK_API_CHECK_STATUS_INTERVAL, maxInterval);
+        return Math.max(minInterval, Math.min(interval, maxInterval));
+    }
+
+    /**
+     * Handle to a job whose status is being checked.
+     */
+    class TrackedJob implements Runnable {
+        private final Callable<JobInfo> statusCheck;
+        private final Predicate<JobInfo> isCompleted;
+        private final long expectedRecords;
+        private final long steadyInterval;
+        private final long maxInterval;
+        private final int maxAttempts;
+        private final CompletableFuture<JobInfo> completion = new CompletableFuture<JobInfo>();
+
+        private volatile JobInfo latestStatus;
+        private long interval;
+        private int failedAttempts = 0;
+        private ScheduledFuture<?> nextCheck;
+
+        private TrackedJob(Callable<JobInfo> statusCheck, Predicate<JobInfo> isCompleted, long expectedRecords,
+                long steadyInterval, long maxInterval, int maxAttempts) {
+            this.statusCheck = statusCheck;
+            this.isCompleted = isCompleted;
+            this.expectedRecords = expectedRecords;
+            this.steadyInterval = steadyInterval;
+            this.maxInterval = maxInterval;
+            this.maxAttempts = maxAttempts;
+            this.interval = nextInterval(0, 0, 0, 0, steadyInterval, maxInterval);
+        }
+
+        /**
+         * @return future completed with the final status of the job
+         */
+        CompletableFuture<JobInfo> getCompletion() {
+            return this.completion;
+        }
+
+        /**
+         * @return the status seen by the most recent check, or null if the job was not checked yet
+         */
+        JobInfo getLatestStatus() {
+            return this.latestStatus;
+        }
+
+        synchronized void cancel() {
+            this.completion.cancel(false);
+            if (this.nextCheck != null) {
+                this.nextCheck.cancel(false);
+            }
+        }
+
+        private synchronized void schedule(long delay) {
+            if (!this.completion.isDone()) {
+                this.nextCheck = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (this.completion.isDone()) {
+                return;
+            }
+            final JobInfo previousStatus = this.latestStatus;
+            final JobInfo status;
+            try {
+                status = this.statusCheck.call();
+            } catch (Exception e) {
+                if (++this.failedAttempts >= this.maxAttempts) {
+                    this.completion.completeExceptionally(e);
+                } else {
+                    logger.warn("Failed to get job status, will retry: " + e.getMessage());
+                    schedule(this.interval);
+                }
+                return;
+            }
+            this.failedAttempts = 0;
+            this.latestStatus = status;
+            if (this.isCompleted.test(status)) {
+                this.completion.complete(status);
+                return;
+            }
+            final long recordsProcessed = status.getNumberRecordsProcessed();
+            final long recordsBefore = previousStatus == null ? 0 : previousStatus.getNumberRecordsProcessed();
+            this.interval = nextInterval(this.interval, recordsProcessed - recordsBefore, recordsProcessed,
+                    this.expectedRecords, this.steadyInterval, this.maxInterval);
+            logger.debug("Next status check of job " + status.getId() + " in " + this.interval + " msec");
+            schedule(this.interval);
+        }
+    }
+}
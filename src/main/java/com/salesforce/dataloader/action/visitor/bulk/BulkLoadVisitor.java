@@ -26,30 +26,28 @@
 
 package com.salesforce.dataloader.action.visitor.bulk;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
-import java.io.RandomAccessFile;
-import java.nio.charset.Charset;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TimeZone;
 import java.util.TreeSet;
-import java.util.stream.Stream;
+import java.util.function.Function;
 
 import org.apache.commons.beanutils.DynaBean;
 import org.apache.commons.beanutils.DynaProperty;
@@ -58,31 +56,31 @@ import org.apache.logging.log4j.LogManager;
 
 import com.salesforce.dataloader.action.progress.ILoaderProgress;
 import com.salesforce.dataloader.action.visitor.DAOLoadVisitor;
+import com.salesforce.dataloader.action.visitor.RowRetryQueue;
 import com.salesforce.dataloader.client.DescribeRefObject;
 import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
-import com.salesforce.dataloader.dao.DataReader;
+import com.salesforce.dataloader.dao.DAORowCache;
 import com.salesforce.dataloader.dao.DataWriter;
-import com.salesforce.dataloader.dao.csv.CSVFileReader;
+import com.salesforce.dataloader.dao.csv.CSVTokenizer;
 import com.salesforce.dataloader.dyna.ParentIdLookupFieldFormatter;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
-import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
 import com.salesforce.dataloader.exception.LoadException;
 import com.salesforce.dataloader.exception.LoadExceptionOnServer;
 import com.salesforce.dataloader.exception.OperationException;
+import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.exception.RelationshipFormatException;
 import com.salesforce.dataloader.model.NACalendarValue;
 import com.salesforce.dataloader.model.NADateOnlyCalendarValue;
 import com.salesforce.dataloader.model.NATextValue;
 import com.salesforce.dataloader.model.Row;
 import com.salesforce.dataloader.util.AppUtil;
-import com.salesforce.dataloader.util.DAORowUtil;
 import com.sforce.async.AsyncApiException;
 import com.sforce.async.AsyncExceptionCode;
 import com.sforce.async.BatchInfo;
 import com.sforce.async.BatchStateEnum;
-import com.sforce.async.CSVReader;
+import com.sforce.ws.ConnectionException;
 
 /**
  * Visitor for operations using the bulk API client
@@ -100,17 +98,26 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
     private static final String CREATED_RESULT_COL = "Created";
 
     private final boolean isDelete;
-    private static final DateFormat DATE_FMT;
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+            .withZone(ZoneOffset.UTC);
     private int batchCountForJob = 0;
 
-    static {
-        DATE_FMT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-        DATE_FMT.setTimeZone(TimeZone.getTimeZone("GMT"));
-    }
     private final BulkApiVisitorUtil jobUtil;
+    // set when a Bulk API 2.0 load is split across several concurrent jobs
+    private final BulkV2LoadJobGroup parallelJobs;
 
     // This keeps track of all the batches we send in order so that we know whats what when processsing results
     private final List<BatchData> allBatchesInOrder = new ArrayList<BatchData>();
+    // set when rows are not cached, the rows sent to the server are journaled to match them with their results
+    private final BulkResultJournal resultJournal;
+    // DAO rows of the dynabeans in the batch being built, and how many of them were sent to the server
+    private final List<Row> batchDaoRows = new ArrayList<Row>();
+    private final List<Integer> batchDaoRowNumbers = new ArrayList<Integer>();
+    private int journaledBatchRows = 0;
+    // set for Bulk API 1.0 loads that load rows rejected with a transient error again
+    private final RowRetryQueue<RetryRow> rowRetryQueue;
+    // rows of the batch being processed whose result was written or that were queued to be loaded again
+    private int processedRowsInBatch = 0;
     
     /** DataLoader uses this to help match batch results from SFDC to the rows in our input */
     private class BatchData {
@@ -138,19 +145,65 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
         final String error;
     }
 
+    /** A row rejected with a transient error along with the error */
+    private static class RetryRow {
+        final Row row;
+        final String error;
+
+        RetryRow(Row row, String error) {
+            this.row = row;
+            this.error = error;
+        }
+    }
+
     public BulkLoadVisitor(Controller controller, ILoaderProgress monitor, DataWriter successWriter,
             DataWriter errorWriter) {
+        this(controller, monitor, successWriter, errorWriter, visitor -> new BulkApiVisitorUtil(
+                visitor.getController(), visitor.getProgressMonitor(), visitor.getRateCalculator()));
+    }
+
+    // tests that run without a server create a mock job util
+    BulkLoadVisitor(Controller controller, ILoaderProgress monitor, DataWriter successWriter,
+            DataWriter errorWriter, Function<BulkLoadVisitor, BulkApiVisitorUtil> jobUtilFactory) {
         super(controller, monitor, successWriter, errorWriter);
         this.isDelete = getController().getConfig().getOperationInfo().isDelete();
-        this.jobUtil = new BulkApiVisitorUtil(getController(), getProgressMonitor(), getRateCalculator());
+        // rows are kept until the end of the job to match them with their results
+        this.daoRowList = new DAORowCache();
+        this.jobUtil = jobUtilFactory.apply(this);
+        final int maxConcurrentJobs = getMaxConcurrentBulkV2Jobs();
+        this.parallelJobs = maxConcurrentJobs > 1
+                ? new BulkV2LoadJobGroup(getController(), getProgressMonitor(), getRateCalculator(), maxConcurrentJobs)
+                : null;
+        this.resultJournal = !getConfig().isBulkV2APIEnabled()
+                && !getConfig().getBoolean(Config.PROCESS_BULK_CACHE_DATA_FROM_DAO)
+                ? new BulkResultJournal(this.columnNames)
+                : null;
+        this.rowRetryQueue = getConfig().isBulkV2APIEnabled() ? null : createRowRetryQueue();
+    }
+
+    private int getMaxConcurrentBulkV2Jobs() {
+        if (!getConfig().isBulkV2APIEnabled()) {
+            return 1;
+        }
+        int maxConcurrentJobs = 1;
+        try {
+            maxConcurrentJobs = getConfig().getInt(Config.BULKV2_LOAD_MAX_CONCURRENT_JOBS);
+        } catch (ParameterLoadException e) {
+            logger.warn("Incorrectly configured " + Config.BULKV2_LOAD_MAX_CONCURRENT_JOBS);
+        }
+        if (maxConcurrentJobs < 1) {
+            return 1;
+        }
+        return Math.min(maxConcurrentJobs, Config.MAX_BULKV2_LOAD_CONCURRENT_JOBS);
     }
 
     @Override
     protected void loadBatch() throws DataAccessObjectException, OperationException {
         try {
-            if (!this.jobUtil.hasJob()) this.jobUtil.createJob();
+            if (this.parallelJobs == null && !this.jobUtil.hasJob()) this.jobUtil.createJob();
             createBatches();
             clearArrays();
+            clearBatchDaoRows();
         } catch (final AsyncApiException e) {
             handleException(e);
         } catch (final IOException e) {
@@ -179,18 +232,58 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
         return null;
     }
 
+    @Override
+    protected void rowAddedToBatch(Row row, int daoRowNumber) {
+        if (this.resultJournal != null) {
+            this.batchDaoRows.add(row);
+            this.batchDaoRowNumbers.add(daoRowNumber);
+        }
+    }
+
+    private void clearBatchDaoRows() {
+        this.batchDaoRows.clear();
+        this.batchDaoRowNumbers.clear();
+        this.journaledBatchRows = 0;
+    }
+
+    /**
+     * Journals the next rows of the batch being built, which were sent in the given batch.
+     */
+    private void journalBatchRows(int batchIndex, int numRecords) throws IOException {
+        for (int position = 0; position < numRecords; position++) {
+            final int rowIndex = this.journaledBatchRows + position;
+            this.resultJournal.append(this.batchDaoRowNumbers.get(rowIndex), batchIndex, position,
+                    this.batchDaoRows.get(rowIndex));
+        }
+        this.journaledBatchRows += numRecords;
+    }
+
     private void createBatches() throws OperationException, IOException, AsyncApiException {
-        final ByteArrayOutputStream os = new ByteArrayOutputStream(dynaArraySize);
-        final PrintStream out = new PrintStream(os, true, Config.BULK_API_ENCODING);
-        doOneBatch(out, os, this.dynaArray);
+        doOneBatch(this.dynaArray);
+    }
+
+    private BulkBatchBuffer newBatchBuffer() {
+        return new BulkBatchBuffer(dynaArraySize, Config.MAX_BULK_API_BATCH_MEMORY_BUFFER_BYTES);
+    }
+
+    private void doOneBatch(List<DynaBean> rows) throws OperationException, AsyncApiException, IOException {
+        BulkBatchBuffer batchBuffer = newBatchBuffer();
+        try {
+            doOneBatch(batchBuffer, rows);
+        } finally {
+            // discards the content of a batch that was not uploaded
+            batchBuffer.close();
+        }
     }
 
-    private void doOneBatch(PrintStream out, ByteArrayOutputStream os, List<DynaBean> rows) throws OperationException,
-            AsyncApiException {
+    private void doOneBatch(BulkBatchBuffer batchBuffer, List<DynaBean> rows) throws OperationException,
+            AsyncApiException, IOException {
+        PrintStream out = new PrintStream(batchBuffer, false, Config.BULK_API_ENCODING);
         int processedRecordsCount = 0;
         final List<String> userColumns = getController().getDao().getColumnNames();
         List<String> headerColumns = null;
         int maxBatchBytes = this.getConfig().isBulkV2APIEnabled() ? Config.MAX_BULKV2_API_IMPORT_JOB_BYTES : Config.MAX_BULK_API_IMPORT_BATCH_BYTES;
+        int maxBatchRows = getMaxRowsPerParallelJob(rows.size());
         long startTime = System.currentTimeMillis();
         long measureTime = System.currentTimeMillis();
         long elapsedTime = measureTime - startTime;
@@ -204,6 +297,14 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
                 elapsedTime = System.currentTimeMillis() - measureTime;
                 logger.debug("rows.get() invocation time after processing 10k records is " + elapsedTime + " msec");
             }
+            final int groupSize = getGroupSize(i);
+            if (groupSize > 1 && processedRecordsCount > 0 && (processedRecordsCount + groupSize > maxBatchRows
+                    || batchBuffer.size() + batchBuffer.size() / processedRecordsCount * groupSize > maxBatchBytes)) {
+                // the rows of the next parent would not fit, the size of their content is estimated from the rows
+                // written so far. A parent with more rows than fit in a batch is still split
+                createBatch(batchBuffer, processedRecordsCount);
+                processedRecordsCount = 0;
+            }
             if (processedRecordsCount == 0) {
                 headerColumns = addBatchRequestHeader(out, row, userColumns);
             }
@@ -215,18 +316,28 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
             }
             processedRecordsCount++;
 
-            if (os.size() > maxBatchBytes) {
-            	createBatch(os, processedRecordsCount); // resets outputstream
+            if (batchBuffer.size() > maxBatchBytes || processedRecordsCount >= maxBatchRows) {
+                createBatch(batchBuffer, processedRecordsCount); // resets the buffer
                 // reset for the next batch
-            	processedRecordsCount = 0;
+                processedRecordsCount = 0;
             }
             if (processedRecordsCount % timeMeasureGap == 0) {
                 logger.debug("loop processing time after processing 10k records is " + (System.currentTimeMillis() - loopStartTime) + " msec");
                 logger.debug("total processed = " + processedRecordsCount + "\n\n");
             }
         }
-        if (processedRecordsCount > 0) createBatch(os, processedRecordsCount);
-        this.jobUtil.periodicCheckStatus();
+        if (processedRecordsCount > 0) createBatch(batchBuffer, processedRecordsCount);
+        if (this.parallelJobs == null) this.jobUtil.periodicCheckStatus();
+    }
+
+    // spread the rows evenly over the concurrent jobs, without making the jobs too small to be worth it
+    private int getMaxRowsPerParallelJob(int numRows) {
+        if (this.parallelJobs == null) {
+            return Integer.MAX_VALUE;
+        }
+        final int maxConcurrentJobs = getMaxConcurrentBulkV2Jobs();
+        final int rowsPerJob = (numRows + maxConcurrentJobs - 1) / maxConcurrentJobs;
+        return Math.max(rowsPerJob, Config.MIN_BULKV2_LOAD_ROWS_PER_JOB);
     }
 
     private void writeRow(DynaBean row, PrintStream out, int recordsInBatch,
@@ -249,7 +360,7 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
             if (fieldValue instanceof NACalendarValue || fieldValue instanceof NADateOnlyCalendarValue) {
                 col = fieldValue.toString();
             } else if (fieldValue instanceof Calendar) {
-                col = DATE_FMT.format(((Calendar) fieldValue).getTime());
+                col = DATE_FMT.format(((Calendar) fieldValue).toInstant());
             } else if (fieldValue instanceof byte[]) {
                 if (!getController().attachmentsEnabled())
                     throw new LoadException(Messages.getMessage("FinishPage", "cannotMapBase64ForBulkApi", fieldName));
@@ -343,21 +454,18 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
         addedCols.add(sfdcColumn);
     }
 
-    private void writeServerLoadBatchDataToCSV(ByteArrayOutputStream os) {
+    private void writeServerLoadBatchDataToCSV(BulkBatchBuffer batchBuffer) {
         String filenamePrefix = "uploadedToServer";
         String filename = generateBatchCSVFilename(filenamePrefix, batchCountForJob);
         File uploadedToServerCSVFile = new File(filename);
-        final byte[] request = os.toByteArray();
-        try {
-            FileOutputStream outputStream = new FileOutputStream(uploadedToServerCSVFile);
-            outputStream.write(request);
-            outputStream.close();
+        try (InputStream request = batchBuffer.getInputStream()) {
+            Files.copy(request, uploadedToServerCSVFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
         } catch (Exception ex) {
             logger.info("unable to create file " + filename);
         }
     }
     
-    private void writeRawResultsToCSV(CSVReader serverResultsReader, int batchNum) {
+    private void writeRawResultsToCSV(CSVTokenizer serverResultsReader, int batchNum) {
         String filenamePrefix = "rawResultsFromServer";
         String filename = generateBatchCSVFilename(filenamePrefix, batchNum);
         File rawBatchResultsCSVFile = new File(filename);
@@ -395,30 +503,52 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
                 + controller.getFormattedCurrentTimestamp() + ".csv";
     }
 
-    private void createBatch(ByteArrayOutputStream os, int numRecords) throws AsyncApiException {
+    private void createBatch(BulkBatchBuffer batchBuffer, int numRecords) throws AsyncApiException, IOException {
         if (numRecords <= 0) return;
-        final byte[] request = os.toByteArray();
         if (controller.getConfig().getBoolean(Config.SAVE_BULK_SERVER_LOAD_AND_RAW_RESULTS_IN_CSV)) {
             this.batchCountForJob++;
-            writeServerLoadBatchDataToCSV(os);
+            writeServerLoadBatchDataToCSV(batchBuffer);
+        }
+        if (this.parallelJobs != null) {
+            // the job runs in the background and takes over the content of the batch
+            this.parallelJobs.submit(batchBuffer.detachContent(), numRecords);
+            return;
+        }
+        try (InputStream request = batchBuffer.getInputStream()) {
+            BatchInfo bi = this.jobUtil.createBatch(request, numRecords);
+            this.allBatchesInOrder.add(new BatchData(bi.getId(), numRecords));
+            if (this.resultJournal != null) {
+                journalBatchRows(this.allBatchesInOrder.size() - 1, numRecords);
+            }
+        } finally {
+            batchBuffer.close();
         }
-        os.reset();
-        BatchInfo bi = this.jobUtil.createBatch(new ByteArrayInputStream(request, 0, request.length));
-        this.allBatchesInOrder.add(new BatchData(bi.getId(), numRecords));
     }
 
     @Override
     public void flushRemaining() throws OperationException, DataAccessObjectException {
         super.flushRemaining();
-        if (this.jobUtil.hasJob()) {
+        if (this.parallelJobs != null) {
+            try {
+                if (this.parallelJobs.hasJobs()) {
+                    getResults();
+                }
+            } catch (AsyncApiException e) {
+                throw new LoadException("Failed to get batch results", e);
+            } finally {
+                this.parallelJobs.shutdown();
+            }
+        } else if (this.jobUtil.hasJob()) {
             try {
                 this.jobUtil.awaitCompletionAndCloseJob();
             } catch (final AsyncApiException e) {
                 logger.warn("Failed to close job", e);
             }
             try {
-            	if (this.getConfig().isBulkAPIEnabled() || this.getConfig().isBulkV2APIEnabled())
-                getResults();
+                if (this.getConfig().isBulkAPIEnabled() || this.getConfig().isBulkV2APIEnabled()) {
+                    getResults();
+                    loadRequeuedRows();
+                }
             } catch (AsyncApiException e) {
                 throw new LoadException("Failed to get batch results", e);
             }
@@ -426,36 +556,19 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
     }
     
     private long transferCSVContent(String fromFileName, String toFileName) throws OperationException {
-        RandomAccessFile fromFile, toFile;
-        long contentRowCount = 0;
-		try {
-			fromFile = new RandomAccessFile(fromFileName, "rw");
-			toFile = new RandomAccessFile(toFileName, "rw");
-			//first line is the header row                                  
-			fromFile.readLine();
-			toFile.readLine();
-
-			// go to end of to file
-			while (toFile.readLine() != null) {
-				contentRowCount++;
-			}
-			String contentRow = null;
-			while ((contentRow = fromFile.readLine()) != null) {
-				contentRow += System.lineSeparator();
-				toFile.write(contentRow.getBytes());
-				contentRowCount++;
-			}
-			toFile.close();
-			
-			// truncate the fromFile
-			fromFile.setLength(0);
-			fromFile.close();
-			return contentRowCount;
-		} catch (FileNotFoundException e) {
-			throw new OperationException(e.getMessage());
-		} catch (IOException e) {
-			throw new OperationException(e.getMessage());
-		}          
+        try {
+            //first line is the header row of both files
+            long contentRowCount = BulkResultFiles.countRecords(Path.of(toFileName));
+            contentRowCount += BulkResultFiles.save(FileChannel.open(Path.of(fromFileName), StandardOpenOption.READ),
+                    toFileName, true, true);
+            // truncate the fromFile
+            try (FileChannel fromFile = FileChannel.open(Path.of(fromFileName), StandardOpenOption.WRITE)) {
+                fromFile.truncate(0);
+            }
+            return contentRowCount;
+        } catch (IOException e) {
+            throw new OperationException(e.getMessage());
+        }
     }
 
     private void getBulkV2LoadJobResults() throws AsyncApiException, OperationException, DataAccessObjectException {
@@ -469,24 +582,20 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
     	// for Config.OUTPUT_UNPROCESSED_RECORDS
     	// String unprocessedRecordsWriterFile = config.getString(Config.OUTPUT_UNPROCESSED_RECORDS);
 
-    	this.jobUtil.getBulkV2LoadSuccessResults(successWriterFile);
-    	Charset csvCharset = Charset.forName(config.getCsvEncoding(true));
-    	try (Stream<String> lines = Files.lines(Path.of(successWriterFile), csvCharset)) {
-    	    // subtract 1 from number of lines to account for the header row
-            this.setSuccesses(lines.count()-1);
-    	} catch (IOException e) {
-            CSVFileReader csvReader = new CSVFileReader(new File(successWriterFile), config, true, false);
-            this.setSuccesses(csvReader.getTotalRows());
-        }
-    	
-    	this.jobUtil.getBulkV2LoadErrorResults(errorWriterFile);
-        try (Stream<String> lines = Files.lines(Path.of(errorWriterFile), csvCharset)) {
-            // subtract 1 from number of lines to account for the header row
-            this.setErrors(lines.count()-1);
-        } catch (IOException e) {
-            CSVFileReader csvReader = new CSVFileReader(new File(errorWriterFile), config, true, false);
-            this.setErrors(csvReader.getTotalRows());
-        }
+    	// the results are counted while they are saved
+    	long numSuccesses;
+    	long numErrors;
+    	if (this.parallelJobs != null) {
+    	    this.parallelJobs.awaitCompletionAndSaveResults(successWriterFile, errorWriterFile);
+    	    numSuccesses = this.parallelJobs.getSavedSuccesses();
+    	    numErrors = this.parallelJobs.getSavedErrors();
+    	} else {
+    	    numSuccesses = this.jobUtil.getBulkV2LoadSuccessResults(successWriterFile);
+    	    numErrors = this.jobUtil.getBulkV2LoadErrorResults(errorWriterFile);
+    	}
+    	this.setSuccesses(numSuccesses);
+    	// rows that failed before the upload were written to the error file already
+    	this.setErrors(getNumberErrors() + numErrors);
 
         // TODO for unprocessed records
     	// this.jobUtil.getBulkV2LoadUnprocessedRecords(tmpFileName);
@@ -501,35 +610,228 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
         	getBulkV2LoadJobResults();
         	return;
         }
-        DataReader dataReader = null;
-        if (!controller.getConfig().getBoolean(Config.PROCESS_BULK_CACHE_DATA_FROM_DAO)) {
-            dataReader = resetDAO();
-        }
         // create a map of batch infos by batch id. Each batchinfo has the final processing state of the batch
         final Map<String, BatchInfo> batchInfoMap = createBatchInfoMap();
 
         // go through all the batches we sent to sfdc in the same order and process the batch results for
-        // each one by looking them up in batchInfoMap
+        // each one by looking them up in batchInfoMap. The results of the following batches are downloaded
+        // while a batch is processed.
         this.batchCountForJob = 0;
-        int uploadedRowCount = 0;
-        for (final BatchData clientBatchInfo : this.allBatchesInOrder) {
-            processResults(dataReader, 
-                    batchInfoMap.get(clientBatchInfo.batchId), clientBatchInfo, uploadedRowCount);
-            uploadedRowCount += clientBatchInfo.numRows;
+        final BulkQueryResultDownloader downloader = new BulkQueryResultDownloader(
+                getMaxConcurrentResultDownloads(), "bulkLoadResults");
+        BulkResultJournal.Reader journalReader = null;
+        try {
+            if (this.resultJournal != null && this.resultJournal.size() > 0) {
+                journalReader = this.resultJournal.openReader();
+            }
+            int uploadedRowCount = 0;
+            int submittedBatches = 0;
+            for (int batchIndex = 0; batchIndex < this.allBatchesInOrder.size(); batchIndex++) {
+                for (; submittedBatches < this.allBatchesInOrder.size()
+                        && (submittedBatches <= batchIndex || !downloader.isFull()); submittedBatches++) {
+                    final BatchInfo batch = batchInfoMap.get(this.allBatchesInOrder.get(submittedBatches).batchId);
+                    if (hasResults(batch)) {
+                        downloader.submit(() -> this.jobUtil.getBatchResultStream(batch.getId()));
+                    }
+                }
+                final BatchData clientBatchInfo = this.allBatchesInOrder.get(batchIndex);
+                final List<Row> rows = journalReader != null
+                        ? getJournaledRows(journalReader, clientBatchInfo, batchIndex)
+                        : getCachedRows(clientBatchInfo, uploadedRowCount);
+                uploadedRowCount += clientBatchInfo.numRows;
+                processResults(batchInfoMap.get(clientBatchInfo.batchId), clientBatchInfo, rows, downloader);
+            }
+        } catch (IOException e) {
+            throw new LoadException("IOException while reading batch results", e);
+        } finally {
+            downloader.shutdown();
+            if (journalReader != null) {
+                try {
+                    journalReader.close();
+                } catch (IOException e) {
+                    // the journal is deleted anyway
+                }
+            }
+            if (this.resultJournal != null) {
+                this.resultJournal.close();
+            }
         }
     }
-    
+
+    /**
+     * Loads the rows rejected with a transient error again in new jobs, until they are loaded, fail
+     * with another error or were loaded again as many times as configured.
+     */
+    private void loadRequeuedRows() throws AsyncApiException, OperationException, DataAccessObjectException {
+        if (this.rowRetryQueue == null) {
+            return;
+        }
+        List<List<RetryRow>> retryBatches = Collections.emptyList();
+        int processedBatches = 0;
+        try {
+            while (!this.rowRetryQueue.isEmpty() && sleepBeforeRowRetry(this.rowRetryQueue.getRetryNum())) {
+                retryBatches = this.rowRetryQueue.takeBatches();
+                processedBatches = 0;
+                this.processedRowsInBatch = 0;
+                this.jobUtil.createRetryJob(getConfig().getBoolean(Config.LOAD_ROW_RETRY_SERIAL_MODE));
+                final List<BatchData> retryBatchData = new ArrayList<BatchData>(retryBatches.size());
+                for (List<RetryRow> retryBatch : retryBatches) {
+                    retryBatchData.add(createRetryBatch(retryBatch));
+                }
+                this.jobUtil.awaitCompletionAndCloseJob();
+
+                final Map<String, BatchInfo> batchInfoMap = createBatchInfoMap();
+                final BulkQueryResultDownloader downloader = new BulkQueryResultDownloader(1, "bulkLoadRetryResults");
+                try {
+                    for (; processedBatches < retryBatches.size(); processedBatches++) {
+                        this.processedRowsInBatch = 0;
+                        final BatchData clientBatchInfo = retryBatchData.get(processedBatches);
+                        if (clientBatchInfo == null) {
+                            // none of the rows of the batch could be converted again
+                            continue;
+                        }
+                        final BatchInfo batch = batchInfoMap.get(clientBatchInfo.batchId);
+                        if (hasResults(batch)) {
+                            downloader.submit(() -> this.jobUtil.getBatchResultStream(batch.getId()));
+                        }
+                        final List<Row> rows = new ArrayList<Row>(clientBatchInfo.numRows);
+                        for (RetryRow retryRow : retryBatches.get(processedBatches)) {
+                            rows.add(retryRow.row);
+                        }
+                        processResults(batch, clientBatchInfo, rows, downloader);
+                    }
+                } finally {
+                    downloader.shutdown();
+                }
+            }
+        } catch (IOException e) {
+            throw new LoadException("IOException while loading rows again", e);
+        } finally {
+            // rows that are not loaded again keep the error they were rejected with. The rows of the batch
+            // being processed that already have a result are skipped, their result was written
+            for (int i = processedBatches; i < retryBatches.size(); i++) {
+                final List<RetryRow> retryBatch = retryBatches.get(i);
+                for (int j = i == processedBatches ? this.processedRowsInBatch : 0; j < retryBatch.size(); j++) {
+                    writeError(retryBatch.get(j).row, parseAsyncApiError(retryBatch.get(j).error));
+                }
+            }
+            for (RetryRow retryRow : this.rowRetryQueue.takeAll()) {
+                writeError(retryRow.row, parseAsyncApiError(retryRow.error));
+            }
+        }
+    }
+
+    /**
+     * Creates a batch that loads the rows of a retry batch again. The rows are converted again, as the dynabeans
+     * are not kept once a batch is uploaded. A row that cannot be converted again has its error written and is
+     * removed from the retry batch.
+     *
+     * @return the batch, null if none of the rows could be converted again
+     */
+    private BatchData createRetryBatch(List<RetryRow> retryBatch) throws OperationException, AsyncApiException,
+            IOException, DataAccessObjectException {
+        final List<DynaBean> dynaBeans = new ArrayList<DynaBean>(retryBatch.size());
+        try {
+            for (Iterator<RetryRow> retryRows = retryBatch.iterator(); retryRows.hasNext();) {
+                final RetryRow retryRow = retryRows.next();
+                final ConvertedRow convertedRow = convertRow(retryRow.row);
+                if (convertedRow.getDynaBean() == null) {
+                    writeError(retryRow.row, convertedRow.getConversionError() != null
+                            ? convertedRow.getConversionError() : parseAsyncApiError(retryRow.error));
+                    retryRows.remove();
+                } else {
+                    dynaBeans.add(convertedRow.getDynaBean());
+                }
+            }
+        } catch (ConnectionException e) {
+            handleException(e);
+        }
+        if (dynaBeans.isEmpty()) {
+            return null;
+        }
+        try (BulkBatchBuffer batchBuffer = new BulkBatchBuffer(0, Config.MAX_BULK_API_BATCH_MEMORY_BUFFER_BYTES)) {
+            final PrintStream out = new PrintStream(batchBuffer, false, Config.BULK_API_ENCODING);
+            final List<String> headerColumns = addBatchRequestHeader(out, dynaBeans.get(0),
+                    getController().getDao().getColumnNames());
+            for (int i = 0; i < dynaBeans.size(); i++) {
+                writeRow(dynaBeans.get(i), out, i, headerColumns);
+            }
+            out.flush();
+            try (InputStream request = batchBuffer.getInputStream()) {
+                final BatchInfo bi = this.jobUtil.createBatch(request, dynaBeans.size());
+                return new BatchData(bi.getId(), dynaBeans.size());
+            }
+        }
+    }
+
+    private int getMaxConcurrentResultDownloads() {
+        int maxConcurrentDownloads = Config.DEFAULT_BULK_LOAD_MAX_CONCURRENT_RESULT_DOWNLOADS;
+        try {
+            maxConcurrentDownloads = getConfig().getInt(Config.BULK_LOAD_MAX_CONCURRENT_RESULT_DOWNLOADS);
+        } catch (ParameterLoadException e) {
+            logger.warn("Incorrectly configured " + Config.BULK_LOAD_MAX_CONCURRENT_RESULT_DOWNLOADS);
+        }
+        if (maxConcurrentDownloads < 1) {
+            return 1;
+        }
+        return Math.min(maxConcurrentDownloads, Config.MAX_BULK_LOAD_CONCURRENT_RESULT_DOWNLOADS);
+    }
+
+    /**
+     * @return the journaled DAO rows that were sent in the batch
+     */
+    private List<Row> getJournaledRows(BulkResultJournal.Reader journalReader, BatchData clientBatchInfo,
+            int batchIndex) throws IOException, LoadException {
+        final List<Row> rows = new ArrayList<Row>(clientBatchInfo.numRows);
+        for (int position = 0; position < clientBatchInfo.numRows; position++) {
+            final BulkResultJournal.Entry entry = journalReader.next();
+            if (entry == null) {
+                sanityCheckError(clientBatchInfo.batchId, "No journaled row at position " + position);
+            } else if (entry.batchIndex != batchIndex || entry.positionInBatch != position) {
+                sanityCheckError(clientBatchInfo.batchId, "Journaled row " + entry.daoRowNumber
+                        + " was expected at position " + position);
+            }
+            rows.add(entry.row);
+        }
+        return rows;
+    }
 
     private int firstDAORowForCurrentBatch = 0;
 
-    private void processResults(final DataReader dataReader, final BatchInfo batch, 
-            BatchData clientBatchInfo, final int firstRowInBatch)
-            throws LoadException, DataAccessObjectException, AsyncApiException {
-        // For Bulk API, we don't save any success or error until the end,
-        // so we have to go through the original CSV from the beginning while
-        // we go through the results from the server.
-        // TODO we should save the ACTUAL rows/batches sent to the server
+    /**
+     * @return the cached DAO rows that were sent in the batch
+     */
+    private List<Row> getCachedRows(BatchData clientBatchInfo, final int firstRowInBatch) {
+        int lastRowInCurrentBatch = firstRowInBatch + clientBatchInfo.numRows - 1;
+        int lastDAORowForCurrentBatch = this.batchRowToDAORowList.get(lastRowInCurrentBatch);
+
+        final List<Row> rows = new ArrayList<Row>(clientBatchInfo.numRows);
+        for (int i = this.firstDAORowForCurrentBatch; i <= lastDAORowForCurrentBatch; i++) {
+            final Row row = this.daoRowList.get(i);
+            if (isRowConversionSuccessful()) {
+                rows.add(row);
+            }
+            // otherwise this DAO row failed to convert and was not part of the batch sent to the server
+        }
+        // update to process the next batch
+        this.firstDAORowForCurrentBatch = lastDAORowForCurrentBatch + 1;
+        return rows;
+    }
+
+    /**
+     * @return true if the server has results for the rows of the batch
+     */
+    private static boolean hasResults(BatchInfo batch) {
+        return batch.getState() == BatchStateEnum.Completed || batch.getNumberRecordsProcessed() > 0;
+    }
 
+    /**
+     * @param rows DAO rows sent in the batch, in the order they were sent
+     * @param downloader downloads of the batch results, the oldest one is for this batch if it has results
+     */
+    private void processResults(final BatchInfo batch, BatchData clientBatchInfo, final List<Row> rows,
+            BulkQueryResultDownloader downloader)
+            throws LoadException, DataAccessObjectException, AsyncApiException, IOException {
         // do some basic checks to make sure we are matching up the batches correctly
         sanityCheckBatch(clientBatchInfo, batch);
 
@@ -538,39 +840,21 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
         final String errorMessage = stateMessage == null ? null : Messages.getMessage(getClass(), "batchError",
                 stateMessage);
 
-        int lastRowInCurrentBatch = firstRowInBatch + clientBatchInfo.numRows - 1;
-        int lastDAORowForCurrentBatch = this.batchRowToDAORowList.get(lastRowInCurrentBatch);
-        
-        final int totalRowsInDAOInCurrentBatch = lastDAORowForCurrentBatch - this.firstDAORowForCurrentBatch + 1;
-        List<Row> rows;
-        if (controller.getConfig().getBoolean(Config.PROCESS_BULK_CACHE_DATA_FROM_DAO)) {
-            rows = new ArrayList<Row>();
-            for (int i=0; i<totalRowsInDAOInCurrentBatch; i++) {
-                rows.add(i, this.daoRowList.get(i + this.firstDAORowForCurrentBatch));
-            }
-        } else {
-            rows = dataReader.readRowList(totalRowsInDAOInCurrentBatch);
-        }
-        if (batch.getState() == BatchStateEnum.Completed || batch.getNumberRecordsProcessed() > 0) {
-            try {
-                processBatchResults(batch, errorMessage, batch.getState(), rows, this.firstDAORowForCurrentBatch);
-            } catch (IOException e) {
-                throw new LoadException("IOException while reading batch results", e);
+        if (hasResults(batch)) {
+            try (CSVTokenizer resultRdr = new CSVTokenizer(downloader.takeOldest(), Config.BULK_API_ENCODING)) {
+                processBatchResults(batch, errorMessage, batch.getState(), rows, resultRdr);
             }
         } else {
             for (final Row row : rows) {
                 writeError(row, errorMessage);
+                this.processedRowsInBatch++;
             }
         }
-        // update to process the next batch
-        this.firstDAORowForCurrentBatch = lastDAORowForCurrentBatch + 1;
     }
 
     private void processBatchResults(final BatchInfo batch, final String errorMessage, 
-            final BatchStateEnum state, final List<Row> rows, final int firstDataReaderRowInBatch) throws DataAccessObjectException, IOException, AsyncApiException {
-
-        // get the batch csv result stream from sfdc
-        final CSVReader resultRdr = this.jobUtil.getBatchResults(batch.getId());
+            final BatchStateEnum state, final List<Row> rows, final CSVTokenizer resultRdr)
+            throws DataAccessObjectException, IOException, AsyncApiException {
 
         if (controller.getConfig().getBoolean(Config.SAVE_BULK_SERVER_LOAD_AND_RAW_RESULTS_IN_CSV)) {
             this.batchCountForJob++;
@@ -585,10 +869,6 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
         hdrIndices = null;
 
         for (final Row row : rows) {
-            boolean conversionSuccessOfRow = isRowConversionSuccessful();
-            if (!conversionSuccessOfRow) {
-                continue; // this DAO row failed to convert and was not part of the batch sent to the server. Go to the next one
-            }
             final List<String> res = resultRdr.nextRecord();
 
             // no result for this column. In this case it failed, and we should use the batch state message
@@ -604,9 +884,25 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
                 // convert the row into a RowResults so its easy to inspect
                 final RowResult rowResult = new RowResult(Boolean.valueOf(res.get(successIdx)), isDelete ? false
                         : Boolean.valueOf(res.get(createdIdx)), res.get(idIdx), res.get(errIdx));
-                writeRowResult(row, rowResult);
+                if (rowResult.success || !requeueRow(row, rowResult.error)) {
+                    writeRowResult(row, rowResult);
+                }
             }
+            this.processedRowsInBatch++;
+        }
+    }
+
+    /**
+     * @return true if the row is loaded again later instead of having its error written
+     */
+    private boolean requeueRow(Row row, String error) {
+        if (this.rowRetryQueue == null || error == null) {
+            return false;
         }
+        // errors start with the status code, as in UNABLE_TO_LOCK_ROW:unable to obtain exclusive access
+        final int statusCodeEnd = error.indexOf(':');
+        return this.rowRetryQueue.offer(new RetryRow(row, error),
+                statusCodeEnd > 0 ? error.substring(0, statusCodeEnd) : null, error);
     }
 
     // returns a map of batchinfos indexed by batch id
@@ -618,16 +914,6 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
         return batchInfoMap;
     }
 
-    private DataReader resetDAO() throws DataAccessObjectInitializationException, LoadException {
-        final DataReader dataReader = (DataReader)getController().getDao();
-        dataReader.close();
-        // TODO: doing this causes sql to be executed twice, for sql we should cache results in a local file
-        dataReader.open();
-        // when re-opening the dao we need to start at the same row in the input
-        DAORowUtil.get().skipRowToStartOffset(getConfig(), dataReader, getProgressMonitor(), true);
-        return dataReader;
-    }
-
     private void writeRowResult(Row row, RowResult resultRow) throws DataAccessObjectException {
         if (resultRow.success) {
             String successMessage;
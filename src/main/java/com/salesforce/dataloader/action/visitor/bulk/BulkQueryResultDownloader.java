@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.AsyncExceptionCode;
+
+/**
+ * Downloads up to a configured number of bulk query or batch result streams at the same time into
+ * temporary files and hands them back in the order in which they were submitted.
+ * 
+ * With a limit of 1, result streams are opened on the calling thread as soon as they are
+ * submitted and handed back without being downloaded first.
+ */
+class BulkQueryResultDownloader {
+
+    interface ResultStreamOpener {
+        InputStream open() throws AsyncApiException;
+    }
+
+    private final int maxConcurrentDownloads;
+    private final ExecutorService executor;
+    private final Deque<Future<InputStream>> pendingDownloads = new ArrayDeque<Future<InputStream>>();
+    private volatile boolean shutdown = false;
+
+    BulkQueryResultDownloader(int maxConcurrentDownloads) {
+        this(maxConcurrentDownloads, "bulkQueryDownload");
+    }
+
+    BulkQueryResultDownloader(int maxConcurrentDownloads, String threadNamePrefix) {
+        this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+        if (this.maxConcurrentDownloads > 1) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(this.maxConcurrentDownloads, r -> {
+                Thread t = new Thread(r, threadNamePrefix + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    void submit(ResultStreamOpener opener) {
+        if (this.executor != null) {
+            this.pendingDownloads.add(this.executor.submit(() -> download(opener)));
+            return;
+        }
+        try {
+            this.pendingDownloads.add(CompletableFuture.completedFuture(opener.open()));
+        } catch (Exception e) {
+            this.pendingDownloads.add(CompletableFuture.failedFuture(e));
+        }
+    }
+
+    /**
+     * @return true if no more result streams should be submitted before the oldest one is taken
+     */
+    boolean isFull() {
+        return this.pendingDownloads.size() >= this.maxConcurrentDownloads;
+    }
+
+    boolean isEmpty() {
+        return this.pendingDownloads.isEmpty();
+    }
+
+    /**
+     * Waits for the oldest result stream to be downloaded. The caller is responsible for closing
+     * the returned stream, which also deletes its temporary file.
+     */
+    InputStream takeOldest() throws AsyncApiException, IOException {
+        final Future<InputStream> oldest = this.pendingDownloads.poll();
+        if (oldest == null) {
+            return null;
+        }
+        try {
+            return oldest.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AsyncApiException("Interrupted while downloading results", AsyncExceptionCode.ClientInputError, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof AsyncApiException) {
+                throw (AsyncApiException)cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Cancels the downloads still in progress and deletes the temporary files of the ones not taken.
+     */
+    void shutdown() {
+        this.shutdown = true;
+        for (Future<InputStream> pending : this.pendingDownloads) {
+            if (!pending.cancel(true)) {
+                try {
+                    pending.get().close();
+                } catch (Exception e) {
+                    // nothing more to clean up
+                }
+            }
+        }
+        this.pendingDownloads.clear();
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    private InputStream download(ResultStreamOpener opener) throws AsyncApiException, IOException {
+        final File resultFile = File.createTempFile("sdlResult", ".csv");
+        boolean downloaded = false;
+        try (InputStream serverResultStream = opener.open();
+                OutputStream resultFileStream = new FileOutputStream(resultFile)) {
+            serverResultStream.transferTo(resultFileStream);
+            downloaded = !this.shutdown;
+        } finally {
+            if (!downloaded) {
+                resultFile.delete();
+            }
+        }
+        if (!downloaded) {
+            throw new IOException("Download of " + resultFile.getName() + " was cancelled");
+        }
+        return new FileInputStream(resultFile) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    resultFile.delete();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves CSV results of Bulk API jobs to files. Content is written through file channels without
+ * being decoded, and its records are counted in the same pass. Records end at line breaks that are
+ * not in a quoted value, so values that span several lines are counted once.
+ */
+final class BulkResultFiles {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private BulkResultFiles() {
+    }
+
+    /** Counts the records of CSV content given in consecutive chunks */
+    private static final class RecordCounter {
+        private boolean inQuotes = false;
+        private boolean recordHasContent = false;
+        private long records = 0;
+
+        /**
+         * Scans the given bytes until the given number of records has been counted.
+         *
+         * @return offset just after the last byte scanned
+         */
+        int scan(byte[] bytes, int from, int to, long maxRecords) {
+            for (int i = from; i < to; i++) {
+                final byte b = bytes[i];
+                if (b == '"') {
+                    // an escaped quote toggles twice
+                    inQuotes = !inQuotes;
+                    recordHasContent = true;
+                } else if (b == '\n' && !inQuotes) {
+                    if (recordHasContent) {
+                        recordHasContent = false;
+                        if (++records >= maxRecords) {
+                            return i + 1;
+                        }
+                    }
+                } else if (b != '\r') {
+                    recordHasContent = true;
+                }
+            }
+            return to;
+        }
+
+        /**
+         * @return number of records after the header row
+         */
+        long finish() {
+            if (recordHasContent) {
+                // last record without a line break
+                records++;
+                recordHasContent = false;
+            }
+            return Math.max(0, records - 1);
+        }
+    }
+
+    /**
+     * Saves CSV content, starting with a header row, to a file.
+     *
+     * @param append true to add the content to the end of the file, false to replace the file
+     * @param skipHeader true to leave out the header row of the content
+     * @return number of records saved, not counting the header row
+     */
+    static long save(InputStream in, String filename, boolean append, boolean skipHeader) throws IOException {
+        return save(Channels.newChannel(in), filename, append, skipHeader);
+    }
+
+    static long save(ReadableByteChannel in, String filename, boolean append, boolean skipHeader)
+            throws IOException {
+        try (ReadableByteChannel source = in;
+                FileChannel out = FileChannel.open(Path.of(filename), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            final byte[] bytes = buffer.array();
+            final RecordCounter counter = new RecordCounter();
+            boolean inHeader = true;
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                int start = 0;
+                if (inHeader) {
+                    final int headerEnd = counter.scan(bytes, 0, buffer.limit(), 1);
+                    inHeader = counter.records == 0;
+                    if (skipHeader) {
+                        start = headerEnd;
+                    }
+                    counter.scan(bytes, headerEnd, buffer.limit(), Long.MAX_VALUE);
+                } else {
+                    counter.scan(bytes, 0, buffer.limit(), Long.MAX_VALUE);
+                }
+                buffer.position(start);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            return counter.finish();
+        }
+    }
+
+    /**
+     * Appends a whole file to the given channel without copying its content through the heap.
+     */
+    static void transfer(Path from, FileChannel to) throws IOException {
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ)) {
+            final long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, to);
+            }
+        }
+    }
+
+    /**
+     * @return number of records in a CSV file, not counting its header row
+     */
+    static long countRecords(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            final RecordCounter counter = new RecordCounter();
+            while (in.read(buffer) >= 0) {
+                counter.scan(buffer.array(), 0, buffer.position(), Long.MAX_VALUE);
+                buffer.clear();
+            }
+            return counter.finish();
+        }
+    }
+}
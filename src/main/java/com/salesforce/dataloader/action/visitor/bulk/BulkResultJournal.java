@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
+import com.salesforce.dataloader.util.VarInts;
+
+/**
+ * Append-only journal of the rows uploaded in Bulk API batches. Each entry records the DAO row number of
+ * the row, the batch it was sent in and its position in the batch, along with the values of the columns
+ * written to the status files. Batch results are matched with the journal instead of reading the data
+ * source a second time.
+ */
+class BulkResultJournal implements Closeable {
+    private static final Logger logger = LogManager.getLogger(BulkResultJournal.class);
+
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+    private static final byte NULL_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+
+    private final RowSchema schema;
+    private File journalFile;
+    private DataOutputStream journalOutput;
+    private int entryCount = 0;
+
+    /** A row read back from the journal */
+    static final class Entry {
+        final int daoRowNumber;
+        final int batchIndex;
+        final int positionInBatch;
+        final Row row;
+
+        private Entry(int daoRowNumber, int batchIndex, int positionInBatch, Row row) {
+            this.daoRowNumber = daoRowNumber;
+            this.batchIndex = batchIndex;
+            this.positionInBatch = positionInBatch;
+            this.row = row;
+        }
+    }
+
+    /** Reads the journal from the first entry */
+    final class Reader implements Closeable {
+        private final DataInputStream input;
+        private int entriesRead = 0;
+
+        private Reader() throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile),
+                    FILE_BUFFER_SIZE));
+        }
+
+        /**
+         * @return the next entry, null after the last one
+         */
+        Entry next() throws IOException {
+            if (entriesRead >= entryCount) {
+                return null;
+            }
+            final int daoRowNumber = VarInts.read(input);
+            final int batchIndex = VarInts.read(input);
+            final int positionInBatch = VarInts.read(input);
+            final Row row = new Row(schema);
+            for (int i = 0; i < schema.getColumnCount(); i++) {
+                if (input.readByte() == STRING_VALUE) {
+                    final byte[] valueBytes = new byte[VarInts.read(input)];
+                    input.readFully(valueBytes);
+                    row.setValue(i, new String(valueBytes, StandardCharsets.UTF_8));
+                } else {
+                    row.setValue(i, null);
+                }
+            }
+            entriesRead++;
+            return new Entry(daoRowNumber, batchIndex, positionInBatch, row);
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * @param columnNames columns of the DAO rows that are kept in the journal
+     */
+    BulkResultJournal(List<String> columnNames) {
+        this.schema = new RowSchema(columnNames);
+    }
+
+    /**
+     * Appends a row sent to the server. Values are kept as the text written to the status files.
+     */
+    void append(int daoRowNumber, int batchIndex, int positionInBatch, Row row) throws IOException {
+        if (journalOutput == null) {
+            journalFile = File.createTempFile("sdlBulkResultJournal", ".bin");
+            journalFile.deleteOnExit();
+            journalOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile),
+                    FILE_BUFFER_SIZE));
+            logger.debug("Journaling uploaded rows in " + journalFile.getAbsolutePath());
+        }
+        VarInts.write(journalOutput, daoRowNumber);
+        VarInts.write(journalOutput, batchIndex);
+        VarInts.write(journalOutput, positionInBatch);
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            final Object value = row.get(schema.getColumnName(i));
+            if (value == null) {
+                journalOutput.writeByte(NULL_VALUE);
+            } else {
+                final byte[] valueBytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                journalOutput.writeByte(STRING_VALUE);
+                VarInts.write(journalOutput, valueBytes.length);
+                journalOutput.write(valueBytes);
+            }
+        }
+        entryCount++;
+    }
+
+    int size() {
+        return entryCount;
+    }
+
+    /**
+     * Opens a reader over the entries appended so far.
+     */
+    Reader openReader() throws IOException {
+        if (journalOutput == null) {
+            throw new EOFException("No rows were journaled");
+        }
+        journalOutput.flush();
+        return new Reader();
+    }
+
+    /**
+     * Deletes the journal.
+     */
+    @Override
+    public void close() {
+        if (journalOutput != null) {
+            try {
+                journalOutput.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            journalOutput = null;
+        }
+        if (journalFile != null) {
+            journalFile.delete();
+            journalFile = null;
+        }
+        entryCount = 0;
+    }
+}
@@ -29,7 +29,6 @@ package com.salesforce.dataloader.action.visitor.bulk;
 import java.io.ByteArrayInputStream;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 
 import com.salesforce.dataloader.action.AbstractExtractAction;
@@ -80,25 +79,51 @@ public class BulkV1QueryVisitor extends AbstractBulkQueryVisitor {
 
     @Override
     protected void writeExtraction() throws AsyncApiException, ExtractException, DataAccessObjectException {
-        for (BatchInfo b : this.batches) {
-            writeExtractionForBatch(b);
+        final BulkQueryResultDownloader downloader = new BulkQueryResultDownloader(getMaxConcurrentDownloads());
+        try {
+            for (BatchInfo b : this.batches) {
+                if (!submitResultsOfBatch(b, downloader)) return;
+            }
+            while (!downloader.isEmpty()) {
+                if (getProgressMonitor().isCanceled()) return;
+                writeExtractionForOldestDownload(downloader);
+            }
+        } catch (final IOException e) {
+            throw new ExtractExceptionOnServer(e);
+        } finally {
+            downloader.shutdown();
         }
     }
-    private void writeExtractionForBatch(BatchInfo batch) throws AsyncApiException, ExtractException, DataAccessObjectException {
-        if (batch.getState() == BatchStateEnum.Failed)
+
+    /**
+     * Queues downloads of the results of a batch, writing out the oldest downloaded results
+     * whenever the maximum number of concurrent downloads is reached.
+     * 
+     * @return false if the operation was canceled
+     */
+    private boolean submitResultsOfBatch(BatchInfo batch, BulkQueryResultDownloader downloader)
+            throws AsyncApiException, ExtractException, DataAccessObjectException, IOException {
+        if (batch.getState() == BatchStateEnum.Failed) {
+            // write out the results of the earlier batches first
+            while (!downloader.isEmpty()) {
+                writeExtractionForOldestDownload(downloader);
+            }
             throw new ExtractExceptionOnServer("Batch failed: " + batch.getStateMessage());
-        final QueryResultList results = getController().getBulkV1Client().getConnection()
-                .getQueryResultList(batch.getJobId(), batch.getId());
+        }
+        if (batch.getState() == BatchStateEnum.NotProcessed) {
+            // with PK chunking, the batch of the original query is split into batches that hold the results
+            return true;
+        }
+        final BulkV1Connection connection = getController().getBulkV1Client().getConnection();
+        final QueryResultList results = connection.getQueryResultList(batch.getJobId(), batch.getId());
 
         for (final String resultId : results.getResult()) {
-            if (getProgressMonitor().isCanceled()) return;
-            try {
-                final InputStream serverResultStream = getController().getBulkV1Client().getConnection()
-                        .getQueryResultStream(batch.getJobId(), batch.getId(), resultId);
-                writeExtractionForServerStream(serverResultStream);
-            }  catch (final IOException e) {
-                throw new ExtractExceptionOnServer(e);
+            if (getProgressMonitor().isCanceled()) return false;
+            downloader.submit(() -> connection.getQueryResultStream(batch.getJobId(), batch.getId(), resultId));
+            while (downloader.isFull()) {
+                writeExtractionForOldestDownload(downloader);
             }
         }
+        return true;
     }
 }
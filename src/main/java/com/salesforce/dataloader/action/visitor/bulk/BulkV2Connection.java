@@ -131,14 +131,10 @@ public class TestBulkV2 {
 
 package com.salesforce.dataloader.action.visitor.bulk;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.io.FileOutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -253,12 +249,23 @@ public class BulkV2Connection extends BulkConnection {
     }        
 
     public InputStream getQueryResultStream(String jobId, String locator) throws AsyncApiException {
+        BulkV2QueryResultPage page = getQueryResultPage(jobId, locator);
+        this.queryLocator = page.getNextLocator();
+        this.numberOfRecordsInQueryResult = page.getNumberOfRecords();
+        return page.getResultStream();
+    }
+    
+    /*
+     * Unlike getQueryResultStream(), does not keep the locator of the next page in the connection
+     * so that several pages can be requested at the same time.
+     */
+    BulkV2QueryResultPage getQueryResultPage(String jobId, String locator) throws AsyncApiException {
     	String urlString =  constructRequestURL(jobId) + "results/";
         if (locator != null && !locator.isEmpty() && !"null".equalsIgnoreCase(locator)) {
         	urlString += "?locator=" + locator;
         }
         try {
-            return doGetQueryResultStream(new URL(urlString), getHeaders(JSON_CONTENT_TYPE, CSV_CONTENT_TYPE));
+            return doGetQueryResultPage(new URL(urlString), getHeaders(JSON_CONTENT_TYPE, CSV_CONTENT_TYPE));
         } catch (IOException | ConnectionException e) {
             throw new AsyncApiException("Failed to get query results for job " + jobId, AsyncExceptionCode.ClientInputError, e);
         }
@@ -306,16 +313,24 @@ public class BulkV2Connection extends BulkConnection {
         return getJobStatus(jobId);
     }
     
-    public void saveIngestSuccessResults(String jobId, String filename) throws AsyncApiException {
-    	doSaveIngestResults(jobId, filename, INGEST_RESULTS_SUCCESSFUL, false);
+    /**
+     * @return number of records saved
+     */
+    public long saveIngestSuccessResults(String jobId, String filename) throws AsyncApiException {
+    	return saveIngestSuccessResults(jobId, filename, false);
+    }
+    
+    // when appending, the header row of the results is not written again
+    public long saveIngestSuccessResults(String jobId, String filename, boolean append) throws AsyncApiException {
+    	return doSaveIngestResults(jobId, filename, INGEST_RESULTS_SUCCESSFUL, append);
     }
     
-    public void saveIngestFailureResults(String jobId, String filename) throws AsyncApiException {
-    	doSaveIngestResults(jobId, filename, INGEST_RESULTS_UNSUCCESSFUL, true);
+    public long saveIngestFailureResults(String jobId, String filename) throws AsyncApiException {
+    	return doSaveIngestResults(jobId, filename, INGEST_RESULTS_UNSUCCESSFUL, true);
     }
     
-    public void saveIngestUnprocessedRecords(String jobId, String filename) throws AsyncApiException {
-    	doSaveIngestResults(jobId, filename, INGEST_RECORDS_UNPROCESSED, false);
+    public long saveIngestUnprocessedRecords(String jobId, String filename) throws AsyncApiException {
+    	return doSaveIngestResults(jobId, filename, INGEST_RECORDS_UNPROCESSED, false);
     }
     
     public InputStream getIngestSuccessResultsStream(String jobId) throws AsyncApiException {
@@ -515,18 +530,19 @@ public class BulkV2Connection extends BulkConnection {
      * @throws ConnectionException 
      * 
      **********************************/
-    private InputStream doGetQueryResultStream(URL resultsURL, HashMap<String, String> headers) throws IOException, AsyncApiException, ConnectionException {
-        InputStream is = null;
+    private BulkV2QueryResultPage doGetQueryResultPage(URL resultsURL, HashMap<String, String> headers) throws IOException, AsyncApiException, ConnectionException {
+        BulkV2QueryResultPage page = null;
         try {
             HttpTransportInterface transport = (HttpTransportInterface) getConfig().createTransport();
             HttpURLConnection httpConnection = transport.openHttpGetConnection(resultsURL.toString(), headers);
-            is = transport.httpGet(httpConnection, resultsURL.toString());
-            this.queryLocator = httpConnection.getHeaderField("Sforce-Locator");
-            this.numberOfRecordsInQueryResult = Integer.valueOf(httpConnection.getHeaderField("Sforce-NumberOfRecords"));
+            InputStream is = transport.httpGet(httpConnection, resultsURL.toString());
+            page = new BulkV2QueryResultPage(is,
+                    httpConnection.getHeaderField("Sforce-Locator"),
+                    Integer.valueOf(httpConnection.getHeaderField("Sforce-NumberOfRecords")));
         } catch (HttpClientTransportException ex) {
             parseAndThrowException(ex);
         }
-        return is;
+        return page;
     }
     
     /**********************************
@@ -551,47 +567,9 @@ public class BulkV2Connection extends BulkConnection {
         return is;
     }
     
-    private void doSaveIngestResults(String jobId, String filename, String resultsType, boolean append) throws AsyncApiException {
-    	BufferedOutputStream bos;
-    	try {
-    		bos = new BufferedOutputStream(new FileOutputStream(filename, append));
-    	} catch (FileNotFoundException e) {
-	        throw new AsyncApiException("File " + filename + " not found", AsyncExceptionCode.ClientInputError, e);
-    	}
-    	BufferedInputStream bis = new BufferedInputStream(doGetIngestResultsStream(jobId, resultsType));
+    private long doSaveIngestResults(String jobId, String filename, String resultsType, boolean append) throws AsyncApiException {
         try {
-            byte[] buffer = new byte[2048];
-            boolean firstLineSkipped = !append;
-	        for(int len; (len = bis.read(buffer)) > 0;) {
-	            if (!firstLineSkipped) {
-	                String str = new String(buffer);
-	                if (str.contains("\n")) {
-	                    String[] parts = str.split("\n");
-	                    if (parts.length > 1) {
-	                        str = "";
-	                        for (int i = 1; i < parts.length; i++) {
-	                            if (i > 1) {
-	                                str += System.lineSeparator();
-	                            }
-	                            str += parts[i];
-	                        }
-	                        buffer = str.getBytes(controller.getConfig().getCsvEncoding(true));
-	                        int counter = 0;
-	                        while(counter < buffer.length && buffer[counter] != 0) {
-	                            counter++;
-	                        }
-	                        len = counter;
-	                        firstLineSkipped = true;
-	                    }
-	                }
-	            }
-	            if (firstLineSkipped) {
-	                bos.write(buffer, 0, len);
-	            }
-	        }
-        	bis.close();
-        	bos.flush();
-        	bos.close();
+            return BulkResultFiles.save(doGetIngestResultsStream(jobId, resultsType), filename, append, append);
         } catch (IOException e) {
             throw new AsyncApiException("Failed to get " + resultsType + " for job " + jobId, AsyncExceptionCode.ClientInputError, e);
         }
@@ -603,3 +581,30 @@ class BulkV2Error implements Serializable {
     public String errorCode = "";
     public String message = "";
 }
+
+class BulkV2QueryResultPage {
+    private final InputStream resultStream;
+    private final String nextLocator;
+    private final int numberOfRecords;
+
+    BulkV2QueryResultPage(InputStream resultStream, String nextLocator, int numberOfRecords) {
+        this.resultStream = resultStream;
+        this.nextLocator = nextLocator;
+        this.numberOfRecords = numberOfRecords;
+    }
+
+    InputStream getResultStream() {
+        return this.resultStream;
+    }
+
+    /**
+     * @return the locator of the following page, "null" if this is the last page
+     */
+    String getNextLocator() {
+        return this.nextLocator;
+    }
+
+    int getNumberOfRecords() {
+        return this.numberOfRecords;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.salesforce.dataloader.action.progress.ILoaderProgress;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.csv.CSVTokenizer;
+import com.salesforce.dataloader.util.LoadRateCalculator;
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.AsyncExceptionCode;
+import com.sforce.async.JobInfo;
+import com.sforce.async.JobStateEnum;
+
+/**
+ * Loads the parts of a large Bulk API 2.0 upload as separate ingest jobs. Each job is created,
+ * uploaded, awaited and has its results downloaded on its own thread. The results of all jobs
+ * are merged into the success and error files in the order in which the jobs were submitted.
+ */
+class BulkV2LoadJobGroup {
+
+    private static final Logger logger = LogManager.getLogger(BulkV2LoadJobGroup.class);
+    // how long a stopped job may take to notice that it was interrupted
+    private static final long SHUTDOWN_TIMEOUT_SECS = 10;
+
+    private final Controller controller;
+    private final ILoaderProgress monitor;
+    private final LoadRateCalculator rateCalc;
+    private final ExecutorService executor;
+    private final List<Future<JobResults>> submittedJobs = new ArrayList<Future<JobResults>>();
+    private long savedSuccesses = 0;
+    private long savedErrors = 0;
+    // temporary result files of the jobs that are not merged yet, deleted when the group is shut down
+    private final Set<File> resultFiles = new HashSet<File>();
+    private boolean isShutDown = false;
+
+    /** Result files of a finished job */
+    private static class JobResults {
+        final JobInfo jobInfo;
+        final File successFile;
+        final File errorFile;
+        final long numSuccesses;
+        final long numErrors;
+
+        JobResults(JobInfo jobInfo, File successFile, long numSuccesses, File errorFile, long numErrors) {
+            this.jobInfo = jobInfo;
+            this.successFile = successFile;
+            this.numSuccesses = numSuccesses;
+            this.errorFile = errorFile;
+            this.numErrors = numErrors;
+        }
+    }
+
+    BulkV2LoadJobGroup(Controller controller, ILoaderProgress monitor, LoadRateCalculator rateCalc,
+            int maxConcurrentJobs) {
+        this.controller = controller;
+        this.monitor = monitor;
+        this.rateCalc = rateCalc;
+        // make sure the client is set up before it is shared by the job threads
+        controller.getBulkV2Client();
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxConcurrentJobs, r -> {
+            Thread t = new Thread(r, "bulkV2LoadJob-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    boolean hasJobs() {
+        return !this.submittedJobs.isEmpty();
+    }
+
+    /**
+     * Starts a new job for the given CSV content, including its header row.
+     */
+    void submit(final BulkBatchBuffer content, final int numRecords) {
+        final int jobNum = this.submittedJobs.size();
+        this.submittedJobs.add(this.executor.submit(() -> runJob(jobNum, content, numRecords)));
+    }
+
+    private JobResults runJob(int jobNum, BulkBatchBuffer content, int numRecords) throws AsyncApiException, IOException {
+        final BulkApiVisitorUtil jobUtil = createJobUtil();
+        try (BulkBatchBuffer batchContent = content; InputStream batchContentStream = batchContent.getInputStream()) {
+            jobUtil.createJob();
+            jobUtil.createBatch(batchContentStream, numRecords);
+        }
+        jobUtil.awaitCompletionAndCloseJob();
+
+        // only the results of the first job keep their header row
+        final File successFile = createResultFile(jobUtil, "success_job" + jobNum + "_");
+        final File errorFile = createResultFile(jobUtil, "error_job" + jobNum + "_");
+        final long numSuccesses = jobUtil.getBulkV2LoadSuccessResults(successFile.getAbsolutePath(), jobNum > 0);
+        long numErrors = jobUtil.getBulkV2LoadErrorResults(errorFile.getAbsolutePath());
+        if (jobUtil.getJobInfo().getState() != JobStateEnum.JobComplete) {
+            numErrors += appendUnprocessedRecords(jobUtil, errorFile);
+        }
+        return new JobResults(jobUtil.getJobInfo(), successFile, numSuccesses, errorFile, numErrors);
+    }
+
+    private File createResultFile(BulkApiVisitorUtil jobUtil, String prefix) throws AsyncApiException {
+        final File resultFile = new File(jobUtil.getStagingFileInOutputStatusDir(prefix, ".csv"));
+        synchronized (this.resultFiles) {
+            if (this.isShutDown) {
+                throw new AsyncApiException("The Bulk API 2.0 jobs were stopped", AsyncExceptionCode.ClientInputError);
+            }
+            this.resultFiles.add(resultFile);
+        }
+        return resultFile;
+    }
+
+    private void deleteResultFile(File resultFile) {
+        synchronized (this.resultFiles) {
+            this.resultFiles.remove(resultFile);
+        }
+        // a job that is still running may have the file open
+        if (resultFile.exists() && !resultFile.delete()) {
+            resultFile.deleteOnExit();
+        }
+    }
+
+    // each job has its own job util, which does not update the progress of the whole load
+    BulkApiVisitorUtil createJobUtil() {
+        return new BulkApiVisitorUtil(this.controller, this.monitor, this.rateCalc, false);
+    }
+
+    /*
+     * Records that a failed or aborted job did not get to are reported as errors, in the same
+     * layout as the failed results of the job.
+     *
+     * @return number of records appended
+     */
+    private long appendUnprocessedRecords(BulkApiVisitorUtil jobUtil, File errorFile) throws AsyncApiException {
+        final JobInfo jobInfo = jobUtil.getJobInfo();
+        final String errorMessage = Messages.getMessage(getClass(), "jobError", jobInfo.getId(), jobInfo.getState());
+        logger.warn(errorMessage);
+        long numRecords = 0;
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(errorFile, true)),
+                false, Config.BULK_API_ENCODING)) {
+            final CSVTokenizer unprocessedRecords = jobUtil.getBulkV2LoadUnprocessedRecords();
+            // skip the header row
+            unprocessedRecords.nextRecord();
+            for (List<String> record = unprocessedRecords.nextRecord(); record != null && !record.isEmpty();
+                    record = unprocessedRecords.nextRecord()) {
+                writeColumnToCsv(out, "");
+                out.print(',');
+                writeColumnToCsv(out, errorMessage);
+                for (String value : record) {
+                    out.print(',');
+                    writeColumnToCsv(out, value);
+                }
+                out.println();
+                numRecords++;
+            }
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to get unprocessed records for job " + jobInfo.getId(),
+                    AsyncExceptionCode.ClientInputError, e);
+        }
+        return numRecords;
+    }
+
+    private void writeColumnToCsv(PrintStream out, String val) {
+        out.print('"');
+        out.print(val.replace("\"", "\"\""));
+        out.print('"');
+    }
+
+    /**
+     * Waits for all jobs and merges their results, in submission order, into the given files.
+     * The success file is replaced and the results of failed rows are appended to the error file.
+     */
+    void awaitCompletionAndSaveResults(String successFilename, String errorFilename) throws AsyncApiException {
+        long recordsProcessed = 0;
+        long recordsFailed = 0;
+        try (FileChannel successOut = FileChannel.open(Path.of(successFilename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                FileChannel errorOut = FileChannel.open(Path.of(errorFilename), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (Future<JobResults> submittedJob : this.submittedJobs) {
+                final JobResults jobResults = takeJobResults(submittedJob);
+                try {
+                    BulkResultFiles.transfer(jobResults.successFile.toPath(), successOut);
+                    BulkResultFiles.transfer(jobResults.errorFile.toPath(), errorOut);
+                    this.savedSuccesses += jobResults.numSuccesses;
+                    this.savedErrors += jobResults.numErrors;
+                } finally {
+                    deleteResultFile(jobResults.successFile);
+                    deleteResultFile(jobResults.errorFile);
+                }
+                recordsProcessed += jobResults.jobInfo.getNumberRecordsProcessed();
+                recordsFailed += jobResults.jobInfo.getNumberRecordsFailed();
+                this.monitor.worked(jobResults.jobInfo.getNumberRecordsProcessed());
+                this.monitor.setSubTask(this.rateCalc.calculateSubTask(recordsProcessed, recordsFailed));
+            }
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to save the results of the Bulk API 2.0 jobs",
+                    AsyncExceptionCode.ClientInputError, e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * @return number of success results saved by {@link #awaitCompletionAndSaveResults(String, String)}
+     */
+    long getSavedSuccesses() {
+        return this.savedSuccesses;
+    }
+
+    /**
+     * @return number of error results saved by {@link #awaitCompletionAndSaveResults(String, String)}
+     */
+    long getSavedErrors() {
+        return this.savedErrors;
+    }
+
+    private JobResults takeJobResults(Future<JobResults> submittedJob) throws AsyncApiException {
+        try {
+            return submittedJob.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AsyncApiException("Interrupted while waiting for a Bulk API 2.0 job",
+                    AsyncExceptionCode.ClientInputError, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof AsyncApiException) {
+                throw (AsyncApiException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Stops the jobs still running and deletes the result files that were not merged, including those of the
+     * jobs that finished after a job failed.
+     */
+    void shutdown() {
+        for (Future<JobResults> submittedJob : this.submittedJobs) {
+            submittedJob.cancel(true);
+        }
+        this.executor.shutdownNow();
+        try {
+            // a job that is still writing its result files would create them again once they are deleted
+            if (!this.executor.awaitTermination(SHUTDOWN_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+                logger.warn("Bulk API 2.0 jobs did not stop within " + SHUTDOWN_TIMEOUT_SECS + " seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final List<File> unmergedFiles;
+        synchronized (this.resultFiles) {
+            this.isShutDown = true;
+            unmergedFiles = new ArrayList<File>(this.resultFiles);
+        }
+        for (File resultFile : unmergedFiles) {
+            deleteResultFile(resultFile);
+        }
+    }
+}
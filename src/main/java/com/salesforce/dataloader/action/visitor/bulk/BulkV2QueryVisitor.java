@@ -27,16 +27,27 @@
 package com.salesforce.dataloader.action.visitor.bulk;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.salesforce.dataloader.action.AbstractExtractAction;
+import com.salesforce.dataloader.action.OperationInfo;
+import com.salesforce.dataloader.action.visitor.QueryPartitioner;
 import com.salesforce.dataloader.action.progress.ILoaderProgress;
+import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.controller.Controller;
 import com.salesforce.dataloader.dao.DataWriter;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.exception.ExtractException;
 import com.salesforce.dataloader.exception.OperationException;
 import com.sforce.async.AsyncApiException;
+import com.sforce.ws.ConnectionException;
 
 
 /**
@@ -47,7 +58,7 @@ import com.sforce.async.AsyncApiException;
  */
 public class BulkV2QueryVisitor extends AbstractBulkQueryVisitor {
 
-    private String jobId;
+    private final List<String> jobIds = new ArrayList<String>();
 
     public BulkV2QueryVisitor(AbstractExtractAction action, Controller controller, ILoaderProgress monitor, DataWriter queryWriter,
             DataWriter successWriter, DataWriter errorWriter) {
@@ -55,29 +66,123 @@ public class BulkV2QueryVisitor extends AbstractBulkQueryVisitor {
     }
 
     @Override
-    protected int executeQuery(String soql) throws AsyncApiException, OperationException {
-        final BulkApiVisitorUtil jobUtil = new BulkApiVisitorUtil(getController(), getProgressMonitor(),
-                getRateCalculator(), false);
-        jobUtil.createJob();
-        this.jobId = jobUtil.getJobId();
-        jobUtil.awaitCompletionAndCloseJob();
-        return jobUtil.getRecordsProcessed();
+    protected int executeQuery(String soql) throws AsyncApiException, OperationException, ConnectionException {
+        final QueryPartitioner partitioner = new QueryPartitioner(getController().getPartnerClient(),
+                getConfig().getOperationInfo() == OperationInfo.extract_all);
+        final List<String> partitionSoqls = partitioner.partition(soql,
+                getConfig().getString(Config.EXTRACT_PARTITION_FIELD), getMaxExtractPartitions());
+        if (partitionSoqls.size() == 1) {
+            final BulkApiVisitorUtil jobUtil = new BulkApiVisitorUtil(getController(), getProgressMonitor(),
+                    getRateCalculator(), false);
+            jobUtil.createJob();
+            this.jobIds.add(jobUtil.getJobId());
+            jobUtil.awaitCompletionAndCloseJob();
+            return jobUtil.getRecordsProcessed();
+        }
+        return executePartitionedQuery(partitionSoqls);
+    }
+
+    /**
+     * Runs a query job for each partition at the same time. The results of the jobs are written
+     * in the order of the partitions.
+     */
+    private int executePartitionedQuery(List<String> partitionSoqls) throws AsyncApiException, OperationException {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(partitionSoqls.size(), r -> {
+            Thread t = new Thread(r, "bulkV2QueryJob-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            final List<Future<Integer>> jobs = new ArrayList<Future<Integer>>();
+            for (final String partitionSoql : partitionSoqls) {
+                final BulkApiVisitorUtil jobUtil = new BulkApiVisitorUtil(getController(), getProgressMonitor(),
+                        getRateCalculator(), false);
+                jobUtil.setExtractSoql(partitionSoql);
+                jobUtil.createJob();
+                this.jobIds.add(jobUtil.getJobId());
+                jobs.add(executor.submit(() -> {
+                    jobUtil.awaitCompletionAndCloseJob();
+                    return jobUtil.getRecordsProcessed();
+                }));
+            }
+            int recordsProcessed = 0;
+            for (Future<Integer> job : jobs) {
+                recordsProcessed += job.get();
+            }
+            return recordsProcessed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtractException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof AsyncApiException) {
+                throw (AsyncApiException)cause;
+            } else if (cause instanceof OperationException) {
+                throw (OperationException)cause;
+            }
+            throw new ExtractException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     @Override
     protected void writeExtraction() throws AsyncApiException, ExtractException, DataAccessObjectException {
-        BulkV2Connection v2Conn = getController().getBulkV2Client().getConnection();
+        final BulkV2Connection v2Conn = getController().getBulkV2Client().getConnection();
+        final BulkQueryResultDownloader downloader = new BulkQueryResultDownloader(getMaxConcurrentDownloads());
         try {
-            InputStream serverResultStream = v2Conn.getQueryResultStream(this.jobId, "");
-            writeExtractionForServerStream(serverResultStream);
-            String locator = v2Conn.getQueryLocator();
-            while (!"null".equalsIgnoreCase(locator)) {
-                serverResultStream = v2Conn.getQueryResultStream(this.jobId, locator);
-                writeExtractionForServerStream(serverResultStream);
-                locator = v2Conn.getQueryLocator();
+            for (String jobId : this.jobIds) {
+                String locator = "";
+                while (locator != null) {
+                    if (getProgressMonitor().isCanceled()) return;
+                    locator = submitResultPage(v2Conn, jobId, locator, downloader);
+                    while (downloader.isFull()) {
+                        writeExtractionForOldestDownload(downloader);
+                    }
+                }
+            }
+            while (!downloader.isEmpty()) {
+                if (getProgressMonitor().isCanceled()) return;
+                writeExtractionForOldestDownload(downloader);
             }
         }   catch (final IOException e) {
             throw new ExtractException(e);
+        } finally {
+            downloader.shutdown();
+        }
+    }
+
+    /**
+     * Queues the download of a page of results. The locator of the following page is returned by
+     * the server along with the page, so the download of the following page can start as soon as
+     * this page is opened.
+     * 
+     * @return the locator of the following page, or null if there are no more pages to download
+     */
+    private String submitResultPage(BulkV2Connection v2Conn, String jobId, String locator,
+            BulkQueryResultDownloader downloader)
+            throws ExtractException {
+        final CompletableFuture<String> nextLocator = new CompletableFuture<String>();
+        downloader.submit(() -> {
+            try {
+                final BulkV2QueryResultPage page = v2Conn.getQueryResultPage(jobId, locator);
+                nextLocator.complete(page.getNextLocator());
+                return page.getResultStream();
+            } catch (AsyncApiException | RuntimeException e) {
+                nextLocator.completeExceptionally(e);
+                throw e;
+            }
+        });
+        try {
+            final String next = nextLocator.get();
+            return next == null || "null".equalsIgnoreCase(next) ? null : next;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtractException(e);
+        } catch (ExecutionException e) {
+            // the error is reported when the page is taken from the downloader
+            return null;
         }
     }
 }
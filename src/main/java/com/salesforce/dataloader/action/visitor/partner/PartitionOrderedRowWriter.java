@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.partner;
+
+import com.salesforce.dataloader.dao.DAORowCache;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * Writes the rows of a partitioned extraction in partition order, whatever the order in which their
+ * pages arrive. The rows of the lowest partition that is not done are written as they come; the rows
+ * of the partitions after it are kept until every partition before them is done. Kept rows spill to a
+ * temporary file beyond the memory budget, so that the partitions still being fetched do not have to
+ * wait for the ones before them.
+ */
+class PartitionOrderedRowWriter {
+
+    interface RowWriter {
+        void write(Row row, String id) throws DataAccessObjectException;
+    }
+
+    // keeps the id of a kept row with its values
+    private static final String KEPT_ROW_ID = "#partitionRowId";
+
+    private final RowWriter writer;
+    private final DAORowCache[] keptRows;
+    private final boolean[] partitionDone;
+    private final long partitionMaxMemoryBytes;
+    private int currentPartition = 0;
+
+    PartitionOrderedRowWriter(int partitionCount, long maxMemoryBytes, RowWriter writer) {
+        this.writer = writer;
+        this.keptRows = new DAORowCache[partitionCount];
+        this.partitionDone = new boolean[partitionCount];
+        this.partitionMaxMemoryBytes = maxMemoryBytes / Math.max(1, partitionCount);
+    }
+
+    void addRow(int partition, Row row, String id) throws DataAccessObjectException {
+        if (partition == this.currentPartition) {
+            this.writer.write(row, id);
+            return;
+        }
+        if (this.keptRows[partition] == null) {
+            this.keptRows[partition] = new DAORowCache(this.partitionMaxMemoryBytes);
+        }
+        row.put(KEPT_ROW_ID, id);
+        this.keptRows[partition].addRow(row);
+    }
+
+    /**
+     * Writes the rows kept for the partitions that are next in order, up to the first one not done.
+     */
+    void partitionDone(int partition) throws DataAccessObjectException {
+        this.partitionDone[partition] = true;
+        while (this.currentPartition < this.partitionDone.length && this.partitionDone[this.currentPartition]) {
+            this.currentPartition++;
+            if (this.currentPartition < this.keptRows.length) {
+                writeKeptRows(this.currentPartition);
+            }
+        }
+    }
+
+    /**
+     * Drops the rows kept but not written, and deletes their temporary files.
+     */
+    void close() {
+        for (int i = 0; i < this.keptRows.length; i++) {
+            if (this.keptRows[i] != null) {
+                this.keptRows[i].clear();
+                this.keptRows[i] = null;
+            }
+        }
+    }
+
+    private void writeKeptRows(int partition) throws DataAccessObjectException {
+        final DAORowCache rows = this.keptRows[partition];
+        if (rows == null) {
+            return;
+        }
+        this.keptRows[partition] = null;
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                final Row row = rows.getRow(i);
+                final String id = (String)row.remove(KEPT_ROW_ID);
+                this.writer.write(row, id);
+            }
+        } finally {
+            rows.clear();
+        }
+    }
+}
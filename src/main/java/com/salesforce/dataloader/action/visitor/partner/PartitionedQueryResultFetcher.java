@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.partner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import com.sforce.soap.partner.QueryResult;
+import com.sforce.ws.ConnectionException;
+
+/**
+ * Runs the queries of several partitions of an extraction at the same time, each following its own
+ * queryMore chain on a background thread, and hands back their pages in the order in which they arrive,
+ * each tagged with the index of its partition. Putting the rows back in partition order is left to the
+ * caller, see {@link PartitionOrderedRowWriter}.
+ * 
+ * Each partition keeps fetching while the pages of the others are written, so that no query locator
+ * is left idle long enough to expire. At most a configured number of fetched pages wait to be taken,
+ * not counting the page each partition holds while waiting for room.
+ */
+class PartitionedQueryResultFetcher {
+
+    interface QueryRunner {
+        QueryResult query(String soql) throws ConnectionException;
+
+        QueryResult queryMore(String queryLocator) throws ConnectionException;
+    }
+
+    /**
+     * A page of a partition, or the end of the pages of a partition.
+     */
+    static class FetchedPage {
+        private final int partition;
+        private final QueryResult result;
+
+        FetchedPage(int partition, QueryResult result) {
+            this.partition = partition;
+            this.result = result;
+        }
+
+        /**
+         * @return index of the partition in the list of partition queries
+         */
+        int getPartition() {
+            return this.partition;
+        }
+
+        /**
+         * @return the page, null if every page of the partition has been handed back before this one
+         */
+        QueryResult getResult() {
+            return this.result;
+        }
+
+        boolean isPartitionDone() {
+            return this.result == null;
+        }
+    }
+
+    private final QueryRunner runner;
+    private final BlockingQueue<CompletableFuture<FetchedPage>> fetchedPages = new LinkedBlockingQueue<CompletableFuture<FetchedPage>>();
+    private final Semaphore freePageSlots;
+    private final List<CompletableFuture<Integer>> partitionSizes = new ArrayList<CompletableFuture<Integer>>();
+    private final List<Thread> fetchThreads = new ArrayList<Thread>();
+    private int partitionsNotDone;
+    private volatile boolean closed = false;
+
+    PartitionedQueryResultFetcher(List<String> partitionSoqls, int maxBufferedPages, QueryRunner runner) {
+        this.runner = runner;
+        this.freePageSlots = new Semaphore(Math.max(1, maxBufferedPages));
+        this.partitionsNotDone = partitionSoqls.size();
+        for (int i = 0; i < partitionSoqls.size(); i++) {
+            final int partition = i;
+            final String soql = partitionSoqls.get(i);
+            final CompletableFuture<Integer> partitionSize = new CompletableFuture<Integer>();
+            this.partitionSizes.add(partitionSize);
+            final Thread fetchThread = new Thread(() -> fetchPartition(partition, soql, partitionSize),
+                    "partnerQueryPartition-" + (i + 1));
+            fetchThread.setDaemon(true);
+            this.fetchThreads.add(fetchThread);
+        }
+        for (Thread fetchThread : this.fetchThreads) {
+            fetchThread.start();
+        }
+    }
+
+    int getPartitionCount() {
+        return this.partitionSizes.size();
+    }
+
+    /**
+     * Waits for the first page of every partition.
+     * 
+     * @return the number of records selected by all partitions
+     */
+    int getTotalSize() throws ConnectionException {
+        int totalSize = 0;
+        for (CompletableFuture<Integer> partitionSize : this.partitionSizes) {
+            totalSize += getResult(partitionSize);
+        }
+        return totalSize;
+    }
+
+    /**
+     * @return the next page fetched by any partition, or the end of a partition, or null once the end of
+     *         every partition has been handed back
+     */
+    FetchedPage takeNextPage() throws ConnectionException {
+        if (this.partitionsNotDone == 0) {
+            return null;
+        }
+        final CompletableFuture<FetchedPage> fetchedPage;
+        try {
+            fetchedPage = this.fetchedPages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("Interrupted while waiting for a query result page", e);
+        }
+        final FetchedPage page = getResult(fetchedPage);
+        if (page.isPartitionDone()) {
+            this.partitionsNotDone--;
+        } else {
+            this.freePageSlots.release();
+        }
+        return page;
+    }
+
+    /**
+     * Stops fetching. Pages fetched but not taken are dropped.
+     */
+    void close() {
+        this.closed = true;
+        for (Thread fetchThread : this.fetchThreads) {
+            fetchThread.interrupt();
+        }
+    }
+
+    private void fetchPartition(int partition, String soql, CompletableFuture<Integer> partitionSize) {
+        try {
+            QueryResult page;
+            try {
+                page = this.runner.query(soql);
+            } catch (Exception e) {
+                partitionSize.completeExceptionally(e);
+                return;
+            }
+            partitionSize.complete(page.getSize());
+            while (!this.closed) {
+                this.freePageSlots.acquire();
+                this.fetchedPages.add(CompletableFuture.completedFuture(new FetchedPage(partition, page)));
+                if (page.getDone()) {
+                    break;
+                }
+                try {
+                    page = this.runner.queryMore(page.getQueryLocator());
+                } catch (Exception e) {
+                    this.freePageSlots.acquire();
+                    this.fetchedPages.add(CompletableFuture.failedFuture(e));
+                    return;
+                }
+            }
+            this.fetchedPages.add(CompletableFuture.completedFuture(new FetchedPage(partition, null)));
+        } catch (InterruptedException e) {
+            // closed while waiting for a free page slot
+        }
+    }
+
+    private static <T> T getResult(CompletableFuture<T> future) throws ConnectionException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("Interrupted while waiting for a query result page", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ConnectionException) {
+                throw (ConnectionException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -49,7 +49,7 @@ public class PartnerInsertVisitor extends PartnerLoadVisitor {
 
     @Override
     protected Object[] executeClientAction(PartnerClient client, List<DynaBean> dynabeans) throws ConnectionException {
-        return client.loadInserts(dynabeans);
+        return client.loadInserts(dynabeans, getFieldPlan());
     }
 
 }
@@ -28,24 +28,21 @@ package com.salesforce.dataloader.action.visitor.partner;
 
 import java.util.List;
 
-import com.salesforce.dataloader.model.Row;
 import org.apache.commons.beanutils.DynaBean;
 
 import com.salesforce.dataloader.action.OperationInfo;
 import com.salesforce.dataloader.action.progress.ILoaderProgress;
-import com.salesforce.dataloader.action.visitor.DAOLoadVisitor;
+import com.salesforce.dataloader.action.visitor.InFlightBatchLoadVisitor;
 import com.salesforce.dataloader.client.PartnerClient;
 import com.salesforce.dataloader.config.*;
 import com.salesforce.dataloader.controller.Controller;
 import com.salesforce.dataloader.dao.DataWriter;
-import com.salesforce.dataloader.exception.*;
 import com.sforce.soap.partner.DeleteResult;
 import com.sforce.soap.partner.OwnerChangeOption;
 import com.sforce.soap.partner.OwnerChangeOptionType;
 import com.sforce.soap.partner.SaveResult;
 import com.sforce.soap.partner.UndeleteResult;
 import com.sforce.soap.partner.UpsertResult;
-import com.sforce.soap.partner.fault.ApiFault;
 import com.sforce.ws.ConnectionException;
 
 /**
@@ -55,38 +52,47 @@ import com.sforce.ws.ConnectionException;
  * @author Colin Jarvis
  * @since 17.0
  */
-public abstract class PartnerLoadVisitor extends DAOLoadVisitor {
+public abstract class PartnerLoadVisitor extends InFlightBatchLoadVisitor {
 
     public PartnerLoadVisitor(Controller controller, ILoaderProgress monitor, DataWriter successWriter,
             DataWriter errorWriter) {
-        super(controller, monitor, successWriter, errorWriter);
+        super(controller, monitor, successWriter, errorWriter, "partnerLoadBatch");
     }
 
     @Override
-    protected void loadBatch() throws DataAccessObjectException, LoadException {
-        Object[] results = null;
-        setHeaders();
-        try {
-            results = executeClientAction(getController().getPartnerClient(), dynaArray);
-        } catch (ApiFault e) {
-            handleException(e);
-        } catch (ConnectionException e) {
-            handleException(e);
-        }
-
-        writeOutputToWriter(results);
-        setLastRunProperties(results);
-
-        // update Monitor
-        getProgressMonitor().worked(results.length);
-        getProgressMonitor().setSubTask(getRateCalculator().calculateSubTask(getNumberOfRows(), getNumberErrors()));
-
-        // now clear the arrays
-        clearArrays();
+    protected ClientAction<Object[]> createBatchRequest(List<DynaBean> dynaBeans) {
+        final PartnerClient client = getController().getPartnerClient();
+        return () -> executeClientAction(client, dynaBeans);
+    }
 
+    // have to do this because although saveResult and deleteResult
+    // are a) not the same class yet b) not subclassed
+    @Override
+    protected RowResult mapResult(Object result) {
+        if (result instanceof SaveResult) {
+            SaveResult saveRes = (SaveResult)result;
+            String statusMsg = OperationInfo.insert == getConfig().getOperationInfo()
+                    ? Messages.getString("DAOLoadVisitor.statusItemCreated")
+                    : Messages.getString("DAOLoadVisitor.statusItemUpdated");
+            return new RowResult(saveRes.getSuccess(), saveRes.getId(), saveRes.getErrors(), statusMsg);
+        } else if (result instanceof DeleteResult) {
+            DeleteResult deleteRes = (DeleteResult)result;
+            return new RowResult(deleteRes.getSuccess(), deleteRes.getId(), deleteRes.getErrors(),
+                    Messages.getString("DAOLoadVisitor.statusItemDeleted"));
+        } else if (result instanceof UndeleteResult) {
+            UndeleteResult undeleteRes = (UndeleteResult)result;
+            return new RowResult(undeleteRes.getSuccess(), undeleteRes.getId(), undeleteRes.getErrors(),
+                    Messages.getString("DAOLoadVisitor.statusItemUndeleted"));
+        } else {
+            UpsertResult upsertRes = (UpsertResult)result;
+            String statusMsg = upsertRes.getCreated() ? Messages.getString("DAOLoadVisitor.statusItemCreated")
+                    : Messages.getString("DAOLoadVisitor.statusItemUpdated");
+            return new RowResult(upsertRes.getSuccess(), upsertRes.getId(), upsertRes.getErrors(), statusMsg);
+        }
     }
-    
-    private void setHeaders() {
+
+    @Override
+    protected void setHeaders() {
         setKeepAccountTeamHeader();
     }
     
@@ -108,64 +114,6 @@ public abstract class PartnerLoadVisitor extends DAOLoadVisitor {
         this.controller.getPartnerClient().getConnection().setOwnerChangeOptions(ownerChangeOptionArray);
     }
 
-    private void writeOutputToWriter(Object[] results)
-            throws DataAccessObjectException, LoadException {
-
-        // have to do this because although saveResult and deleteResult
-        // are a) not the same class yet b) not subclassed
-        int batchRowCounter = 0;
-        for (int i = 0; i < this.daoRowList.size(); i++) {
-            Row daoRow = this.daoRowList.get(i);
-            if (!isRowConversionSuccessful()) {
-                continue;
-            }
-            String statusMsg = null;
-            if (results instanceof SaveResult[]) {
-                SaveResult saveRes = (SaveResult)results[batchRowCounter];
-                if (saveRes.getSuccess()) {
-                    if (OperationInfo.insert == getConfig().getOperationInfo()) {
-                        statusMsg = Messages.getString("DAOLoadVisitor.statusItemCreated");
-                    } else {
-                        statusMsg = Messages.getString("DAOLoadVisitor.statusItemUpdated");
-                    }
-                }
-                daoRow.put(Config.STATUS_COLUMN_NAME, statusMsg);
-                processResult(daoRow, saveRes.getSuccess(), saveRes.getId(), saveRes.getErrors());
-            } else if (results instanceof DeleteResult[]) {
-                DeleteResult deleteRes = (DeleteResult)results[batchRowCounter];
-                if (deleteRes.getSuccess()) {
-                    statusMsg = Messages.getString("DAOLoadVisitor.statusItemDeleted");
-                }
-                daoRow.put(Config.STATUS_COLUMN_NAME, statusMsg);
-                processResult(daoRow, deleteRes.getSuccess(), deleteRes.getId(), deleteRes.getErrors());
-            } else if (results instanceof UndeleteResult[]) {
-                UndeleteResult undeleteRes = (UndeleteResult)results[batchRowCounter];
-                if (undeleteRes.getSuccess()) {
-                    statusMsg = Messages.getString("DAOLoadVisitor.statusItemUndeleted");
-                }
-                daoRow.put(Config.STATUS_COLUMN_NAME, statusMsg);
-                processResult(daoRow, undeleteRes.getSuccess(), undeleteRes.getId(), undeleteRes.getErrors());
-            } else if (results instanceof UpsertResult[]) {
-                UpsertResult upsertRes = (UpsertResult)results[batchRowCounter];
-                if (upsertRes.getSuccess()) {
-                    statusMsg = upsertRes.getCreated() ? Messages.getString("DAOLoadVisitor.statusItemCreated")
-                            : Messages.getString("DAOLoadVisitor.statusItemUpdated");
-                }
-                daoRow.put(Config.STATUS_COLUMN_NAME, statusMsg);
-                processResult(daoRow, upsertRes.getSuccess(), upsertRes.getId(), upsertRes.getErrors());
-            }
-            batchRowCounter++;
-            if (results.length < batchRowCounter) {
-                getLogger().fatal(Messages.getString("Visitor.errorResultsLength")); //$NON-NLS-1$
-                throw new LoadException(Messages.getString("Visitor.errorResultsLength"));
-            }
-        }
-        if (results.length > batchRowCounter) {
-            getLogger().fatal(Messages.getString("Visitor.errorResultsLength")); //$NON-NLS-1$
-            throw new LoadException(Messages.getString("Visitor.errorResultsLength"));
-        }
-    }
-
     /**
      * This method performs the actual client action. It must be implemented by all subclasses. It returns an object[]
      * because of saveResult[] and deleteResult[], while do the exact same thing, are two different classes without
@@ -46,6 +46,11 @@ public class PartnerQueryAllVisitor extends PartnerQueryVisitor {
         super(action, controller, monitor, queryWriter, successWriter, errorWriter);
     }
 
+    @Override
+    protected boolean isQueryAll() {
+        return true;
+    }
+
     @Override
     protected QueryResult getQueryResult(String soql) throws ConnectionException {
         return getController().getPartnerClient().queryAll(soql);
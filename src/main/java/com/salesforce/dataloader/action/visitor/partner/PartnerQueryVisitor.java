@@ -26,8 +26,10 @@
 
 package com.salesforce.dataloader.action.visitor.partner;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 import org.apache.logging.log4j.LogManager;
@@ -35,13 +37,17 @@ import org.apache.logging.log4j.Logger;
 
 import com.salesforce.dataloader.action.progress.ILoaderProgress;
 import com.salesforce.dataloader.action.visitor.AbstractQueryVisitor;
+import com.salesforce.dataloader.action.visitor.QueryPartitioner;
+import com.salesforce.dataloader.client.PartnerClient;
 import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.DAORowCache;
 import com.salesforce.dataloader.dao.DataWriter;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
 import com.salesforce.dataloader.exception.OperationException;
+import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.mapping.SOQLMapper;
 import com.salesforce.dataloader.model.Row;
 import com.salesforce.dataloader.action.AbstractExtractAction;
@@ -59,6 +65,7 @@ import com.sforce.ws.ConnectionException;
 public class PartnerQueryVisitor extends AbstractQueryVisitor {
 
     private QueryResult qr;
+    private PartitionedQueryResultFetcher partitionedFetcher;
     private final Logger logger;
 
     public PartnerQueryVisitor(AbstractExtractAction action, Controller controller, ILoaderProgress monitor, DataWriter queryWriter,
@@ -69,33 +76,119 @@ public class PartnerQueryVisitor extends AbstractQueryVisitor {
 
     @Override
     protected int executeQuery(String soql) throws ConnectionException {
+        final PartnerClient client = getController().getPartnerClient();
+        final List<String> partitionSoqls = new QueryPartitioner(client, isQueryAll())
+                .partition(soql, getConfig().getString(Config.EXTRACT_PARTITION_FIELD), getMaxExtractPartitions());
+        if (partitionSoqls.size() > 1) {
+            // every partition follows its own query cursor, so keep at least one page of each fetched ahead
+            this.partitionedFetcher = new PartitionedQueryResultFetcher(partitionSoqls,
+                    partitionSoqls.size() * Math.max(1, getMaxPrefetchedPages()),
+                    new PartitionedQueryResultFetcher.QueryRunner() {
+                        @Override
+                        public QueryResult query(String partitionSoql) throws ConnectionException {
+                            return getQueryResult(partitionSoql);
+                        }
+
+                        @Override
+                        public QueryResult queryMore(String queryLocator) throws ConnectionException {
+                            return client.queryMore(queryLocator);
+                        }
+                    });
+            try {
+                return this.partitionedFetcher.getTotalSize();
+            } catch (ConnectionException | RuntimeException e) {
+                this.partitionedFetcher.close();
+                throw e;
+            }
+        }
         this.qr = getQueryResult(soql);
         return this.qr.getSize();
     }
 
+    protected boolean isQueryAll() {
+        return false;
+    }
+
     protected QueryResult getQueryResult(String soql) throws ConnectionException {
         return getController().getPartnerClient().query(soql);
     }
 
     @Override
     protected void writeExtraction() throws DataAccessObjectException, ConnectionException {
-        while (this.qr.getRecords() != null) {
-            // form a map, because we aren't guaranteed to get back all the fields
-            final SObject[] sfdcResults = this.qr.getRecords();
-            if (sfdcResults == null) {
-                getLogger().error(Messages.getMessage(getClass(), "errorNoResults"));
-                return;
-            }
-            for (int i = 0; i < sfdcResults.length; i++) {
-                // add row to batch
-                addResultRow(getDaoRow(sfdcResults[i], i==0), sfdcResults[i].getId());
+        if (this.partitionedFetcher != null) {
+            writePartitionedExtraction();
+            return;
+        }
+        final PartnerClient client = getController().getPartnerClient();
+        final QueryResultPrefetcher prefetcher = new QueryResultPrefetcher(this.qr, getMaxPrefetchedPages(),
+                queryLocator -> client.queryMore(queryLocator));
+        try {
+            while (this.qr.getRecords() != null) {
+                // form a map, because we aren't guaranteed to get back all the fields
+                final SObject[] sfdcResults = this.qr.getRecords();
+                if (sfdcResults == null) {
+                    getLogger().error(Messages.getMessage(getClass(), "errorNoResults"));
+                    return;
+                }
+                writeResultPage(sfdcResults);
+                if (this.qr.getDone()) {
+                    break;
+                }
+                if (getProgressMonitor().isCanceled()) return;
+                this.qr = prefetcher.takeNextPage();
             }
-            if (this.qr.getDone()) {
-                break;
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    /**
+     * Writes the rows of all partitions in partition order, so that the output does not depend on
+     * which partition is fetched first.
+     */
+    private void writePartitionedExtraction() throws DataAccessObjectException, ConnectionException {
+        final PartitionOrderedRowWriter rowWriter = new PartitionOrderedRowWriter(
+                this.partitionedFetcher.getPartitionCount(), DAORowCache.getConfiguredMaxMemoryBytes(),
+                (row, id) -> addResultRow(row, id));
+        try {
+            PartitionedQueryResultFetcher.FetchedPage page;
+            while ((page = this.partitionedFetcher.takeNextPage()) != null) {
+                if (page.isPartitionDone()) {
+                    rowWriter.partitionDone(page.getPartition());
+                    continue;
+                }
+                final SObject[] sfdcResults = page.getResult().getRecords();
+                if (sfdcResults != null) {
+                    for (int i = 0; i < sfdcResults.length; i++) {
+                        rowWriter.addRow(page.getPartition(), getDaoRow(sfdcResults[i], i==0), sfdcResults[i].getId());
+                    }
+                }
+                if (getProgressMonitor().isCanceled()) return;
             }
-            if (getProgressMonitor().isCanceled()) return;
-            this.qr = getController().getPartnerClient().queryMore(this.qr.getQueryLocator());
+        } finally {
+            this.partitionedFetcher.close();
+            rowWriter.close();
+        }
+    }
+
+    private void writeResultPage(SObject[] sfdcResults) throws DataAccessObjectException {
+        for (int i = 0; i < sfdcResults.length; i++) {
+            // add row to batch
+            addResultRow(getDaoRow(sfdcResults[i], i==0), sfdcResults[i].getId());
+        }
+    }
+
+    private int getMaxPrefetchedPages() {
+        int maxPrefetchedPages = Config.DEFAULT_EXTRACT_PREFETCH_PAGES;
+        try {
+            maxPrefetchedPages = getConfig().getInt(Config.EXTRACT_PREFETCH_PAGES);
+        } catch (ParameterLoadException e) {
+            logger.warn("Incorrectly configured " + Config.EXTRACT_PREFETCH_PAGES);
+        }
+        if (maxPrefetchedPages < 0) {
+            return 0;
         }
+        return Math.min(maxPrefetchedPages, Config.MAX_EXTRACT_PREFETCH_PAGES);
     }
 
     private Row getDaoRow(SObject sob, boolean firstRowInBatch) {
@@ -138,17 +231,18 @@ public class PartnerQueryVisitor extends AbstractQueryVisitor {
         return row;
     }
 
-    private static final DateFormat DF = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    private static final DateTimeFormatter DATE_ONLY_DF = DateTimeFormatter.ofPattern("yyyy-MM-dd")
+            .withZone(ZoneOffset.UTC);
     private Object convertFieldValue(Object fieldVal) {
         if (fieldVal instanceof Calendar) {
-            DF.setCalendar((Calendar)fieldVal);
-            return DF.format(((Calendar)fieldVal).getTime());
+            // formatted in the time zone of the calendar
+            Calendar cal = (Calendar)fieldVal;
+            return DF.format(ZonedDateTime.ofInstant(cal.toInstant(), cal.getTimeZone().toZoneId()));
         }
 
         if (fieldVal instanceof Date) {
-            final DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-            df.setTimeZone(TimeZone.getTimeZone("GMT"));
-            return df.format((Date)fieldVal);
+            return DATE_ONLY_DF.format(Instant.ofEpochMilli(((Date)fieldVal).getTime()));
         }
 
         return fieldVal;
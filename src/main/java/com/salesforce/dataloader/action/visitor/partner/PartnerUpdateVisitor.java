@@ -49,7 +49,7 @@ public class PartnerUpdateVisitor extends PartnerLoadVisitor {
 
     @Override
     protected Object[] executeClientAction(PartnerClient client, List<DynaBean> dynabeans) throws ConnectionException {
-        return client.loadUpdates(dynabeans);
+        return client.loadUpdates(dynabeans, getFieldPlan());
     }
 
 }
@@ -49,7 +49,7 @@ public class PartnerUpsertVisitor extends PartnerLoadVisitor {
 
     @Override
     protected Object[] executeClientAction(PartnerClient client, List<DynaBean> dynabeans) throws ConnectionException {
-        return client.loadUpserts(dynabeans);
+        return client.loadUpserts(dynabeans, getFieldPlan());
     }
 
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.partner;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import com.sforce.soap.partner.QueryResult;
+import com.sforce.ws.ConnectionException;
+
+/**
+ * Fetches the queryMore pages that follow the page being written on a background thread,
+ * keeping at most a configured number of fetched pages waiting to be taken.
+ * 
+ * With a limit of 0, each page is fetched on the calling thread when it is taken.
+ */
+class QueryResultPrefetcher {
+
+    interface PageFetcher {
+        QueryResult queryMore(String queryLocator) throws ConnectionException;
+    }
+
+    private final PageFetcher fetcher;
+    private final BlockingQueue<CompletableFuture<QueryResult>> fetchedPages;
+    private final Semaphore freePageSlots;
+    private final Thread fetchThread;
+    private volatile boolean closed = false;
+    private QueryResult lastTakenPage;
+
+    QueryResultPrefetcher(QueryResult firstPage, int maxBufferedPages, PageFetcher fetcher) {
+        this.fetcher = fetcher;
+        this.lastTakenPage = firstPage;
+        if (maxBufferedPages > 0 && !firstPage.getDone()) {
+            this.fetchedPages = new LinkedBlockingQueue<CompletableFuture<QueryResult>>();
+            this.freePageSlots = new Semaphore(maxBufferedPages);
+            final String firstLocator = firstPage.getQueryLocator();
+            this.fetchThread = new Thread(() -> fetchAhead(firstLocator), "partnerQueryPrefetch");
+            this.fetchThread.setDaemon(true);
+            this.fetchThread.start();
+        } else {
+            this.fetchedPages = null;
+            this.freePageSlots = null;
+            this.fetchThread = null;
+        }
+    }
+
+    /**
+     * @return the page following the last page taken, or null if the last page taken was the final one
+     */
+    QueryResult takeNextPage() throws ConnectionException {
+        if (this.lastTakenPage.getDone()) {
+            return null;
+        }
+        if (this.fetchThread == null) {
+            this.lastTakenPage = this.fetcher.queryMore(this.lastTakenPage.getQueryLocator());
+            return this.lastTakenPage;
+        }
+        try {
+            final CompletableFuture<QueryResult> page = this.fetchedPages.take();
+            this.freePageSlots.release();
+            this.lastTakenPage = page.get();
+            return this.lastTakenPage;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("Interrupted while waiting for a query result page", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ConnectionException) {
+                throw (ConnectionException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Stops fetching pages ahead. Pages fetched but not taken are dropped.
+     */
+    void close() {
+        this.closed = true;
+        if (this.fetchThread != null) {
+            this.fetchThread.interrupt();
+        }
+    }
+
+    private void fetchAhead(String queryLocator) {
+        try {
+            while (!this.closed) {
+                this.freePageSlots.acquire();
+                final QueryResult page;
+                try {
+                    page = this.fetcher.queryMore(queryLocator);
+                } catch (Exception e) {
+                    this.fetchedPages.add(CompletableFuture.failedFuture(e));
+                    return;
+                }
+                this.fetchedPages.add(CompletableFuture.completedFuture(page));
+                if (page.getDone()) {
+                    return;
+                }
+                queryLocator = page.getQueryLocator();
+            }
+        } catch (InterruptedException e) {
+            // closed while waiting for a free page slot
+        }
+    }
+}
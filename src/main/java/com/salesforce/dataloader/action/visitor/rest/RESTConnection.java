@@ -48,6 +48,7 @@ import com.salesforce.dataloader.client.CompositeRESTClient.ACTION_ENUM;
 import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dyna.FieldPlan;
 import com.salesforce.dataloader.dyna.SforceDynaBean;
 import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.util.AppUtil;
@@ -70,7 +71,7 @@ public class RESTConnection {
 
 
     @SuppressWarnings("unchecked")
-    public SaveResult[] loadAction(SessionInfo session, ACTION_ENUM action, List<DynaBean> dynabeans) throws ConnectionException {
+    public SaveResult[] loadAction(SessionInfo session, ACTION_ENUM action, List<DynaBean> dynabeans, FieldPlan fieldPlan) throws ConnectionException {
         String actionStr = "update"; // default
         switch (action) {
             case DELETE:
@@ -83,7 +84,7 @@ public class RESTConnection {
         logger.debug(Messages.getFormattedString("Client.beginOperation", actionStr)); //$NON-NLS-1$
         ConnectionException connectionException = null;
         try {
-            Map<String, Object> batchRecords = this.getSobjectMapForCompositeREST(dynabeans, "update");
+            Map<String, Object> batchRecords = this.getSobjectMapForCompositeREST(dynabeans, fieldPlan, "update");
             String json = "";
             try {
                 json = AppUtil.serializeToJson(batchRecords);
@@ -197,10 +198,10 @@ public class RESTConnection {
         throw connectionException;
     }
     
-    private Map<String, Object> getSobjectMapForCompositeREST(List<DynaBean> dynaBeans, String opName) {
+    private Map<String, Object> getSobjectMapForCompositeREST(List<DynaBean> dynaBeans, FieldPlan fieldPlan, String opName) {
         try {
             List<Map<String, Object>> sobjectList = SforceDynaBean.getRESTSObjectArray(controller, dynaBeans, controller.getConfig().getString(Config.ENTITY),
-                    controller.getConfig().getBoolean(Config.INSERT_NULLS));
+                    fieldPlan, controller.getConfig().getBoolean(Config.INSERT_NULLS));
             HashMap<String, Object> recordsMap = new HashMap<String, Object>();
             recordsMap.put("records", sobjectList);
             recordsMap.put("allOrNone", false);
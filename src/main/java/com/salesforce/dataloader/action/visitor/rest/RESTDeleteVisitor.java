@@ -44,6 +44,6 @@ public class RESTDeleteVisitor extends RESTLoadVisitor {
     }
 
     protected Object[] executeClientAction(CompositeRESTClient client, List<DynaBean> dynabeans) throws ConnectionException {
-        return client.loadAction(CompositeRESTClient.ACTION_ENUM.DELETE, dynabeans);
+        return client.loadAction(CompositeRESTClient.ACTION_ENUM.DELETE, dynabeans, getFieldPlan());
     }
 }
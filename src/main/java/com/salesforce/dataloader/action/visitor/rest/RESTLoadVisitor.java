@@ -32,90 +32,38 @@ import org.apache.commons.beanutils.DynaBean;
 
 import com.salesforce.dataloader.action.OperationInfo;
 import com.salesforce.dataloader.action.progress.ILoaderProgress;
-import com.salesforce.dataloader.action.visitor.DAOLoadVisitor;
+import com.salesforce.dataloader.action.visitor.InFlightBatchLoadVisitor;
 import com.salesforce.dataloader.client.CompositeRESTClient;
-import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
 import com.salesforce.dataloader.dao.DataWriter;
-import com.salesforce.dataloader.exception.DataAccessObjectException;
-import com.salesforce.dataloader.exception.LoadException;
-import com.salesforce.dataloader.exception.OperationException;
-import com.salesforce.dataloader.model.Row;
 import com.sforce.soap.partner.SaveResult;
-import com.sforce.soap.partner.fault.ApiFault;
 import com.sforce.ws.ConnectionException;
 
-public abstract class RESTLoadVisitor extends DAOLoadVisitor {
+public abstract class RESTLoadVisitor extends InFlightBatchLoadVisitor {
 
     public RESTLoadVisitor(Controller controller, ILoaderProgress monitor, DataWriter successWriter,
             DataWriter errorWriter) {
-        super(controller, monitor, successWriter, errorWriter);
+        super(controller, monitor, successWriter, errorWriter, "restLoadBatch");
     }
 
-    protected void loadBatch() throws DataAccessObjectException, OperationException {
-        Object[] results = null;
-        setHeaders();
-        try {
-            // executeClientAction() is implemented by concrete subclasses
-            results = executeClientAction(getController().getRESTClient(), dynaArray);
-        } catch (ApiFault e) {
-            handleException(e);
-        } catch (ConnectionException e) {
-            handleException(e);
-        }
-
-        writeOutputToWriter(results);
-        setLastRunProperties(results);
-
-        // update Monitor
-        getProgressMonitor().worked(results.length);
-        getProgressMonitor().setSubTask(getRateCalculator().calculateSubTask(getNumberOfRows(), getNumberErrors()));
-
-        // now clear the arrays
-        clearArrays();
+    @Override
+    protected ClientAction<Object[]> createBatchRequest(List<DynaBean> dynaBeans) {
+        final CompositeRESTClient client = getController().getRESTClient();
+        // composite requests are only used for updates and deletes, which are sent again on their own
+        // after a transport failure, see isIdempotentOperation()
+        return () -> executeClientAction(client, dynaBeans);
     }
 
-    private void writeOutputToWriter(Object[] results)
-            throws DataAccessObjectException, LoadException {
-        // have to do this because although saveResult and deleteResult
-        // are a) not the same class yet b) not subclassed
-        int batchRowCounter = 0;
-        for (int i = 0; i < this.daoRowList.size(); i++) {
-            Row daoRow = this.daoRowList.get(i);
-            if (!isRowConversionSuccessful()) {
-                continue;
-            }
-            String statusMsg = null;
-            if (results instanceof SaveResult[]) {
-                SaveResult saveRes = (SaveResult)results[batchRowCounter];
-                if (saveRes.getSuccess()) {
-                    if (OperationInfo.insert == getConfig().getOperationInfo()) {
-                        statusMsg = Messages.getString("DAOLoadVisitor.statusItemCreated");
-                    } else {
-                        statusMsg = Messages.getString("DAOLoadVisitor.statusItemUpdated");
-                    }
-                }
-                daoRow.put(Config.STATUS_COLUMN_NAME, statusMsg);
-                processResult(daoRow, saveRes.getSuccess(), saveRes.getId(), saveRes.getErrors());
-            }
-            batchRowCounter++;
-            if (results.length < batchRowCounter) {
-                getLogger().fatal(Messages.getString("Visitor.errorResultsLength")); //$NON-NLS-1$
-                throw new LoadException(Messages.getString("Visitor.errorResultsLength"));
-            }
-        }
-        if (results.length > batchRowCounter) {
-            getLogger().fatal(Messages.getString("Visitor.errorResultsLength")); //$NON-NLS-1$
-            throw new LoadException(Messages.getString("Visitor.errorResultsLength"));
-        }        
+    @Override
+    protected RowResult mapResult(Object result) {
+        SaveResult saveRes = (SaveResult)result;
+        String statusMsg = OperationInfo.insert == getConfig().getOperationInfo()
+                ? Messages.getString("DAOLoadVisitor.statusItemCreated")
+                : Messages.getString("DAOLoadVisitor.statusItemUpdated");
+        return new RowResult(saveRes.getSuccess(), saveRes.getId(), saveRes.getErrors(), statusMsg);
     }
 
-    private void setHeaders() {
-        // TODO Auto-generated method stub
-        
-    }
-    
     /**
      * This method performs the actual client action. It must be implemented by all subclasses. It returns an object[]
      * because of saveResult[] and deleteResult[], while do the exact same thing, are two different classes without
@@ -44,6 +44,6 @@ public class RESTUpdateVisitor extends RESTLoadVisitor {
     }
 
     protected Object[] executeClientAction(CompositeRESTClient client, List<DynaBean> dynabeans) throws ConnectionException {
-        return client.loadAction(CompositeRESTClient.ACTION_ENUM.UPDATE, dynabeans);
+        return client.loadAction(CompositeRESTClient.ACTION_ENUM.UPDATE, dynabeans, getFieldPlan());
     }
 }
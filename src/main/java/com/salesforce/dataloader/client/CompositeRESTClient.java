@@ -34,6 +34,7 @@ import org.apache.logging.log4j.Logger;
 import com.salesforce.dataloader.action.visitor.rest.RESTConnection;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dyna.FieldPlan;
 import com.sforce.async.AsyncApiException;
 import com.sforce.soap.partner.SaveResult;
 import com.sforce.ws.ConnectionException;
@@ -65,8 +66,8 @@ public class CompositeRESTClient extends RESTClient<RESTConnection> {
         return "/services/data/v" + getAPIVersionForTheSession() + "/composite/sobjects/";
     }
 
-    public SaveResult[] loadAction(ACTION_ENUM action, List<DynaBean> dynabeans) throws ConnectionException {
-        return getConnection().loadAction(getSession(), action, dynabeans);
+    public SaveResult[] loadAction(ACTION_ENUM action, List<DynaBean> dynabeans, FieldPlan fieldPlan) throws ConnectionException {
+        return getConnection().loadAction(getSession(), action, dynabeans, fieldPlan);
     }
 
     @Override
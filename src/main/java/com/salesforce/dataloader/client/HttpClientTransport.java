@@ -33,6 +33,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -89,6 +90,10 @@ public class HttpClientTransport implements HttpTransportInterface {
     private static CloseableHttpClient currentHttpClient = null;
     private static boolean reuseConnection = true;
     private static long serverInvocationCount = 0;
+    private static int activeRequestCount = 0;
+    // Load visitors may keep several requests in flight on the shared client
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 20;
+    private static final long MAX_IDLE_CONNECTION_SECS = 30;
 
     public HttpClientTransport() {
     }
@@ -177,13 +182,30 @@ public class HttpClientTransport implements HttpTransportInterface {
         return true;
     }
     
-    private static synchronized void initializeHttpClient() throws UnknownHostException {
-        if (!isReuseConnection()) {
+    private static synchronized CloseableHttpClient acquireHttpClient() throws UnknownHostException {
+        serverInvocationCount++;
+        if (!isReuseConnection() && activeRequestCount == 0) {
+            closeConnections();
+        }
+        initializeHttpClient();
+        activeRequestCount++;
+        return currentHttpClient;
+    }
+
+    private static synchronized void releaseHttpClient() {
+        activeRequestCount--;
+        // only close the client once no other request is using it
+        if (!isReuseConnection() && activeRequestCount == 0) {
             closeConnections();
-            currentHttpClient = null;
         }
+    }
+
+    private static synchronized void initializeHttpClient() throws UnknownHostException {
         if (currentHttpClient == null) {
-            HttpClientBuilder httpClientBuilder = HttpClientBuilder.create().useSystemProperties();
+            HttpClientBuilder httpClientBuilder = HttpClientBuilder.create().useSystemProperties()
+                    .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE)
+                    .setMaxConnTotal(MAX_CONNECTIONS_PER_ROUTE)
+                    .evictIdleConnections(MAX_IDLE_CONNECTION_SECS, TimeUnit.SECONDS);
             
             if (currentConfig.getProxy().address() != null) {
                 String proxyUser = currentConfig.getProxyUsername() == null ? "" : currentConfig.getProxyUsername();
@@ -214,8 +236,7 @@ public class HttpClientTransport implements HttpTransportInterface {
     
     @Override
     public synchronized InputStream getContent() throws IOException {
-        serverInvocationCount++;
-        initializeHttpClient();
+        final CloseableHttpClient httpClient = acquireHttpClient();
         if (this.httpMethod instanceof HttpEntityEnclosingRequestBase
             && ((HttpEntityEnclosingRequestBase)this.httpMethod).getEntity() == null) {
 	        byte[] entityBytes = entityByteOut.toByteArray();
@@ -231,11 +252,11 @@ public class HttpClientTransport implements HttpTransportInterface {
     
             if (currentConfig.getNtlmDomain() != null && !currentConfig.getNtlmDomain().equals("")) {
                 // need to send a HEAD request to trigger NTLM authentication
-                try (CloseableHttpResponse ignored = currentHttpClient.execute(new HttpHead("http://salesforce.com"))) {
+                try (CloseableHttpResponse ignored = httpClient.execute(new HttpHead("http://salesforce.com"))) {
                 }
             }
     
-            try (CloseableHttpResponse response = currentHttpClient.execute(this.httpMethod, context)) {
+            try (CloseableHttpResponse response = httpClient.execute(this.httpMethod, context)) {
                 successful = true;
                 if (response.getStatusLine().getStatusCode() > 399) {
                     successful = false;
@@ -256,9 +277,7 @@ public class HttpClientTransport implements HttpTransportInterface {
                 }
             }
         } finally {
-            if (isReuseConnection()) {
-                closeConnections();
-            }
+            releaseHttpClient();
         }
         return input;
     }
@@ -324,7 +343,14 @@ public class HttpClientTransport implements HttpTransportInterface {
         	if (contentTypeStr != null) {
         		contentType = ContentType.create(contentTypeStr);
         	}
-        	BufferedHttpEntity entity = new BufferedHttpEntity(new InputStreamEntity(requestInputStream, contentType));
+        	HttpEntity entity = new InputStreamEntity(requestInputStream, contentType);
+        	if (currentConfig.getNtlmDomain() != null && !currentConfig.getNtlmDomain().equals("")) {
+        	    // NTLM authentication may need to send the request again
+        	    entity = new BufferedHttpEntity(entity);
+        	} else {
+        	    // stream the content instead of holding all of it in memory
+        	    ((InputStreamEntity)entity).setChunked(true);
+        	}
         	currentConfig.setUseChunkedPost(true);
             if (this.httpMethod instanceof HttpEntityEnclosingRequestBase) {
                 ((HttpEntityEnclosingRequestBase)this.httpMethod).setEntity(entity);
@@ -360,7 +386,7 @@ public class HttpClientTransport implements HttpTransportInterface {
         return output;
     }
     
-    public static void closeConnections() {
+    public static synchronized void closeConnections() {
         if (currentHttpClient != null) {
             try {
                 currentHttpClient.close();
@@ -38,6 +38,7 @@ import com.salesforce.dataloader.action.OperationInfo;
 import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dyna.FieldPlan;
 import com.salesforce.dataloader.dyna.ParentIdLookupFieldFormatter;
 import com.salesforce.dataloader.dyna.SforceDynaBean;
 import com.salesforce.dataloader.exception.ParameterLoadException;
@@ -293,7 +294,17 @@ public class PartnerClient extends ClientBase<PartnerConnection> {
     }
 
     public UpsertResult[] loadUpserts(List<DynaBean> dynaBeans) throws ConnectionException {
-        UpsertResult[] ur = runOperation(UPSERT_OPERATION, getSobjects(dynaBeans, UPSERT_OPERATION.getName()));
+        return loadUpserts(dynaBeans, newFieldPlan());
+    }
+
+    /**
+     * @param dynaBeans
+     * @param fieldPlan field plan of the operation
+     * @return UpsertResult array
+     * @throws ConnectionException
+     */
+    public UpsertResult[] loadUpserts(List<DynaBean> dynaBeans, FieldPlan fieldPlan) throws ConnectionException {
+        UpsertResult[] ur = runOperation(UPSERT_OPERATION, getSobjects(dynaBeans, fieldPlan, UPSERT_OPERATION.getName()));
 
         for (int j = 0; j < ur.length; j++) {
             if (ur[j].getSuccess()) {
@@ -314,7 +325,17 @@ public class PartnerClient extends ClientBase<PartnerConnection> {
      * @throws ConnectionException
      */
     public SaveResult[] loadUpdates(List<DynaBean> dynaBeans) throws ConnectionException {
-        return runSaveOperation(dynaBeans, UPDATE_OPERATION, false);
+        return loadUpdates(dynaBeans, newFieldPlan());
+    }
+
+    /**
+     * @param dynaBeans
+     * @param fieldPlan field plan of the operation
+     * @return SaveResult array
+     * @throws ConnectionException
+     */
+    public SaveResult[] loadUpdates(List<DynaBean> dynaBeans, FieldPlan fieldPlan) throws ConnectionException {
+        return runSaveOperation(dynaBeans, fieldPlan, UPDATE_OPERATION, false);
     }
 
     /**
@@ -323,13 +344,29 @@ public class PartnerClient extends ClientBase<PartnerConnection> {
      * @throws ConnectionExceptio
      */
     public SaveResult[] loadInserts(List<DynaBean> dynaBeans) throws ConnectionException {
-        return runSaveOperation(dynaBeans, INSERT_OPERATION, true);
+        return loadInserts(dynaBeans, newFieldPlan());
+    }
 
+    /**
+     * @param dynaBeans
+     * @param fieldPlan field plan of the operation
+     * @return SaveResult array
+     * @throws ConnectionException
+     */
+    public SaveResult[] loadInserts(List<DynaBean> dynaBeans, FieldPlan fieldPlan) throws ConnectionException {
+        return runSaveOperation(dynaBeans, fieldPlan, INSERT_OPERATION, true);
+    }
+
+    /**
+     * Builds the field plan for a single call. Loads pass the plan of their visitor instead, which is built once.
+     */
+    private FieldPlan newFieldPlan() {
+        return new FieldPlan(controller.getFieldTypes(), controller.getMapper());
     }
 
-    private SaveResult[] runSaveOperation(List<DynaBean> dynaBeans, ClientOperation<SaveResult[], SObject[]> op,
+    private SaveResult[] runSaveOperation(List<DynaBean> dynaBeans, FieldPlan fieldPlan, ClientOperation<SaveResult[], SObject[]> op,
                                           boolean isInsert) throws ApiFault, ConnectionException {
-        SaveResult[] sr = runOperation(op, getSobjects(dynaBeans, op.getName()));
+        SaveResult[] sr = runOperation(op, getSobjects(dynaBeans, fieldPlan, op.getName()));
         String saveMessage = isInsert ? "Client.itemCreated" : "Client.itemUpdated";
         for (int j = 0; j < sr.length; j++) {
             processResult(sr[j].isSuccess(), saveMessage, sr[j].getId(), sr[j].getErrors(), j);
@@ -337,10 +374,10 @@ public class PartnerClient extends ClientBase<PartnerConnection> {
         return sr;
     }
 
-    private SObject[] getSobjects(List<DynaBean> dynaBeans, String opName) {
+    private SObject[] getSobjects(List<DynaBean> dynaBeans, FieldPlan fieldPlan, String opName) {
         try {
             SObject[] sobjects = SforceDynaBean.getSObjectArray(controller, dynaBeans, config.getString(Config.ENTITY),
-                    config.getBoolean(Config.INSERT_NULLS));
+                    fieldPlan, config.getBoolean(Config.INSERT_NULLS));
             logger.debug(Messages.getString("Client.arraySize") + sobjects.length); //$NON-NLS-1$
             return sobjects;
         } catch (IllegalAccessException ex) {
@@ -131,6 +131,7 @@ public class Config {
     public static final int DEFAULT_MIN_RETRY_SECS = 2;
     public static final int DEFAULT_MAX_RETRIES = 3;
     public static final int MAX_RETRIES_LIMIT = 10;
+    public static final int MAX_RETRY_SLEEP_SECS = 300;
     public static final int DEFAULT_CONNECTION_TIMEOUT_SECS = 60;
     public static final int DEFAULT_TIMEOUT_SECS = 540;
     public static final int DEFAULT_LOAD_BATCH_SIZE = 200;
@@ -139,15 +140,39 @@ public class Config {
     public static final int MAX_SOAP_API_IMPORT_BATCH_SIZE = 200;
     public static final int MAX_DAO_READ_BATCH_SIZE = 200;
     public static final int MAX_DAO_WRITE_BATCH_SIZE = 2000;
+    public static final int DEFAULT_DAO_READ_THREADS = 1;
+    public static final int MAX_DAO_READ_THREADS = 16;
     
     // Bulk v1 and v2 limits specified at https://developer.salesforce.com/docs/atlas.en-us.salesforce_app_limits_cheatsheet.meta/salesforce_app_limits_cheatsheet/salesforce_app_limits_platform_bulkapi.htm
     public static final int MAX_BULK_API_IMPORT_BATCH_BYTES = 10000000;
     public static final int MAX_BULK_API_IMPORT_BATCH_SIZE = 10000;
     public static final int MAX_BULKV2_API_IMPORT_JOB_BYTES = 150000000;
     public static final int MAX_BULKV2_API_IMPORT_JOB_SIZE = 150000000;
+    // batch content beyond this size is spilled to a temporary file instead of being held in memory
+    public static final int MAX_BULK_API_BATCH_MEMORY_BUFFER_BYTES = 16000000;
+    // rows cached from the DAO beyond this estimated size are kept in a temporary file
+    public static final long DEFAULT_BULK_CACHE_MAX_MEMORY_BYTES = 64000000L;
     public static final int DEFAULT_BULK_API_IMPORT_BATCH_SIZE = 2000;
+    public static final int DEFAULT_LOAD_PIPELINE_WORKER_THREADS = 4;
+    public static final int DEFAULT_LOAD_MAX_CONCURRENT_BATCHES = 1;
+    public static final int MAX_LOAD_CONCURRENT_BATCHES = 10;
+    public static final int DEFAULT_LOAD_ROW_RETRIES = 0;
+    public static final int MAX_LOAD_ROW_RETRIES = 10;
+    public static final int DEFAULT_LOAD_ROW_RETRY_BATCH_SIZE = 50;
+    public static final int DEFAULT_LOAD_PIPELINE_QUEUE_CAPACITY = 8;
+    public static final int DEFAULT_BULKV2_LOAD_MAX_CONCURRENT_JOBS = 1;
+    public static final int MAX_BULKV2_LOAD_CONCURRENT_JOBS = 10;
+    public static final int MIN_BULKV2_LOAD_ROWS_PER_JOB = 10000;
+    public static final int DEFAULT_EXTRACT_PREFETCH_PAGES = 1;
+    public static final int MAX_EXTRACT_PREFETCH_PAGES = 10;
+    public static final int DEFAULT_BULK_QUERY_MAX_CONCURRENT_DOWNLOADS = 1;
+    public static final int MAX_BULK_QUERY_CONCURRENT_DOWNLOADS = 10;
+    public static final int DEFAULT_BULK_LOAD_MAX_CONCURRENT_RESULT_DOWNLOADS = 1;
+    public static final int MAX_BULK_LOAD_CONCURRENT_RESULT_DOWNLOADS = 10;
     
     public static final long DEFAULT_BULK_API_CHECK_STATUS_INTERVAL = 5000L;
+    public static final long MIN_BULK_API_CHECK_STATUS_INTERVAL = 1000L;
+    public static final long DEFAULT_BULK_API_MAX_CHECK_STATUS_INTERVAL = 60000L;
     public static final String DEFAULT_ENDPOINT_URL_PROD = "https://login.salesforce.com";
     public static final String DEFAULT_ENDPOINT_URL_SANDBOX = "https://test.salesforce.com";
     public static final String LIGHTNING_ENDPOINT_URL_PART_VAL = "lightning.force.com";
@@ -163,6 +188,9 @@ public class Config {
     
     public static final int DEFAULT_BULK_QUERY_PK_CHUNK_SIZE = 100000;
     public static final int MAX_BULK_QUERY_PK_CHUNK_SIZE = 250000;
+    public static final int DEFAULT_EXTRACT_PARTITIONS = 1;
+    public static final int MAX_EXTRACT_PARTITIONS = 10;
+    public static final String DEFAULT_EXTRACT_PARTITION_FIELD = "Id";
 
     /*
      * Issue #59 - Dataloader will not read all the database rows to get a total count
@@ -250,8 +278,19 @@ public class Config {
     public static final String BULK_API_ENABLED = "sfdc.useBulkApi";
     public static final String BULK_API_SERIAL_MODE = "sfdc.bulkApiSerialMode";
     public static final String BULK_API_CHECK_STATUS_INTERVAL = "sfdc.bulkApiCheckStatusInterval";
+    public static final String BULK_API_MAX_CHECK_STATUS_INTERVAL = "sfdc.bulkApiMaxCheckStatusInterval";
     public static final String BULK_API_ZIP_CONTENT = "sfdc.bulkApiZipContent";
     public static final String BULKV2_API_ENABLED = "sfdc.useBulkV2Api";
+    public static final String BULKV2_LOAD_MAX_CONCURRENT_JOBS = "sfdc.bulkV2LoadMaxConcurrentJobs";
+    public static final String BULK_QUERY_MAX_CONCURRENT_DOWNLOADS = "sfdc.bulkQueryMaxConcurrentDownloads";
+    // number of Bulk API batch results of a load that are downloaded at the same time
+    public static final String BULK_LOAD_MAX_CONCURRENT_RESULT_DOWNLOADS = "sfdc.bulkLoadMaxConcurrentResultDownloads";
+    public static final String ENABLE_BULK_QUERY_PK_CHUNKING = "sfdc.enableBulkQueryPKChunking";
+    public static final String BULK_QUERY_PK_CHUNK_SIZE = "sfdc.bulkQueryPKChunkSize";
+    public static final String BULK_QUERY_PK_CHUNK_START_ROW = "sfdc.bulkQueryChunkStartRow";
+    // Bulk V2 and SOAP extractions are split on the client into ranges of this field
+    public static final String EXTRACT_PARTITIONS = "sfdc.extractionPartitions";
+    public static final String EXTRACT_PARTITION_FIELD = "sfdc.extractionPartitionField";
     public static final String UPDATE_WITH_EXTERNALID = "sfdc.updateWithExternalId";
     public static final String DELETE_WITH_EXTERNALID = "sfdc.deleteWithExternalId";
 
@@ -290,7 +329,20 @@ public class Config {
     public static final String EXPORT_BATCH_SIZE = "sfdc.extractionRequestSize"; //$NON-NLS-1$
     public static final String EXTRACT_SOQL = "sfdc.extractionSOQL"; //$NON-NLS-1$
     public static final String SORT_EXTRACT_FIELDS = "sfdc.sortExtractionFields"; //$NON-NLS-1$
+    // number of queryMore pages fetched ahead of the page being written, 0 disables prefetching
+    public static final String EXTRACT_PREFETCH_PAGES = "sfdc.extractionPrefetchPages";
     public static final String LOAD_PRESERVE_WHITESPACE_IN_RICH_TEXT = "sfdc.load.preserveWhitespaceInRichText";
+    public static final String LOAD_MAX_CONCURRENT_BATCHES = "sfdc.load.maxConcurrentBatches";
+    // number of times rows rejected with a transient error such as UNABLE_TO_LOCK_ROW are loaded again, 0 disables it
+    public static final String LOAD_ROW_RETRIES = "sfdc.load.rowRetries";
+    public static final String LOAD_ROW_RETRY_BATCH_SIZE = "sfdc.load.rowRetryBatchSize";
+    // Bulk API jobs loading rows again are run in serial mode
+    public static final String LOAD_ROW_RETRY_SERIAL_MODE = "sfdc.load.rowRetrySerialMode";
+    // column of the data source holding the parent of each row, rows with the same parent are loaded in one batch,
+    // or in one Bulk API batch or job. The rows of a parent that do not fit in one are split
+    public static final String LOAD_GROUP_BY_COLUMN = "sfdc.load.groupByColumn";
+    // memory used to group the rows before the rows are kept in temporary files
+    public static final String LOAD_GROUP_MAX_MEMORY_BYTES = "sfdc.load.groupMaxMemoryBytes";
 
     //
     // process configuration (action parameters)
@@ -323,6 +375,8 @@ public class Config {
     public static final String DAO_READ_BATCH_SIZE = "dataAccess.readBatchSize";
     public static final String DAO_WRITE_BATCH_SIZE = "dataAccess.writeBatchSize";
     public static final String DAO_SKIP_TOTAL_COUNT = "dataAccess.skipTotalCount";
+    // number of threads parsing a CSV file of a load operation
+    public static final String DAO_READ_THREADS = "dataAccess.readThreads";
     public static final String DAO_READ_PREPROCESSOR_SCRIPT = "dataAccess.read.preProcessorScript";
     public static final String DAO_WRITE_POSTPROCESSOR_SCRIPT = "dataAccess.write.postProcessorScript";
 
@@ -351,11 +405,6 @@ public class Config {
      */
     public static final String PILOT_PROPERTY_PREFIX = "pilot.";
     
-    /*
-    public static final String ENABLE_BULK_QUERY_PK_CHUNKING = PILOT_PROPERTY_PREFIX + "sfdc.enableBulkQueryPKChunking";
-    public static final String BULK_QUERY_PK_CHUNK_SIZE =  PILOT_PROPERTY_PREFIX + "sfdc.bulkQueryPKChunkSize";
-    public static final String BULK_QUERY_PK_CHUNK_START_ROW = PILOT_PROPERTY_PREFIX + "sfdc.bulkQueryChunkStartRow";
-    */
     public static final String DUPLICATE_RULE_ALLOW_SAVE = PILOT_PROPERTY_PREFIX + "sfdc.duplicateRule.allowSave"; //$NON-NLS-1$
     public static final String DUPLICATE_RULE_INCLUDE_RECORD_DETAILS = PILOT_PROPERTY_PREFIX + "sfdc.duplicateRule.includeRecordDetails"; //$NON-NLS-1$
     public static final String DUPLICATE_RULE_RUN_AS_CURRENT_USER = PILOT_PROPERTY_PREFIX + "sfdc.duplicateRule.runAsCurrentUser"; //$NON-NLS-1$
@@ -424,6 +473,10 @@ public class Config {
     
     public static final String SAVE_BULK_SERVER_LOAD_AND_RAW_RESULTS_IN_CSV = "process.bulk.saveServerLoadAndRawResultsInCSV";
     public static final String PROCESS_BULK_CACHE_DATA_FROM_DAO = "process.bulk.cacheDataFromDao";
+    public static final String PROCESS_BULK_CACHE_MAX_MEMORY_BYTES = "process.bulk.cacheDataFromDaoMaxMemoryBytes";
+    public static final String PROCESS_LOAD_PIPELINE_ENABLED = "process.load.enablePipeline";
+    public static final String PROCESS_LOAD_PIPELINE_WORKER_THREADS = "process.load.pipelineWorkerThreads";
+    public static final String PROCESS_LOAD_PIPELINE_QUEUE_CAPACITY = "process.load.pipelineQueueCapacity";
     public static final String READ_ONLY_CONFIG_PROPERTIES = "config.properties.readonly";
     public static final String WIZARD_WIDTH = "sfdc.ui.wizard.width";
     public static final String WIZARD_HEIGHT = "sfdc.ui.wizard.height";
@@ -598,8 +651,10 @@ public class Config {
         setDefaultValue(RESET_URL_ON_LOGIN, true);
         setDefaultValue(EXPORT_BATCH_SIZE, DEFAULT_EXPORT_BATCH_SIZE);
         setDefaultValue(SORT_EXTRACT_FIELDS, true);
+        setDefaultValue(EXTRACT_PREFETCH_PAGES, DEFAULT_EXTRACT_PREFETCH_PAGES);
         setDefaultValue(DAO_WRITE_BATCH_SIZE, DEFAULT_DAO_WRITE_BATCH_SIZE);
         setDefaultValue(DAO_READ_BATCH_SIZE, DEFAULT_DAO_READ_BATCH_SIZE);
+        setDefaultValue(DAO_READ_THREADS, DEFAULT_DAO_READ_THREADS);
         setDefaultValue(TRUNCATE_FIELDS, true);
         setDefaultValue(FORMAT_PHONE_FIELDS, false);
         // TODO: When we're ready, make Bulk API turned on by default.
@@ -607,6 +662,7 @@ public class Config {
         setDefaultValue(BULK_API_SERIAL_MODE, false);
         setDefaultValue(BULK_API_ZIP_CONTENT, false);
         setDefaultValue(BULK_API_CHECK_STATUS_INTERVAL, DEFAULT_BULK_API_CHECK_STATUS_INTERVAL);
+        setDefaultValue(BULK_API_MAX_CHECK_STATUS_INTERVAL, DEFAULT_BULK_API_MAX_CHECK_STATUS_INTERVAL);
         setDefaultValue(WIRE_OUTPUT, false);
         setDefaultValue(DEBUG_MESSAGES, false);
         setDefaultValue(TIMEZONE, TimeZone.getDefault().getID());
@@ -629,23 +685,35 @@ public class Config {
         setDefaultValue(OAUTH_PREFIX + SB_ENVIRONMENT_VAL + "." + OAUTH_PARTIAL_PARTNER_CLIENTID, OAUTH_PARTNER_CLIENTID_VAL);
 
         setDefaultValue(REUSE_CLIENT_CONNECTION, true);
-        /*
         setDefaultValue(ENABLE_BULK_QUERY_PK_CHUNKING, false);
         setDefaultValue(BULK_QUERY_PK_CHUNK_SIZE, DEFAULT_BULK_QUERY_PK_CHUNK_SIZE);
         setDefaultValue(BULK_QUERY_PK_CHUNK_START_ROW, "");
-        */
+        setDefaultValue(EXTRACT_PARTITIONS, DEFAULT_EXTRACT_PARTITIONS);
+        setDefaultValue(EXTRACT_PARTITION_FIELD, DEFAULT_EXTRACT_PARTITION_FIELD);
         setDefaultValue(DUPLICATE_RULE_ALLOW_SAVE, false);
         setDefaultValue(DUPLICATE_RULE_INCLUDE_RECORD_DETAILS, false);
         setDefaultValue(DUPLICATE_RULE_RUN_AS_CURRENT_USER, false);
         setDefaultValue(BUFFER_UNPROCESSED_BULK_QUERY_RESULTS, false);
         setDefaultValue(BULKV2_API_ENABLED, false);
+        setDefaultValue(BULKV2_LOAD_MAX_CONCURRENT_JOBS, DEFAULT_BULKV2_LOAD_MAX_CONCURRENT_JOBS);
+        setDefaultValue(BULK_QUERY_MAX_CONCURRENT_DOWNLOADS, DEFAULT_BULK_QUERY_MAX_CONCURRENT_DOWNLOADS);
+        setDefaultValue(BULK_LOAD_MAX_CONCURRENT_RESULT_DOWNLOADS, DEFAULT_BULK_LOAD_MAX_CONCURRENT_RESULT_DOWNLOADS);
         setDefaultValue(UPDATE_WITH_EXTERNALID, false);
         setDefaultValue(DELETE_WITH_EXTERNALID, false);
         setDefaultValue(OAUTH_LOGIN_FROM_BROWSER, true);
         setDefaultValue(LOAD_PRESERVE_WHITESPACE_IN_RICH_TEXT, true);
+        setDefaultValue(LOAD_MAX_CONCURRENT_BATCHES, DEFAULT_LOAD_MAX_CONCURRENT_BATCHES);
+        setDefaultValue(LOAD_ROW_RETRIES, DEFAULT_LOAD_ROW_RETRIES);
+        setDefaultValue(LOAD_ROW_RETRY_BATCH_SIZE, DEFAULT_LOAD_ROW_RETRY_BATCH_SIZE);
+        setDefaultValue(LOAD_ROW_RETRY_SERIAL_MODE, true);
+        setDefaultValue(LOAD_GROUP_MAX_MEMORY_BYTES, DEFAULT_BULK_CACHE_MAX_MEMORY_BYTES);
         setDefaultValue(Config.CLI_OPTION_RUN_MODE, Config.RUN_MODE_UI_VAL);
         setDefaultValue(SAVE_BULK_SERVER_LOAD_AND_RAW_RESULTS_IN_CSV, false);
         setDefaultValue(PROCESS_BULK_CACHE_DATA_FROM_DAO, true);
+        setDefaultValue(PROCESS_BULK_CACHE_MAX_MEMORY_BYTES, DEFAULT_BULK_CACHE_MAX_MEMORY_BYTES);
+        setDefaultValue(PROCESS_LOAD_PIPELINE_ENABLED, false);
+        setDefaultValue(PROCESS_LOAD_PIPELINE_WORKER_THREADS, DEFAULT_LOAD_PIPELINE_WORKER_THREADS);
+        setDefaultValue(PROCESS_LOAD_PIPELINE_QUEUE_CAPACITY, DEFAULT_LOAD_PIPELINE_QUEUE_CAPACITY);
         setDefaultValue(PROCESS_KEEP_ACCOUNT_TEAM, false);
         setDefaultValue(WIZARD_WIDTH, DEFAULT_WIZARD_WIDTH);
         setDefaultValue(WIZARD_HEIGHT, DEFAULT_WIZARD_HEIGHT);
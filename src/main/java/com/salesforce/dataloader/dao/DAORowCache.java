@@ -23,19 +23,97 @@
  * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
  * POSSIBILITY OF SUCH DAMAGE.
  */
+
 package com.salesforce.dataloader.dao;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
+import com.salesforce.dataloader.util.VarInts;
+
+/**
+ * Keeps the rows read from a DAO so that they can be read again without going back to the data source.
+ * 
+ * Rows are kept on the heap until their estimated size reaches the configured memory budget. The rows
+ * that follow are encoded into a temporary file, which is memory-mapped to read them back. Rows read
+ * back from the file are copies, so changes made to them after they were added are not kept.
+ */
+public class DAORowCache extends AbstractList<Row> {
+    private static final Logger logger = LogManager.getLogger(DAORowCache.class);
 
-public class DAORowCache {
-    private ArrayList<Row> rowList = new ArrayList<Row>();
+    private static final int SEGMENT_SIZE = 1 << 28;
+    private static final byte NULL_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+    private static final byte SERIALIZED_VALUE = 2;
+
+    private final long maxMemoryBytes;
+    private final ArrayList<Row> rowList = new ArrayList<Row>();
+    private long memoryBytes = 0;
     private int currentRowIndex = 0;
     private int totalRows = 0;
 
+    // rows that did not fit in the memory budget
+    private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+    private final List<String> columnNames = new ArrayList<String>();
+    // shared by the spilled rows read back so that they do not each carry their own column names
+    private RowSchema spilledRowSchema = new RowSchema();
+    private File spillFile;
+    private DataOutputStream spillOutput;
+    private long spillFileSize = 0;
+    private long[] spilledRowOffsets = new long[1024];
+    private int spilledRows = 0;
+    private final List<MappedByteBuffer> mappedSegments = new ArrayList<MappedByteBuffer>();
+
     public DAORowCache() {
+        this(getConfiguredMaxMemoryBytes());
+    }
+
+    public DAORowCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * @return the memory budget of the rows kept on the heap, from {@link Config#PROCESS_BULK_CACHE_MAX_MEMORY_BYTES}
+     */
+    public static long getConfiguredMaxMemoryBytes() {
+        Config config = Config.getCurrentConfig();
+        if (config != null) {
+            try {
+                long maxMemoryBytes = config.getLong(Config.PROCESS_BULK_CACHE_MAX_MEMORY_BYTES);
+                if (maxMemoryBytes > 0) {
+                    return maxMemoryBytes;
+                }
+            } catch (ParameterLoadException e) {
+                logger.warn("Incorrectly configured " + Config.PROCESS_BULK_CACHE_MAX_MEMORY_BYTES);
+            }
+        }
+        return Config.DEFAULT_BULK_CACHE_MAX_MEMORY_BYTES;
     }
     
     public void resetCurrentRowIndex() {
@@ -48,12 +126,224 @@ public class DAORowCache {
             || !config.getBoolean(Config.PROCESS_BULK_CACHE_DATA_FROM_DAO)) {
             return null;
         }
-        return rowList.get(currentRowIndex++);
+        return getRow(currentRowIndex++);
+    }
+
+    /**
+     * @param rowIndex index of the row in the order in which rows were added
+     */
+    public Row getRow(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= totalRows) {
+            throw new IndexOutOfBoundsException("Row " + rowIndex + " of " + totalRows);
+        }
+        if (rowIndex < rowList.size()) {
+            return rowList.get(rowIndex);
+        }
+        try {
+            return readSpilledRow(rowIndex - rowList.size());
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Unable to read cached row " + rowIndex, e);
+        }
+    }
+
+    @Override
+    public Row get(int rowIndex) {
+        return getRow(rowIndex);
+    }
+
+    @Override
+    public int size() {
+        return totalRows;
+    }
+
+    @Override
+    public boolean add(Row row) {
+        addRow(row);
+        return true;
+    }
+
+    /**
+     * Discards the cached rows and deletes the temporary file.
+     */
+    @Override
+    public void clear() {
+        rowList.clear();
+        memoryBytes = 0;
+        currentRowIndex = 0;
+        totalRows = 0;
+        columnIndexes.clear();
+        columnNames.clear();
+        spilledRowSchema = new RowSchema();
+        spilledRows = 0;
+        spillFileSize = 0;
+        if (spillOutput != null) {
+            try {
+                spillOutput.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            spillOutput = null;
+        }
+        // the segments are unmapped once they are garbage collected, their channels were closed when they were mapped
+        mappedSegments.clear();
+        if (spillFile != null) {
+            if (!spillFile.delete()) {
+                // a segment that is still mapped keeps the file from being deleted on Windows
+                logger.debug("Deleting " + spillFile.getAbsolutePath() + " when the JVM exits");
+                spillFile.deleteOnExit();
+            }
+            spillFile = null;
+        }
     }
     
     public void addRow(Row row) {
-        rowList.add(row);
+        if (spillFile == null) {
+            long rowBytes = estimateSize(row);
+            if (memoryBytes + rowBytes <= maxMemoryBytes) {
+                rowList.add(row);
+                memoryBytes += rowBytes;
+                currentRowIndex++;
+                totalRows++;
+                return;
+            }
+        }
+        try {
+            spillRow(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to cache row " + totalRows, e);
+        }
         currentRowIndex++;
         totalRows++;
     }
-}
\ No newline at end of file
+
+    private static long estimateSize(Row row) {
+        long size = 64;
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            size += 48 + 2L * entry.getKey().length();
+            Object value = entry.getValue();
+            if (value instanceof String) {
+                size += 40 + 2L * ((String)value).length();
+            } else if (value != null) {
+                size += 32;
+            }
+        }
+        return size;
+    }
+
+    private void spillRow(Row row) throws IOException {
+        if (spillFile == null) {
+            spillFile = File.createTempFile("sdlRowCache", ".bin");
+            spillFile.deleteOnExit();
+            spillOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+            logger.info("Caching rows after row " + totalRows + " in " + spillFile.getAbsolutePath());
+        }
+        ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+        DataOutputStream rowOutput = new DataOutputStream(rowBytes);
+        VarInts.write(rowOutput, row.size());
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            VarInts.write(rowOutput, getColumnIndex(entry.getKey()));
+            Object value = entry.getValue();
+            if (value == null) {
+                rowOutput.writeByte(NULL_VALUE);
+            } else if (value instanceof String) {
+                rowOutput.writeByte(STRING_VALUE);
+                writeBytes(rowOutput, ((String)value).getBytes(StandardCharsets.UTF_8));
+            } else {
+                // values read from a database keep their type
+                ByteArrayOutputStream serializedValue = new ByteArrayOutputStream();
+                try (ObjectOutputStream objectOutput = new ObjectOutputStream(serializedValue)) {
+                    objectOutput.writeObject(value);
+                }
+                rowOutput.writeByte(SERIALIZED_VALUE);
+                writeBytes(rowOutput, serializedValue.toByteArray());
+            }
+        }
+        rowOutput.flush();
+        if (spilledRows + 1 >= spilledRowOffsets.length) {
+            spilledRowOffsets = Arrays.copyOf(spilledRowOffsets, spilledRowOffsets.length * 2);
+        }
+        rowBytes.writeTo(spillOutput);
+        spilledRowOffsets[spilledRows] = spillFileSize;
+        spillFileSize += rowBytes.size();
+        spilledRows++;
+        spilledRowOffsets[spilledRows] = spillFileSize;
+    }
+
+    private int getColumnIndex(String columnName) {
+        Integer columnIndex = columnIndexes.get(columnName);
+        if (columnIndex == null) {
+            columnIndex = columnNames.size();
+            columnNames.add(columnName);
+            columnIndexes.put(columnName, columnIndex);
+        }
+        return columnIndex;
+    }
+
+    private Row readSpilledRow(int spilledRowIndex) throws IOException, ClassNotFoundException {
+        long offset = spilledRowOffsets[spilledRowIndex];
+        byte[] rowBytes = new byte[(int)(spilledRowOffsets[spilledRowIndex + 1] - offset)];
+        readSpillFile(offset, rowBytes);
+        ByteBuffer rowBuffer = ByteBuffer.wrap(rowBytes);
+        int columnCount = VarInts.read(rowBuffer);
+        Row row = new Row(spilledRowSchema);
+        for (int i = 0; i < columnCount; i++) {
+            String columnName = columnNames.get(VarInts.read(rowBuffer));
+            byte valueType = rowBuffer.get();
+            Object value = null;
+            if (valueType == STRING_VALUE) {
+                byte[] valueBytes = readBytes(rowBuffer);
+                value = new String(valueBytes, StandardCharsets.UTF_8);
+            } else if (valueType == SERIALIZED_VALUE) {
+                try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(readBytes(rowBuffer)))) {
+                    value = objectInput.readObject();
+                }
+            }
+            row.put(columnName, value);
+        }
+        return row;
+    }
+
+    private void readSpillFile(long offset, byte[] dst) throws IOException {
+        spillOutput.flush();
+        int copied = 0;
+        while (copied < dst.length) {
+            long position = offset + copied;
+            MappedByteBuffer segment = getMappedSegment((int)(position / SEGMENT_SIZE), position + dst.length - copied);
+            int segmentOffset = (int)(position % SEGMENT_SIZE);
+            int length = Math.min(dst.length - copied, segment.limit() - segmentOffset);
+            segment.duplicate().position(segmentOffset).get(dst, copied, length);
+            copied += length;
+        }
+    }
+
+    /**
+     * @param requiredEnd file position that the mapping has to reach, if it lies in the segment
+     */
+    private MappedByteBuffer getMappedSegment(int segmentIndex, long requiredEnd) throws IOException {
+        long segmentStart = (long)segmentIndex * SEGMENT_SIZE;
+        long segmentEnd = Math.min(segmentStart + SEGMENT_SIZE, spillFileSize);
+        while (mappedSegments.size() <= segmentIndex) {
+            mappedSegments.add(null);
+        }
+        MappedByteBuffer segment = mappedSegments.get(segmentIndex);
+        if (segment == null || segmentStart + segment.limit() < Math.min(requiredEnd, segmentEnd)) {
+            // the file has grown since the segment was mapped
+            try (RandomAccessFile file = new RandomAccessFile(spillFile, "r")) {
+                segment = file.getChannel().map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart);
+            }
+            mappedSegments.set(segmentIndex, segment);
+        }
+        return segment;
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        VarInts.write(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[VarInts.read(buffer)];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
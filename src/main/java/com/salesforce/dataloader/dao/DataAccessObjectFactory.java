@@ -38,6 +38,7 @@ import com.salesforce.dataloader.dao.csv.CSVFileWriter;
 import com.salesforce.dataloader.dao.database.DatabaseReader;
 import com.salesforce.dataloader.dao.database.DatabaseWriter;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.exception.UnsupportedDataAccessObjectException;
 
 public class DataAccessObjectFactory {
@@ -67,6 +68,22 @@ public class DataAccessObjectFactory {
             logger.error(errMsg);
             throw new UnsupportedDataAccessObjectException(errMsg);
         }
+        String groupByColumn = config.getString(Config.LOAD_GROUP_BY_COLUMN);
+        if (dao instanceof DataReader && groupByColumn.length() > 0) {
+            dao = new ParentGroupingReader((DataReader)dao, groupByColumn, getGroupMaxMemoryBytes(config));
+        }
         return dao;
     }
+
+    private static long getGroupMaxMemoryBytes(Config config) {
+        try {
+            long maxMemoryBytes = config.getLong(Config.LOAD_GROUP_MAX_MEMORY_BYTES);
+            if (maxMemoryBytes > 0) {
+                return maxMemoryBytes;
+            }
+        } catch (ParameterLoadException e) {
+            logger.warn("Incorrectly configured " + Config.LOAD_GROUP_MAX_MEMORY_BYTES);
+        }
+        return Config.DEFAULT_BULK_CACHE_MAX_MEMORY_BYTES;
+    }
 }
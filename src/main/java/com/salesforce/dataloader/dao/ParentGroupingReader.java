@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.util.DAORowUtil;
+
+/**
+ * Reads the rows of another reader so that the rows with the same value in a parent column follow each other.
+ * Loading the children of a parent record in one batch keeps parallel batches from waiting on the lock of the
+ * same parent record.
+ * <p>
+ * The rows are split into partitions by the hash of the parent value when they are first read. The partitions are
+ * kept in {@link DAORowCache}s that move their rows to temporary files once they reach their share of the memory
+ * budget, so the input does not have to fit in memory. When the rows of a partition are returned, only the group
+ * of each row is kept in memory to sort the row indexes, and the rows are read back from the partition one at a
+ * time. The groups of a partition are returned in the order in which their first row was read, the rows of a group
+ * in the order in which they were read, and rows without a parent are returned on their own.
+ * <p>
+ * The number of rows of each parent is kept in memory for all the parents until the reader is closed, so the
+ * memory used also grows with the number of distinct parents, outside of the memory budget.
+ */
+public class ParentGroupingReader implements DataReader {
+    private static final Logger logger = LogManager.getLogger(ParentGroupingReader.class);
+
+    static final int NUM_PARTITIONS = 16;
+
+    private final DataReader reader;
+    private final String groupByColumn;
+    private final long maxMemoryBytes;
+
+    // column of the reader matching groupByColumn
+    private String parentColumn;
+    private DAORowCache[] partitions;
+    // number of rows of each parent. It has an entry for every distinct parent of the input and is not bounded
+    // by maxMemoryBytes
+    private final Map<String, Integer> groupSizes = new HashMap<String, Integer>();
+    private int totalRows = -1;
+    private int nextPartition = 0;
+    // partition whose rows are being returned, and the indexes of its rows in the order they are returned
+    private DAORowCache currentPartition;
+    private int[] currentRowOrder = new int[0];
+    private int currentRowIndex = 0;
+    private int currentRowNumber = 0;
+
+    public ParentGroupingReader(DataReader reader, String groupByColumn, long maxMemoryBytes) {
+        this.reader = reader;
+        this.groupByColumn = groupByColumn;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    @Override
+    public void open() throws DataAccessObjectInitializationException {
+        clearPartitions();
+        this.reader.open();
+    }
+
+    @Override
+    public void checkConnection() throws DataAccessObjectInitializationException {
+        this.reader.checkConnection();
+    }
+
+    @Override
+    public void close() {
+        clearPartitions();
+        this.reader.close();
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return this.reader.getColumnNames();
+    }
+
+    @Override
+    public int getCurrentRowNumber() {
+        return this.currentRowNumber;
+    }
+
+    @Override
+    public int getTotalRows() throws DataAccessObjectException {
+        return this.totalRows >= 0 ? this.totalRows : this.reader.getTotalRows();
+    }
+
+    @Override
+    public Row readRow() throws DataAccessObjectException {
+        if (this.partitions == null) {
+            partitionRows();
+        }
+        while (this.currentRowIndex >= this.currentRowOrder.length) {
+            if (this.currentPartition != null) {
+                this.currentPartition.clear();
+                this.currentPartition = null;
+            }
+            if (this.nextPartition >= this.partitions.length) {
+                return null;
+            }
+            this.currentPartition = this.partitions[this.nextPartition++];
+            this.currentRowOrder = groupPartition(this.currentPartition);
+            this.currentRowIndex = 0;
+        }
+        this.currentRowNumber++;
+        return this.currentPartition.getRow(this.currentRowOrder[this.currentRowIndex++]);
+    }
+
+    @Override
+    public List<Row> readRowList(int maxRows) throws DataAccessObjectException {
+        List<Row> outputRows = new ArrayList<Row>();
+        for (int i = 0; i < maxRows; i++) {
+            Row outputRow = readRow();
+            if (outputRow == null) {
+                break;
+            }
+            outputRows.add(outputRow);
+        }
+        return outputRows;
+    }
+
+    /**
+     * @return the parent value of the row, or an empty string if the row has no parent
+     */
+    public String getGroupKey(Row row) {
+        Object value = this.parentColumn == null ? null : row.get(this.parentColumn);
+        return value == null ? "" : value.toString();
+    }
+
+    /**
+     * @return number of rows with the same parent as the row, 1 if the row has no parent
+     */
+    public int getGroupSize(Row row) {
+        String groupKey = getGroupKey(row);
+        Integer groupSize = groupKey.isEmpty() ? null : this.groupSizes.get(groupKey);
+        return groupSize == null ? 1 : groupSize;
+    }
+
+    private void partitionRows() throws DataAccessObjectException {
+        this.parentColumn = findParentColumn();
+        this.partitions = new DAORowCache[NUM_PARTITIONS];
+        for (int i = 0; i < NUM_PARTITIONS; i++) {
+            this.partitions[i] = new DAORowCache(Math.max(1, this.maxMemoryBytes / NUM_PARTITIONS));
+        }
+        int rowCount = 0;
+        for (Row row = this.reader.readRow(); DAORowUtil.isValidRow(row); row = this.reader.readRow()) {
+            String groupKey = getGroupKey(row);
+            int partition;
+            if (groupKey.isEmpty()) {
+                partition = rowCount % NUM_PARTITIONS;
+            } else {
+                this.groupSizes.merge(groupKey, 1, Integer::sum);
+                partition = Math.floorMod(groupKey.hashCode(), NUM_PARTITIONS);
+            }
+            this.partitions[partition].addRow(row);
+            rowCount++;
+        }
+        this.totalRows = rowCount;
+        logger.info("Grouped " + rowCount + " rows by " + this.parentColumn + " into " + this.groupSizes.size()
+                + " parents");
+    }
+
+    private String findParentColumn() throws DataAccessObjectInitializationException {
+        for (String columnName : this.reader.getColumnNames()) {
+            if (columnName.equalsIgnoreCase(this.groupByColumn)) {
+                return columnName;
+            }
+        }
+        throw new DataAccessObjectInitializationException("Column " + this.groupByColumn
+                + " to group the rows by is not found in the data source");
+    }
+
+    /**
+     * @return indexes of the rows of the partition in the order in which they are returned. The rows themselves
+     *         are not kept, so a partition larger than the memory budget is grouped from its temporary file.
+     */
+    private int[] groupPartition(DAORowCache partition) {
+        final int numRows = partition.size();
+        // group of each row, numbered in the order in which their first row was read
+        final int[] rowGroups = new int[numRows];
+        final Map<String, Integer> groupNumbers = new HashMap<String, Integer>();
+        int numGroups = 0;
+        for (int i = 0; i < numRows; i++) {
+            String groupKey = getGroupKey(partition.getRow(i));
+            // each row without a parent is a group of its own
+            Integer groupNumber = groupKey.isEmpty() ? null : groupNumbers.putIfAbsent(groupKey, numGroups);
+            rowGroups[i] = groupNumber == null ? numGroups++ : groupNumber;
+        }
+        // counting sort by group, which keeps the rows of a group in the order in which they were read
+        final int[] groupStarts = new int[numGroups + 1];
+        for (int group : rowGroups) {
+            groupStarts[group + 1]++;
+        }
+        for (int group = 0; group < numGroups; group++) {
+            groupStarts[group + 1] += groupStarts[group];
+        }
+        final int[] rowOrder = new int[numRows];
+        for (int i = 0; i < numRows; i++) {
+            rowOrder[groupStarts[rowGroups[i]]++] = i;
+        }
+        return rowOrder;
+    }
+
+    private void clearPartitions() {
+        if (this.partitions != null) {
+            for (DAORowCache partition : this.partitions) {
+                partition.clear();
+            }
+        }
+        this.partitions = null;
+        this.groupSizes.clear();
+        this.totalRows = -1;
+        this.nextPartition = 0;
+        this.currentPartition = null;
+        this.currentRowOrder = new int[0];
+        this.currentRowIndex = 0;
+        this.currentRowNumber = 0;
+    }
+}
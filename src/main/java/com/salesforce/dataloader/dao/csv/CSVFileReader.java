@@ -48,26 +48,34 @@ import com.salesforce.dataloader.dao.DataReader;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
 import com.salesforce.dataloader.exception.DataAccessRowException;
+import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
 import com.salesforce.dataloader.util.AppUtil;
 import com.salesforce.dataloader.util.DAORowUtil;
-import com.sforce.async.CSVReader;
 
 /**
- * Wrapper around {@link CSVReader} that allows to read CSV files
+ * Wrapper around {@link CSVTokenizer} that allows to read CSV files
  *
  * @author Federico Recio
  */
 public class CSVFileReader implements DataReader {
 
     private static final Logger LOGGER = LogManager.getLogger(CSVFileReader.class);
-    private final Object lock = new Object();
     private File file;
     private FileInputStream input;
     private int totalRows;
-    private CSVReader csvReader;
+    private CSVTokenizer csvReader;
+    // set when the records after the header are parsed on several threads
+    private CSVRangeReader rangeReader;
+    private final int readThreads;
+    private BOMInputStream bomInputStream;
+    private String encoding;
     private int currentRowNumber;
     private List<String> headerRow;
+    private RowSchema rowSchema;
+    // schema index of each header column, header columns differing only in case share an index
+    private int[] headerColumnIndexes;
     private boolean isOpen;
     private char[] csvDelimiters;
     private Config config;
@@ -105,6 +113,8 @@ public class CSVFileReader implements DataReader {
             }
         }
         csvDelimiters = separator.toString().toCharArray();
+        // only the files read by load operations can be large enough to be worth it
+        readThreads = ignoreDelimiterConfig || isQueryOperationResult ? 1 : getReadThreads(config);
 
         if (csvDelimiters.length == 0) {
             String errorMsg = "No csv separator present! You need at least one separator character!";
@@ -129,9 +139,48 @@ public class CSVFileReader implements DataReader {
 
         initalizeInput(csvDelimiters);
         readHeaderRow();
+        initializeRangeReader();
         isOpen = true;
     }
 
+    private static int getReadThreads(Config config) {
+        int readThreads = Config.DEFAULT_DAO_READ_THREADS;
+        try {
+            readThreads = config.getInt(Config.DAO_READ_THREADS);
+        } catch (ParameterLoadException e) {
+            LOGGER.warn("Incorrectly configured " + Config.DAO_READ_THREADS);
+        }
+        if (readThreads < 1) {
+            return 1;
+        }
+        return Math.min(readThreads, Config.MAX_DAO_READ_THREADS);
+    }
+
+    /**
+     * Parses the records after the header on several threads if configured to and if the file has more than one
+     * range of records. Positions in the file are only known if the file is not read in another encoding.
+     */
+    private void initializeRangeReader() throws DataAccessObjectInitializationException {
+        if (readThreads <= 1 || csvReader.isTranscoding()) {
+            return;
+        }
+        try {
+            long dataStart = csvReader.getPosition();
+            if (bomInputStream != null && bomInputStream.hasBOM()) {
+                dataStart += bomInputStream.getBOM().length();
+            }
+            if (file.length() - dataStart <= CSVRangeReader.DEFAULT_RANGE_SIZE) {
+                return;
+            }
+            rangeReader = new CSVRangeReader(file, dataStart, encoding, csvDelimiters, readThreads,
+                    CSVRangeReader.DEFAULT_RANGE_SIZE);
+            LOGGER.info("Reading " + file.getAbsolutePath() + " with " + readThreads + " threads");
+        } catch (IOException e) {
+            close();
+            throw new DataAccessObjectInitializationException(e);
+        }
+    }
+
     /**
      * Close the file stream when we are finishe with a load
      */
@@ -139,9 +188,13 @@ public class CSVFileReader implements DataReader {
     public void close() {
         try {
             IOUtils.closeQuietly(input);
+            IOUtils.closeQuietly(rangeReader);
+            IOUtils.closeQuietly(bomInputStream);
         } finally {
             input = null;
             csvReader = null;
+            rangeReader = null;
+            bomInputStream = null;
             isOpen = false;
         }
     }
@@ -184,12 +237,10 @@ public class CSVFileReader implements DataReader {
         }
         
         List<String> record;
-        synchronized (lock) {
-            try {
-                record = csvReader.nextRecord();
-            } catch (IOException e) {
-                throw new DataAccessObjectException(e);
-            }
+        try {
+            record = rangeReader != null ? rangeReader.nextRecord() : csvReader.nextRecord();
+        } catch (IOException e) {
+            throw new DataAccessObjectException(e);
         }
 
         if (!DAORowUtil.isValidRow(record)) {
@@ -207,17 +258,19 @@ public class CSVFileReader implements DataReader {
             throw new DataAccessRowException(errMsg);
         }
 
-        row = new Row(record.size());
+        row = new Row(rowSchema);
 
-        for (int i = 0; i < headerRow.size(); i++) {
+        for (int i = 0; i < headerColumnIndexes.length; i++) {
             String value = record.get(i);
             if (value == null) {
                 value = "";
             }
-            row.put(headerRow.get(i), value);
+            row.setValue(headerColumnIndexes[i], value);
         }
         currentRowNumber++;
-        rowCache.addRow(row);
+        if (config.getBoolean(Config.PROCESS_BULK_CACHE_DATA_FROM_DAO)) {
+            rowCache.addRow(row);
+        }
         return row;
     }
 
@@ -253,15 +306,20 @@ public class CSVFileReader implements DataReader {
 
     private void readHeaderRow() throws DataAccessObjectInitializationException {
         try {
-            synchronized (lock) {
-                headerRow = csvReader.nextRecord();
-            }
+            List<String> header = csvReader.nextRecord();
+            // the tokenizer reuses its record, keep a copy of the header
+            headerRow = header == null ? null : new ArrayList<String>(header);
             if (headerRow == null) {
                 LOGGER.error(Messages.getString("CSVFileDAO.errorHeaderRow"));
                 throw new DataAccessObjectInitializationException(Messages.getString("CSVFileDAO.errorHeaderRow"));
             }
             LOGGER.debug(Messages.getFormattedString(
                     "CSVFileDAO.debugMessageHeaderRowSize", headerRow.size()));
+            rowSchema = new RowSchema();
+            headerColumnIndexes = new int[headerRow.size()];
+            for (int i = 0; i < headerColumnIndexes.length; i++) {
+                headerColumnIndexes[i] = rowSchema.addColumn(headerRow.get(i));
+            }
 
             LOGGER.info("Columns in CSV header = " + headerRow.size());
         } catch (IOException e) {
@@ -280,13 +338,13 @@ public class CSVFileReader implements DataReader {
 
         try {
             input = new FileInputStream(file);
-            String encoding = this.config.getCsvEncoding(false);
+            encoding = this.config.getCsvEncoding(false);
             if (StandardCharsets.UTF_8.name().equals(encoding)
                 || StandardCharsets.UTF_16BE.name().equals(encoding)
                 || StandardCharsets.UTF_16LE.name().equals(encoding)
                 || "UTF-32LE".equals(encoding)
                 || "UTF-32BE".equals(encoding)) {
-                BOMInputStream bomInputStream = 
+                bomInputStream = 
                         BOMInputStream.builder()
                                         .setFile(file)
                                         .setByteOrderMarks(ByteOrderMark.UTF_8,
@@ -296,13 +354,11 @@ public class CSVFileReader implements DataReader {
                                                             ByteOrderMark.UTF_32BE)
                                         .setInclude(false)
                                         .get();
-                csvReader = new CSVReader(bomInputStream, encoding, csvDelimiters);
+                csvReader = new CSVTokenizer(bomInputStream, encoding, csvDelimiters);
             } else {
-                csvReader = new CSVReader(input, encoding, csvDelimiters);
+                csvReader = new CSVTokenizer(input, encoding, csvDelimiters);
                 LOGGER.debug(this.getClass().getName(), "encoding used to read from CSV file is " + encoding);
             }
-            csvReader.setMaxRowsInFile(Integer.MAX_VALUE);
-            csvReader.setMaxCharsInFile(Integer.MAX_VALUE);
         } catch (FileNotFoundException e) {
             String errMsg = Messages.getFormattedString("CSVFileDAO.errorOpen", file.getAbsolutePath());
             LOGGER.error(errMsg, e);
@@ -27,6 +27,7 @@
 package com.salesforce.dataloader.dao.csv;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -68,6 +69,11 @@ public class CSVFileWriter implements DataWriter {
      */
     private boolean open = false;
 
+    /**
+     * If <code>append</code> is true, rows are added to the end of an existing file
+     */
+    private boolean append = false;
+
     /**
      * <code>encoding</code> contains a value for output character encoding, blank indicates "use default"
      */
@@ -107,12 +113,19 @@ public class CSVFileWriter implements DataWriter {
     @Override
     public void open() throws DataAccessObjectInitializationException {
         try {
+            // the header row is already in a file that is appended to
+            final boolean appendToFile = this.append && new File(this.fileName).length() > 0;
             if (this.encoding != null) {
-                fileOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.fileName), this.encoding));
+                fileOut = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(this.fileName, appendToFile), this.encoding));
+            } else {
+                fileOut = new BufferedWriter(new FileWriter(this.fileName, appendToFile));
+            }
+            if (appendToFile) {
+                this.isHeaderRowWritten = true;
             } else {
-                fileOut = new BufferedWriter(new FileWriter(this.fileName));
+                currentRowNumber = 0;
             }
-            currentRowNumber = 0;
             setOpen(true);
         } catch (IOException e) {
             String errMsg = Messages.getFormattedString("CSVWriter.errorOpening", this.fileName);
@@ -267,6 +280,14 @@ public class CSVFileWriter implements DataWriter {
         return open;
     }
 
+    /**
+     * @param append true if the next {@link #open()} should keep the rows already in the file and
+     *               go on counting rows from where the writer was closed
+     */
+    public void setAppend(boolean append) {
+        this.append = append;
+    }
+
     public void setOpen(boolean open) {
         this.open = open;
     }
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the records of a CSV file on several threads. The file is split into ranges of bytes that are parsed
+ * independently, and the records are returned in the order of the file.
+ * <p>
+ * A range holds the records that start in it and reads past its end to finish the last one. Whether a line break
+ * ends a record or is a part of a quoted field depends on the number of double quotes before it in the file, so each
+ * range counts its quotes first and looks for its first record once the counts of the ranges before it are known.
+ * Only the counts are passed from range to range, the ranges are read and parsed in parallel.
+ */
+class CSVRangeReader implements Closeable {
+
+    static final int DEFAULT_RANGE_SIZE = 8 * 1024 * 1024;
+
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    /** The records of a range and where they start and end in the file */
+    private static class RangeResult {
+        final List<String[]> records;
+        // false if no record starts in the range
+        final boolean hasRecordStart;
+        final long firstRecordPosition;
+        final long endPosition;
+
+        RangeResult(List<String[]> records, boolean hasRecordStart, long firstRecordPosition, long endPosition) {
+            this.records = records;
+            this.hasRecordStart = hasRecordStart;
+            this.firstRecordPosition = firstRecordPosition;
+            this.endPosition = endPosition;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long dataStart;
+    private final long fileSize;
+    private final String encoding;
+    private final char[] delimiters;
+    private final int rangeSize;
+    private final int maxRangesInFlight;
+    private final ExecutorService workers;
+    private final ArrayDeque<Future<RangeResult>> rangesInFlight = new ArrayDeque<Future<RangeResult>>();
+
+    private long nextRangeStart;
+    // whether the next range to read starts in a quoted field
+    private CompletableFuture<Boolean> nextRangeStartsInQuotes = CompletableFuture.completedFuture(Boolean.FALSE);
+    // where the first record of the next range with records has to start, -1 before the first range
+    private long expectedRecordPosition = -1;
+    private List<String[]> currentRecords = Collections.emptyList();
+    private int currentRecordIndex;
+
+    /**
+     * @param dataStart position in the file of the first record after the header
+     */
+    CSVRangeReader(File file, long dataStart, String encoding, char[] delimiters, int numThreads, int rangeSize)
+            throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.dataStart = dataStart;
+        this.fileSize = this.channel.size();
+        this.encoding = encoding;
+        this.delimiters = delimiters;
+        this.rangeSize = rangeSize;
+        this.maxRangesInFlight = numThreads * 2;
+        this.nextRangeStart = dataStart;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "csvRangeReader-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        submitRanges();
+    }
+
+    /**
+     * @return the fields of the next record in the file, or null at the end of the file
+     */
+    List<String> nextRecord() throws IOException {
+        while (this.currentRecordIndex >= this.currentRecords.size()) {
+            if (this.rangesInFlight.isEmpty()) {
+                return null;
+            }
+            RangeResult range = takeRange(this.rangesInFlight.poll());
+            submitRanges();
+            if (range.hasRecordStart) {
+                if (this.expectedRecordPosition >= 0 && range.firstRecordPosition != this.expectedRecordPosition) {
+                    throw new IOException("Unable to split the CSV file into ranges at byte "
+                            + range.firstRecordPosition + ", the previous range ended at byte "
+                            + this.expectedRecordPosition + ". Read the file with a single thread.");
+                }
+                this.expectedRecordPosition = range.endPosition;
+            }
+            this.currentRecords = range.records;
+            this.currentRecordIndex = 0;
+        }
+        String[] fields = this.currentRecords.get(this.currentRecordIndex);
+        this.currentRecords.set(this.currentRecordIndex++, null);
+        return Arrays.asList(fields);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.workers.shutdownNow();
+        this.rangesInFlight.clear();
+        this.channel.close();
+    }
+
+    private void submitRanges() {
+        while (this.rangesInFlight.size() < this.maxRangesInFlight && this.nextRangeStart < this.fileSize) {
+            final long start = this.nextRangeStart;
+            final long end = Math.min(this.fileSize, start + this.rangeSize);
+            final CompletableFuture<Boolean> startsInQuotes = this.nextRangeStartsInQuotes;
+            final CompletableFuture<Boolean> hasOddQuotes = new CompletableFuture<Boolean>();
+            this.nextRangeStartsInQuotes = startsInQuotes.thenCombine(hasOddQuotes, (a, b) -> a ^ b);
+            this.rangesInFlight.add(this.workers.submit(() -> readRange(start, end, startsInQuotes, hasOddQuotes)));
+            this.nextRangeStart = end;
+        }
+    }
+
+    private RangeResult takeRange(Future<RangeResult> range) throws IOException {
+        try {
+            return range.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private RangeResult readRange(long start, long end, CompletableFuture<Boolean> startsInQuotes,
+            CompletableFuture<Boolean> hasOddQuotes) throws Exception {
+        // the byte before the range tells whether a record starts at the start of the range
+        final long readStart = start > this.dataStart ? start - 1 : start;
+        final int offset = (int)(start - readStart);
+        final byte[] bytes = new byte[(int)(end - readStart)];
+        try {
+            readFully(bytes, readStart);
+        } catch (IOException e) {
+            hasOddQuotes.completeExceptionally(e);
+            throw e;
+        }
+        int quotes = 0;
+        for (int i = offset; i < bytes.length; i++) {
+            if (bytes[i] == QUOTE) {
+                quotes++;
+            }
+        }
+        hasOddQuotes.complete((quotes & 1) == 1);
+
+        int firstRecord = start == this.dataStart ? 0 : findFirstRecord(bytes, offset, startsInQuotes.get());
+        if (firstRecord < 0) {
+            // the range is in the middle of a record that started in an earlier range
+            return new RangeResult(Collections.<String[]>emptyList(), false, -1, -1);
+        }
+        final long firstRecordStart = readStart + firstRecord;
+        final InputStream input = new SequenceInputStream(
+                new ByteArrayInputStream(bytes, firstRecord, bytes.length - firstRecord),
+                new ChannelInputStream(this.channel, end));
+        final CSVTokenizer tokenizer = new CSVTokenizer(input, this.encoding, this.delimiters);
+        final List<String[]> records = new ArrayList<String[]>();
+        long firstRecordPosition = -1;
+        long endPosition;
+        try {
+            while (true) {
+                List<String> record = tokenizer.nextRecord();
+                if (record == null) {
+                    endPosition = firstRecordStart + tokenizer.getPosition();
+                    break;
+                }
+                long recordPosition = firstRecordStart + tokenizer.getRecordPosition();
+                if (recordPosition >= end) {
+                    endPosition = recordPosition;
+                    break;
+                }
+                if (firstRecordPosition < 0) {
+                    firstRecordPosition = recordPosition;
+                }
+                records.add(record.toArray(new String[record.size()]));
+            }
+        } catch (CSVTokenizer.CSVParseException e) {
+            throw new IOException("Error parsing the CSV file after byte " + firstRecordStart + ": "
+                    + e.getMessage(), e);
+        }
+        if (firstRecordPosition < 0) {
+            firstRecordPosition = endPosition;
+        }
+        return new RangeResult(records, true, firstRecordPosition, endPosition);
+    }
+
+    /**
+     * @return the index of the first byte after a line break that is not in a quoted field, or -1 if there is none
+     *         in the range
+     */
+    private static int findFirstRecord(byte[] bytes, int offset, boolean inQuotes) {
+        int length = bytes.length;
+        byte previous = bytes[offset - 1];
+        if (!inQuotes && (previous == LF || (previous == CR && (offset == length || bytes[offset] != LF)))) {
+            return offset;
+        }
+        for (int i = offset; i < length; i++) {
+            byte b = bytes[i];
+            if (b == QUOTE) {
+                inQuotes = !inQuotes;
+            } else if (!inQuotes && (b == LF || b == CR)) {
+                if (b == CR && i + 1 < length && bytes[i + 1] == LF) {
+                    continue;
+                }
+                // a record starting at the end of the range belongs to the next range
+                return i + 1 < length ? i + 1 : -1;
+            }
+        }
+        return -1;
+    }
+
+    private void readFully(byte[] bytes, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the CSV file at byte " + (position + buffer.position()));
+            }
+        }
+    }
+
+    /**
+     * Reads the file from a position without moving the position of the channel, which is shared by the ranges
+     */
+    private static class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+
+        ChannelInputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n;
+            while ((n = read(b, 0, 1)) == 0) {
+                // try again
+            }
+            return n < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = this.channel.read(ByteBuffer.wrap(b, off, len), this.position);
+            if (n > 0) {
+                this.position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // the channel is closed by the reader
+        }
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.apache.commons.io.input.ReaderInputStream;
+
+/**
+ * Splits CSV input into records. It reads the raw bytes in large blocks and finds the field boundaries without
+ * decoding them, a field is decoded into a String only when it is read from the record. The record returned by
+ * {@link #nextRecord()} is reused, so it is only valid until the next call.
+ * <p>
+ * The format is the one read by the CSVReader of the WSC library: any of the delimiter characters separates fields,
+ * a field that starts with a double quote can contain delimiters, line breaks and escaped ("") double quotes, line
+ * breaks in a quoted field are read as \n, empty fields are read as null and blank lines are skipped.
+ */
+public class CSVTokenizer implements Closeable {
+
+    // same limits as the WSC CSVReader
+    static final int MAX_COLUMNS_PER_RECORD = 5000;
+    static final int MAX_RECORD_SIZE_IN_CHARS = 400000;
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final char[] COMMA = {','};
+
+    /**
+     * Thrown when the input is not well-formed CSV
+     */
+    public static class CSVParseException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int lineNumber;
+
+        CSVParseException(String message, int lineNumber) {
+            super(message);
+            this.lineNumber = lineNumber;
+        }
+
+        public int getLineNumber() {
+            return this.lineNumber;
+        }
+    }
+
+    private final InputStream input;
+    private final Charset charset;
+    private final boolean isTranscoding;
+    // delimiters encoded in the charset of the input, usually a single byte each
+    private final byte[][] delimiters;
+    // bytes that end an unquoted field or start a delimiter
+    private final boolean[] isSpecialByte = new boolean[256];
+    private final Record record = new Record();
+
+    private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+    // position in the input of the first byte in the buffer
+    private long bufferPosition;
+    private int limit;
+    private boolean endOfInput;
+    // start of the current record in the buffer and its length, field offsets are relative to the start
+    private int recordStart;
+    private int recordLength;
+    private int lineNumber = 1;
+    private byte[] unescapeBuffer;
+
+    public CSVTokenizer(InputStream input, String encoding) throws UnsupportedEncodingException {
+        this(input, encoding, COMMA);
+    }
+
+    public CSVTokenizer(InputStream input, String encoding, char[] delimiters) throws UnsupportedEncodingException {
+        Charset inputCharset;
+        try {
+            inputCharset = Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(encoding);
+        }
+        if (isAsciiCompatible(inputCharset)) {
+            this.input = input;
+            this.charset = inputCharset;
+            this.isTranscoding = false;
+        } else {
+            // quotes, delimiters and line breaks can not be found by their bytes in encodings such as UTF-16,
+            // read these as UTF-8
+            try {
+                this.input = ReaderInputStream.builder()
+                        .setReader(new InputStreamReader(input, inputCharset))
+                        .setCharset(StandardCharsets.UTF_8)
+                        .get();
+            } catch (IOException e) {
+                throw new UnsupportedEncodingException(encoding);
+            }
+            this.charset = StandardCharsets.UTF_8;
+            this.isTranscoding = true;
+        }
+
+        CharsetEncoder encoder = this.charset.newEncoder();
+        byte[][] encodedDelimiters = new byte[delimiters.length][];
+        int delimiterCount = 0;
+        for (char delimiter : delimiters) {
+            if (!encoder.canEncode(delimiter)) {
+                // can not be in the input
+                continue;
+            }
+            byte[] bytes = String.valueOf(delimiter).getBytes(this.charset);
+            encodedDelimiters[delimiterCount++] = bytes;
+            this.isSpecialByte[bytes[0] & 0xFF] = true;
+        }
+        this.delimiters = Arrays.copyOf(encodedDelimiters, delimiterCount);
+        this.isSpecialByte[QUOTE] = true;
+        this.isSpecialByte[CR] = true;
+        this.isSpecialByte[LF] = true;
+    }
+
+    /**
+     * Whether quotes, line breaks and other ASCII characters are encoded in single bytes that can not be a part of
+     * the encoding of another character
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)) {
+            return true;
+        }
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            return false;
+        }
+        return Arrays.equals(new byte[] {QUOTE, CR, LF, ','}, "\"\r\n,".getBytes(charset));
+    }
+
+    /**
+     * @return the next record, or null at the end of the input. The record is only valid until the next call.
+     */
+    public Record nextRecord() throws IOException {
+        while (true) {
+            this.recordStart += this.recordLength;
+            this.recordLength = 0;
+            this.record.fieldCount = 0;
+            if (this.recordStart >= this.limit && !fill()) {
+                return null;
+            }
+            readRecord();
+            if (this.record.fieldCount == 1 && this.record.fieldStarts[0] == this.record.fieldEnds[0]) {
+                // blank line
+                continue;
+            }
+            checkRecordSize();
+            return this.record;
+        }
+    }
+
+    /**
+     * @return the position in the input of the first byte of the record returned last
+     */
+    long getRecordPosition() {
+        return this.bufferPosition + this.recordStart;
+    }
+
+    /**
+     * @return the position in the input right after the record returned last
+     */
+    long getPosition() {
+        return this.bufferPosition + this.recordStart + this.recordLength;
+    }
+
+    /**
+     * @return true if the input is read in another encoding, positions are then not positions in the input
+     */
+    boolean isTranscoding() {
+        return this.isTranscoding;
+    }
+
+    private void readRecord() throws IOException {
+        int position = 0;
+        while (true) {
+            int fieldStart;
+            int fieldEnd;
+            boolean isEscaped = false;
+            if (isAvailable(position) && this.buffer[this.recordStart + position] == QUOTE
+                    && getDelimiterLength(position) == 0) {
+                // quoted field
+                position++;
+                fieldStart = position;
+                while (true) {
+                    if (!isAvailable(position)) {
+                        throw new CSVParseException("EOF reached before closing an opened quote", this.lineNumber);
+                    }
+                    byte b = this.buffer[this.recordStart + position];
+                    if (b == QUOTE) {
+                        if (isAvailable(position + 1) && this.buffer[this.recordStart + position + 1] == QUOTE) {
+                            isEscaped = true;
+                            position += 2;
+                            continue;
+                        }
+                        fieldEnd = position;
+                        position++;
+                        break;
+                    }
+                    if (b == CR) {
+                        isEscaped = true;
+                        this.lineNumber++;
+                        if (isAvailable(position + 1) && this.buffer[this.recordStart + position + 1] == LF) {
+                            position++;
+                        }
+                    } else if (b == LF) {
+                        this.lineNumber++;
+                    }
+                    position++;
+                }
+                if (isAvailable(position)) {
+                    byte b = this.buffer[this.recordStart + position];
+                    if (b != CR && b != LF && getDelimiterLength(position) == 0) {
+                        throw new CSVParseException("Not expecting more text after end quote", this.lineNumber);
+                    }
+                }
+            } else {
+                fieldStart = position;
+                while (isAvailable(position)) {
+                    byte b = this.buffer[this.recordStart + position];
+                    if (this.isSpecialByte[b & 0xFF]) {
+                        if (b == CR || b == LF || getDelimiterLength(position) > 0) {
+                            break;
+                        }
+                        if (b == QUOTE) {
+                            throw new CSVParseException(
+                                    "Found unescaped quote. A value with quote should be within a quote",
+                                    this.lineNumber);
+                        }
+                    }
+                    position++;
+                }
+                fieldEnd = position;
+            }
+            addField(fieldStart, fieldEnd, isEscaped);
+
+            if (!isAvailable(position)) {
+                break;
+            }
+            byte b = this.buffer[this.recordStart + position];
+            if (b == CR || b == LF) {
+                position++;
+                if (b == CR && isAvailable(position) && this.buffer[this.recordStart + position] == LF) {
+                    position++;
+                }
+                this.lineNumber++;
+                break;
+            }
+            position += getDelimiterLength(position);
+        }
+        this.recordLength = position;
+    }
+
+    private void addField(int start, int end, boolean isEscaped) throws CSVParseException {
+        Record rec = this.record;
+        if (rec.fieldCount == MAX_COLUMNS_PER_RECORD) {
+            throw new CSVParseException("Exceeded max number of columns per record : " + MAX_COLUMNS_PER_RECORD,
+                    this.lineNumber);
+        }
+        if (rec.fieldCount == rec.fieldStarts.length) {
+            int capacity = rec.fieldStarts.length * 2;
+            rec.fieldStarts = Arrays.copyOf(rec.fieldStarts, capacity);
+            rec.fieldEnds = Arrays.copyOf(rec.fieldEnds, capacity);
+            rec.fieldIsEscaped = Arrays.copyOf(rec.fieldIsEscaped, capacity);
+        }
+        rec.fieldStarts[rec.fieldCount] = start;
+        rec.fieldEnds[rec.fieldCount] = end;
+        rec.fieldIsEscaped[rec.fieldCount] = isEscaped;
+        rec.fieldCount++;
+    }
+
+    private void checkRecordSize() throws CSVParseException {
+        // a character takes at least one byte, the record only has to be decoded when it has more bytes than allowed
+        if (this.recordLength <= MAX_RECORD_SIZE_IN_CHARS) {
+            return;
+        }
+        int recordSize = 0;
+        for (String value : this.record) {
+            if (value != null) {
+                recordSize += value.length();
+            }
+        }
+        if (recordSize > MAX_RECORD_SIZE_IN_CHARS) {
+            throw new CSVParseException("Exceeded max length for one record: " + recordSize
+                    + ". Max length for one record should be less than or equal to " + MAX_RECORD_SIZE_IN_CHARS,
+                    this.lineNumber);
+        }
+    }
+
+    /**
+     * @return the length of the delimiter at the given position of the record or 0 if there is none
+     */
+    private int getDelimiterLength(int position) throws IOException {
+        byte first = this.buffer[this.recordStart + position];
+        for (byte[] delimiter : this.delimiters) {
+            if (delimiter[0] != first) {
+                continue;
+            }
+            int i = 1;
+            while (i < delimiter.length && isAvailable(position + i)
+                    && this.buffer[this.recordStart + position + i] == delimiter[i]) {
+                i++;
+            }
+            if (i == delimiter.length) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the input has a byte at the given position of the current record, reading more input if needed
+     */
+    private boolean isAvailable(int position) throws IOException {
+        while (this.recordStart + position >= this.limit) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads more input into the buffer. The current record is moved to the start of the buffer first and the buffer
+     * grows when the record does not leave room for more input.
+     */
+    private boolean fill() throws IOException {
+        if (this.endOfInput) {
+            return false;
+        }
+        if (this.recordStart > 0) {
+            System.arraycopy(this.buffer, this.recordStart, this.buffer, 0, this.limit - this.recordStart);
+            this.limit -= this.recordStart;
+            this.bufferPosition += this.recordStart;
+            this.recordStart = 0;
+        }
+        if (this.limit == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+        }
+        int bytesRead;
+        do {
+            bytesRead = this.input.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        } while (bytesRead == 0);
+        if (bytesRead < 0) {
+            this.endOfInput = true;
+            return false;
+        }
+        this.limit += bytesRead;
+        return true;
+    }
+
+    private String decode(int start, int end, boolean isEscaped) {
+        if (start == end) {
+            return null;
+        }
+        int offset = this.recordStart + start;
+        if (!isEscaped) {
+            return new String(this.buffer, offset, end - start, this.charset);
+        }
+        // unescape quotes and read line breaks as \n
+        if (this.unescapeBuffer == null || this.unescapeBuffer.length < end - start) {
+            this.unescapeBuffer = new byte[Math.max(end - start, 1024)];
+        }
+        int length = 0;
+        int last = this.recordStart + end;
+        for (int i = offset; i < last; i++) {
+            byte b = this.buffer[i];
+            if (b == QUOTE) {
+                i++;
+            } else if (b == CR) {
+                b = LF;
+                if (i + 1 < last && this.buffer[i + 1] == LF) {
+                    i++;
+                }
+            }
+            this.unescapeBuffer[length++] = b;
+        }
+        return new String(this.unescapeBuffer, 0, length, this.charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.input.close();
+    }
+
+    /**
+     * The fields of a record. A field is decoded each time it is read, and the record changes when the next record
+     * is read from the tokenizer.
+     */
+    public final class Record extends AbstractList<String> implements RandomAccess {
+        private int fieldCount;
+        private int[] fieldStarts = new int[64];
+        private int[] fieldEnds = new int[64];
+        private boolean[] fieldIsEscaped = new boolean[64];
+
+        private Record() {
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= this.fieldCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.fieldCount);
+            }
+            return decode(this.fieldStarts[index], this.fieldEnds[index], this.fieldIsEscaped[index]);
+        }
+
+        @Override
+        public int size() {
+            return this.fieldCount;
+        }
+    }
+}
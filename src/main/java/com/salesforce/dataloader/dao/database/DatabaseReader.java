@@ -30,6 +30,7 @@ import java.sql.*;
 import java.util.*;
 
 import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
 import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -57,6 +58,8 @@ public class DatabaseReader implements DataReader {
     private final BasicDataSource dataSource;
     private final Config config;
     private List<String> columnNames = new ArrayList<String>();
+    private final RowSchema rowSchema = new RowSchema();
+    private final int[] columnIndexes;
     private int totalRows = 0;
     private int currentRowNumber = 0;
     private final SqlConfig sqlConfig;
@@ -92,6 +95,10 @@ public class DatabaseReader implements DataReader {
         if(columnNames == null) {
             columnNames = new ArrayList<String>();
         }
+        this.columnIndexes = new int[columnNames.size()];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            columnIndexes[i] = rowSchema.addColumn(columnNames.get(i));
+        }
     }
 
     /*
@@ -196,14 +203,16 @@ public class DatabaseReader implements DataReader {
         try {
             ResultSet rs = dbContext.getDataResultSet();
             if (rs != null && rs.next()) {
-                row = new Row(columnNames.size());
+                row = new Row(rowSchema);
 
-                for (String columnName : columnNames) {
-                    currentColumnName = columnName;
-                    Object value = rs.getObject(columnName);
-                    row.put(columnName, value);
+                for (int i = 0; i < columnNames.size(); i++) {
+                    currentColumnName = columnNames.get(i);
+                    Object value = rs.getObject(currentColumnName);
+                    row.setValue(columnIndexes[i], value);
+                }
+                if (config.getBoolean(Config.PROCESS_BULK_CACHE_DATA_FROM_DAO)) {
+                    rowCache.addRow(row);
                 }
-                rowCache.addRow(row);
                 currentRowNumber++;
             }
             if (row == null) {
@@ -41,6 +41,12 @@ public class DateTimeConverter implements Converter {
     static final TimeZone GMT_TZ = TimeZone.getTimeZone("GMT");
     static final List<String> supportedEuropeanPatterns = getSupportedPatterns(true);
     static final List<String> supportedRegularPatterns = getSupportedPatterns(false);
+    // formatters of the supported patterns are expensive to create and not thread safe, so each
+    // thread creates them once and sets the time zone of the value being parsed before using them
+    private static final ThreadLocal<DateFormat[]> europeanFormats =
+            ThreadLocal.withInitial(() -> createFormats(supportedEuropeanPatterns));
+    private static final ThreadLocal<DateFormat[]> regularFormats =
+            ThreadLocal.withInitial(() -> createFormats(supportedRegularPatterns));
 
     static Logger logger = LogManager.getLogger(DateTimeConverter.class);
     /**
@@ -97,8 +103,7 @@ public class DateTimeConverter implements Converter {
             timeZoneForValue = GMT_TZ;
         }
 
-        for (String pattern : useEuroDates ? supportedEuropeanPatterns : supportedRegularPatterns) {
-            final DateFormat df = new SimpleDateFormat(pattern);
+        for (DateFormat df : useEuroDates ? europeanFormats.get() : regularFormats.get()) {
             df.setTimeZone(timeZoneForValue);
             cal = parseDate(dateString, df);
             if (cal != null) return cal;
@@ -126,6 +131,14 @@ public class DateTimeConverter implements Converter {
         return NACalendarValue.getInstance();
     }
 
+    private static DateFormat[] createFormats(List<String> patterns) {
+        DateFormat[] formats = new DateFormat[patterns.size()];
+        for (int i = 0; i < formats.length; i++) {
+            formats[i] = new SimpleDateFormat(patterns.get(i));
+        }
+        return formats;
+    }
+
     /*
      * Helper function to produce all the patterns that DL supports.
      * These patterns are a subset of patterns supported by Java text.SimpleDateFormat
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dyna;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.beanutils.DynaBean;
+
+import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.mapping.Mapper;
+import com.sforce.soap.partner.DescribeSObjectResult;
+import com.sforce.soap.partner.Field;
+import com.sforce.soap.partner.FieldType;
+
+/**
+ * Per-field behaviour of an operation, built once from the describe result of the target object and the
+ * mapping so that rows do not search the describe result or re-split the mapped field names.
+ */
+public class FieldPlan {
+
+    /** Behaviour of a field of the target object */
+    public static final class FieldInfo {
+        private final Field field;
+        private final boolean truncatable;
+
+        private FieldInfo(Field field) {
+            this.field = field;
+            // Field truncation is applicable to certain field types only.
+            // See https://developer.salesforce.com/docs/atlas.en-us.api_tooling.meta/api_tooling/sforce_api_header_allowfieldtruncation.htm
+            // for the list of field types that field truncation is applicable to.
+            FieldType type = field.getType();
+            this.truncatable = type == FieldType.email
+                    || type == FieldType.string
+                    || type == FieldType.picklist
+                    || type == FieldType.phone
+                    || type == FieldType.textarea
+                    || type == FieldType.multipicklist;
+        }
+
+        public String getName() {
+            return field.getName();
+        }
+
+        public FieldType getType() {
+            return field.getType();
+        }
+
+        public int getLength() {
+            return field.getLength();
+        }
+
+        public boolean isTruncatable() {
+            return truncatable;
+        }
+
+        public boolean isHtmlFormatted() {
+            return field.getHtmlFormatted();
+        }
+
+        public boolean isPhone() {
+            return field.getType() == FieldType.phone;
+        }
+
+        public String getRelationshipName() {
+            return field.getRelationshipName();
+        }
+    }
+
+    /** A mapped or constant field that is set to null when its value is empty */
+    private static final class NullableField {
+        private final String fieldName;
+        private final String propertyName;
+        private String relationshipField;
+        private boolean isRelationshipFieldResolved = false;
+
+        NullableField(String fieldName) {
+            this.fieldName = fieldName;
+            this.propertyName = fieldName.strip();
+        }
+
+        synchronized String getRelationshipField(Controller controller) {
+            if (!isRelationshipFieldResolved) {
+                relationshipField = SObjectReference.getRelationshipField(controller, fieldName);
+                isRelationshipFieldResolved = true;
+            }
+            return relationshipField;
+        }
+    }
+
+    // fields by exact name, which is how dynabean properties are named
+    private final Map<String, FieldInfo> fieldsByName = new HashMap<String, FieldInfo>();
+    private final Map<String, FieldInfo> fieldsByCaseInsensitiveName =
+            new TreeMap<String, FieldInfo>(String.CASE_INSENSITIVE_ORDER);
+    private final List<NullableField> nullableFields = new ArrayList<NullableField>();
+
+    public FieldPlan(DescribeSObjectResult describeResult, Mapper mapper) {
+        for (Field field : describeResult.getFields()) {
+            FieldInfo fieldInfo = new FieldInfo(field);
+            fieldsByName.put(field.getName(), fieldInfo);
+            fieldsByCaseInsensitiveName.putIfAbsent(field.getName(), fieldInfo);
+        }
+        if (mapper != null) {
+            for (String sfdcField : mapper.getDestColumns()) {
+                addNullableFields(sfdcField);
+            }
+            for (String constantField : mapper.getConstantsMap().keySet()) {
+                addNullableFields(constantField);
+            }
+        }
+    }
+
+    private void addNullableFields(String fieldNameList) {
+        // fieldNameList can be a list of comma separated fields
+        for (String fieldName : fieldNameList.split(",")) {
+            nullableFields.add(new NullableField(fieldName));
+        }
+    }
+
+    /**
+     * @return the field with the given name, or null if the object has no such field
+     */
+    public FieldInfo getField(String fieldName) {
+        FieldInfo fieldInfo = fieldsByName.get(fieldName);
+        if (fieldInfo == null) {
+            fieldInfo = fieldsByCaseInsensitiveName.get(fieldName);
+        }
+        return fieldInfo;
+    }
+
+    /**
+     * @param propertyName dynabean property name, which matches the field name exactly
+     */
+    public boolean isHtmlFormatted(String propertyName) {
+        FieldInfo fieldInfo = fieldsByName.get(propertyName);
+        return fieldInfo != null && fieldInfo.isHtmlFormatted();
+    }
+
+    /**
+     * @param propertyName dynabean property name, which matches the field name exactly
+     */
+    public boolean isPhone(String propertyName) {
+        FieldInfo fieldInfo = fieldsByName.get(propertyName);
+        return fieldInfo != null && fieldInfo.isPhone();
+    }
+
+    /**
+     * @return names of the mapped and constant fields that have no value in the dynabean
+     */
+    public List<String> getFieldsToNull(Controller controller, DynaBean dynaBean) {
+        if (nullableFields.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<String> fieldsToNull = new ArrayList<String>();
+        for (NullableField nullableField : nullableFields) {
+            final Object o = dynaBean.get(nullableField.propertyName);
+            if (o instanceof SObjectReference && ((SObjectReference)o).isNull()) {
+                fieldsToNull.add(nullableField.getRelationshipField(controller));
+            } else if (o == null || String.valueOf(o).length() == 0) {
+                fieldsToNull.add(nullableField.fieldName);
+            }
+        }
+        return fieldsToNull;
+    }
+}
@@ -249,54 +249,39 @@ public class SforceDynaBean {
     /**
      * Set all the fields specified in the dynaBean to null on the sObj
      * 
+     * @param fieldPlan field plan of the operation
      * @param sObj
      * @param dynaBean
      */
-    static public void insertNullArrayForSOAP(Controller controller, SObject sObj, DynaBean dynaBean) {
-        final List<String> fieldsToNull = getFieldsToNull(controller, dynaBean);
+    static public void insertNullArrayForSOAP(Controller controller, FieldPlan fieldPlan, SObject sObj, DynaBean dynaBean) {
+        final List<String> fieldsToNull = fieldPlan.getFieldsToNull(controller, dynaBean);
         if (fieldsToNull.size() > 0) sObj.setFieldsToNull(fieldsToNull.toArray(new String[fieldsToNull.size()]));
     }
     
-    static public void insertNullArrayForREST(Controller controller, Map<String, Object> sObj, DynaBean dynaBean) {
-        final List<String> fieldsToNull = getFieldsToNull(controller, dynaBean);
+    static public void insertNullArrayForREST(Controller controller, FieldPlan fieldPlan, Map<String, Object> sObj, DynaBean dynaBean) {
+        final List<String> fieldsToNull = fieldPlan.getFieldsToNull(controller, dynaBean);
         for (String field : fieldsToNull) {
             sObj.put(field, null);
         }
     }
-    
-    static public List<String> getFieldsToNull(Controller controller, DynaBean dynaBean) {
-        final List<String> fieldsToNull = new ArrayList<String>();
-        for (String sfdcField : controller.getMapper().getDestColumns()) {
-            handleNull(sfdcField, dynaBean, fieldsToNull, controller);
-        }
-        for (Map.Entry<String, String> constantEntry : controller.getMapper().getConstantsMap().entrySet()) {
-            handleNull(constantEntry.getKey(), dynaBean, fieldsToNull, controller);
-        }
-        return fieldsToNull;
-    }
-    
-    private static void handleNull(final String fieldNameList, final DynaBean dynaBean, final List<String> fieldsToNull,
-            final Controller controller) {
-        // fieldNameList can be a list of comma separated fields
-        String[]fieldNameArray = fieldNameList.split(",");
-
-        for (String fieldName : fieldNameArray) {
-            final Object o = dynaBean.get(fieldName.strip());
-            if (o != null && o instanceof SObjectReference && ((SObjectReference)o).isNull())
-                fieldsToNull.add(SObjectReference.getRelationshipField(controller, fieldName));
-            else if (o == null || String.valueOf(o).length() == 0) fieldsToNull.add(fieldName);
+
+    private static void checkFieldPlan(FieldPlan fieldPlan, boolean insertNulls) {
+        if (insertNulls && fieldPlan == null) {
+            throw new IllegalStateException("The fields to null cannot be found without the field plan of the operation");
         }
     }
 
     /**
      * @param dynaBeans
+     * @param fieldPlan field plan of the operation, required if insertNulls is set
      * @return SObject array with data from dynaBeans
      * @throws IllegalAccessException
      * @throws InvocationTargetException
      * @throws NoSuchMethodException
      * @throws ParameterLoadException
      */
-    static public SObject[] getSObjectArray(Controller controller, List<DynaBean> dynaBeans, String entityName, boolean insertNulls) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException, ParameterLoadException {
+    static public SObject[] getSObjectArray(Controller controller, List<DynaBean> dynaBeans, String entityName, FieldPlan fieldPlan, boolean insertNulls) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException, ParameterLoadException {
+        checkFieldPlan(fieldPlan, insertNulls);
         SObject[] sObjects = new SObject[dynaBeans.size()];
 
         for (int j = 0; j < sObjects.length; j++) {
@@ -306,7 +291,7 @@ public class SforceDynaBean {
 
             // if we are inserting nulls, build the null array
             if (insertNulls) {
-                insertNullArrayForSOAP(controller, sObj, dynaBean);
+                insertNullArrayForSOAP(controller, fieldPlan, sObj, dynaBean);
             }
 
             sObjects[j] = sObj;
@@ -314,7 +299,8 @@ public class SforceDynaBean {
         return sObjects;
     }
     
-    static public List<Map<String, Object>> getRESTSObjectArray(Controller controller, List<DynaBean> dynaBeans, String entityName, boolean insertNulls) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException, ParameterLoadException {
+    static public List<Map<String, Object>> getRESTSObjectArray(Controller controller, List<DynaBean> dynaBeans, String entityName, FieldPlan fieldPlan, boolean insertNulls) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException, ParameterLoadException {
+        checkFieldPlan(fieldPlan, insertNulls);
         List<Map<String, Object>> restSObjects = new ArrayList <Map<String, Object>>();
 
         for (int j = 0; j < dynaBeans.size(); j++) {
@@ -324,7 +310,7 @@ public class SforceDynaBean {
 
             // if we are inserting nulls, build the null array
             if (insertNulls) {
-                insertNullArrayForREST(controller, sObj, dynaBean);
+                insertNullArrayForREST(controller, fieldPlan, sObj, dynaBean);
             }
 
             restSObjects.add(sObj);
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dyna;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+import org.apache.commons.beanutils.BasicDynaBean;
+import org.apache.commons.beanutils.BasicDynaClass;
+import org.apache.commons.beanutils.ConversionException;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.DynaProperty;
+
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
+
+/**
+ * Converts mapped rows to sforce dynabeans with a converter resolved once per column of the rows' schema.
+ *
+ * Produces the same dynabean as {@link SforceDynaBean#convertToDynaBean(BasicDynaClass, Row)} followed by
+ * formatting every field that <code>BeanUtils.describe()</code> reports as set, without looking up properties
+ * and converters by name or turning the values into Strings for every row.
+ */
+public class SforceDynaBeanConverter {
+
+    /**
+     * Formats a converted field value before it is sent, e.g. rich text or phone fields
+     */
+    public interface FieldValueFormatter {
+        Object getFieldValue(String fieldName, Object fieldValue);
+    }
+
+    /** A converted dynabean along with the number of characters in its field names and values */
+    public static final class Conversion {
+        private final DynaBean dynaBean;
+        private final int dataSize;
+
+        private Conversion(DynaBean dynaBean, int dataSize) {
+            this.dynaBean = dynaBean;
+            this.dataSize = dataSize;
+        }
+
+        public DynaBean getDynaBean() {
+            return dynaBean;
+        }
+
+        public int getDataSize() {
+            return dataSize;
+        }
+    }
+
+    /** Conversion of a row column to the dynabean property of the same name */
+    private static final class ColumnConverter {
+        final String propertyName;
+        final Class<?> propertyType;
+        final Converter converter;
+
+        ColumnConverter(DynaProperty property) {
+            this.propertyName = property.getName();
+            this.propertyType = property.getType();
+            this.converter = ConvertUtils.lookup(propertyType);
+        }
+
+        Object convert(Object value) {
+            if (value == null || converter == null) {
+                return value;
+            }
+            return converter.convert(propertyType, value);
+        }
+    }
+
+    /** Column converters of a row schema, null for columns that are not dynabean properties */
+    private static final class ConversionPlan {
+        final RowSchema schema;
+        final ColumnConverter[] columnConverters;
+
+        ConversionPlan(RowSchema schema, ColumnConverter[] columnConverters) {
+            this.schema = schema;
+            this.columnConverters = columnConverters;
+        }
+    }
+
+    private final BasicDynaClass dynaClass;
+    private final FieldValueFormatter formatter;
+    private volatile ConversionPlan plan;
+
+    public SforceDynaBeanConverter(BasicDynaClass dynaClass, FieldValueFormatter formatter) {
+        this.dynaClass = dynaClass;
+        this.formatter = formatter;
+    }
+
+    public Conversion convert(Row sforceDataRow) throws ConversionException {
+        ColumnConverter[] columnConverters = getColumnConverters(sforceDataRow.getSchema());
+        BasicDynaBean dynaBean = new BasicDynaBean(dynaClass);
+        int dataSize = 0;
+        for (int i = 0; i < columnConverters.length; i++) {
+            ColumnConverter columnConverter = columnConverters[i];
+            if (columnConverter == null) {
+                continue;
+            }
+            Object value = columnConverter.convert(sforceDataRow.getValue(i));
+            dynaBean.set(columnConverter.propertyName, value);
+            if (isDescribedAsSet(value)) {
+                // see if any entity foreign key references are embedded here
+                value = formatter.getFieldValue(columnConverter.propertyName, value);
+                dynaBean.set(columnConverter.propertyName, value);
+                dataSize += columnConverter.propertyName.length() + value.toString().length();
+            }
+        }
+        return new Conversion(dynaBean, dataSize);
+    }
+
+    /**
+     * @return false if <code>BeanUtils.describe()</code> would report the property value as null
+     */
+    private static boolean isDescribedAsSet(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof String) {
+            // already cleansed by the String converter, which maps empty Strings to null
+            return !((String)value).isEmpty();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Calendar) {
+            return true;
+        }
+        return ConvertUtils.convert(value) != null;
+    }
+
+    private ColumnConverter[] getColumnConverters(RowSchema schema) {
+        ConversionPlan currentPlan = this.plan;
+        if (currentPlan != null && currentPlan.schema == schema
+                && currentPlan.columnConverters.length == schema.getColumnCount()) {
+            return currentPlan.columnConverters;
+        }
+        synchronized (this) {
+            currentPlan = this.plan;
+            int columnCount = schema.getColumnCount();
+            ColumnConverter[] columnConverters;
+            int firstNewColumn = 0;
+            if (currentPlan != null && currentPlan.schema == schema) {
+                // columns were added to the schema since the plan was built
+                firstNewColumn = Math.min(currentPlan.columnConverters.length, columnCount);
+                columnConverters = Arrays.copyOf(currentPlan.columnConverters, columnCount);
+            } else {
+                columnConverters = new ColumnConverter[columnCount];
+            }
+            for (int i = firstNewColumn; i < columnCount; i++) {
+                DynaProperty property = dynaClass.getDynaProperty(schema.getColumnName(i));
+                columnConverters[i] = property == null ? null : new ColumnConverter(property);
+            }
+            this.plan = new ConversionPlan(schema, columnConverters);
+            return columnConverters;
+        }
+    }
+}
@@ -29,6 +29,7 @@ package com.salesforce.dataloader.mapping;
 import com.salesforce.dataloader.client.PartnerClient;
 import com.salesforce.dataloader.exception.MappingInitializationException;
 import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
 import com.salesforce.dataloader.util.AppUtil;
 import com.sforce.soap.partner.Field;
 
@@ -36,14 +37,17 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 import org.springframework.util.StringUtils;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Mapper which maps field names for loading operations. Field names are mapped from dao (local) name to sfdc name.
@@ -55,6 +59,15 @@ public class LoadMapper extends Mapper {
 
     private static final Logger logger = LogManager.getLogger(Mapper.class);
 
+    // shared by the rows produced by mapData so that column names are resolved once per mapper
+    private final RowSchema compositeRowSchema = new RowSchema();
+    private final RowSchema mappedRowSchema = new RowSchema();
+    // one per list of input columns, so rows that do not share their schema reuse the program of their columns.
+    // Dropped when the mappings change.
+    private final Map<List<String>, MappingProgram> mappingPrograms = new ConcurrentHashMap<List<String>, MappingProgram>();
+    // program of the last row mapped, found without building the column list of the row
+    private volatile MappingProgram lastMappingProgram;
+
     public LoadMapper(PartnerClient client, Collection<String> columnNames, Field[] fields, String mappingFileName)
             throws MappingInitializationException {
         super(client, columnNames, fields, mappingFileName);
@@ -96,68 +109,183 @@ public class LoadMapper extends Mapper {
         return result;
     }
 
+    // rows can be mapped by several load pipeline workers at a time, only compiling a program locks the mapper
     public Row mapData(Row localRow) {
-        Set<String> compositeDAOCols = this.getCompositeDAOColumns();
-        HashMap<String, Object[]> compositeColValueMap = new HashMap<String, Object[]>();
-        HashMap<String, Integer> compositeColSizeMap = this.getCompositeColSizeMap();
-        for (String compositeCol : compositeDAOCols) {
-            Integer compositeColSize = compositeColSizeMap.get(compositeCol);
-            if (compositeColSize == null) {
-                logger.warn("Invalid composite column : " + compositeCol);
-                StringTokenizer st = new StringTokenizer(compositeCol, AppUtil.COMMA);
-                compositeColSize = Integer.valueOf(st.countTokens());
-            }
-            compositeColValueMap.put(compositeCol, new Object[compositeColSize]);
+        return getMappingProgram(localRow.getSchema()).run(localRow);
+    }
+
+    private MappingProgram getMappingProgram(RowSchema schema) {
+        final int mappingVersion = getMappingVersion();
+        MappingProgram program = this.lastMappingProgram;
+        if (program != null && program.isValidFor(schema, mappingVersion)) {
+            return program;
         }
-        
-        HashMap<String, Integer> daoColPositionMap = this.getDaoColPositionInCompositeColMap();
-        HashMap<String, String> daoColToCompositeColMap = this.getDaoColToCompositeColMap();
-        for (String daoCol : localRow.keySet()) {
-            String compositeColName = daoColToCompositeColMap.get(daoCol);
-            if (compositeColName == null) {
-                continue; // DAO column is not mapped
+        final List<String> columnNames = getColumnNames(schema);
+        program = this.mappingPrograms.get(columnNames);
+        if (program == null || program.mappingVersion != mappingVersion) {
+            program = compileMappingProgram(schema, columnNames);
+        }
+        this.lastMappingProgram = program;
+        return program;
+    }
+
+    private synchronized MappingProgram compileMappingProgram(RowSchema schema, List<String> columnNames) {
+        final int mappingVersion = getMappingVersion();
+        MappingProgram program = this.mappingPrograms.get(columnNames);
+        if (program == null || program.mappingVersion != mappingVersion) {
+            this.mappingPrograms.values().removeIf(stale -> stale.mappingVersion != mappingVersion);
+            program = new MappingProgram(schema);
+            this.mappingPrograms.put(columnNames, program);
+        }
+        return program;
+    }
+
+    private static List<String> getColumnNames(RowSchema schema) {
+        final String[] columnNames = new String[schema.getColumnCount()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = schema.getColumnName(i);
+        }
+        return Arrays.asList(columnNames);
+    }
+
+    /**
+     * The mapping compiled against the columns of one row schema. Every DAO column is resolved to the composite column
+     * it is part of and every composite column to the indexes of the sfdc fields it is mapped to, so mapping a row only
+     * moves values between indexes. Programs are shared by the threads mapping rows, so a run keeps the values of its
+     * row in arrays of its own.
+     */
+    private final class MappingProgram {
+        private final RowSchema inputSchema;
+        private final int inputColumnCount;
+        private final int mappingVersion;
+        // per input column: the composite column it is part of or -1 if it is not mapped, and its position in it
+        private final int[] compositeIndexes;
+        private final Integer[] compositePositions;
+        // per composite column: the number of DAO columns it is made of
+        private final int[] compositeSizes;
+        // the mapped composite columns in the order their values are set and the output columns they are mapped to
+        private final int[] outputComposites;
+        private final int[][] outputIndexes;
+        private final ConstantColumns constantColumns;
+
+        MappingProgram(RowSchema inputSchema) {
+            this.inputSchema = inputSchema;
+            this.inputColumnCount = inputSchema.getColumnCount();
+            this.mappingVersion = getMappingVersion();
+
+            Set<String> compositeDAOCols = getCompositeDAOColumns();
+            HashMap<String, Integer> compositeColSizeMap = getCompositeColSizeMap();
+            HashMap<String, Integer> compositeIndexByName = new HashMap<String, Integer>();
+            // composite columns differing only in case share one column of the composite row, the last one wins
+            TreeMap<String, Integer> outputCompositeIndexes = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+            this.compositeSizes = new int[compositeDAOCols.size()];
+            for (String compositeCol : compositeDAOCols) {
+                Integer compositeColSize = compositeColSizeMap.get(compositeCol);
+                if (compositeColSize == null) {
+                    logger.warn("Invalid composite column : " + compositeCol);
+                    StringTokenizer st = new StringTokenizer(compositeCol, AppUtil.COMMA);
+                    compositeColSize = Integer.valueOf(st.countTokens());
+                }
+                int compositeIndex = compositeIndexByName.size();
+                compositeIndexByName.put(compositeCol, compositeIndex);
+                this.compositeSizes[compositeIndex] = compositeColSize;
+                compositeRowSchema.addColumn(compositeCol);
+                outputCompositeIndexes.put(compositeCol, compositeIndex);
+            }
+
+            HashMap<String, Integer> daoColPositionMap = getDaoColPositionInCompositeColMap();
+            HashMap<String, String> daoColToCompositeColMap = getDaoColToCompositeColMap();
+            this.compositeIndexes = new int[this.inputColumnCount];
+            this.compositePositions = new Integer[this.inputColumnCount];
+            for (int i = 0; i < this.inputColumnCount; i++) {
+                String daoCol = inputSchema.getColumnName(i);
+                String compositeColName = daoColToCompositeColMap.get(daoCol);
+                if (compositeColName == null) {
+                    this.compositeIndexes[i] = -1; // DAO column is not mapped
+                    continue;
+                }
+                this.compositeIndexes[i] = compositeIndexByName.get(compositeColName);
+                this.compositePositions[i] = daoColPositionMap.get(daoCol);
             }
-            Object[] compositeColValueArray = compositeColValueMap.get(compositeColName);
-            Integer positionInCompositeCol = daoColPositionMap.get(daoCol);
-            Object daoColVal = localRow.get(daoCol);
-            if (compositeColValueArray.length > 1
-                    && daoColVal != null
-                    && !daoColVal.getClass().equals(String.class)) {
-                // composite DAO column has a non-String class. Ignore composition
-                if (positionInCompositeCol == 0) {
-                    compositeColValueArray[0] = daoColVal;
+
+            ArrayList<Integer> outputComposites = new ArrayList<Integer>();
+            ArrayList<int[]> outputIndexes = new ArrayList<int[]>();
+            for (Map.Entry<String, Integer> entry : outputCompositeIndexes.entrySet()) {
+                String compositeCol = compositeRowSchema.getColumnName(compositeRowSchema.indexOf(entry.getKey()));
+                String sfdcNameList = getMapping(compositeCol, true, true);
+                if (StringUtils.hasText(sfdcNameList)) {
+                    String sfdcNameArray[] = sfdcNameList.split(AppUtil.COMMA);
+                    int[] indexes = new int[sfdcNameArray.length];
+                    for (int i = 0; i < sfdcNameArray.length; i++) {
+                        indexes[i] = mappedRowSchema.addColumn(sfdcNameArray[i].trim());
+                    }
+                    outputComposites.add(entry.getValue());
+                    outputIndexes.add(indexes);
                 } else {
-                    daoColToCompositeColMap.remove(daoCol);
-                    daoColPositionMap.remove(daoCol);
+                    logger.info("Mapping for field " + compositeCol + " will be ignored since destination column is empty");
                 }
-            } else { // dao column value is of type String
-                compositeColValueArray[positionInCompositeCol] = daoColVal;
             }
-        }
-        
-        Row localCompositeRow = new Row();
-        for (String compositeCol : compositeDAOCols) {
-            Object[] compositeColValueArray = compositeColValueMap.get(compositeCol);
-            Object compositeColValue = compositeColValueArray[0];
-            for (int i = 1; i < compositeColValueArray.length; i++) {
-                compositeColValue += AppUtil.COMMA + " " + compositeColValueArray[i];
+            this.outputComposites = new int[outputComposites.size()];
+            for (int i = 0; i < this.outputComposites.length; i++) {
+                this.outputComposites[i] = outputComposites.get(i);
             }
-            localCompositeRow.put(compositeCol, compositeColValue);
+            this.outputIndexes = outputIndexes.toArray(new int[outputIndexes.size()][]);
+            this.constantColumns = compileConstants(mappedRowSchema);
         }
-        Row mappedData = new Row();
-        for (Map.Entry<String, Object> entry : localCompositeRow.entrySet()) {
-            String sfdcNameList = getMapping(entry.getKey(), true, true);
-            if (StringUtils.hasText(sfdcNameList)) {
-                String sfdcNameArray[] = sfdcNameList.split(AppUtil.COMMA);
-                for (String sfdcName : sfdcNameArray) {
-                    mappedData.put(sfdcName.trim(), entry.getValue());
+
+        boolean isValidFor(RowSchema schema, int currentMappingVersion) {
+            return this.inputSchema == schema
+                    && this.inputColumnCount == schema.getColumnCount()
+                    && this.mappingVersion == currentMappingVersion;
+        }
+
+        Row run(Row localRow) {
+            final Object[][] compositeValues = new Object[this.compositeSizes.length][];
+            for (int i = 0; i < compositeValues.length; i++) {
+                compositeValues[i] = new Object[this.compositeSizes[i]];
+            }
+            for (int i = 0; i < this.inputColumnCount; i++) {
+                int compositeIndex = this.compositeIndexes[i];
+                if (compositeIndex < 0) {
+                    continue;
+                }
+                Object[] compositeColValueArray = compositeValues[compositeIndex];
+                Integer positionInCompositeCol = this.compositePositions[i];
+                Object daoColVal = localRow.getValue(i);
+                if (compositeColValueArray.length > 1
+                        && daoColVal != null
+                        && !daoColVal.getClass().equals(String.class)) {
+                    // composite DAO column has a non-String class. Ignore composition
+                    if (positionInCompositeCol == 0) {
+                        compositeColValueArray[0] = daoColVal;
+                    } else {
+                        String daoCol = this.inputSchema.getColumnName(i);
+                        // the composite column lookups are read while compiling programs
+                        synchronized (LoadMapper.this) {
+                            getDaoColToCompositeColMap().remove(daoCol);
+                            getDaoColPositionInCompositeColMap().remove(daoCol);
+                            mappingChanged();
+                        }
+                    }
+                } else { // dao column value is of type String
+                    compositeColValueArray[positionInCompositeCol] = daoColVal;
+                }
+            }
+
+            Row mappedData = new Row(mappedRowSchema);
+            for (int k = 0; k < this.outputComposites.length; k++) {
+                Object[] compositeColValueArray = compositeValues[this.outputComposites[k]];
+                Object compositeColValue = compositeColValueArray[0];
+                for (int i = 1; i < compositeColValueArray.length; i++) {
+                    compositeColValue += AppUtil.COMMA + " " + compositeColValueArray[i];
+                }
+                for (int index : this.outputIndexes[k]) {
+                    mappedData.setValue(index, compositeColValue);
                 }
-            } else {
-                logger.info("Mapping for field " + entry.getKey() + " will be ignored since destination column is empty");
             }
+            this.constantColumns.apply(mappedData);
+            return mappedData;
         }
-        mapConstants(mappedData);
-        return mappedData;
     }
 
     public void verifyMappingsAreValid() throws MappingInitializationException {
@@ -49,6 +49,7 @@ import com.salesforce.dataloader.client.PartnerClient;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.exception.MappingInitializationException;
 import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
 import com.salesforce.dataloader.util.AppUtil;
 import com.salesforce.dataloader.util.OrderedProperties;
 
@@ -91,6 +92,9 @@ public abstract class Mapper {
     private final CaseInsensitiveSet fields = new CaseInsensitiveSet();
     protected final String mappingFileName;
 
+    // incremented on every change to the mappings so that compiled mapping programs know when to rebuild
+    private volatile int mappingVersion;
+
     protected Mapper(PartnerClient client, Collection<String> columnNames, Field[] fields, String mappingFileName)
             throws MappingInitializationException {
         this.client = client;
@@ -144,6 +148,7 @@ public abstract class Mapper {
             }
         }
         this.map.put(src, originalDestList);
+        mappingChanged();
     }
     
     private void processCompositeDaoColName(String mappingSrcStr, String destFieldList) {
@@ -204,6 +209,7 @@ public abstract class Mapper {
             v = v.trim();
             this.constants.put(v, value);
         }
+        mappingChanged();
     }
 
     private static String extractConstant(String constantVal) {
@@ -214,6 +220,51 @@ public abstract class Mapper {
         rowMap.putAll(constants);
     }
 
+    /**
+     * Resolves the constants to columns of the given schema, so that they can be set on every mapped row without
+     * looking up their names.
+     */
+    protected ConstantColumns compileConstants(RowSchema schema) {
+        return new ConstantColumns(schema, this.constants);
+    }
+
+    /**
+     * Constant values along with the indexes of the columns they are set on
+     */
+    protected static final class ConstantColumns {
+        private final int[] columnIndexes;
+        private final Object[] values;
+
+        private ConstantColumns(RowSchema schema, Map<String, String> constants) {
+            this.columnIndexes = new int[constants.size()];
+            this.values = new Object[constants.size()];
+            int i = 0;
+            for (Entry<String, String> entry : constants.entrySet()) {
+                this.columnIndexes[i] = schema.addColumn(entry.getKey());
+                this.values[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        void apply(Row row) {
+            for (int i = 0; i < this.columnIndexes.length; i++) {
+                row.setValue(this.columnIndexes[i], this.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Marks the mappings as changed. Subclasses that keep mapping state of their own call this whenever they change
+     * it.
+     */
+    protected final void mappingChanged() {
+        this.mappingVersion++;
+    }
+
+    protected final int getMappingVersion() {
+        return this.mappingVersion;
+    }
+
     private Properties loadProperties(String fileName) throws MappingInitializationException {
         OrderedProperties props = new OrderedProperties();
         if (fileName != null && fileName.length() > 0) {
@@ -301,6 +352,7 @@ public abstract class Mapper {
     }
     public void clearMappings() {
         this.map.clear();
+        mappingChanged();
     }
 
     public void save(String filename) throws IOException {
@@ -310,6 +362,7 @@ public abstract class Mapper {
             String value = map.get(key);
             if (value == null) {
                 map.put(key, "");
+                mappingChanged();
             }
         }
         props.putAll(this.map);
@@ -327,6 +380,7 @@ public abstract class Mapper {
 
     public void removeMapping(String srcName) {
         this.map.remove(srcName);
+        mappingChanged();
     }
 
     protected Map<String, String> getMap() {
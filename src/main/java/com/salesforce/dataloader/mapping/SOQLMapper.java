@@ -31,6 +31,7 @@ import com.salesforce.dataloader.exception.MappingInitializationException;
 import com.salesforce.dataloader.mapping.SOQLInfo.SOQLFieldInfo;
 import com.salesforce.dataloader.mapping.SOQLInfo.SOQLParserException;
 import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
 import com.sforce.soap.partner.DescribeSObjectResult;
 import com.sforce.soap.partner.Field;
 import com.sforce.soap.partner.FieldType;
@@ -41,7 +42,9 @@ import com.sforce.ws.bind.XmlObject;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -51,7 +54,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TimeZone;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
@@ -89,6 +93,98 @@ public class SOQLMapper extends Mapper {
     private SOQLInfo soqlInfo;
     private CaseInsensitiveMap extractionMap = new CaseInsensitiveMap();
     private boolean isInitialized = false;
+    // shared by the rows mapped from query results so that column names are resolved once per mapper
+    private final RowSchema resultRowSchema = new RowSchema();
+    // mappings compiled against the result fields, rebuilt when the mappings change
+    private volatile FieldNode sobjectFieldTree;
+    private volatile HeaderProjection headerProjection;
+
+    // WSC converts date strings into Date objects at midnight GMT
+    private static final DateTimeFormatter DATE_ONLY_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+
+    /**
+     * A field of the query results, such as Account.Owner.Name, and the column of the result rows it is mapped to.
+     * Nested fields are looked up by their name in the parent field, so that mapping a record does not build the
+     * full field names again.
+     */
+    private final class FieldNode {
+        private final String fieldName;
+        private final int columnIndex;
+        private final ConcurrentHashMap<String, FieldNode> children = new ConcurrentHashMap<String, FieldNode>();
+        private final int mappingVersion;
+        private final ConstantColumns constantColumns;
+
+        // the root of the tree, it carries the version and constants of the whole tree
+        FieldNode(int mappingVersion) {
+            this.fieldName = null;
+            this.columnIndex = -1;
+            this.mappingVersion = mappingVersion;
+            this.constantColumns = compileConstants(resultRowSchema);
+        }
+
+        private FieldNode(String fieldName) {
+            this.fieldName = fieldName;
+            String localName = getExtractionMapping(fieldName, false);
+            if (localName == null) {
+                localName = fieldName;
+            }
+            this.columnIndex = resultRowSchema.addColumn(localName);
+            this.mappingVersion = -1;
+            this.constantColumns = null;
+        }
+
+        FieldNode getChild(String localPart) {
+            FieldNode child = this.children.get(localPart);
+            if (child == null) {
+                child = new FieldNode(this.fieldName == null ? localPart : this.fieldName + "." + localPart);
+                FieldNode existing = this.children.putIfAbsent(localPart, child);
+                if (existing != null) {
+                    child = existing;
+                }
+            }
+            return child;
+        }
+    }
+
+    /**
+     * The columns of the result rows that the fields of a query result header are mapped to
+     */
+    private final class HeaderProjection {
+        private final List<String> headers;
+        private final int headerCount;
+        private final int mappingVersion;
+        private final int[] columnIndexes;
+        private final boolean[] isIdField;
+        private final ConstantColumns constantColumns;
+
+        HeaderProjection(List<String> headers, int mappingVersion) {
+            this.headers = headers;
+            this.headerCount = headers.size();
+            this.mappingVersion = mappingVersion;
+            this.columnIndexes = new int[this.headerCount];
+            this.isIdField = new boolean[this.headerCount];
+            int i = 0;
+            for (String sfdcFieldName : headers) {
+                this.isIdField[i] = "Id".equalsIgnoreCase(sfdcFieldName);
+                String daoColumnName = getExtractionMapping(sfdcFieldName, false);
+                if (daoColumnName == null) {
+                    map.put(sfdcFieldName, sfdcFieldName);
+                    daoColumnName = sfdcFieldName;
+                    logger.info("SoQL query returned a field that cannot be mapped: " + sfdcFieldName);
+                }
+                this.columnIndexes[i] = resultRowSchema.addColumn(daoColumnName);
+                i++;
+            }
+            this.constantColumns = compileConstants(resultRowSchema);
+        }
+
+        boolean isValidFor(List<String> headers, int currentMappingVersion) {
+            return this.headers == headers
+                    && this.headerCount == headers.size()
+                    && this.mappingVersion == currentMappingVersion;
+        }
+    }
 
     public SOQLMapper(PartnerClient client, Collection<String> columnNames, Field[] fields, String mappingFileName)
             throws MappingInitializationException {
@@ -105,9 +201,14 @@ public class SOQLMapper extends Mapper {
     }
 
     public Row mapPartnerSObjectSfdcToLocal(SObject sobj) {
-        Row row = new Row();
-        mapPartnerSObject(row, "", sobj);
-        mapConstants(row);
+        FieldNode root = this.sobjectFieldTree;
+        if (root == null || root.mappingVersion != getMappingVersion()) {
+            root = new FieldNode(getMappingVersion());
+            this.sobjectFieldTree = root;
+        }
+        Row row = new Row(resultRowSchema);
+        mapPartnerSObject(row, root, sobj);
+        root.constantColumns.apply(row);
         return row;
     }
     
@@ -128,30 +229,22 @@ public class SOQLMapper extends Mapper {
         return null;
     }
 
-    private void mapPartnerSObject(Row row, String prefix, XmlObject sobj) {
+    private void mapPartnerSObject(Row row, FieldNode parent, XmlObject sobj) {
         Iterator<XmlObject> fields = sobj.getChildren();
         if (fields == null) return;
         while (fields.hasNext()) {
             XmlObject field = fields.next();
-            final String fieldName = prefix + field.getName().getLocalPart();
-            String localName = getExtractionMapping(fieldName, false);
-            if (localName == null) {
-                localName = fieldName;
+            FieldNode fieldNode = parent.getChild(field.getName().getLocalPart());
+            Object value = field.getValue();
+            QName xmlType = field.getXmlType();
+            if (xmlType != null && xmlType.getLocalPart().equals("date") && value instanceof Date){
+                //WSC got confused and converted a date string to a date object.
+                //this causes weirdness in the output format and timezone correction that we don't want
+                //convert the type back to a string before a later handler mis-handles it
+                value = DATE_ONLY_FORMATTER.format(Instant.ofEpochMilli(((Date)value).getTime()));
             }
-            if (localName != null) {
-                Object value = field.getValue();
-                QName xmlType = field.getXmlType();
-                if (xmlType != null && xmlType.getLocalPart().equals("date") && value instanceof Date){
-                    //WSC got confused and converted a date string to a date object.
-                    //this causes weirdness in the output format and timezone correction that we don't want
-                    //convert the type back to a string before a later handler mis-handles it
-                    SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
-                    formatter.setTimeZone(TimeZone.getTimeZone("GMT"));
-                    value = formatter.format(value);
-                }
-                row.put(localName, value);
-            }
-            mapPartnerSObject(row, fieldName + ".", field);
+            row.setValue(fieldNode.columnIndex, value);
+            mapPartnerSObject(row, fieldNode, field);
         }
     }
 
@@ -174,20 +267,22 @@ public class SOQLMapper extends Mapper {
     }
 
     public Row mapCsvRowSfdcToLocal(List<String> headers, List<String> values, StringBuilder id) {
-        Row resultRow = new Row();
-        Iterator<String> headerIter = headers.listIterator();
+        HeaderProjection projection = this.headerProjection;
+        if (projection == null || !projection.isValidFor(headers, getMappingVersion())) {
+            projection = new HeaderProjection(headers, getMappingVersion());
+            this.headerProjection = projection;
+        }
+        Row resultRow = new Row(resultRowSchema);
+        int i = 0;
         for (String val : values) {
-            String sfdcFieldName = headerIter.next();
-            if ("Id".equalsIgnoreCase(sfdcFieldName)) id.append(val);
-            String daoColumnName = getExtractionMapping(sfdcFieldName, false);
-            if (daoColumnName == null) {
-                this.map.put(sfdcFieldName, sfdcFieldName);
-                daoColumnName = sfdcFieldName;
-                logger.info("SoQL query returned a field that cannot be mapped: " + sfdcFieldName);
+            if (i >= projection.headerCount) {
+                throw new NoSuchElementException();
             }
-            resultRow.put(daoColumnName, val);
+            if (projection.isIdField[i]) id.append(val);
+            resultRow.setValue(projection.columnIndexes[i], val);
+            i++;
         }
-        mapConstants(resultRow);
+        projection.constantColumns.apply(resultRow);
         return resultRow;
     }
     
@@ -229,6 +324,7 @@ public class SOQLMapper extends Mapper {
                 this.extractionMap.put(resultField, resultField);
             }
         }
+        mappingChanged();
         _mapDaoColumns();
         this.isInitialized = true;
     }
@@ -273,6 +369,7 @@ public class SOQLMapper extends Mapper {
 
     public void copyDaoMappingToExtractionMapping() {
         this.extractionMap.putAll(this.map);
+        mappingChanged();
     }
     
     public Collection<String> getDestColumns() {
@@ -284,11 +381,13 @@ public class SOQLMapper extends Mapper {
             this.extractionMap.clear();
         }
         this.isInitialized = false;
+        mappingChanged();
     }
     
     public void removeMapping(String srcName) {
         super.removeMapping(srcName);
         this.extractionMap.remove(srcName);
+        mappingChanged();
     }
 
     protected Map<String, String> getMap() {
@@ -303,6 +402,7 @@ public class SOQLMapper extends Mapper {
         
         //add extraction mapping
         this.extractionMap.putAll(this.map);
+        mappingChanged();
     }
 
     private void addExtractionMapping(String daoName, SOQLFieldInfo fieldInfo) {
@@ -313,6 +413,7 @@ public class SOQLMapper extends Mapper {
         String sfdcFieldName = normalizeFieldInSoql(fieldInfo);
         if (!this.extractionMap.containsKey(sfdcFieldName)) {
             this.extractionMap.put(sfdcFieldName, soqlFieldName);
+            mappingChanged();
         }
     }
     
@@ -25,11 +25,15 @@
  */
 package com.salesforce.dataloader.model;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeMap;
 
 /**
  * Basically a Row is a set of column names and column values which can come from a CSV file, a database
@@ -39,23 +43,42 @@ import java.util.TreeMap;
  * For now it implements Map to make initial refactoring easier but should move towards more specific
  * methods and probably stop implementing Map interface. All Row behavior should be moved into this
  * class and not be spread in multiple class.
+ *
+ * Values are kept in an array indexed by the columns of a {@link RowSchema}, which is shared by all rows
+ * read from the same data source. Column names are case-insensitive and the Map views iterate the columns
+ * in case-insensitive order of their names.
  */
 public class Row implements Map<String, Object> {
 
     private static final int DEFAULT_COLUMN_COUNT = 16; // same as HashMap
-    private final Map<String, Object> internalMap;
+    // marks a column that is not set in this row, as opposed to a column set to null
+    private static final Object ABSENT = new Object();
+
+    private final RowSchema schema;
+    private Object[] values;
+    private int size;
 
     public Row() {
         this(DEFAULT_COLUMN_COUNT);
     }
 
     public Row(int columnCount) {
-        internalMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this(new RowSchema(), columnCount);
+    }
+
+    public Row(RowSchema schema) {
+        this(schema, schema.getColumnCount());
     }
 
     public Row(Map<String, Object> internalMap) {
         this(internalMap.size());
-        this.internalMap.putAll(internalMap);
+        putAll(internalMap);
+    }
+
+    private Row(RowSchema schema, int columnCount) {
+        this.schema = schema;
+        this.values = new Object[columnCount];
+        Arrays.fill(this.values, ABSENT);
     }
 
     public static Row emptyRow() {
@@ -66,71 +89,263 @@ public class Row implements Map<String, Object> {
         return new Row(Collections.singletonMap(key, value));
     }
 
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return value of the column at the given schema index, null if the column is not set in this row
+     */
+    public Object getValue(int columnIndex) {
+        if (columnIndex >= values.length) {
+            return null;
+        }
+        Object value = values[columnIndex];
+        return value == ABSENT ? null : value;
+    }
+
+    /**
+     * Sets the value of the column at the given schema index.
+     *
+     * @return previous value of the column
+     */
+    public Object setValue(int columnIndex, Object value) {
+        if (columnIndex >= values.length) {
+            int newLength = Math.max(columnIndex + 1, Math.max(schema.getColumnCount(), values.length * 2));
+            int oldLength = values.length;
+            values = Arrays.copyOf(values, newLength);
+            Arrays.fill(values, oldLength, newLength, ABSENT);
+        }
+        Object oldValue = values[columnIndex];
+        values[columnIndex] = value;
+        if (oldValue == ABSENT) {
+            size++;
+            return null;
+        }
+        return oldValue;
+    }
+
+    private boolean isSet(int columnIndex) {
+        return columnIndex >= 0 && columnIndex < values.length && values[columnIndex] != ABSENT;
+    }
+
+    private int indexOf(Object key) {
+        return key instanceof String ? schema.indexOf((String)key) : -1;
+    }
+
+    private void unset(int columnIndex) {
+        values[columnIndex] = ABSENT;
+        size--;
+    }
+
     @Override
     public int size() {
-        return internalMap.size();
+        return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return internalMap.isEmpty();
+        return size == 0;
     }
 
     @Override
     public boolean containsKey(Object key) {
-        return internalMap.containsKey(key);
+        return isSet(indexOf(key));
     }
 
     @Override
     public boolean containsValue(Object value) {
-        return internalMap.containsValue(value);
+        for (Object columnValue : values) {
+            if (columnValue != ABSENT && (value == null ? columnValue == null : value.equals(columnValue))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public Object get(Object key) {
-        return internalMap.get(key);
+        int columnIndex = indexOf(key);
+        return columnIndex < 0 ? null : getValue(columnIndex);
     }
 
     @Override
     public Object put(String key, Object value) {
-        return internalMap.put(key, value);
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return setValue(schema.addColumn(key), value);
     }
 
     @Override
     public Object remove(Object key) {
-        return internalMap.remove(key);
+        int columnIndex = indexOf(key);
+        if (!isSet(columnIndex)) {
+            return null;
+        }
+        Object oldValue = values[columnIndex];
+        unset(columnIndex);
+        return oldValue;
     }
 
     @Override
     public void putAll(Map<? extends String, ?> m) {
-        internalMap.putAll(m);
+        for (Entry<? extends String, ?> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
     public void clear() {
-        internalMap.clear();
+        Arrays.fill(values, ABSENT);
+        size = 0;
     }
 
     @Override
     public Set<String> keySet() {
-        return internalMap.keySet();
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new ColumnIterator<String>() {
+                    @Override
+                    String element(int columnIndex) {
+                        return schema.getColumnName(columnIndex);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+        };
     }
 
     @Override
     public Collection<Object> values() {
-        return internalMap.values();
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return new ColumnIterator<Object>() {
+                    @Override
+                    Object element(int columnIndex) {
+                        return values[columnIndex];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     @Override
     public Set<Entry<String, Object>> entrySet() {
-        return internalMap.entrySet();
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new ColumnIterator<Entry<String, Object>>() {
+                    @Override
+                    Entry<String, Object> element(int columnIndex) {
+                        return new ColumnEntry(columnIndex);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /** Iterates the columns set in this row in case-insensitive order of their names */
+    private abstract class ColumnIterator<E> implements Iterator<E> {
+        private final int[] sortedColumnIndexes = schema.getSortedColumnIndexes();
+        private int next = advance(0);
+        private int last = -1;
+
+        private int advance(int from) {
+            while (from < sortedColumnIndexes.length && !isSet(sortedColumnIndexes[from])) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < sortedColumnIndexes.length;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = sortedColumnIndexes[next];
+            next = advance(next + 1);
+            return element(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0 || !isSet(last)) {
+                throw new IllegalStateException();
+            }
+            unset(last);
+        }
+
+        abstract E element(int columnIndex);
+    }
+
+    private class ColumnEntry implements Entry<String, Object> {
+        private final int columnIndex;
+
+        ColumnEntry(int columnIndex) {
+            this.columnIndex = columnIndex;
+        }
+
+        @Override
+        public String getKey() {
+            return schema.getColumnName(columnIndex);
+        }
+
+        @Override
+        public Object getValue() {
+            return Row.this.getValue(columnIndex);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return Row.this.setValue(columnIndex, value);
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
     }
 
     @Override
     public String toString() {
+        StringBuilder columns = new StringBuilder("{");
+        for (Entry<String, Object> entry : entrySet()) {
+            if (columns.length() > 1) {
+                columns.append(", ");
+            }
+            columns.append(entry);
+        }
+        columns.append('}');
         return "Row{" +
-                " size=" + internalMap.size() +
-                " columns=" + internalMap +
+                " size=" + size +
+                " columns=" + columns +
                 '}';
     }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column names shared by the rows of a data source, each resolved once to an index into the rows' value arrays.
+ *
+ * Column names are case-insensitive, the first spelling added for a column is its canonical name. Lookups of a
+ * spelling that was seen before are a single hash lookup, a new spelling is resolved case-insensitively once and
+ * remembered. Columns can be added while rows of the schema are being read, e.g. status or id columns added by the
+ * visitors, so lookups do not lock and only adding a column does.
+ */
+public class RowSchema {
+
+    // every spelling looked up so far, mapped to its column index
+    private final Map<String, Integer> spellingIndexes = new ConcurrentHashMap<>();
+    private final TreeMap<String, Integer> canonicalIndexes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private volatile String[] columnNames = new String[8];
+    private volatile int columnCount = 0;
+    // column indexes in case-insensitive order of the column names, computed when the rows are iterated
+    private volatile int[] sortedColumnIndexes = new int[0];
+
+    public RowSchema() {
+    }
+
+    public RowSchema(List<String> columnNames) {
+        for (String columnName : columnNames) {
+            addColumn(columnName);
+        }
+    }
+
+    /**
+     * @return index of the column, or -1 if the schema has no such column
+     */
+    public int indexOf(String columnName) {
+        Integer index = spellingIndexes.get(columnName);
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            index = canonicalIndexes.get(columnName);
+            if (index == null) {
+                return -1;
+            }
+            spellingIndexes.put(columnName, index);
+            return index;
+        }
+    }
+
+    /**
+     * Adds a column unless the schema already has a column of that name.
+     *
+     * @return index of the column
+     */
+    public int addColumn(String columnName) {
+        Integer index = spellingIndexes.get(columnName);
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            index = canonicalIndexes.get(columnName);
+            if (index == null) {
+                index = columnCount;
+                if (index == columnNames.length) {
+                    columnNames = Arrays.copyOf(columnNames, index * 2);
+                }
+                columnNames[index] = columnName;
+                columnCount = index + 1;
+                canonicalIndexes.put(columnName, index);
+            }
+            spellingIndexes.put(columnName, index);
+            return index;
+        }
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * @return canonical name of the column at the given index
+     */
+    public String getColumnName(int columnIndex) {
+        if (columnIndex >= columnCount) {
+            throw new IndexOutOfBoundsException(String.valueOf(columnIndex));
+        }
+        return columnNames[columnIndex];
+    }
+
+    int[] getSortedColumnIndexes() {
+        int[] sorted = sortedColumnIndexes;
+        if (sorted.length == columnCount) {
+            return sorted;
+        }
+        synchronized (this) {
+            sorted = new int[canonicalIndexes.size()];
+            int i = 0;
+            for (Integer index : canonicalIndexes.values()) {
+                sorted[i++] = index;
+            }
+            sortedColumnIndexes = sorted;
+            return sorted;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RowSchema{columns=" + Arrays.toString(Arrays.copyOf(columnNames, columnCount)) + '}';
+    }
+}
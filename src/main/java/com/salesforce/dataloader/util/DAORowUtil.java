@@ -126,10 +126,26 @@ public class DAORowUtil {
 
     public void skipRowToStartOffset(Config cfg, DataReader rdr, ILoaderProgress mon, boolean updateProgress)
             throws LoadException {
+        final int rowToStart;
+        try {
+            rowToStart = cfg.getInt(Config.LOAD_ROW_TO_START_AT);
+        } catch (final ParameterLoadException e) {
+            skipRowToStartOffset(cfg, rdr, mon, updateProgress, 0);
+            return;
+        }
+        skipRowToStartOffset(cfg, rdr, mon, updateProgress, rowToStart);
+    }
+
+    /**
+     * Same as {@link #skipRowToStartOffset(Config, DataReader, ILoaderProgress, boolean)} with the given
+     * starting row instead of the configured one.
+     */
+    public void skipRowToStartOffset(Config cfg, DataReader rdr, ILoaderProgress mon, boolean updateProgress,
+            int rowToStart) throws LoadException {
 
         try {
             cfg.setValue(LastRun.LAST_LOAD_BATCH_ROW, 0);
-            rowToStart(cfg, rdr);
+            rowToStart(rowToStart, rdr);
             if (updateProgress) {
                 // set the last processed value to the starting row
                 int currentRow = rdr.getCurrentRowNumber();
@@ -193,14 +209,8 @@ public class DAORowUtil {
     /**
      * Set the dataReader to point to the row where load has to be started
      */
-    private void rowToStart(Config cfg, DataReader daoReader) throws DataAccessObjectException {
+    private void rowToStart(int rowToStart, DataReader daoReader) throws DataAccessObjectException {
         // start at the correct row
-        final int rowToStart;
-        try {
-            rowToStart = cfg.getInt(Config.LOAD_ROW_TO_START_AT);
-        } catch (final ParameterLoadException e) {
-            return;
-        }
         if (rowToStart > 0) {
             // keep skipping over rows until we run into an invalid row or we have gotten
             // to the starting row
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.exception.ParameterLoadException;
+
+/**
+ * Number of retries of a failed request and the delay before each of them. The delay doubles with
+ * each retry, starting at the configured minimum and up to {@link Config#MAX_RETRY_SLEEP_SECS}. A
+ * random part of up to half of it is left out so that requests that failed at the same time are not
+ * all sent again at the same time.
+ */
+public class RetryPolicy {
+    private static final Logger logger = LogManager.getLogger(RetryPolicy.class);
+
+    private final int maxRetries;
+    private final long minSleepMillis;
+    private final long maxSleepMillis;
+
+    public RetryPolicy(int maxRetries, int minSleepSecs, int maxSleepSecs) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.minSleepMillis = Math.max(0, minSleepSecs) * 1000L;
+        this.maxSleepMillis = Math.max(this.minSleepMillis, maxSleepSecs * 1000L);
+    }
+
+    /**
+     * @return the retries configured with {@link Config#ENABLE_RETRIES}, {@link Config#MAX_RETRIES} and
+     *         {@link Config#MIN_RETRY_SLEEP_SECS}
+     */
+    public static RetryPolicy fromConfig(Config config) {
+        int retries = 0;
+        int sleepSecs = Config.DEFAULT_MIN_RETRY_SECS;
+        if (config.getBoolean(Config.ENABLE_RETRIES)) {
+            try {
+                // limit the number of max retries in case limit is exceeded
+                retries = Math.min(Config.MAX_RETRIES_LIMIT, config.getInt(Config.MAX_RETRIES));
+            } catch (ParameterLoadException e) {
+                retries = Config.DEFAULT_MAX_RETRIES;
+            }
+            try {
+                sleepSecs = config.getInt(Config.MIN_RETRY_SLEEP_SECS);
+            } catch (ParameterLoadException e) {
+                logger.warn("Incorrectly configured " + Config.MIN_RETRY_SLEEP_SECS);
+            }
+        }
+        return new RetryPolicy(retries, sleepSecs, Config.MAX_RETRY_SLEEP_SECS);
+    }
+
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    /**
+     * @param retryNum number of retries done so far
+     * @return delay before the next retry
+     */
+    public long getSleepMillis(int retryNum) {
+        final long sleepMillis = Math.min(this.maxSleepMillis, this.minSleepMillis << Math.min(retryNum, 20));
+        final long halfSleepMillis = sleepMillis / 2;
+        return sleepMillis - halfSleepMillis + ThreadLocalRandom.current().nextLong(halfSleepMillis + 1);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.logging.log4j.LogManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.salesforce.dataloader.action.visitor.DAOLoadVisitor;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.exception.LoadExceptionOnServer;
+import com.sforce.soap.partner.fault.UnexpectedErrorFault;
+import com.sforce.ws.ConnectionException;
+
+public class AbstractLoadActionTest {
+
+    private AbstractLoadAction action;
+    private Config config;
+    private DAOLoadVisitor visitor;
+
+    @Before
+    public void setUp() {
+        action = mock(AbstractLoadAction.class, CALLS_REAL_METHODS);
+        config = mock(Config.class);
+        visitor = mock(DAOLoadVisitor.class);
+        doReturn(config).when(action).getConfig();
+        doReturn(visitor).when(action).getVisitor();
+        doReturn(LogManager.getLogger(AbstractLoadActionTest.class)).when(action).getLogger();
+    }
+
+    @Test
+    public void testBulkInsertIsNotAttemptedAgain() {
+        when(config.isBulkAPIEnabled()).thenReturn(true);
+        when(visitor.isIdempotentOperation()).thenReturn(false);
+        assertFalse(action.canRetryOperation(new LoadExceptionOnServer("batch failed")));
+
+        when(visitor.isIdempotentOperation()).thenReturn(true);
+        assertTrue(action.canRetryOperation(new LoadExceptionOnServer("batch failed")));
+    }
+
+    @Test
+    public void testTransportFailureIsOnlyRetriedByTheRequest() {
+        // the request was sent again until its retries were used up
+        assertFalse(action.canRetryOperation(
+                new LoadExceptionOnServer("connection reset", new ConnectionException("connection reset"))));
+        // the server rejected the request, which the request does not retry
+        assertTrue(action.canRetryOperation(
+                new LoadExceptionOnServer("server unavailable", new UnexpectedErrorFault())));
+    }
+}
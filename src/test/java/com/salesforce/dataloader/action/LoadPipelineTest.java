@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.salesforce.dataloader.action.progress.ILoaderProgress;
+import com.salesforce.dataloader.action.visitor.DAOLoadVisitor;
+import com.salesforce.dataloader.action.visitor.DAOLoadVisitor.ConvertedRow;
+import com.salesforce.dataloader.dao.DataReader;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.OperationException;
+import com.salesforce.dataloader.model.Row;
+
+public class LoadPipelineTest {
+
+    private static final int NUM_ROWS = 500;
+
+    private final List<Row> rows = new ArrayList<Row>();
+    // conversion result of each row, to check that the visitor gets the result of the row it is given
+    private final Map<Row, ConvertedRow> convertedRows = Collections.synchronizedMap(new IdentityHashMap<Row, ConvertedRow>());
+    private final List<Row> addedRows = new ArrayList<Row>();
+    private final List<Integer> statusRowNumbers = new ArrayList<Integer>();
+    private DAOLoadVisitor visitor;
+    private ILoaderProgress monitor;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < NUM_ROWS; i++) {
+            rows.add(Row.singleEntryImmutableRow("Name", "row " + i));
+        }
+        visitor = mock(DAOLoadVisitor.class);
+        monitor = mock(ILoaderProgress.class);
+        when(visitor.convertRow(any(Row.class))).thenAnswer(invocation -> {
+            // finish the rows out of order
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+            ConvertedRow convertedRow = mock(ConvertedRow.class);
+            convertedRows.put(invocation.getArgument(0), convertedRow);
+            return convertedRow;
+        });
+        when(visitor.addConvertedRow(any(Row.class), any(ConvertedRow.class))).thenAnswer(invocation -> {
+            Row row = invocation.getArgument(0);
+            assertSame(convertedRows.get(row), invocation.getArgument(1));
+            addedRows.add(row);
+            return true;
+        });
+        doAnswer(invocation -> statusRowNumbers.add(invocation.getArgument(0)))
+                .when(visitor).setRowConversionStatus(anyInt(), anyBoolean());
+    }
+
+    @Test
+    public void testRowsAreAddedInReadOrder() throws Exception {
+        new LoadPipeline(new ListReader(rows, -1), visitor, monitor, 7, 4, 3).run();
+
+        assertEquals(rows, addedRows);
+        assertEquals(NUM_ROWS, statusRowNumbers.size());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            assertEquals(Integer.valueOf(i), statusRowNumbers.get(i));
+        }
+    }
+
+    @Test
+    public void testConversionErrorIsThrown() throws Exception {
+        final Row failedRow = rows.get(300);
+        when(visitor.convertRow(failedRow)).thenThrow(new OperationException("conversion failed"));
+        try {
+            new LoadPipeline(new ListReader(rows, -1), visitor, monitor, 7, 4, 3).run();
+            fail("the conversion error was not thrown");
+        } catch (OperationException e) {
+            assertEquals("conversion failed", e.getMessage());
+        }
+        // the rows of the chunks before the failed one are added in order, none after it
+        assertTrue(addedRows.size() <= 300);
+        assertEquals(rows.subList(0, addedRows.size()), addedRows);
+    }
+
+    @Test
+    public void testReadErrorIsThrown() throws Exception {
+        try {
+            new LoadPipeline(new ListReader(rows, 200), visitor, monitor, 7, 4, 3).run();
+            fail("the read error was not thrown");
+        } catch (DataAccessObjectException e) {
+            assertEquals("read failed", e.getMessage());
+        }
+        assertEquals(rows.subList(0, addedRows.size()), addedRows);
+        assertTrue(addedRows.size() <= 200);
+    }
+
+    /** Returns a list of rows, failing once a row number is reached */
+    private static class ListReader implements DataReader {
+        private final List<Row> rows;
+        private final int failedRowNumber;
+        private int currentRowNumber = 0;
+
+        ListReader(List<Row> rows, int failedRowNumber) {
+            this.rows = rows;
+            this.failedRowNumber = failedRowNumber;
+        }
+
+        @Override
+        public void open() {
+            this.currentRowNumber = 0;
+        }
+
+        @Override
+        public void checkConnection() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public List<String> getColumnNames() {
+            return Collections.singletonList("Name");
+        }
+
+        @Override
+        public int getCurrentRowNumber() {
+            return this.currentRowNumber;
+        }
+
+        @Override
+        public Row readRow() throws DataAccessObjectException {
+            if (this.currentRowNumber == this.failedRowNumber) {
+                throw new DataAccessObjectException("read failed");
+            }
+            return this.currentRowNumber < this.rows.size() ? this.rows.get(this.currentRowNumber++) : null;
+        }
+
+        @Override
+        public List<Row> readRowList(int maxRows) throws DataAccessObjectException {
+            List<Row> rowList = new ArrayList<Row>();
+            for (Row row; rowList.size() < maxRows && (row = readRow()) != null;) {
+                rowList.add(row);
+            }
+            return rowList;
+        }
+
+        @Override
+        public int getTotalRows() {
+            return this.rows.size();
+        }
+    }
+}
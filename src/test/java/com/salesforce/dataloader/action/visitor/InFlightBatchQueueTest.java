@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.sforce.ws.ConnectionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InFlightBatchQueueTest {
+
+    @Test
+    public void testResultsAreReturnedInSubmissionOrder() throws Exception {
+        InFlightBatchQueue<Integer> queue = new InFlightBatchQueue<Integer>(3, "test");
+        try {
+            final CountDownLatch firstRequestReleased = new CountDownLatch(1);
+            queue.submit(() -> {
+                firstRequestReleased.await(10, TimeUnit.SECONDS);
+                return 1;
+            });
+            queue.submit(() -> 2);
+            assertFalse(queue.isFull());
+            queue.submit(() -> 3);
+            assertTrue(queue.isFull());
+
+            // the first request finishes last but its result is returned first
+            Thread.sleep(100);
+            firstRequestReleased.countDown();
+            assertEquals(Integer.valueOf(1), queue.takeOldest());
+            assertEquals(Integer.valueOf(2), queue.takeOldest());
+            assertEquals(Integer.valueOf(3), queue.takeOldest());
+            assertTrue(queue.isEmpty());
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void testSingleRequestRunsOnCallingThread() throws Exception {
+        InFlightBatchQueue<Thread> queue = new InFlightBatchQueue<Thread>(1, "test");
+        queue.submit(() -> Thread.currentThread());
+        assertTrue(queue.isFull());
+        assertEquals(Thread.currentThread(), queue.takeOldest());
+        queue.shutdown();
+    }
+
+    @Test
+    public void testConnectionExceptionIsRethrown() {
+        InFlightBatchQueue<Integer> queue = new InFlightBatchQueue<Integer>(2, "test");
+        try {
+            queue.submit(() -> {
+                throw new ConnectionException("request failed");
+            });
+            queue.takeOldest();
+            fail("expected ConnectionException");
+        } catch (ConnectionException e) {
+            assertEquals("request failed", e.getMessage());
+        } finally {
+            queue.shutdown();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.DynaClass;
+import org.apache.commons.beanutils.DynaProperty;
+import org.junit.Before;
+
+import com.salesforce.dataloader.ConfigTestBase;
+import com.salesforce.dataloader.action.progress.ILoaderProgress;
+import com.salesforce.dataloader.action.visitor.DAOLoadVisitor.ConvertedRow;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.DataReader;
+import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.TestRows;
+
+/**
+ * Base class for tests of load visitors that run without a server. The visitors get a mocked controller that
+ * returns the test configuration, and rows are added to them already converted.
+ */
+public abstract class LoadVisitorTestBase extends ConfigTestBase {
+
+    protected Controller controller;
+    protected ILoaderProgress monitor;
+    protected DataWriter successWriter;
+    protected DataWriter errorWriter;
+    protected final List<Row> successRows = Collections.synchronizedList(new ArrayList<Row>());
+    protected final List<Row> errorRows = Collections.synchronizedList(new ArrayList<Row>());
+
+    @Before
+    public void setUpVisitorMocks() throws Exception {
+        DataReader dao = mock(DataReader.class);
+        when(dao.getColumnNames()).thenReturn(Arrays.asList("Name"));
+        controller = mock(Controller.class);
+        when(controller.getConfig()).thenReturn(getController().getConfig());
+        when(controller.getDao()).thenReturn(dao);
+        monitor = mock(ILoaderProgress.class);
+        successWriter = mock(DataWriter.class);
+        doAnswer(invocation -> successRows.add(invocation.getArgument(0))).when(successWriter).writeRow(any(Row.class));
+        errorWriter = mock(DataWriter.class);
+        doAnswer(invocation -> errorRows.add(invocation.getArgument(0))).when(errorWriter).writeRow(any(Row.class));
+    }
+
+    protected Config getConfig() {
+        return getController().getConfig();
+    }
+
+    protected static Row createRow(int rowNum) {
+        return TestRows.of("Name", "row " + rowNum);
+    }
+
+    /**
+     * @return the result of converting a row to the given dynabean
+     */
+    protected static ConvertedRow convertedRow(DynaBean dynaBean) {
+        return ConvertedRow.of(dynaBean, null, 100);
+    }
+
+    /**
+     * @return the result of a row that could not be converted
+     */
+    protected static ConvertedRow failedConversion(String conversionError) {
+        return ConvertedRow.of(null, conversionError, 0);
+    }
+
+    /**
+     * @return a dynabean that only tells which row it was converted from
+     */
+    protected static DynaBean createDynaBean(int rowNum) {
+        DynaBean dynaBean = mock(DynaBean.class);
+        when(dynaBean.get("Name")).thenReturn("row " + rowNum);
+        DynaClass dynaClass = mock(DynaClass.class);
+        when(dynaClass.getDynaProperties()).thenReturn(new DynaProperty[0]);
+        when(dynaBean.getDynaClass()).thenReturn(dynaClass);
+        return dynaBean;
+    }
+
+    /**
+     * @return the number of the row that a dynabean was converted from
+     */
+    protected static int getRowNum(DynaBean dynaBean) {
+        return Integer.parseInt(((String)dynaBean.get("Name")).substring("row ".length()));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryPartitionerTest {
+
+    @Test
+    public void testAddsConditionToWhereClause() {
+        assertEquals("SELECT Id FROM Account WHERE Id >= '001'",
+                QueryPartitioner.addCondition("SELECT Id FROM Account", "Id >= '001'"));
+        assertEquals("SELECT Id, (SELECT Id FROM Contacts WHERE Name = 'a') FROM Account WHERE (Name = 'b' OR Name = 'c') AND Id >= '001'",
+                QueryPartitioner.addCondition(
+                        "SELECT Id, (SELECT Id FROM Contacts WHERE Name = 'a') FROM Account WHERE Name = 'b' OR Name = 'c'",
+                        "Id >= '001'"));
+        assertEquals("SELECT Id FROM Account WHERE (Name = 'where\\'s limit') AND Id >= '001'",
+                QueryPartitioner.addCondition("SELECT Id FROM Account WHERE Name = 'where\\'s limit'", "Id >= '001'"));
+    }
+
+    @Test
+    public void testDoesNotSplitQueriesWithTrailingClauses() {
+        assertTrue(QueryPartitioner.getFromClauseIndex("SELECT Id FROM Account WHERE Name = 'limit'") > 0);
+        assertTrue(QueryPartitioner.getFromClauseIndex(
+                "SELECT Id, (SELECT Id FROM Contacts ORDER BY Name LIMIT 5) FROM Account") > 0);
+        assertEquals(-1, QueryPartitioner.getFromClauseIndex("SELECT Id FROM Account LIMIT 10"));
+        assertEquals(-1, QueryPartitioner.getFromClauseIndex("SELECT Id FROM Account ORDER BY Name"));
+        assertEquals(-1, QueryPartitioner.getFromClauseIndex("SELECT Name, COUNT(Id) FROM Account GROUP BY Name"));
+    }
+
+    @Test
+    public void testIdBoundariesSplitRangeEvenly() {
+        List<String> boundaries = QueryPartitioner.getIdBoundaries("001000000000000AAA", "001000000000040", 4);
+        assertEquals(Arrays.asList("'001000000000010'", "'001000000000020'", "'001000000000030'"), boundaries);
+        // no more boundaries than distinct ids in the range
+        assertEquals(Arrays.asList("'001000000000001'"),
+                QueryPartitioner.getIdBoundaries("001000000000000", "001000000000002", 4));
+    }
+
+    @Test
+    public void testDateTimeBoundariesSplitRangeEvenly() {
+        List<String> boundaries = QueryPartitioner.getDateTimeBoundaries(
+                "2020-01-01T00:00:00.000Z", "2020-01-05T00:00:00.000Z", 4);
+        assertEquals(Arrays.asList("2020-01-02T00:00:00Z", "2020-01-03T00:00:00Z", "2020-01-04T00:00:00Z"), boundaries);
+    }
+
+    @Test
+    public void testRangeConditionsCoverAllValues() {
+        assertEquals(Arrays.asList("(CreatedDate < 2020-01-02T00:00:00Z OR CreatedDate = null)",
+                "(CreatedDate >= 2020-01-02T00:00:00Z AND CreatedDate < 2020-01-03T00:00:00Z)",
+                "CreatedDate >= 2020-01-03T00:00:00Z"),
+                QueryPartitioner.getRangeConditions("CreatedDate",
+                        Arrays.asList("2020-01-02T00:00:00Z", "2020-01-03T00:00:00Z")));
+    }
+}
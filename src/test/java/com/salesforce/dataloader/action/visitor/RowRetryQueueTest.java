@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RowRetryQueueTest {
+
+    @Test
+    public void testOnlyTransientErrorsAreQueued() {
+        RowRetryQueue<String> queue = new RowRetryQueue<String>(2, 10);
+        assertTrue(queue.offer("row1", "UNABLE_TO_LOCK_ROW", "unable to obtain exclusive access to this record"));
+        assertTrue(queue.offer("row2", "CANNOT_INSERT_UPDATE_ACTIVATE_ENTITY",
+                "execution of AfterInsert caused by: System.DmlException: Update failed. UNABLE_TO_LOCK_ROW"));
+        assertFalse(queue.offer("row3", "REQUIRED_FIELD_MISSING", "Required fields are missing: [Name]"));
+        assertFalse(queue.offer("row4", null, null));
+        assertEquals(Arrays.asList("row1", "row2"), queue.takeAll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testRowsAreTakenInSmallerBatches() {
+        RowRetryQueue<Integer> queue = new RowRetryQueue<Integer>(1, 2);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(i, "UNABLE_TO_LOCK_ROW", null);
+        }
+        List<List<Integer>> batches = queue.takeBatches();
+        assertEquals(Arrays.asList(Arrays.asList(0, 1), Arrays.asList(2, 3), Arrays.asList(4)), batches);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testRowsAreNotQueuedAfterTheLastRetry() {
+        RowRetryQueue<String> queue = new RowRetryQueue<String>(2, 10);
+        assertTrue(queue.offer("row1", "REQUEST_RUNNING_TOO_LONG", null));
+        queue.takeBatches();
+        assertTrue(queue.offer("row1", "REQUEST_RUNNING_TOO_LONG", null));
+        queue.takeBatches();
+        assertEquals(2, queue.getRetryNum());
+        assertFalse(queue.offer("row1", "REQUEST_RUNNING_TOO_LONG", null));
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkBatchBufferTest {
+
+    @Test
+    public void testContentKeptInMemoryBelowThreshold() throws IOException {
+        try (BulkBatchBuffer buffer = new BulkBatchBuffer(4, 64)) {
+            write(buffer, "Id,Name\n");
+            write(buffer, "001,Acme\n");
+            assertEquals(17, buffer.size());
+            assertEquals("Id,Name\n001,Acme\n", read(buffer));
+            // content can be read again, e.g. to retry an upload
+            assertEquals("Id,Name\n001,Acme\n", read(buffer));
+        }
+    }
+
+    @Test
+    public void testContentSpilledAboveThreshold() throws IOException {
+        try (BulkBatchBuffer buffer = new BulkBatchBuffer(4, 10)) {
+            write(buffer, "Id,Name\n");
+            write(buffer, "001,Acme\n");
+            write(buffer, "002,Globex\n");
+            assertEquals(28, buffer.size());
+            assertEquals("Id,Name\n001,Acme\n002,Globex\n", read(buffer));
+        }
+    }
+
+    @Test
+    public void testDetachContent() throws IOException {
+        try (BulkBatchBuffer buffer = new BulkBatchBuffer(4, 10)) {
+            write(buffer, "Id,Name\n001,Acme\n");
+            try (BulkBatchBuffer detached = buffer.detachContent()) {
+                write(buffer, "Id\n");
+                assertEquals("Id,Name\n001,Acme\n", read(detached));
+                assertEquals("Id\n", read(buffer));
+                assertEquals(3, buffer.size());
+            }
+        }
+    }
+
+    private static void write(BulkBatchBuffer buffer, String content) throws IOException {
+        buffer.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(BulkBatchBuffer buffer) throws IOException {
+        try (InputStream in = buffer.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
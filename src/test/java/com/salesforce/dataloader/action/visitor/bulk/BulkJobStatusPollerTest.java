@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.salesforce.dataloader.config.Config;
+import com.sforce.async.JobInfo;
+import com.sforce.async.JobStateEnum;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkJobStatusPollerTest {
+
+    private static final long STEADY_INTERVAL = 5000L;
+    private static final long MAX_INTERVAL = 60000L;
+
+    @Test
+    public void testBacksOffWhileJobMakesNoProgress() {
+        assertEquals(4000L, BulkJobStatusPoller.nextInterval(2000L, 0, 0, 1000, STEADY_INTERVAL, MAX_INTERVAL));
+        assertEquals(MAX_INTERVAL, BulkJobStatusPoller.nextInterval(40000L, 0, 0, 1000, STEADY_INTERVAL, MAX_INTERVAL));
+    }
+
+    @Test
+    public void testChecksHalfwayToExpectedCompletion() {
+        // 1000 records in 2 seconds, 9000 records to go: about 18 seconds left
+        assertEquals(9000L, BulkJobStatusPoller.nextInterval(2000L, 1000, 1000, 10000, STEADY_INTERVAL, MAX_INTERVAL));
+        // almost done
+        assertEquals(Config.MIN_BULK_API_CHECK_STATUS_INTERVAL,
+                BulkJobStatusPoller.nextInterval(9000L, 8990, 9990, 10000, STEADY_INTERVAL, MAX_INTERVAL));
+        assertEquals(Config.MIN_BULK_API_CHECK_STATUS_INTERVAL,
+                BulkJobStatusPoller.nextInterval(9000L, 10, 10000, 10000, STEADY_INTERVAL, MAX_INTERVAL));
+    }
+
+    @Test
+    public void testUsesSteadyIntervalForJobOfUnknownSize() {
+        assertEquals(STEADY_INTERVAL, BulkJobStatusPoller.nextInterval(1000L, 500, 500, 0, STEADY_INTERVAL, MAX_INTERVAL));
+    }
+
+    @Test
+    public void testCompletesAsSoonAsJobIsDone() throws Exception {
+        final AtomicInteger numChecks = new AtomicInteger();
+        BulkJobStatusPoller.TrackedJob trackedJob = BulkJobStatusPoller.getInstance().track(() -> {
+            JobInfo job = new JobInfo();
+            job.setState(numChecks.incrementAndGet() < 2 ? JobStateEnum.InProgress : JobStateEnum.JobComplete);
+            job.setNumberRecordsProcessed(numChecks.get() * 10);
+            return job;
+        }, job -> job.getState() == JobStateEnum.JobComplete, 20, STEADY_INTERVAL, MAX_INTERVAL, 1);
+
+        JobInfo finalStatus = trackedJob.getCompletion().get(30, TimeUnit.SECONDS);
+        assertEquals(JobStateEnum.JobComplete, finalStatus.getState());
+        assertEquals(2, numChecks.get());
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.beanutils.BasicDynaClass;
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.DynaProperty;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.salesforce.dataloader.action.visitor.DAOLoadVisitor.ConvertedRow;
+import com.salesforce.dataloader.action.visitor.LoadVisitorTestBase;
+import com.salesforce.dataloader.client.PartnerClient;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.dao.ParentGroupingReader;
+import com.salesforce.dataloader.exception.LoadException;
+import com.salesforce.dataloader.mapping.LoadMapper;
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.TestRows;
+import com.sforce.async.BatchInfo;
+import com.sforce.async.BatchInfoList;
+import com.sforce.async.BatchStateEnum;
+
+public class BulkLoadVisitorTest extends LoadVisitorTestBase {
+
+    private static final int NUM_ROWS = 20;
+    private static final int BATCH_SIZE = 5;
+    private static final String LOCK_ERROR = "UNABLE_TO_LOCK_ROW:unable to obtain exclusive access to this record:--";
+
+    // batches in the order they were created, with the numbers of their rows
+    private final List<BatchInfo> batches = Collections.synchronizedList(new ArrayList<BatchInfo>());
+    private final Map<String, List<Integer>> batchRows = new ConcurrentHashMap<String, List<Integer>>();
+    // number of times each row was sent
+    private final Map<Integer, Integer> rowAttempts = new ConcurrentHashMap<Integer, Integer>();
+    private final Map<String, CountDownLatch> downloadDone = new ConcurrentHashMap<String, CountDownLatch>();
+    private boolean reverseDownloads = false;
+    // rows rejected with a lock error the first time they are sent
+    private int lockedRowsFrom = NUM_ROWS;
+    // the download of the results of this batch fails after the results of its first rows
+    private String failedDownloadBatch;
+    private int failedDownloadAfterRows;
+    // rows that cannot be converted when they are loaded again
+    private int unconvertibleRowsFrom = NUM_ROWS;
+
+    /** Loads its batches with a mocked job util, without waiting before rows are loaded again */
+    private class MockBulkLoadVisitor extends BulkLoadVisitor {
+        MockBulkLoadVisitor() {
+            super(BulkLoadVisitorTest.this.controller, BulkLoadVisitorTest.this.monitor,
+                    BulkLoadVisitorTest.this.successWriter, BulkLoadVisitorTest.this.errorWriter, visitor -> {
+                        try {
+                            return createMockJobUtil();
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+        }
+
+        @Override
+        protected boolean sleepBeforeRowRetry(int retryNum) {
+            return true;
+        }
+
+        // rows loaded again are converted again, without describing the entity
+        @Override
+        public ConvertedRow convertRow(Row row) {
+            try {
+                final int rowNum = getRowNums(Collections.singletonList(row)).get(0);
+                if (rowNum >= BulkLoadVisitorTest.this.unconvertibleRowsFrom) {
+                    return failedConversion("conversion failed");
+                }
+                return convertedRow(createDynaBean(rowNum));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Before
+    public void setUpBulkLoad() throws Exception {
+        getConfig().setValue(Config.BULK_API_ENABLED, true);
+        getConfig().setValue(Config.BULKV2_API_ENABLED, false);
+        getConfig().setValue(Config.PROCESS_BULK_CACHE_DATA_FROM_DAO, true);
+        getConfig().setValue(Config.OPERATION, "insert");
+        getConfig().setValue(Config.IMPORT_BATCH_SIZE, BATCH_SIZE);
+        LoadMapper mapper = mock(LoadMapper.class);
+        when(mapper.getMapping("Name", false, true)).thenReturn("Name");
+        when(controller.getMapper()).thenReturn(mapper);
+        when(controller.getPartnerClient()).thenReturn(mock(PartnerClient.class, RETURNS_DEEP_STUBS));
+    }
+
+    private BulkApiVisitorUtil createMockJobUtil() throws Exception {
+        BulkApiVisitorUtil jobUtil = mock(BulkApiVisitorUtil.class);
+        when(jobUtil.hasJob()).thenReturn(true);
+        when(jobUtil.getJobId()).thenReturn("job");
+        when(jobUtil.createBatch(any(InputStream.class), anyInt())).thenAnswer(invocation -> {
+            String content = IOUtils.toString((InputStream)invocation.getArgument(0), StandardCharsets.UTF_8);
+            List<Integer> rows = new ArrayList<Integer>();
+            String[] lines = content.split("\r?\n");
+            for (int i = 1; i < lines.length; i++) {
+                rows.add(parseRowNum(lines[i].replace("\"", "")));
+            }
+            BatchInfo batch = new BatchInfo();
+            batch.setId("batch" + this.batches.size());
+            batch.setJobId("job");
+            batch.setState(BatchStateEnum.Completed);
+            batch.setNumberRecordsProcessed(rows.size());
+            this.batchRows.put(batch.getId(), rows);
+            this.downloadDone.put(batch.getId(), new CountDownLatch(1));
+            this.batches.add(batch);
+            return batch;
+        });
+        when(jobUtil.getBatches()).thenAnswer(invocation -> {
+            BatchInfoList batchInfoList = new BatchInfoList();
+            batchInfoList.setBatchInfo(this.batches.toArray(new BatchInfo[0]));
+            return batchInfoList;
+        });
+        when(jobUtil.getBatchResultStream(anyString())).thenAnswer(invocation -> {
+            String batchId = invocation.getArgument(0);
+            int batchNum = Integer.parseInt(batchId.substring("batch".length()));
+            if (this.reverseDownloads && batchNum + 1 < NUM_ROWS / BATCH_SIZE) {
+                // the download of a batch ends after the download of the batch that follows it
+                assertTrue(this.downloadDone.get("batch" + (batchNum + 1)).await(10, TimeUnit.SECONDS));
+            }
+            StringBuilder results = new StringBuilder("\"Id\",\"Success\",\"Created\",\"Error\"\n");
+            List<Integer> rowNums = this.batchRows.get(batchId);
+            if (batchId.equals(this.failedDownloadBatch)) {
+                rowNums = rowNums.subList(0, this.failedDownloadAfterRows);
+            }
+            for (int rowNum : rowNums) {
+                int attempt = this.rowAttempts.merge(rowNum, 1, Integer::sum);
+                if (rowNum >= this.lockedRowsFrom && attempt == 1) {
+                    results.append("\"\",\"false\",\"false\",\"" + LOCK_ERROR + "\"\n");
+                } else {
+                    results.append("\"id" + rowNum + "\",\"true\",\"true\",\"\"\n");
+                }
+            }
+            this.downloadDone.get(batchId).countDown();
+            InputStream resultStream = new ByteArrayInputStream(results.toString().getBytes(StandardCharsets.UTF_8));
+            if (batchId.equals(this.failedDownloadBatch)) {
+                return new SequenceInputStream(resultStream, new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("connection reset");
+                    }
+                });
+            }
+            return resultStream;
+        });
+        return jobUtil;
+    }
+
+    private void loadRows(MockBulkLoadVisitor visitor) throws Exception {
+        for (int i = 0; i < NUM_ROWS; i++) {
+            visitor.addConvertedRow(createRow(i), convertedRow(createDynaBean(i)));
+        }
+        visitor.flushRemaining();
+    }
+
+    private static List<Integer> getRowNums(List<Row> rows) {
+        List<Integer> rowNums = new ArrayList<Integer>();
+        for (Row row : rows) {
+            rowNums.add(parseRowNum((String)row.get("Name")));
+        }
+        return rowNums;
+    }
+
+    // the name of a row is "row <number>", followed by padding in some tests
+    private static int parseRowNum(String name) {
+        return Integer.parseInt(name.split(" ")[1]);
+    }
+
+    @Test
+    public void testResultsDownloadedOutOfOrderAreMatchedToBatches() throws Exception {
+        getConfig().setValue(Config.BULK_LOAD_MAX_CONCURRENT_RESULT_DOWNLOADS, NUM_ROWS / BATCH_SIZE);
+        this.reverseDownloads = true;
+        loadRows(new MockBulkLoadVisitor());
+
+        assertEquals(NUM_ROWS / BATCH_SIZE, this.batches.size());
+        assertEquals(0, errorRows.size());
+        assertEquals(NUM_ROWS, successRows.size());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            // the results are written in the order of the rows
+            assertEquals("row " + i, successRows.get(i).get("Name"));
+            assertEquals("id" + i, successRows.get(i).get(Config.ID_COLUMN_NAME));
+        }
+    }
+
+    @Test
+    public void testLockedRowsAreLoadedAgain() throws Exception {
+        getConfig().setValue(Config.LOAD_ROW_RETRIES, 2);
+        this.lockedRowsFrom = 10;
+        loadRows(new MockBulkLoadVisitor());
+
+        // the locked rows were loaded again in two batches of their own
+        assertEquals(NUM_ROWS / BATCH_SIZE + 2, this.batches.size());
+        assertEquals(0, errorRows.size());
+        assertEquals(NUM_ROWS, successRows.size());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            // rows that were loaded again are written after the rows loaded the first time
+            assertEquals("row " + i, successRows.get(i).get("Name"));
+            assertEquals("id" + i, successRows.get(i).get(Config.ID_COLUMN_NAME));
+            assertEquals(Integer.valueOf(i < 10 ? 1 : 2), this.rowAttempts.get(i));
+        }
+    }
+
+    @Test
+    public void testRowsLoadedAgainAreWrittenOnceWhenResultsFail() throws Exception {
+        getConfig().setValue(Config.LOAD_ROW_RETRIES, 2);
+        this.lockedRowsFrom = 10;
+        // rows 10 and 11 of the first batch loaded again get their results, then the download fails
+        this.failedDownloadBatch = "batch" + (NUM_ROWS / BATCH_SIZE);
+        this.failedDownloadAfterRows = 2;
+        try {
+            loadRows(new MockBulkLoadVisitor());
+            Assert.fail("the failed download of the results was not reported");
+        } catch (LoadException e) {
+            // expected
+        }
+
+        assertEquals(12, successRows.size());
+        assertEquals(Integer.valueOf(0), getRowNums(successRows).get(0));
+        assertEquals(Integer.valueOf(11), getRowNums(successRows).get(11));
+        // every other row is written once with the error it was rejected with
+        List<Integer> errorRowNums = getRowNums(errorRows);
+        assertEquals(NUM_ROWS - 12, errorRowNums.size());
+        for (int i = 0; i < errorRowNums.size(); i++) {
+            assertEquals(Integer.valueOf(12 + i), errorRowNums.get(i));
+            assertTrue(String.valueOf(errorRows.get(i).get(Config.ERROR_COLUMN_NAME)).contains("UNABLE_TO_LOCK_ROW"));
+        }
+    }
+
+    @Test
+    public void testRowsThatCannotBeConvertedAgainAreWrittenAsErrors() throws Exception {
+        getConfig().setValue(Config.LOAD_ROW_RETRIES, 2);
+        this.lockedRowsFrom = 10;
+        this.unconvertibleRowsFrom = 15;
+        loadRows(new MockBulkLoadVisitor());
+
+        // none of the rows of the second batch loaded again could be converted, it was not created
+        assertEquals(NUM_ROWS / BATCH_SIZE + 1, this.batches.size());
+        assertEquals(15, successRows.size());
+        List<Integer> errorRowNums = getRowNums(errorRows);
+        assertEquals(NUM_ROWS - 15, errorRowNums.size());
+        for (int i = 0; i < errorRowNums.size(); i++) {
+            assertEquals(Integer.valueOf(15 + i), errorRowNums.get(i));
+            assertEquals("conversion failed", errorRows.get(i).get(Config.ERROR_COLUMN_NAME));
+        }
+    }
+
+    @Test
+    public void testRowsOfAParentAreLoadedInOneBatchWhenTheBatchIsTooLarge() throws Exception {
+        final int numRows = 10000;
+        final int rowsPerParent = 7;
+        getConfig().setValue(Config.IMPORT_BATCH_SIZE, numRows);
+        this.lockedRowsFrom = numRows;
+        ParentGroupingReader dao = mock(ParentGroupingReader.class);
+        when(dao.getColumnNames()).thenReturn(Arrays.asList("Name"));
+        when(dao.getGroupKey(any(Row.class))).thenAnswer(invocation ->
+                "parent" + getRowNums(Collections.singletonList(invocation.getArgument(0))).get(0) / rowsPerParent);
+        when(dao.getGroupSize(any(Row.class))).thenAnswer(invocation -> {
+            int parentStart = getRowNums(Collections.singletonList(invocation.getArgument(0))).get(0)
+                    / rowsPerParent * rowsPerParent;
+            return Math.min(rowsPerParent, numRows - parentStart);
+        });
+        when(controller.getDao()).thenReturn(dao);
+        // the rows take more than the maximum size of a Bulk API batch
+        final String padding = String.join("", Collections.nCopies(1000, "x"));
+        BasicDynaClass dynaClass = new BasicDynaClass("Contact", null,
+                new DynaProperty[] { new DynaProperty("Name", String.class) });
+        MockBulkLoadVisitor visitor = new MockBulkLoadVisitor();
+        for (int i = 0; i < numRows; i++) {
+            String name = "row " + i + " " + padding;
+            DynaBean dynaBean = dynaClass.newInstance();
+            dynaBean.set("Name", name);
+            visitor.addConvertedRow(TestRows.of("Name", name), convertedRow(dynaBean));
+        }
+        visitor.flushRemaining();
+
+        assertEquals(2, this.batches.size());
+        // the second batch starts with the first row of a parent
+        assertEquals(0, this.batchRows.get("batch1").get(0) % rowsPerParent);
+        assertEquals(0, errorRows.size());
+        assertEquals(numRows, successRows.size());
+    }
+}
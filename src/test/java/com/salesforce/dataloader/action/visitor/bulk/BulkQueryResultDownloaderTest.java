@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.AsyncExceptionCode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BulkQueryResultDownloaderTest {
+
+    private static String readFully(InputStream in) throws IOException {
+        try {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static InputStream resultStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReturnsResultsInSubmissionOrder() throws Exception {
+        final Random random = new Random(42);
+        BulkQueryResultDownloader downloader = new BulkQueryResultDownloader(3);
+        try {
+            int taken = 0;
+            for (int i = 0; i < 10; i++) {
+                final int resultNum = i;
+                final long delay = random.nextInt(50);
+                downloader.submit(() -> {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return resultStream("result-" + resultNum);
+                });
+                while (downloader.isFull()) {
+                    assertEquals("result-" + taken++, readFully(downloader.takeOldest()));
+                }
+            }
+            while (!downloader.isEmpty()) {
+                assertEquals("result-" + taken++, readFully(downloader.takeOldest()));
+            }
+            assertEquals(10, taken);
+        } finally {
+            downloader.shutdown();
+        }
+    }
+
+    @Test
+    public void testSingleDownloadHandsBackServerStream() throws Exception {
+        final InputStream serverStream = resultStream("result");
+        BulkQueryResultDownloader downloader = new BulkQueryResultDownloader(1);
+        try {
+            downloader.submit(() -> serverStream);
+            assertTrue(downloader.isFull());
+            assertSame(serverStream, downloader.takeOldest());
+            assertTrue(downloader.isEmpty());
+        } finally {
+            downloader.shutdown();
+        }
+    }
+
+    @Test
+    public void testDownloadErrorIsThrownWhenResultIsTaken() throws Exception {
+        BulkQueryResultDownloader downloader = new BulkQueryResultDownloader(2);
+        try {
+            downloader.submit(() -> resultStream("result"));
+            downloader.submit(() -> {
+                throw new AsyncApiException("download failed", AsyncExceptionCode.ClientInputError);
+            });
+            assertEquals("result", readFully(downloader.takeOldest()));
+            downloader.takeOldest();
+            fail("expected the download error");
+        } catch (AsyncApiException e) {
+            assertEquals("download failed", e.getExceptionMessage());
+        } finally {
+            downloader.shutdown();
+        }
+    }
+}
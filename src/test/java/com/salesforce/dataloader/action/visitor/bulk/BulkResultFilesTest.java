@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkResultFilesTest {
+
+    private static final String RESULTS = "\"sf__Id\",\"sf__Created\",\"Name\"\n"
+            + "\"001\",\"true\",\"Acme\"\n"
+            + "\"002\",\"true\",\"multi\nline \"\"quoted\"\"\r\nvalue\"\n"
+            + "\"003\",\"false\",\"Globex\"";
+
+    @Test
+    public void testSaveAndCount() throws IOException {
+        File file = newTempFile();
+        assertEquals(3, BulkResultFiles.save(stream(RESULTS), file.getPath(), false, false));
+        assertEquals(RESULTS, read(file));
+        assertEquals(3, BulkResultFiles.countRecords(file.toPath()));
+    }
+
+    @Test
+    public void testAppendWithoutHeader() throws IOException {
+        File file = newTempFile();
+        BulkResultFiles.save(stream("\"Id\",\"Error\"\n"), file.getPath(), false, false);
+        assertEquals(0, BulkResultFiles.countRecords(file.toPath()));
+        assertEquals(2, BulkResultFiles.save(stream("\"sf__Id\",\"sf__Error\"\r\n\"\",\"bad\"\r\n\"\",\"worse\"\r\n"),
+                file.getPath(), true, true));
+        assertEquals("\"Id\",\"Error\"\n\"\",\"bad\"\r\n\"\",\"worse\"\r\n", read(file));
+        assertEquals(2, BulkResultFiles.countRecords(file.toPath()));
+        // results without any records
+        assertEquals(0, BulkResultFiles.save(stream("\"sf__Id\",\"sf__Error\"\n"), file.getPath(), true, true));
+        assertEquals(0, BulkResultFiles.save(stream(""), file.getPath(), true, true));
+        assertEquals(2, BulkResultFiles.countRecords(file.toPath()));
+    }
+
+    @Test
+    public void testLargeResults() throws IOException {
+        StringBuilder results = new StringBuilder("\"sf__Id\",\"Description\"\n");
+        for (int i = 0; i < 50000; i++) {
+            results.append('"').append(i).append("\",\"line one\nline two, \"\"").append(i).append("\"\"\"\n");
+        }
+        File file = newTempFile();
+        assertEquals(50000, BulkResultFiles.save(stream(results.toString()), file.getPath(), false, true));
+        String saved = read(file);
+        assertEquals(results.substring(results.indexOf("\n") + 1), saved);
+
+        File merged = newTempFile();
+        try (FileChannel out = FileChannel.open(merged.toPath(), StandardOpenOption.WRITE)) {
+            BulkResultFiles.transfer(file.toPath(), out);
+            BulkResultFiles.transfer(file.toPath(), out);
+        }
+        assertEquals(saved + saved, read(merged));
+    }
+
+    private static File newTempFile() throws IOException {
+        File file = File.createTempFile("bulkResultFilesTest", ".csv");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.TestRows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BulkResultJournalTest {
+
+    @Test
+    public void testEntriesReadBackInOrder() throws IOException {
+        try (BulkResultJournal journal = new BulkResultJournal(Arrays.asList("Name", "Amount", "Description"))) {
+            journal.append(0, 0, 0,
+                    TestRows.of("Name", "Acme", "Amount", "12", "Description", "multi\nline, \"quoted\""));
+            journal.append(2, 0, 1,
+                    TestRows.of("Name", "Glöbex", "Amount", new BigDecimal("1.50"), "Description", null));
+            // columns that are not in the status files are not kept
+            Row extraColumn = TestRows.of("Name", "Initech", "Amount", "", "Description", "x");
+            extraColumn.put("Other", "ignored");
+            journal.append(3, 1, 0, extraColumn);
+            assertEquals(3, journal.size());
+
+            try (BulkResultJournal.Reader reader = journal.openReader()) {
+                assertEntry(reader.next(), 0, 0, 0, "Acme", "12", "multi\nline, \"quoted\"");
+                // values are kept as the text written to the status files
+                assertEntry(reader.next(), 2, 0, 1, "Glöbex", "1.50", null);
+                BulkResultJournal.Entry entry = reader.next();
+                assertEntry(entry, 3, 1, 0, "Initech", "", "x");
+                assertNull(entry.row.get("Other"));
+                assertNull(reader.next());
+            }
+            // rows appended after a reader was opened are visible to the next one
+            journal.append(4, 1, 1, TestRows.of("Name", "Umbrella", "Amount", "7", "Description", "y"));
+            try (BulkResultJournal.Reader reader = journal.openReader()) {
+                for (int i = 0; i < 3; i++) {
+                    reader.next();
+                }
+                assertEntry(reader.next(), 4, 1, 1, "Umbrella", "7", "y");
+            }
+        }
+    }
+
+    @Test
+    public void testLargeJournal() throws IOException {
+        try (BulkResultJournal journal = new BulkResultJournal(Arrays.asList("Name"))) {
+            for (int i = 0; i < 100000; i++) {
+                journal.append(i * 2, i / 1000, i % 1000, TestRows.of("Name", "row " + i));
+            }
+            try (BulkResultJournal.Reader reader = journal.openReader()) {
+                for (int i = 0; i < 100000; i++) {
+                    assertEntry(reader.next(), i * 2, i / 1000, i % 1000, "row " + i);
+                }
+                assertNull(reader.next());
+            }
+        }
+    }
+
+    private static void assertEntry(BulkResultJournal.Entry entry, int daoRowNumber, int batchIndex,
+            int positionInBatch, String... values) {
+        assertEquals(daoRowNumber, entry.daoRowNumber);
+        assertEquals(batchIndex, entry.batchIndex);
+        assertEquals(positionInBatch, entry.positionInBatch);
+        String[] columns = {"Name", "Amount", "Description"};
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], entry.row.get(columns[i]));
+        }
+    }
+}
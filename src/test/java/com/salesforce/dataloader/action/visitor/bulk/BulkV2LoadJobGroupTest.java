@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.salesforce.dataloader.action.progress.ILoaderProgress;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.csv.CSVTokenizer;
+import com.salesforce.dataloader.util.LoadRateCalculator;
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.AsyncExceptionCode;
+import com.sforce.async.JobInfo;
+import com.sforce.async.JobStateEnum;
+
+public class BulkV2LoadJobGroupTest {
+
+    private static final String ERROR_HEADER = "\"sf__Id\",\"sf__Error\",\"Name\"\n";
+    private static final String SUCCESS_HEADER = "\"sf__Id\",\"sf__Created\",\"Name\"\n";
+    private static final int ROWS_PER_JOB = 2;
+    // the second job fails after it processed its first row
+    private static final int FAILED_JOB = 1;
+
+    /** Runs each job with a mocked job util that loads the rows of its content */
+    private static class MockJobGroup extends BulkV2LoadJobGroup {
+        private final File tempDir;
+        // job whose upload fails once the other jobs have their results, -1 if none
+        private final int brokenJob;
+        private final CountDownLatch otherJobsDone = new CountDownLatch(2);
+
+        MockJobGroup(ILoaderProgress monitor, File tempDir) {
+            this(monitor, tempDir, -1);
+        }
+
+        MockJobGroup(ILoaderProgress monitor, File tempDir, int brokenJob) {
+            super(mock(Controller.class), monitor, startedRateCalculator(), 3);
+            this.tempDir = tempDir;
+            this.brokenJob = brokenJob;
+        }
+
+        @Override
+        BulkApiVisitorUtil createJobUtil() {
+            final BulkApiVisitorUtil jobUtil = mock(BulkApiVisitorUtil.class);
+            final AtomicInteger firstRow = new AtomicInteger();
+            final JobInfo jobInfo = new JobInfo();
+            try {
+                doAnswer(invocation -> {
+                    String content = IOUtils.toString((InputStream)invocation.getArgument(0), StandardCharsets.UTF_8);
+                    firstRow.set(Integer.parseInt(content.split("\n")[1].substring("row".length())));
+                    if (firstRow.get() / ROWS_PER_JOB == this.brokenJob) {
+                        assertTrue(this.otherJobsDone.await(10, TimeUnit.SECONDS));
+                        throw new AsyncApiException("upload failed", AsyncExceptionCode.ClientInputError);
+                    }
+                    boolean failed = firstRow.get() / ROWS_PER_JOB == FAILED_JOB;
+                    jobInfo.setId("job" + firstRow.get() / ROWS_PER_JOB);
+                    jobInfo.setState(failed ? JobStateEnum.Failed : JobStateEnum.JobComplete);
+                    jobInfo.setNumberRecordsProcessed(failed ? 1 : ROWS_PER_JOB);
+                    jobInfo.setNumberRecordsFailed(failed ? 1 : 0);
+                    return null;
+                }).when(jobUtil).createBatch(any(InputStream.class), anyInt());
+                when(jobUtil.getJobInfo()).thenReturn(jobInfo);
+                when(jobUtil.getStagingFileInOutputStatusDir(anyString(), anyString())).thenAnswer(invocation ->
+                        File.createTempFile(invocation.getArgument(0), invocation.getArgument(1), this.tempDir)
+                        .getAbsolutePath());
+                when(jobUtil.getBulkV2LoadSuccessResults(anyString(), anyBoolean())).thenAnswer(invocation -> {
+                    StringBuilder results = new StringBuilder(invocation.getArgument(1) ? "" : SUCCESS_HEADER);
+                    int numResults = 0;
+                    for (int i = firstRow.get(); i < firstRow.get() + ROWS_PER_JOB; i++) {
+                        if (firstRow.get() / ROWS_PER_JOB != FAILED_JOB) {
+                            results.append("\"id" + i + "\",\"true\",\"row" + i + "\"\n");
+                            numResults++;
+                        }
+                    }
+                    write(invocation.getArgument(0), results.toString());
+                    return (long)numResults;
+                });
+                when(jobUtil.getBulkV2LoadErrorResults(anyString())).thenAnswer(invocation -> {
+                    this.otherJobsDone.countDown();
+                    if (firstRow.get() / ROWS_PER_JOB != FAILED_JOB) {
+                        write(invocation.getArgument(0), "");
+                        return 0L;
+                    }
+                    write(invocation.getArgument(0), "\"\",\"REQUIRED_FIELD_MISSING\",\"row" + firstRow.get() + "\"\n");
+                    return 1L;
+                });
+                when(jobUtil.getBulkV2LoadUnprocessedRecords()).thenAnswer(invocation -> new CSVTokenizer(
+                        new ByteArrayInputStream(("\"Name\"\n\"row" + (firstRow.get() + 1) + "\"\n")
+                                .getBytes(StandardCharsets.UTF_8)), Config.BULK_API_ENCODING));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return jobUtil;
+        }
+    }
+
+    private static LoadRateCalculator startedRateCalculator() {
+        LoadRateCalculator rateCalc = new LoadRateCalculator();
+        rateCalc.start(3 * ROWS_PER_JOB);
+        return rateCalc;
+    }
+
+    private static void write(String filename, String content) throws IOException {
+        try (OutputStream out = new FileOutputStream(filename)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static BulkBatchBuffer createContent(int firstRow) throws IOException {
+        BulkBatchBuffer content = new BulkBatchBuffer(1024, 1024);
+        StringBuilder csv = new StringBuilder("Name\n");
+        for (int i = firstRow; i < firstRow + ROWS_PER_JOB; i++) {
+            csv.append("row" + i + "\n");
+        }
+        content.write(csv.toString().getBytes(StandardCharsets.UTF_8));
+        return content;
+    }
+
+    @Test
+    public void testResultsOfJobsAreMergedWhenOneJobFails() throws Exception {
+        File tempDir = Files.createTempDirectory("bulkV2LoadJobGroupTest").toFile();
+        File successFile = new File(tempDir, "success.csv");
+        File errorFile = new File(tempDir, "error.csv");
+        // the error writer has written the header row and a row that failed before the upload
+        write(errorFile.getPath(), ERROR_HEADER + "\"\",\"conversion failed\",\"bad row\"\n");
+        ILoaderProgress monitor = mock(ILoaderProgress.class);
+
+        MockJobGroup jobGroup = new MockJobGroup(monitor, tempDir);
+        for (int i = 0; i < 3; i++) {
+            jobGroup.submit(createContent(i * ROWS_PER_JOB), ROWS_PER_JOB);
+        }
+        jobGroup.awaitCompletionAndSaveResults(successFile.getPath(), errorFile.getPath());
+
+        // the results are in the order of the jobs, with the header row of the first job only
+        assertEquals(SUCCESS_HEADER
+                + "\"id0\",\"true\",\"row0\"\n"
+                + "\"id1\",\"true\",\"row1\"\n"
+                + "\"id4\",\"true\",\"row4\"\n"
+                + "\"id5\",\"true\",\"row5\"\n", read(successFile));
+        // the failed row of the failed job is followed by the row that the job did not get to
+        String errors = read(errorFile);
+        String[] errorLines = errors.split("\n");
+        assertEquals(4, errorLines.length);
+        assertEquals(ERROR_HEADER + "\"\",\"conversion failed\",\"bad row\"\n"
+                + "\"\",\"REQUIRED_FIELD_MISSING\",\"row2\"\n", errors.substring(0, errors.indexOf(errorLines[3])));
+        assertTrue(errorLines[3].startsWith("\"\",\""));
+        assertTrue(errorLines[3].endsWith("\",\"row3\""));
+        assertTrue(errorLines[3].contains("job1"));
+        assertEquals(4, jobGroup.getSavedSuccesses());
+        assertEquals(2, jobGroup.getSavedErrors());
+        verify(monitor).worked(1);
+
+        // the result files of the jobs are deleted once they are merged
+        assertEquals(2, tempDir.listFiles().length);
+        successFile.delete();
+        errorFile.delete();
+        tempDir.delete();
+    }
+
+    @Test
+    public void testResultFilesAreDeletedWhenAJobCannotBeUploaded() throws Exception {
+        File tempDir = Files.createTempDirectory("bulkV2LoadJobGroupTest").toFile();
+        File successFile = new File(tempDir, "success.csv");
+        File errorFile = new File(tempDir, "error.csv");
+        write(errorFile.getPath(), ERROR_HEADER);
+
+        // the first job fails after the other two downloaded their results
+        MockJobGroup jobGroup = new MockJobGroup(mock(ILoaderProgress.class), tempDir, 0);
+        for (int i = 0; i < 3; i++) {
+            jobGroup.submit(createContent(i * ROWS_PER_JOB), ROWS_PER_JOB);
+        }
+        try {
+            jobGroup.awaitCompletionAndSaveResults(successFile.getPath(), errorFile.getPath());
+            Assert.fail("the failed upload was not reported");
+        } catch (AsyncApiException e) {
+            assertEquals("upload failed", e.getExceptionMessage());
+        }
+
+        // the result files of the jobs that were not merged are deleted as well
+        assertEquals(2, tempDir.listFiles().length);
+        successFile.delete();
+        errorFile.delete();
+        tempDir.delete();
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
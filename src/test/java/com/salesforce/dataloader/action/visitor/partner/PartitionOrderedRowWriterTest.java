@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.partner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.TestRows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PartitionOrderedRowWriterTest {
+
+    private final List<String> writtenIds = new ArrayList<String>();
+    private final List<Row> writtenRows = new ArrayList<Row>();
+
+    private PartitionOrderedRowWriter createWriter(int partitionCount, long maxMemoryBytes) {
+        return new PartitionOrderedRowWriter(partitionCount, maxMemoryBytes, (row, id) -> {
+            writtenRows.add(row);
+            writtenIds.add(id);
+        });
+    }
+
+    private static Row row(String id) {
+        return TestRows.of("Name", "name of " + id);
+    }
+
+    private void addRows(PartitionOrderedRowWriter writer, int partition, String... ids) throws Exception {
+        for (String id : ids) {
+            writer.addRow(partition, row(id), id);
+        }
+    }
+
+    private void assertWrittenInOrder(String... expectedIds) {
+        assertEquals(Arrays.asList(expectedIds), writtenIds);
+        for (int i = 0; i < writtenRows.size(); i++) {
+            // the kept id is not part of the written row
+            assertEquals(1, writtenRows.get(i).size());
+            assertEquals("name of " + expectedIds[i], writtenRows.get(i).get("Name"));
+        }
+    }
+
+    @Test
+    public void testRowsAreWrittenInPartitionOrder() throws Exception {
+        doTestRowsAreWrittenInPartitionOrder(64000000L);
+    }
+
+    @Test
+    public void testRowsKeptOnDiskAreWrittenInPartitionOrder() throws Exception {
+        doTestRowsAreWrittenInPartitionOrder(0L);
+    }
+
+    private void doTestRowsAreWrittenInPartitionOrder(long maxMemoryBytes) throws Exception {
+        PartitionOrderedRowWriter writer = createWriter(3, maxMemoryBytes);
+        try {
+            // partition 2 arrives first and finishes before partition 1
+            addRows(writer, 2, "c1", "c2");
+            addRows(writer, 0, "a1");
+            addRows(writer, 1, "b1");
+            addRows(writer, 2, "c3");
+            writer.partitionDone(2);
+            assertWrittenInOrder("a1");
+            addRows(writer, 0, "a2");
+            writer.partitionDone(0);
+            // partition 1 is now written as it comes
+            assertWrittenInOrder("a1", "a2", "b1");
+            addRows(writer, 1, "b2");
+            assertWrittenInOrder("a1", "a2", "b1", "b2");
+            writer.partitionDone(1);
+            assertWrittenInOrder("a1", "a2", "b1", "b2", "c1", "c2", "c3");
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testKeptRowsAreDroppedOnClose() throws Exception {
+        PartitionOrderedRowWriter writer = createWriter(2, 0L);
+        addRows(writer, 1, "b1");
+        writer.close();
+        writer.partitionDone(0);
+        assertFalse(writtenIds.contains("b1"));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.partner;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.sforce.soap.partner.QueryResult;
+import com.sforce.ws.ConnectionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PartitionedQueryResultFetcherTest {
+
+    private static final int PAGES_PER_PARTITION = 3;
+
+    /** Each partition query has 3 pages of 10 records, with locators named after the partition */
+    private static class PagedQueryRunner implements PartitionedQueryResultFetcher.QueryRunner {
+        @Override
+        public QueryResult query(String soql) throws ConnectionException {
+            return page(soql, 0);
+        }
+
+        @Override
+        public QueryResult queryMore(String queryLocator) throws ConnectionException {
+            final int separatorIdx = queryLocator.lastIndexOf('-');
+            return page(queryLocator.substring(0, separatorIdx), Integer.parseInt(queryLocator.substring(separatorIdx + 1)) + 1);
+        }
+
+        private static QueryResult page(String partition, int pageNum) {
+            QueryResult page = new QueryResult();
+            page.setSize(PAGES_PER_PARTITION * 10);
+            page.setQueryLocator(partition + "-" + pageNum);
+            page.setDone(pageNum == PAGES_PER_PARTITION - 1);
+            return page;
+        }
+    }
+
+    @Test
+    public void testReturnsEveryPageOfEveryPartition() throws Exception {
+        final List<String> partitions = Arrays.asList("a", "b", "c");
+        PartitionedQueryResultFetcher fetcher = new PartitionedQueryResultFetcher(partitions, 2, new PagedQueryRunner());
+        try {
+            assertEquals(partitions.size(), fetcher.getPartitionCount());
+            assertEquals(90, fetcher.getTotalSize());
+            final Set<String> pages = new HashSet<String>();
+            final Set<Integer> donePartitions = new HashSet<Integer>();
+            PartitionedQueryResultFetcher.FetchedPage page;
+            while ((page = fetcher.takeNextPage()) != null) {
+                if (page.isPartitionDone()) {
+                    assertTrue(donePartitions.add(page.getPartition()));
+                    continue;
+                }
+                // pages are tagged with their partition, and come before the end of it
+                final String locator = page.getResult().getQueryLocator();
+                assertEquals(partitions.get(page.getPartition()), locator.substring(0, locator.indexOf('-')));
+                assertFalse(donePartitions.contains(page.getPartition()));
+                assertTrue(pages.add(locator));
+            }
+            assertEquals(partitions.size() * PAGES_PER_PARTITION, pages.size());
+            assertEquals(partitions.size(), donePartitions.size());
+            assertNull(fetcher.takeNextPage());
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    @Test
+    public void testQueryMoreErrorIsThrownWhenPageIsTaken() throws Exception {
+        PartitionedQueryResultFetcher fetcher = new PartitionedQueryResultFetcher(Arrays.asList("a", "b"), 2,
+                new PagedQueryRunner() {
+                    @Override
+                    public QueryResult queryMore(String queryLocator) throws ConnectionException {
+                        if (queryLocator.startsWith("b")) {
+                            throw new ConnectionException("queryMore failed");
+                        }
+                        return super.queryMore(queryLocator);
+                    }
+                });
+        try {
+            while (fetcher.takeNextPage() != null) {
+                // keep taking pages until the error of partition b is reached
+            }
+            fail("expected the queryMore error");
+        } catch (ConnectionException e) {
+            assertEquals("queryMore failed", e.getMessage());
+        } finally {
+            fetcher.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.partner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.beanutils.DynaBean;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.salesforce.dataloader.action.progress.ILoaderProgress;
+import com.salesforce.dataloader.action.visitor.LoadVisitorTestBase;
+import com.salesforce.dataloader.client.PartnerClient;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.dao.csv.CSVFileWriter;
+import com.salesforce.dataloader.exception.LoadException;
+import com.salesforce.dataloader.model.Row;
+import com.sforce.soap.partner.SaveResult;
+import com.sforce.soap.partner.fault.UnexpectedErrorFault;
+import com.sforce.ws.ConnectionException;
+
+public class PartnerLoadVisitorTest extends LoadVisitorTestBase {
+
+    private static final int NUM_ROWS = 15;
+    private static final int BATCH_SIZE = 5;
+
+    /** Decides how the server answers a request */
+    private interface Server {
+        Object[] load(int batchNum, int attempt, List<DynaBean> data) throws ConnectionException;
+    }
+
+    /** Sends its batches to a test server instead of a partner client */
+    private static class TestServerVisitor extends PartnerLoadVisitor {
+        private final Server server;
+        // number of times each batch was sent, by the number of its first row
+        private final Map<Integer, Integer> attempts = new ConcurrentHashMap<Integer, Integer>();
+
+        TestServerVisitor(Controller controller, ILoaderProgress monitor, DataWriter successWriter,
+                DataWriter errorWriter, Server server) {
+            super(controller, monitor, successWriter, errorWriter);
+            this.server = server;
+        }
+
+        @Override
+        protected Object[] executeClientAction(PartnerClient client, List<DynaBean> data) throws ConnectionException {
+            int batchNum = getRowNum(data.get(0)) / BATCH_SIZE;
+            return this.server.load(batchNum, this.attempts.merge(batchNum, 1, Integer::sum), data);
+        }
+
+        int getAttempts(int batchNum) {
+            return this.attempts.getOrDefault(batchNum, 0);
+        }
+    }
+
+    private static SaveResult[] successes(List<DynaBean> data) {
+        SaveResult[] results = new SaveResult[data.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new SaveResult();
+            results[i].setSuccess(true);
+            results[i].setId("id" + getRowNum(data.get(i)));
+        }
+        return results;
+    }
+
+    @Before
+    public void setUpPartnerLoad() throws Exception {
+        getConfig().setValue(Config.IMPORT_BATCH_SIZE, BATCH_SIZE);
+        getConfig().setValue(Config.ENABLE_RETRIES, true);
+        getConfig().setValue(Config.MAX_RETRIES, 2);
+        getConfig().setValue(Config.MIN_RETRY_SLEEP_SECS, 0);
+        when(controller.getPartnerClient()).thenReturn(mock(PartnerClient.class, RETURNS_DEEP_STUBS));
+    }
+
+    private static void addRows(TestServerVisitor visitor, int firstRow) throws Exception {
+        for (int i = firstRow; i < NUM_ROWS; i++) {
+            visitor.addConvertedRow(createRow(i), convertedRow(createDynaBean(i)));
+        }
+    }
+
+    private static List<String> getNames(List<Row> rows) {
+        List<String> names = new ArrayList<String>();
+        for (Row row : rows) {
+            names.add((String)row.get("Name"));
+        }
+        return names;
+    }
+
+    @Test
+    public void testInsertFailedInTransportIsNotSentAgain() throws Exception {
+        getConfig().setValue(Config.OPERATION, "insert");
+        TestServerVisitor visitor = new TestServerVisitor(controller, monitor, successWriter, errorWriter,
+                (batchNum, attempt, data) -> {
+                    if (batchNum == 1) {
+                        throw new ConnectionException("connection reset");
+                    }
+                    return successes(data);
+                });
+        addRows(visitor, 0);
+        visitor.flushRemaining();
+
+        // the server may have created the records of the failed request
+        assertEquals(1, visitor.getAttempts(1));
+        assertEquals(Arrays.asList("row 5", "row 6", "row 7", "row 8", "row 9"), getNames(errorRows));
+        assertTrue(((String)errorRows.get(0).get(Config.ERROR_COLUMN_NAME)).contains("connection reset"));
+        assertEquals(NUM_ROWS - BATCH_SIZE, successRows.size());
+        // a resumed operation starts after the failed request
+        assertEquals(NUM_ROWS, visitor.getCompletedRowCount());
+    }
+
+    @Test
+    public void testUpdateFailedInTransportIsSentAgain() throws Exception {
+        getConfig().setValue(Config.OPERATION, "update");
+        TestServerVisitor visitor = new TestServerVisitor(controller, monitor, successWriter, errorWriter,
+                (batchNum, attempt, data) -> {
+                    if (batchNum == 1 && attempt == 1) {
+                        throw new ConnectionException("connection reset");
+                    }
+                    return successes(data);
+                });
+        addRows(visitor, 0);
+        visitor.flushRemaining();
+
+        assertEquals(2, visitor.getAttempts(1));
+        assertEquals(0, errorRows.size());
+        assertEquals(NUM_ROWS, successRows.size());
+        assertEquals(NUM_ROWS, visitor.getCompletedRowCount());
+    }
+
+    @Test
+    public void testResumeSkipsCompletedRowsAndAppendsToOutput() throws Exception {
+        getConfig().setValue(Config.OPERATION, "update");
+        getConfig().setValue(Config.LOAD_MAX_CONCURRENT_BATCHES, 3);
+        File successFile = File.createTempFile("partnerLoadSuccess", ".csv");
+        File errorFile = File.createTempFile("partnerLoadError", ".csv");
+        try {
+            CSVFileWriter success = new CSVFileWriter(successFile.getAbsolutePath(), getConfig(), ",");
+            CSVFileWriter error = new CSVFileWriter(errorFile.getAbsolutePath(), getConfig(), ",");
+            List<String> successColumns = Arrays.asList(Config.ID_COLUMN_NAME, "Name", Config.STATUS_COLUMN_NAME);
+            List<String> errorColumns = Arrays.asList("Name", Config.ERROR_COLUMN_NAME);
+            success.open();
+            success.setColumnNames(new ArrayList<String>(successColumns));
+            error.open();
+            error.setColumnNames(new ArrayList<String>(errorColumns));
+            // the server rejects the second batch the first time it is sent
+            TestServerVisitor visitor = new TestServerVisitor(controller, monitor, success, error,
+                    (batchNum, attempt, data) -> {
+                        if (batchNum == 1 && attempt == 1) {
+                            throw new UnexpectedErrorFault();
+                        }
+                        return successes(data);
+                    });
+            addRows(visitor, 0);
+            try {
+                visitor.flushRemaining();
+                Assert.fail("expected the failure of the second batch");
+            } catch (LoadException e) {
+                // the operation is attempted again
+            }
+            success.close();
+            error.close();
+            // the results of the batch sent after the failed one were written
+            assertEquals(BATCH_SIZE, visitor.getCompletedRowCount());
+
+            visitor.prepareResume();
+            success.setAppend(true);
+            success.open();
+            success.setColumnNames(new ArrayList<String>(successColumns));
+            error.setAppend(true);
+            error.open();
+            error.setColumnNames(new ArrayList<String>(errorColumns));
+            // the rows are read again from the first row whose result was not written
+            addRows(visitor, visitor.getCompletedRowCount());
+            visitor.flushRemaining();
+            success.close();
+            error.close();
+
+            assertEquals(2, visitor.getAttempts(1));
+            assertEquals(1, visitor.getAttempts(2));
+            assertEquals(NUM_ROWS, visitor.getCompletedRowCount());
+            List<String> successLines = Files.readAllLines(successFile.toPath(), StandardCharsets.UTF_8);
+            // one header row, then every row once in the order its result was written
+            assertEquals(1 + NUM_ROWS, successLines.size());
+            assertTrue(successLines.get(0).startsWith("\"ID\""));
+            List<Integer> rowNums = new ArrayList<Integer>();
+            for (String line : successLines.subList(1, successLines.size())) {
+                rowNums.add(Integer.parseInt(line.split(",")[0].replace("\"", "").substring("id".length())));
+            }
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4, 10, 11, 12, 13, 14, 5, 6, 7, 8, 9), rowNums);
+            assertEquals(1, Files.readAllLines(errorFile.toPath(), StandardCharsets.UTF_8).size());
+        } finally {
+            successFile.delete();
+            errorFile.delete();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.action.visitor.partner;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sforce.soap.partner.QueryResult;
+import com.sforce.ws.ConnectionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QueryResultPrefetcherTest {
+
+    private static final int NUM_PAGES = 5;
+
+    private static QueryResult page(int pageNum) {
+        QueryResult page = new QueryResult();
+        page.setQueryLocator("locator-" + pageNum);
+        page.setDone(pageNum == NUM_PAGES - 1);
+        return page;
+    }
+
+    private static int pageNum(String queryLocator) {
+        return Integer.parseInt(queryLocator.substring("locator-".length()));
+    }
+
+    @Test
+    public void testReturnsPagesInOrder() throws Exception {
+        for (int maxBufferedPages = 0; maxBufferedPages <= 2; maxBufferedPages++) {
+            QueryResultPrefetcher prefetcher = new QueryResultPrefetcher(page(0), maxBufferedPages,
+                    queryLocator -> page(pageNum(queryLocator) + 1));
+            try {
+                for (int i = 1; i < NUM_PAGES; i++) {
+                    assertEquals("locator-" + i, prefetcher.takeNextPage().getQueryLocator());
+                }
+                assertNull(prefetcher.takeNextPage());
+            } finally {
+                prefetcher.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFetchesAtMostMaxBufferedPagesAhead() throws Exception {
+        final AtomicInteger fetchCount = new AtomicInteger();
+        QueryResultPrefetcher prefetcher = new QueryResultPrefetcher(page(0), 2, queryLocator -> {
+            fetchCount.incrementAndGet();
+            return page(pageNum(queryLocator) + 1);
+        });
+        try {
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertEquals(2, fetchCount.get());
+            prefetcher.takeNextPage();
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertEquals(3, fetchCount.get());
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    @Test
+    public void testFetchErrorIsThrownWhenPageIsTaken() throws Exception {
+        QueryResultPrefetcher prefetcher = new QueryResultPrefetcher(page(0), 1, queryLocator -> {
+            if (pageNum(queryLocator) == 1) {
+                throw new ConnectionException("queryMore failed");
+            }
+            return page(pageNum(queryLocator) + 1);
+        });
+        try {
+            assertEquals("locator-1", prefetcher.takeNextPage().getQueryLocator());
+            prefetcher.takeNextPage();
+            fail("expected the queryMore error");
+        } catch (ConnectionException e) {
+            assertTrue(e.getMessage().contains("queryMore failed"));
+        } finally {
+            prefetcher.close();
+        }
+    }
+}
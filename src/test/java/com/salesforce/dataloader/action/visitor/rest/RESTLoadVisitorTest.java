@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.beanutils.DynaBean;
+import org.junit.Test;
+
+import com.salesforce.dataloader.action.progress.ILoaderProgress;
+import com.salesforce.dataloader.action.visitor.LoadVisitorTestBase;
+import com.salesforce.dataloader.client.CompositeRESTClient;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.DataWriter;
+import com.sforce.soap.partner.SaveResult;
+
+public class RESTLoadVisitorTest extends LoadVisitorTestBase {
+
+    private static final int NUM_ROWS = 20;
+    private static final int BATCH_SIZE = 5;
+
+    /** Sends the batches concurrently and finishes them in the reverse order of sending */
+    private static class ReverseOrderVisitor extends RESTLoadVisitor {
+        private final CountDownLatch[] batchDone = new CountDownLatch[NUM_ROWS / BATCH_SIZE];
+
+        ReverseOrderVisitor(Controller controller, ILoaderProgress monitor, DataWriter successWriter,
+                DataWriter errorWriter) {
+            super(controller, monitor, successWriter, errorWriter);
+            for (int i = 0; i < this.batchDone.length; i++) {
+                this.batchDone[i] = new CountDownLatch(1);
+            }
+        }
+
+        @Override
+        protected Object[] executeClientAction(CompositeRESTClient client, List<DynaBean> data) {
+            int batchNum = getRowNum(data.get(0)) / BATCH_SIZE;
+            try {
+                // wait for the batches sent after this one
+                if (batchNum + 1 < this.batchDone.length) {
+                    assertTrue(this.batchDone[batchNum + 1].await(10, TimeUnit.SECONDS));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            SaveResult[] results = new SaveResult[data.size()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = new SaveResult();
+                results[i].setSuccess(true);
+                results[i].setId("id" + getRowNum(data.get(i)));
+            }
+            this.batchDone[batchNum].countDown();
+            return results;
+        }
+    }
+
+    @Test
+    public void testResultsOfRequestsFinishedOutOfOrderAreMatchedToRows() throws Exception {
+        getConfig().setValue(Config.OPERATION, "update");
+        getConfig().setValue(Config.IMPORT_BATCH_SIZE, BATCH_SIZE);
+        getConfig().setValue(Config.LOAD_MAX_CONCURRENT_BATCHES, NUM_ROWS / BATCH_SIZE);
+        ReverseOrderVisitor visitor = new ReverseOrderVisitor(controller, monitor, successWriter, errorWriter);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            visitor.addConvertedRow(createRow(i), convertedRow(createDynaBean(i)));
+        }
+        visitor.flushRemaining();
+
+        assertEquals(0, errorRows.size());
+        assertEquals(NUM_ROWS, successRows.size());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            // the results are written in the order of the rows
+            assertEquals("row " + i, successRows.get(i).get("Name"));
+            assertEquals("id" + i, successRows.get(i).get(Config.ID_COLUMN_NAME));
+        }
+        assertEquals(NUM_ROWS, visitor.getCompletedRowCount());
+    }
+}
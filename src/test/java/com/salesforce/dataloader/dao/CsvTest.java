@@ -159,7 +159,30 @@ public class CsvTest extends ConfigTestBase {
         compareWriterFile(path, delimiter, true, false);  // 3rd param is set to true => upload result CSV
         f.delete();
     }
-    
+
+    @Test
+    public void testCSVWriteAppend() throws Exception {
+        File f = new File(getTestDataDir(), "csvtestAppendTemp.csv");
+        String path = f.getAbsolutePath();
+        CSVFileWriter writer = new CSVFileWriter(path, getController().getConfig(), AppUtil.COMMA);
+
+        writer.open();
+        writer.setColumnNames(new ArrayList<String>(writeHeader));
+        writer.writeRow(row1);
+        writer.close();
+
+        // a resumed operation keeps the rows written before and does not repeat the header row
+        writer.setAppend(true);
+        writer.open();
+        writer.setColumnNames(new ArrayList<String>(writeHeader));
+        writer.writeRow(row2);
+        writer.close();
+
+        assertEquals(2, writer.getCurrentRowNumber());
+        compareWriterFile(path, AppUtil.COMMA, false, false);
+        f.delete();
+    }
+
     @Test
     public void testReadingSeparatedValues () throws Exception {
         File f = new File(getTestDataDir(), "csvSeparator.csv");
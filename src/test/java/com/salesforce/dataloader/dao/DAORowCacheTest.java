@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.TestRows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DAORowCacheTest {
+
+    private static Row createRow(int rowNum) {
+        return TestRows.of("Name", "name " + rowNum + " éè", "Amount", new BigDecimal(rowNum + ".25"),
+                "CreatedDate", new Timestamp(1600000000000L + rowNum), "Description", null);
+    }
+
+    private static void assertRow(int rowNum, Row row) {
+        // Row has no equals(), compare the column values
+        assertEquals(new HashMap<String, Object>(createRow(rowNum)), new HashMap<String, Object>(row));
+        // rows read back from the temporary file keep case-insensitive column names
+        assertEquals("name " + rowNum + " éè", row.get("NAME"));
+    }
+
+    @Test
+    public void testRowsBeyondMemoryBudgetAreReadBack() {
+        DAORowCache cache = new DAORowCache(2000);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                cache.addRow(createRow(i));
+            }
+            assertEquals(1000, cache.size());
+            for (int i = 0; i < 1000; i++) {
+                assertRow(i, cache.getRow(i));
+            }
+            // random access
+            assertRow(500, cache.getRow(500));
+            assertRow(3, cache.getRow(3));
+            assertRow(999, cache.get(999));
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void testRowsAddedAfterReadingAreReadBack() {
+        DAORowCache cache = new DAORowCache(0);
+        try {
+            cache.add(createRow(0));
+            assertRow(0, cache.get(0));
+            cache.add(createRow(1));
+            assertRow(1, cache.get(1));
+            assertNull(cache.get(1).get("Description"));
+            cache.clear();
+            assertEquals(0, cache.size());
+            cache.add(createRow(2));
+            assertRow(2, cache.get(0));
+        } finally {
+            cache.clear();
+        }
+    }
+}
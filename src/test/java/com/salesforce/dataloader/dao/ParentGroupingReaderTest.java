@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.model.Row;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParentGroupingReaderTest {
+
+    /** Returns a list of rows */
+    private static class ListReader implements DataReader {
+        private final List<Row> rows;
+        private int currentRowNumber = 0;
+
+        ListReader(List<Row> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void open() {
+            this.currentRowNumber = 0;
+        }
+
+        @Override
+        public void checkConnection() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public List<String> getColumnNames() {
+            return Arrays.asList("Name", "AccountId");
+        }
+
+        @Override
+        public int getCurrentRowNumber() {
+            return this.currentRowNumber;
+        }
+
+        @Override
+        public Row readRow() {
+            return this.currentRowNumber < this.rows.size() ? this.rows.get(this.currentRowNumber++) : null;
+        }
+
+        @Override
+        public List<Row> readRowList(int maxRows) {
+            List<Row> rowList = new ArrayList<Row>();
+            for (Row row; rowList.size() < maxRows && (row = readRow()) != null;) {
+                rowList.add(row);
+            }
+            return rowList;
+        }
+
+        @Override
+        public int getTotalRows() {
+            return this.rows.size();
+        }
+    }
+
+    private static List<Row> createRows(int numRows, int numParents) {
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < numRows; i++) {
+            Row row = new Row();
+            row.put("Name", "contact " + i);
+            // every 7th row has no parent
+            row.put("AccountId", i % 7 == 0 ? "" : "account " + (i % numParents));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static void assertGrouped(ParentGroupingReader reader, int numRows) throws DataAccessObjectException {
+        reader.open();
+        Set<String> names = new HashSet<String>();
+        Set<String> finishedParents = new HashSet<String>();
+        Row groupFirstRow = null;
+        int groupSize = 0;
+        for (Row row = reader.readRow(); ; row = reader.readRow()) {
+            if (groupFirstRow != null
+                    && (row == null || !reader.getGroupKey(row).equals(reader.getGroupKey(groupFirstRow)))) {
+                String parent = reader.getGroupKey(groupFirstRow);
+                if (!parent.isEmpty()) {
+                    assertTrue("rows of " + parent + " are not together", finishedParents.add(parent));
+                    assertEquals("rows of " + parent, reader.getGroupSize(groupFirstRow), groupSize);
+                }
+                groupFirstRow = null;
+            }
+            if (row == null) {
+                break;
+            }
+            names.add((String)row.get("Name"));
+            if (groupFirstRow == null) {
+                groupFirstRow = row;
+                groupSize = 0;
+            }
+            groupSize++;
+        }
+        assertEquals(numRows, names.size());
+        assertEquals(numRows, reader.getCurrentRowNumber());
+        assertEquals(numRows, reader.getTotalRows());
+    }
+
+    @Test
+    public void testRowsOfParentFollowEachOther() throws Exception {
+        ParentGroupingReader reader = new ParentGroupingReader(new ListReader(createRows(200, 9)), "accountid",
+                64000000L);
+        assertGrouped(reader, 200);
+        Row row = new Row();
+        row.put("AccountId", "account 1");
+        // rows 1, 10, ..., 199 without 28, 91 and 154, which have no parent
+        assertEquals(20, reader.getGroupSize(row));
+        reader.close();
+    }
+
+    @Test
+    public void testRowsBeyondMemoryBudgetAreGrouped() throws Exception {
+        // the partitions are kept in temporary files almost from the first row
+        ParentGroupingReader reader = new ParentGroupingReader(new ListReader(createRows(5000, 300)), "AccountId",
+                ParentGroupingReader.NUM_PARTITIONS * 500L);
+        assertGrouped(reader, 5000);
+        // the reader can be read again after it is opened
+        assertGrouped(reader, 5000);
+        reader.close();
+    }
+
+    @Test
+    public void testPartitionLargerThanMemoryBudgetKeepsReadOrder() throws Exception {
+        // the rows of one parent fill a partition many times the size of the memory budget
+        List<Row> rows = createRows(3000, 1);
+        ParentGroupingReader reader = new ParentGroupingReader(new ListReader(rows), "AccountId",
+                ParentGroupingReader.NUM_PARTITIONS * 500L);
+        assertGrouped(reader, 3000);
+        reader.open();
+        int previousRowNum = -1;
+        for (Row row = reader.readRow(); row != null; row = reader.readRow()) {
+            if (!reader.getGroupKey(row).isEmpty()) {
+                // the rows of the parent are returned in the order in which they were read
+                int rowNum = Integer.parseInt(((String)row.get("Name")).substring("contact ".length()));
+                assertTrue(rowNum > previousRowNum);
+                previousRowNum = rowNum;
+            }
+        }
+        reader.close();
+    }
+
+    @Test(expected = DataAccessObjectInitializationException.class)
+    public void testMissingColumn() throws Exception {
+        ParentGroupingReader reader = new ParentGroupingReader(new ListReader(createRows(10, 2)), "ParentId",
+                64000000L);
+        reader.readRow();
+    }
+}
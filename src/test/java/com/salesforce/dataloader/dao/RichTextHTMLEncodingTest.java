@@ -169,6 +169,14 @@ public class RichTextHTMLEncodingTest extends ConfigTestBase {
         assertEquals("Incorrect conversion of " + origText, origText.length(), convertedText.length());
     }
     
+    @Test
+    public void testLineBreaksAndWhitespaceRuns() throws Exception {
+        String origText = "a\r\nb  c\r<b>x &amp; y</b>\n";
+        String convertedText = DAOLoadVisitor.convertToHTMLFormatting(origText, regex);
+        assertEquals("Incorrect conversion of " + origText,
+                "a<br/>b&nbsp;&nbsp;c<br/><b>x &amp; y</b><br/>", convertedText);
+    }
+
     @Test
     public void testHTMLEncodedString() throws Exception {
         String origText = "  &amp; & < * $ ~ % &quot;6400L -37° &#127752; \n1  \r2  \r\n3";
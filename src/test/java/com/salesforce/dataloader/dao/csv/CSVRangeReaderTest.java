@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Verifies that {@link CSVRangeReader} returns the records of a file in the same order as a sequential read, wherever
+ * the file is split into ranges.
+ */
+public class CSVRangeReaderTest {
+
+    private static final char[] COMMA = {','};
+
+    private static List<List<String>> readSequentially(byte[] data) throws IOException {
+        List<List<String>> records = new ArrayList<List<String>>();
+        try (CSVTokenizer tokenizer = new CSVTokenizer(new ByteArrayInputStream(data), "UTF-8", COMMA)) {
+            // skip the header
+            tokenizer.nextRecord();
+            for (List<String> record = tokenizer.nextRecord(); record != null; record = tokenizer.nextRecord()) {
+                records.add(new ArrayList<String>(record));
+            }
+        }
+        return records;
+    }
+
+    private static List<List<String>> readInRanges(File file, int numThreads, int rangeSize) throws IOException {
+        long dataStart;
+        try (CSVTokenizer tokenizer = new CSVTokenizer(Files.newInputStream(file.toPath()), "UTF-8", COMMA)) {
+            tokenizer.nextRecord();
+            dataStart = tokenizer.getPosition();
+        }
+        List<List<String>> records = new ArrayList<List<String>>();
+        try (CSVRangeReader reader = new CSVRangeReader(file, dataStart, "UTF-8", COMMA, numThreads, rangeSize)) {
+            for (List<String> record = reader.nextRecord(); record != null; record = reader.nextRecord()) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static File writeTempFile(byte[] data) throws IOException {
+        File file = File.createTempFile("csvRangeReaderTest", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    @Test
+    public void testSameRecordsAsSequentialRead() throws IOException {
+        Random random = new Random(42);
+        String[] values = {"plain", "", "\"quoted, with comma\"", "\"multi\nline\r\nvalue\"", "\"\"\"\"",
+                "\"a \"\"quote\"\" inside\"", "ünïcödé", "\"\n\"", "\"\r\""};
+        StringBuilder csv = new StringBuilder("id,a,b\r\n");
+        for (int i = 0; i < 2000; i++) {
+            csv.append(i).append(',').append(values[random.nextInt(values.length)]).append(',')
+                    .append(values[random.nextInt(values.length)]);
+            csv.append(random.nextInt(10) == 0 ? "\r\n\n" : random.nextBoolean() ? "\n" : "\r\n");
+        }
+        byte[] data = csv.toString().getBytes(StandardCharsets.UTF_8);
+        File file = writeTempFile(data);
+        List<List<String>> expected = readSequentially(data);
+        assertEquals(2000, expected.size());
+        for (int rangeSize : new int[] {7, 64, 1000, 100000}) {
+            assertEquals("range size " + rangeSize, expected, readInRanges(file, 4, rangeSize));
+        }
+    }
+
+    @Test
+    public void testRecordLargerThanSeveralRanges() throws IOException {
+        StringBuilder longValue = new StringBuilder("\"");
+        for (int i = 0; i < 1000; i++) {
+            longValue.append("line ").append(i).append(",\n");
+        }
+        longValue.append('"');
+        String csv = "id,value\n1,short\n2," + longValue + "\n3,short\n4," + longValue;
+        byte[] data = csv.getBytes(StandardCharsets.UTF_8);
+        assertEquals(readSequentially(data), readInRanges(writeTempFile(data), 3, 100));
+    }
+
+    @Test
+    public void testMalformedInput() throws IOException {
+        byte[] data = "id,value\n1,ok\n2,bad\"value\n3,ok\n".getBytes(StandardCharsets.UTF_8);
+        try {
+            readInRanges(writeTempFile(data), 2, 8);
+            fail("Expected a parse error");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sforce.async.CSVReader;
+
+/**
+ * Verifies that {@link CSVTokenizer} reads CSV the same way as the WSC CSVReader it replaces.
+ */
+public class CSVTokenizerTest {
+
+    private static List<List<String>> readWithTokenizer(String csv, String encoding, char[] delimiters)
+            throws IOException {
+        List<List<String>> records = new ArrayList<List<String>>();
+        try (CSVTokenizer tokenizer = new CSVTokenizer(
+                new ByteArrayInputStream(csv.getBytes(encoding)), encoding, delimiters)) {
+            for (List<String> record = tokenizer.nextRecord(); record != null; record = tokenizer.nextRecord()) {
+                records.add(new ArrayList<String>(record));
+            }
+        }
+        return records;
+    }
+
+    private static List<List<String>> readWithCSVReader(String csv, String encoding, char[] delimiters)
+            throws IOException {
+        List<List<String>> records = new ArrayList<List<String>>();
+        CSVReader reader = new CSVReader(new ByteArrayInputStream(csv.getBytes(encoding)), encoding, delimiters);
+        for (List<String> record = reader.nextRecord(); record != null; record = reader.nextRecord()) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static void assertSameRecords(String csv, String encoding, char[] delimiters) throws IOException {
+        assertEquals(csv, readWithCSVReader(csv, encoding, delimiters), readWithTokenizer(csv, encoding, delimiters));
+    }
+
+    @Test
+    public void testSameRecordsAsCSVReader() throws IOException {
+        String[] inputs = {
+                "a,b,c\n1,2,3\n",
+                "a,b,c\r\n1,2,3",
+                "a,,c\n,,\n",
+                "\"quoted, value\",\"with \"\"quotes\"\"\",plain\n",
+                "\"multi\nline\r\nvalue\rhere\",x\n",
+                "a,b\n\n\r\n,\n\"\"\nlast,row",
+                "\"\",\"\"\"\",\n",
+                "name,city\nJosé,São Paulo\n日本,東京\n",
+        };
+        for (String input : inputs) {
+            assertSameRecords(input, "UTF-8", new char[] {','});
+            assertSameRecords(input, "UTF-16LE", new char[] {','});
+            assertSameRecords(input.replace(',', ';'), "UTF-8", new char[] {',', ';', '\t'});
+        }
+        assertSameRecords("café|b\tc\n1|2\t3\n", "ISO-8859-1", new char[] {'|', '\t'});
+    }
+
+    @Test
+    public void testRecordsLargerThanTheBuffer() throws IOException {
+        StringBuilder csv = new StringBuilder("id,value\n");
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            longValue.append("x\"\"y\n");
+        }
+        for (int i = 0; i < 10; i++) {
+            csv.append(i).append(",\"").append(longValue).append("\"\n");
+        }
+        assertSameRecords(csv.toString(), "UTF-8", new char[] {','});
+    }
+
+    @Test
+    public void testFieldsAreDecodedFromReusedRecord() throws IOException {
+        try (CSVTokenizer tokenizer = new CSVTokenizer(new ByteArrayInputStream("a,\"b\"\n,c\n".getBytes("UTF-8")),
+                "UTF-8")) {
+            List<String> record = tokenizer.nextRecord();
+            assertEquals("b", record.get(1));
+            assertEquals("a", record.get(0));
+            record = tokenizer.nextRecord();
+            assertNull(record.get(0));
+            assertEquals("c", record.get(1));
+            assertNull(tokenizer.nextRecord());
+        }
+    }
+
+    @Test
+    public void testMalformedInput() throws IOException {
+        String[] inputs = {"a,b\"c\n", "\"a\"b,c\n", "a,\"unterminated\n"};
+        for (String input : inputs) {
+            try {
+                readWithTokenizer(input, "UTF-8", new char[] {','});
+                fail("Expected a parse error for " + input);
+            } catch (CSVTokenizer.CSVParseException e) {
+                // expected
+            }
+        }
+    }
+}
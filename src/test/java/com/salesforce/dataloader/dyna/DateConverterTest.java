@@ -32,9 +32,14 @@ import org.junit.Test;
 
 import com.salesforce.dataloader.util.AppUtil;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -850,6 +855,26 @@ public class DateConverterTest {
         assertEquals(msg, timeFromExpectedCal, timeFromStringCal);
     }
 
+    @Test
+    public void testConvertFromSeveralThreads() throws Exception {
+        final String[] dates = {"2011-10-15T19:00:00.000Z", "20111015T190000", "10/15/2011 19:00", "2011-10-16T03:00:00+08:00"};
+        final DateTimeConverter converter = new DateTimeConverter(TZ, false);
+        final long expectedMillis = ((Calendar)converter.convert(null, dates[0])).getTimeInMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (int i = 0; i < 200; i++) {
+                final String date = dates[i % dates.length];
+                results.add(executor.submit(() -> ((Calendar)converter.convert(null, date)).getTimeInMillis()));
+            }
+            for (Future<Long> result : results) {
+                assertEquals(expectedMillis, result.get().longValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private void assertValidDate(String strDate, Calendar expCalDate, boolean useEuropean) {
 
         assertValidDate(null, strDate, expCalDate, useEuropean);
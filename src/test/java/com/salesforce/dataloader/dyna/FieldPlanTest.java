@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dyna;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.sforce.soap.partner.DescribeSObjectResult;
+import com.sforce.soap.partner.Field;
+import com.sforce.soap.partner.FieldType;
+
+public class FieldPlanTest {
+
+    @Test
+    public void testFieldLookups() {
+        DescribeSObjectResult describeResult = new DescribeSObjectResult();
+        describeResult.setFields(new Field[] {
+                newField("Name", FieldType.string, 80, false),
+                newField("Phone", FieldType.phone, 40, false),
+                newField("Description__c", FieldType.textarea, 32000, true),
+                newField("NumberOfEmployees", FieldType._int, 0, false)});
+        FieldPlan fieldPlan = new FieldPlan(describeResult, null);
+
+        assertEquals("Name", fieldPlan.getField("NAME").getName());
+        assertEquals(80, fieldPlan.getField("name").getLength());
+        assertTrue(fieldPlan.getField("Name").isTruncatable());
+        assertFalse(fieldPlan.getField("NumberOfEmployees").isTruncatable());
+        assertNull(fieldPlan.getField("Missing"));
+
+        assertTrue(fieldPlan.isPhone("Phone"));
+        assertFalse(fieldPlan.isPhone("Name"));
+        assertTrue(fieldPlan.isHtmlFormatted("Description__c"));
+        // dynabean properties are named exactly like the fields
+        assertFalse(fieldPlan.isHtmlFormatted("description__c"));
+    }
+
+    private static Field newField(String name, FieldType type, int length, boolean htmlFormatted) {
+        Field field = new Field();
+        field.setName(name);
+        field.setType(type);
+        field.setLength(length);
+        field.setHtmlFormatted(htmlFormatted);
+        return field;
+    }
+}
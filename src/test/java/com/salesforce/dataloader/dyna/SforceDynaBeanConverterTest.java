@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dyna;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.beanutils.BasicDynaClass;
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.DynaProperty;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
+
+public class SforceDynaBeanConverterTest {
+
+    private final BasicDynaClass dynaClass = SforceDynaBean.getDynaBeanInstance(new DynaProperty[] {
+            new DynaProperty("Name", String.class),
+            new DynaProperty("Description", String.class),
+            new DynaProperty("NumberOfEmployees", Integer.class),
+            new DynaProperty("IsActive__c", Boolean.class),
+            new DynaProperty("CloseDate__c", Calendar.class)});
+
+    @Before
+    public void registerConverters() {
+        ConvertUtils.register(new DateTimeConverter(TimeZone.getTimeZone("GMT"), false), Calendar.class);
+        ConvertUtils.register(new IntegerConverter(), Integer.class);
+        ConvertUtils.register(new BooleanConverter(), Boolean.class);
+        ConvertUtils.register(new StringConverter(), String.class);
+    }
+
+    @After
+    public void deregisterConverters() {
+        ConvertUtils.deregister();
+    }
+
+    @Test
+    public void testConvertMatchesBeanUtilsConversion() throws Exception {
+        RowSchema schema = new RowSchema();
+        SforceDynaBeanConverter converter = new SforceDynaBeanConverter(dynaClass,
+                (fieldName, fieldValue) -> "Name".equals(fieldName) ? fieldValue + "!" : fieldValue);
+
+        Row first = new Row(schema);
+        first.put("Name", "Acme");
+        first.put("Description", "");
+        first.put("NumberOfEmployees", "42");
+        first.put("IsActive__c", "yes");
+        first.put("CloseDate__c", "2020-01-02T03:04:05.000Z");
+        first.put("NotAField", "ignored");
+        assertConvertedLikeBeanUtils(converter, first);
+
+        Row second = new Row(schema);
+        second.put("name", "Globex");
+        second.put("IsActive__c", null);
+        second.put("Phone", "555");
+        assertConvertedLikeBeanUtils(converter, second);
+    }
+
+    private void assertConvertedLikeBeanUtils(SforceDynaBeanConverter converter, Row row) throws Exception {
+        SforceDynaBeanConverter.Conversion conversion = converter.convert(row);
+
+        DynaBean expected = SforceDynaBean.convertToDynaBean(dynaClass, row);
+        Map<String, String> fieldMap = BeanUtils.describe(expected);
+        int expectedDataSize = 0;
+        for (String fName : fieldMap.keySet()) {
+            if (fieldMap.get(fName) != null) {
+                Object value = "Name".equals(fName) ? expected.get(fName) + "!" : expected.get(fName);
+                expected.set(fName, value);
+                expectedDataSize += fName.length() + value.toString().length();
+            }
+        }
+        for (DynaProperty property : dynaClass.getDynaProperties()) {
+            assertEquals(property.getName(), expected.get(property.getName()),
+                    conversion.getDynaBean().get(property.getName()));
+        }
+        assertEquals(expectedDataSize, conversion.getDataSize());
+    }
+}
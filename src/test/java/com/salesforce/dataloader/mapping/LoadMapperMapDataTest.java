@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.salesforce.dataloader.model.Row;
+import com.salesforce.dataloader.model.RowSchema;
+import com.salesforce.dataloader.model.TestRows;
+import com.sforce.soap.partner.Field;
+import com.sforce.soap.partner.FieldType;
+
+/**
+ * Verifies that rows are mapped the same way by a mapping that is compiled once and reused across rows.
+ */
+public class LoadMapperMapDataTest {
+
+    private static final RowSchema SCHEMA = new RowSchema(Arrays.asList("first", "last", "city", "count"));
+
+    private static Field field(String name, FieldType type) {
+        Field field = new Field();
+        field.setName(name);
+        field.setType(type);
+        return field;
+    }
+
+    private static LoadMapper newMapper() throws Exception {
+        Field[] fields = {
+                field("Name", FieldType.string),
+                field("Description", FieldType.textarea),
+                field("City__c", FieldType.string),
+                field("Count__c", FieldType.string),
+                field("Source__c", FieldType.string)};
+        LoadMapper mapper = new LoadMapper(null, Arrays.asList("first", "last", "city", "count"), fields, null);
+        mapper.putMapping("first,last", "Name, Description");
+        mapper.putMapping("city", "City__c");
+        mapper.putMapping("count", "Count__c");
+        mapper.putConstant("Source__c", "\"import\"");
+        return mapper;
+    }
+
+    private static Row row(Object first, Object last, Object city, Object count) {
+        return TestRows.withSchema(SCHEMA, "first", first, "last", last, "city", city, "count", count);
+    }
+
+    @Test
+    public void testMapSeveralRows() throws Exception {
+        LoadMapper mapper = newMapper();
+        for (int i = 0; i < 3; i++) {
+            Row mapped = mapper.mapData(row("John" + i, "Doe", "Paris", null));
+            assertEquals("John" + i + ", Doe", mapped.get("Name"));
+            assertEquals("John" + i + ", Doe", mapped.get("Description"));
+            assertEquals("Paris", mapped.get("City__c"));
+            assertNull(mapped.get("Count__c"));
+            assertEquals("import", mapped.get("Source__c"));
+            assertEquals(5, mapped.size());
+        }
+    }
+
+    @Test
+    public void testMappingChangesAreApplied() throws Exception {
+        LoadMapper mapper = newMapper();
+        assertEquals("Paris", mapper.mapData(row("John", "Doe", "Paris", "1")).get("City__c"));
+
+        mapper.removeMapping("city");
+        Row mapped = mapper.mapData(row("John", "Doe", "Paris", "1"));
+        assertFalse(mapped.containsKey("City__c"));
+        assertEquals("1", mapped.get("Count__c"));
+
+        mapper.putMapping("city", "City__c, Description");
+        mapped = mapper.mapData(row("John", "Doe", "Paris", "1"));
+        assertEquals("Paris", mapped.get("City__c"));
+        // composite columns are mapped in the order of their names, so "first,last" is set after "city"
+        assertEquals("John, Doe", mapped.get("Description"));
+    }
+
+    @Test
+    public void testRowsWithTheirOwnSchema() throws Exception {
+        LoadMapper mapper = newMapper();
+        for (int i = 0; i < 3; i++) {
+            // each row has a schema of its own, with the columns in another order than the shared schema
+            Row mapped = mapper.mapData(TestRows.of("count", "1", "city", "Paris" + i, "last", "Doe", "first", "John" + i));
+            assertEquals("John" + i + ", Doe", mapped.get("Name"));
+            assertEquals("Paris" + i, mapped.get("City__c"));
+            assertEquals("1", mapped.get("Count__c"));
+        }
+        assertEquals("Lyon", mapper.mapData(row("Jane", "Roe", "Lyon", null)).get("City__c"));
+    }
+
+    @Test
+    public void testRowsMappedConcurrently() throws Exception {
+        final LoadMapper mapper = newMapper();
+        final int threadCount = 4;
+        final int rowsPerThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Integer>> mismatches = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < threadCount; t++) {
+                final int thread = t;
+                mismatches.add(executor.submit(() -> {
+                    int mismatchCount = 0;
+                    for (int i = 0; i < rowsPerThread; i++) {
+                        String first = "John" + thread + "-" + i;
+                        Row mapped = mapper.mapData(row(first, "Doe" + i, "Paris", null));
+                        if (!(first + ", Doe" + i).equals(mapped.get("Name"))) {
+                            mismatchCount++;
+                        }
+                    }
+                    return mismatchCount;
+                }));
+            }
+            for (Future<Integer> mismatchCount : mismatches) {
+                assertEquals(Integer.valueOf(0), mismatchCount.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNonStringValueEndsComposition() throws Exception {
+        LoadMapper mapper = newMapper();
+        Row mapped = mapper.mapData(row("John", Integer.valueOf(7), "Paris", null));
+        assertEquals("John, null", mapped.get("Name"));
+
+        // the column that did not hold a string is no longer part of the composite column
+        mapped = mapper.mapData(row("John", "Doe", "Paris", null));
+        assertEquals("John, null", mapped.get("Name"));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RowTest {
+
+    @Test
+    public void testCaseInsensitiveColumnsKeepFirstSpelling() {
+        Row row = new Row();
+        row.put("Name", "a");
+        row.put("NAME", "b");
+        row.put("Id", null);
+
+        assertEquals(2, row.size());
+        assertEquals("b", row.get("name"));
+        assertTrue(row.containsKey("ID"));
+        assertNull(row.get("Id"));
+        assertFalse(row.containsKey("Missing"));
+        assertEquals(Arrays.asList("Id", "Name"), new ArrayList<String>(row.keySet()));
+
+        assertEquals("b", row.remove("nAmE"));
+        assertEquals(1, row.size());
+        assertFalse(row.containsKey("Name"));
+    }
+
+    @Test
+    public void testRowsShareSchema() {
+        RowSchema schema = new RowSchema(Arrays.asList("Zip", "City"));
+        Row first = new Row(schema);
+        first.setValue(schema.indexOf("zip"), "94105");
+        Row second = new Row(schema);
+        second.put("Status", "Created");
+
+        assertEquals(3, schema.getColumnCount());
+        assertEquals("94105", first.get("ZIP"));
+        assertNull(first.get("Status"));
+        assertEquals(1, first.size());
+        assertEquals("Created", second.getValue(schema.indexOf("status")));
+        assertEquals(Arrays.asList("Status"), new ArrayList<String>(second.keySet()));
+        assertEquals("Zip", schema.getColumnName(0));
+    }
+}
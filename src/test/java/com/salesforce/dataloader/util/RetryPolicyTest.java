@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testDelayDoublesWithEachRetry() {
+        RetryPolicy retryPolicy = new RetryPolicy(5, 2, 300);
+        assertEquals(5, retryPolicy.getMaxRetries());
+        for (int i = 0; i < 100; i++) {
+            assertBetween(1000, 2000, retryPolicy.getSleepMillis(0));
+            assertBetween(2000, 4000, retryPolicy.getSleepMillis(1));
+            assertBetween(8000, 16000, retryPolicy.getSleepMillis(3));
+        }
+    }
+
+    @Test
+    public void testDelayIsCapped() {
+        RetryPolicy retryPolicy = new RetryPolicy(10, 2, 30);
+        for (int i = 0; i < 100; i++) {
+            assertBetween(15000, 30000, retryPolicy.getSleepMillis(4));
+            assertBetween(15000, 30000, retryPolicy.getSleepMillis(1000));
+        }
+    }
+
+    @Test
+    public void testDelaysAreSpread() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 10, 300);
+        long first = retryPolicy.getSleepMillis(2);
+        boolean spread = false;
+        for (int i = 0; i < 100 && !spread; i++) {
+            spread = retryPolicy.getSleepMillis(2) != first;
+        }
+        assertTrue("retries of requests that failed together should not all be sent at the same time", spread);
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual + " should be between " + min + " and " + max, actual >= min && actual <= max);
+    }
+}